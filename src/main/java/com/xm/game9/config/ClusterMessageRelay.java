@@ -0,0 +1,292 @@
+package com.xm.game9.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群 WebSocket 消息中继
+ * <p>
+ * 每个节点的简单代理只认识本节点的连接。本类在 Redis 中维护用户到节点的路由表
+ * （{@code ws:route:{userId}}，ZSET，成员为节点ID、分值为最近心跳时间），
+ * 发送给用户的消息先投递本节点连接，再通过 Redis 发布订阅转发到该用户所在的其他节点，
+ * 由目标节点以原有的 {@code /user/queue/*} 目的地推送，客户端无需任何改动。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class ClusterMessageRelay implements MessageListener {
+
+    /**
+     * 节点频道前缀，后接节点ID
+     */
+    public static final String NODE_CHANNEL_PREFIX = "game9:ws:node:";
+
+    /**
+     * 用户路由 key 前缀
+     */
+    private static final String ROUTE_KEY_PREFIX = "ws:route:";
+
+    /**
+     * 路由有效期（毫秒），超过该时间未心跳的节点视为已下线
+     */
+    static final long ROUTE_TTL_MILLIS = 90_000L;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 与 STOMP 消息转换器保持一致的序列化配置，保证跨节点推送的消息格式与本地推送相同
+     */
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 本节点的连接：用户ID -> WebSocket 会话ID集合
+     */
+    private final ConcurrentHashMap<Long, Set<String>> localSessions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(NODE_CHANNEL_PREFIX + nodeId));
+        log.info("WebSocket集群中继初始化完成, nodeId: {}", nodeId);
+    }
+
+    /**
+     * 节点关闭时移除本节点的路由，避免其他节点继续转发
+     */
+    @PreDestroy
+    public void destroy() {
+        try {
+            for (Long userId : localSessions.keySet()) {
+                stringRedisTemplate.opsForZSet().remove(ROUTE_KEY_PREFIX + userId, nodeId);
+            }
+        } catch (Exception e) {
+            log.warn("移除WebSocket路由失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 本节点ID
+     *
+     * @return 节点ID
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 登记本节点上的新连接
+     *
+     * @param userId    用户ID
+     * @param sessionId WebSocket 会话ID
+     */
+    public void register(Long userId, String sessionId) {
+        localSessions.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(sessionId);
+        try {
+            String key = ROUTE_KEY_PREFIX + userId;
+            stringRedisTemplate.opsForZSet().add(key, nodeId, System.currentTimeMillis());
+            stringRedisTemplate.expire(key, ROUTE_TTL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("登记WebSocket路由失败 - userId: {}, error: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 注销本节点上的连接，用户在本节点已无连接时移除路由
+     *
+     * @param userId    用户ID
+     * @param sessionId WebSocket 会话ID
+     */
+    public void unregister(Long userId, String sessionId) {
+        Set<String> remaining = localSessions.computeIfPresent(userId, (k, sessions) -> {
+            sessions.remove(sessionId);
+            return sessions.isEmpty() ? null : sessions;
+        });
+        if (remaining == null) {
+            try {
+                stringRedisTemplate.opsForZSet().remove(ROUTE_KEY_PREFIX + userId, nodeId);
+            } catch (Exception e) {
+                log.warn("移除WebSocket路由失败 - userId: {}, error: {}", userId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 用户是否连接在本节点
+     *
+     * @param userId 用户ID
+     * @return 是否本地连接
+     */
+    public boolean isLocal(Long userId) {
+        return localSessions.containsKey(userId);
+    }
+
+    /**
+     * 用户是否连接在集群中的任意节点
+     *
+     * @param userId 用户ID
+     * @return 是否在线
+     */
+    public boolean isConnectedAnywhere(Long userId) {
+        if (isLocal(userId)) {
+            return true;
+        }
+        Long count = stringRedisTemplate.opsForZSet().count(ROUTE_KEY_PREFIX + userId,
+                System.currentTimeMillis() - ROUTE_TTL_MILLIS, Double.POSITIVE_INFINITY);
+        return count != null && count > 0;
+    }
+
+    /**
+     * 本节点连接的用户数
+     *
+     * @return 用户数
+     */
+    public int getLocalUserCount() {
+        return localSessions.size();
+    }
+
+    /**
+     * 刷新本节点所有连接用户的路由心跳，并清理过期节点
+     */
+    public void refreshRoutes() {
+        if (localSessions.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Long userId : localSessions.keySet()) {
+                String key = ROUTE_KEY_PREFIX + userId;
+                conn.zAdd(key, now, nodeId);
+                conn.zRemRangeByScore(key, Double.NEGATIVE_INFINITY, now - ROUTE_TTL_MILLIS);
+                conn.pExpire(key, ROUTE_TTL_MILLIS);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 向用户推送消息（集群内任意节点上的连接都能收到）
+     *
+     * @param userId      用户ID
+     * @param destination 用户目的地，如 /queue/messages
+     * @param payload     消息体
+     */
+    public void sendToUser(Long userId, String destination, Object payload) {
+        sendToUsers(destination, Map.of(userId, payload));
+    }
+
+    /**
+     * 向多个用户推送消息，所有用户的路由通过一次管道查询获取
+     *
+     * @param destination    用户目的地
+     * @param payloadByUser  用户ID -> 消息体
+     */
+    public void sendToUsers(String destination, Map<Long, ?> payloadByUser) {
+        if (payloadByUser.isEmpty()) {
+            return;
+        }
+        List<Long> userIds = new ArrayList<>(payloadByUser.keySet());
+        for (Long userId : userIds) {
+            if (isLocal(userId)) {
+                messagingTemplate.convertAndSendToUser(userId.toString(), destination, payloadByUser.get(userId));
+            }
+        }
+        List<Object> routes;
+        try {
+            long minScore = System.currentTimeMillis() - ROUTE_TTL_MILLIS;
+            routes = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (Long userId : userIds) {
+                    conn.zRangeByScore(ROUTE_KEY_PREFIX + userId, minScore, Double.POSITIVE_INFINITY);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("查询WebSocket路由失败, 仅投递本节点 - users: {}, error: {}", userIds.size(), e.getMessage());
+            return;
+        }
+        for (int i = 0; i < userIds.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Set<String> nodes = (Set<String>) routes.get(i);
+            if (nodes == null || nodes.isEmpty() || (nodes.size() == 1 && nodes.contains(nodeId))) {
+                continue;
+            }
+            Long userId = userIds.get(i);
+            String body;
+            try {
+                body = objectMapper.writeValueAsString(
+                        new RelayEnvelope(userId, destination, objectMapper.valueToTree(payloadByUser.get(userId))));
+            } catch (Exception e) {
+                log.error("序列化跨节点消息失败 - userId: {}, destination: {}", userId, destination, e);
+                continue;
+            }
+            for (String node : nodes) {
+                if (!nodeId.equals(node)) {
+                    stringRedisTemplate.convertAndSend(NODE_CHANNEL_PREFIX + node, body);
+                }
+            }
+        }
+    }
+
+    /**
+     * 接收其他节点转发来的消息
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            RelayEnvelope envelope = objectMapper.readValue(body, RelayEnvelope.class);
+            if (!isLocal(envelope.userId())) {
+                // 路由已过期（用户刚断开），丢弃
+                log.debug("用户不在本节点，丢弃转发消息 - userId: {}", envelope.userId());
+                return;
+            }
+            messagingTemplate.convertAndSendToUser(envelope.userId().toString(), envelope.destination(),
+                    envelope.payload());
+        } catch (Exception e) {
+            log.error("处理跨节点消息失败: {}", body, e);
+        }
+    }
+
+    /**
+     * 跨节点转发的消息
+     *
+     * @param userId      目标用户ID
+     * @param destination 用户目的地
+     * @param payload     消息体
+     */
+    record RelayEnvelope(Long userId, String destination, JsonNode payload) {
+    }
+}
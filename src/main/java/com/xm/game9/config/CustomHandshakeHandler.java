@@ -23,12 +23,12 @@ public class CustomHandshakeHandler extends DefaultHandshakeHandler {
                                     WebSocketHandler wsHandler, 
                                     Map<String, Object> attributes) {
         
-        log.info("CustomHandshakeHandler 开始处理用户身份确定");
+        log.debug("CustomHandshakeHandler 开始处理用户身份确定");
         
         // 从attributes中获取userId（由握手拦截器设置）
         Long userId = (Long) attributes.get("userId");
         if (userId != null) {
-            log.info("从attributes获取到userId: {}", userId);
+            log.debug("从attributes获取到userId: {}", userId);
             
             // 创建自定义Principal
             return new WebSocketPrincipal(userId);
@@ -1,21 +1,62 @@
 package com.xm.game9.config;
 
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 import javax.sql.DataSource;
 
 /**
  * 数据源配置
+ * <p>
+ * 主数据源沿用 spring.datasource 配置；批量导入另有一个小连接池，连接开启 rewriteBatchedStatements，
+ * 批量 INSERT 合并为多值语句。开启后驱动对每行只返回 SUCCESS_NO_INFO，
+ * 需要逐行影响行数的批量写入必须使用主数据源。
+ * 聊天消息写后缓冲不依赖影响行数（先查询已存在的消息ID，再 INSERT IGNORE 并按新消息数 upsert 会话），两种数据源都能正确重放。
  *
  * @author X1aoM1ngTX
  */
 @Configuration
 public class DataSourceConfig {
 
+    /**
+     * 导入连接池最大连接数：后台导入单线程执行，另留一个给同步导入接口
+     */
+    private static final int IMPORT_POOL_SIZE = 2;
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public HikariDataSource importDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("catalog-import");
+        dataSource.setMaximumPoolSize(IMPORT_POOL_SIZE);
+        dataSource.setMinimumIdle(0);
+        dataSource.addDataSourceProperty("rewriteBatchedStatements", "true");
+        return dataSource;
+    }
+
     @Bean
+    @Primary
     public JdbcTemplate jdbcTemplate(DataSource dataSource) {
         return new JdbcTemplate(dataSource);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 批量导入专用 JdbcTemplate
+     */
+    @Bean
+    public JdbcTemplate importJdbcTemplate(@Qualifier("importDataSource") DataSource importDataSource) {
+        return new JdbcTemplate(importDataSource);
+    }
+}
@@ -1,122 +1,197 @@
 package com.xm.game9.config;
 
-import com.xm.game9.model.vo.FriendVO;
-import com.xm.game9.service.FriendService;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.xm.game9.mapper.FriendRelationshipMapper;
+import com.xm.game9.model.domain.FriendRelationship;
 import com.xm.game9.utils.RedisUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 在线状态管理器
+ * <p>
+ * 在线状态以本节点连接集合（{@link ClusterMessageRelay}）加 Redis 中带过期时间的
+ * {@code user:online:{userId}} 键表示，批量查询时一次 MGET 完成。
+ * 上下线变化先合并到待通知表中，由定时任务每个周期统一查询好友关系并批量推送，
+ * 同一用户在一个周期内的多次变化只通知最终状态。
  *
  * @author X1aoM1ngTX
  */
 @Component
 @Slf4j
 public class OnlineStatusManager {
-    
+
+    /**
+     * 在线状态key前缀
+     */
+    private static final String ONLINE_KEY_PREFIX = "user:online:";
+
+    /**
+     * 单条好友关系查询包含的用户数上限
+     */
+    private static final int QUERY_CHUNK_SIZE = 500;
+
     @Autowired
     private RedisUtil redisUtil;
-    
+
     @Autowired
-    private FriendService friendService;
-    
+    private FriendRelationshipMapper friendRelationshipMapper;
+
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
-    
-    // 本地缓存：用户ID -> WebSocket Session
-    private final ConcurrentHashMap<Long, Object> onlineUsers = new ConcurrentHashMap<>();
-    
+    private ClusterMessageRelay clusterMessageRelay;
+
+    /**
+     * 待通知的状态变化：用户ID -> 是否在线
+     */
+    private final ConcurrentHashMap<Long, Boolean> pendingChanges = new ConcurrentHashMap<>();
+
     /**
      * 用户上线
      */
     public void userOnline(Long userId) {
-        onlineUsers.put(userId, new Object());
-        redisUtil.setWithExpire("user:online:" + userId, "online", 3600, TimeUnit.SECONDS); // 1小时过期
+        redisUtil.setWithExpire(ONLINE_KEY_PREFIX + userId, "online", 3600, TimeUnit.SECONDS); // 1小时过期
         log.info("用户上线: userId={}", userId);
-        
-        // 通知好友该用户上线
-        notifyFriendsStatusChange(userId, true);
+
+        // 通知好友该用户上线（合并到下一个通知周期）
+        pendingChanges.put(userId, true);
     }
-    
+
     /**
-     * 用户下线
+     * 用户下线（用户在其他节点仍有连接时保持在线）
      */
     public void userOffline(Long userId) {
-        onlineUsers.remove(userId);
-        redisUtil.delete("user:online:" + userId);
+        if (clusterMessageRelay.isConnectedAnywhere(userId)) {
+            log.info("用户仍有其他连接，保持在线: userId={}", userId);
+            return;
+        }
+        redisUtil.delete(ONLINE_KEY_PREFIX + userId);
         log.info("用户下线: userId={}", userId);
-        
-        // 通知好友该用户下线
-        notifyFriendsStatusChange(userId, false);
+
+        // 通知好友该用户下线（合并到下一个通知周期）
+        pendingChanges.put(userId, false);
     }
-    
+
     /**
      * 检查用户是否在线
      */
     public boolean isOnline(Long userId) {
-        return onlineUsers.containsKey(userId) || redisUtil.hasKey("user:online:" + userId);
+        return clusterMessageRelay.isLocal(userId) || redisUtil.hasKey(ONLINE_KEY_PREFIX + userId);
     }
-    
+
     /**
-     * 获取在线用户数量
+     * 批量检查用户是否在线（本节点连接直接判定，其余一次 MGET）
+     *
+     * @param userIds 用户ID集合
+     * @return 用户ID -> 是否在线
+     */
+    public Map<Long, Boolean> getOnlineStatus(Collection<Long> userIds) {
+        Map<Long, Boolean> result = new HashMap<>();
+        List<Long> remote = new ArrayList<>();
+        for (Long userId : new LinkedHashSet<>(userIds)) {
+            if (clusterMessageRelay.isLocal(userId)) {
+                result.put(userId, true);
+            } else {
+                remote.add(userId);
+            }
+        }
+        if (!remote.isEmpty()) {
+            List<String> values = redisUtil.multiGet(remote.stream().map(id -> ONLINE_KEY_PREFIX + id).toList());
+            for (int i = 0; i < remote.size(); i++) {
+                result.put(remote.get(i), values.get(i) != null);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取本节点在线用户数量
      */
     public int getOnlineUserCount() {
-        return onlineUsers.size();
+        return clusterMessageRelay.getLocalUserCount();
     }
-    
+
     /**
-     * 通知好友状态变化
+     * 推送本周期内合并的状态变化：一次查询所有相关好友关系，一次 MGET 获取好友在线状态，
+     * 每个在线好友只收到一条消息（单条变化推送到 /queue/friends/status，
+     * 多条变化以列表形式推送到 /queue/friends/status/batch）
+     *
+     * @return 本次处理的状态变化数
      */
-    private void notifyFriendsStatusChange(Long userId, boolean isOnline) {
+    public int flushStatusChanges() {
+        if (pendingChanges.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Boolean> changes = new LinkedHashMap<>();
+        for (Long userId : new ArrayList<>(pendingChanges.keySet())) {
+            Boolean online = pendingChanges.remove(userId);
+            if (online != null) {
+                changes.put(userId, online);
+            }
+        }
+        if (changes.isEmpty()) {
+            return 0;
+        }
+
         try {
-            // 获取该用户的好友列表
-            List<Long> friendIds = getFriendIds(userId);
-            
-            for (Long friendId : friendIds) {
-                // 检查好友是否在线
-                if (isOnline(friendId)) {
-                    // 发送状态变化通知
-                    UserStatusNotification notification = new UserStatusNotification(
-                        userId, isOnline, System.currentTimeMillis()
-                    );
-                    
-                    messagingTemplate.convertAndSendToUser(
-                        friendId.toString(),
-                        "/queue/friends/status",
-                        notification
-                    );
-                }
+            // 好友ID -> 需要通知给该好友的变化
+            Map<Long, List<UserStatusNotification>> notifications = new LinkedHashMap<>();
+            long now = System.currentTimeMillis();
+            for (FriendRelationship relation : getFriendRelations(changes.keySet())) {
+                notifications.computeIfAbsent(relation.getFriendId(), k -> new ArrayList<>())
+                        .add(new UserStatusNotification(relation.getUserId(), changes.get(relation.getUserId()), now));
+            }
+            if (notifications.isEmpty()) {
+                return changes.size();
             }
+
+            Map<Long, Boolean> friendOnline = getOnlineStatus(notifications.keySet());
+            Map<Long, Object> singles = new HashMap<>();
+            Map<Long, Object> batches = new HashMap<>();
+            notifications.forEach((friendId, list) -> {
+                if (!Boolean.TRUE.equals(friendOnline.get(friendId))) {
+                    return;
+                }
+                if (list.size() == 1) {
+                    singles.put(friendId, list.get(0));
+                } else {
+                    batches.put(friendId, list);
+                }
+            });
+            clusterMessageRelay.sendToUsers("/queue/friends/status", singles);
+            clusterMessageRelay.sendToUsers("/queue/friends/status/batch", batches);
         } catch (Exception e) {
-            log.error("通知好友状态变化失败: userId={}, isOnline={}", userId, isOnline, e);
+            log.error("通知好友状态变化失败: changes={}", changes.size(), e);
         }
+        return changes.size();
     }
-    
+
     /**
-     * 获取用户好友ID列表
+     * 批量获取用户的好友关系（userId 为发生变化的用户，friendId 为需要通知的好友）
      */
-    private List<Long> getFriendIds(Long userId) {
-        try {
-            List<FriendVO> friends = friendService.getFriendList(userId);
-            List<Long> friendIds = new ArrayList<>();
-            for (FriendVO friend : friends) {
-                friendIds.add(friend.getFriendId());
-            }
-            return friendIds;
-        } catch (Exception e) {
-            log.error("获取用户好友列表失败: userId={}", userId, e);
-            return new ArrayList<>();
+    private List<FriendRelationship> getFriendRelations(Collection<Long> userIds) {
+        List<Long> ids = new ArrayList<>(userIds);
+        List<FriendRelationship> relations = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += QUERY_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + QUERY_CHUNK_SIZE, ids.size()));
+            relations.addAll(friendRelationshipMapper.selectList(new LambdaQueryWrapper<FriendRelationship>()
+                    .select(FriendRelationship::getUserId, FriendRelationship::getFriendId)
+                    .in(FriendRelationship::getUserId, chunk)
+                    .eq(FriendRelationship::getFriendStatus, 1)));
         }
+        return relations;
     }
-    
+
     /**
      * 用户状态通知
      */
@@ -124,24 +199,24 @@ public class OnlineStatusManager {
         private final Long userId;
         private final Boolean online;
         private final Long timestamp;
-        
+
         public UserStatusNotification(Long userId, Boolean online, Long timestamp) {
             this.userId = userId;
             this.online = online;
             this.timestamp = timestamp;
         }
-        
+
         // Getters
         public Long getUserId() {
             return userId;
         }
-        
+
         public Boolean getOnline() {
             return online;
         }
-        
+
         public Long getTimestamp() {
             return timestamp;
         }
     }
-}
\ No newline at end of file
+}
@@ -28,6 +28,9 @@ public class WebSocketEventListener {
     @Autowired
     private WebSocketController webSocketController;
     
+    @Autowired
+    private ClusterMessageRelay clusterMessageRelay;
+    
     // --- 添加计数器 ---
     private static final AtomicLong connectCounter = new AtomicLong(0);
     private static final AtomicLong disconnectCounter = new AtomicLong(0);
@@ -41,26 +44,26 @@ public class WebSocketEventListener {
         long threadId = Thread.currentThread().getId();
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
         
-        log.info(">>> [{}] 连接事件开始 (线程ID: {})", eventId, threadId);
-        log.info(">>> [{}] 会话ID: {}", eventId, headerAccessor.getSessionId());
+        log.debug(">>> [{}] 连接事件开始 (线程ID: {})", eventId, threadId);
+        log.debug(">>> [{}] 会话ID: {}", eventId, headerAccessor.getSessionId());
 
         // 尝试获取 Principal
         java.security.Principal principal = headerAccessor.getUser();
         Long userIdFromPrincipal = null;
         if (principal != null) {
-            log.info(">>> [{}] 连接时 Principal: Name={}, Class={}", eventId, principal.getName(), principal.getClass().getName());
+            log.debug(">>> [{}] 连接时 Principal: Name={}, Class={}", eventId, principal.getName(), principal.getClass().getName());
             
             // 检查是否是我们的自定义WebSocketPrincipal
             if (principal instanceof com.xm.game9.config.CustomHandshakeHandler.WebSocketPrincipal) {
                 com.xm.game9.config.CustomHandshakeHandler.WebSocketPrincipal wsPrincipal = 
                     (com.xm.game9.config.CustomHandshakeHandler.WebSocketPrincipal) principal;
                 userIdFromPrincipal = wsPrincipal.getUserId();
-                log.info(">>> [{}] 从自定义WebSocketPrincipal获取到userId: {}", eventId, userIdFromPrincipal);
+                log.debug(">>> [{}] 从自定义WebSocketPrincipal获取到userId: {}", eventId, userIdFromPrincipal);
             } else {
                 // 尝试从 Principal 的 name 中解析 userId
                 try {
                     userIdFromPrincipal = Long.parseLong(principal.getName());
-                    log.info(">>> [{}] 从 Principal Name 解析出 userId: {}", eventId, userIdFromPrincipal);
+                    log.debug(">>> [{}] 从 Principal Name 解析出 userId: {}", eventId, userIdFromPrincipal);
                 } catch (NumberFormatException e) {
                     log.warn(">>> [{}] Principal Name '{}' 无法解析为 Long", eventId, principal.getName());
                 }
@@ -75,10 +78,10 @@ public class WebSocketEventListener {
         
         Long userId = null;
         if (attributes != null) {
-            log.info(">>> [{}] 从 StompHeaderAccessor 获取到 Session Attributes", eventId);
+            log.debug(">>> [{}] 从 StompHeaderAccessor 获取到 Session Attributes", eventId);
             userId = (Long) attributes.get("userId");
             if (userId != null) {
-                log.info(">>> [{}] 从 Session Attributes 获取到 userId: {}", eventId, userId);
+                log.debug(">>> [{}] 从 Session Attributes 获取到 userId: {}", eventId, userId);
             } else {
                 log.warn(">>> [{}] Session Attributes 中未找到 key 'userId'", eventId);
                 log.debug(">>> [{}] Session Attributes 内容: {}", eventId, attributes);
@@ -90,15 +93,16 @@ public class WebSocketEventListener {
         // 如果从 attributes 获取失败，则使用从 principal 解析的 userId
         if (userId == null && userIdFromPrincipal != null) {
             userId = userIdFromPrincipal;
-            log.info(">>> [{}] 使用从 Principal 解析的 userId: {}", eventId, userId);
+            log.debug(">>> [{}] 使用从 Principal 解析的 userId: {}", eventId, userId);
         }
 
         if (userId != null) {
-            log.info(">>> [{}] WebSocket 连接建立，准备将用户 {} 标记为在线", eventId, userId);
+            log.debug(">>> [{}] WebSocket 连接建立，准备将用户 {} 标记为在线", eventId, userId);
+            clusterMessageRelay.register(userId, headerAccessor.getSessionId());
             onlineStatusManager.userOnline(userId);
             
             // 推送离线消息
-            log.info(">>> [{}] 准备为用户 {} 推送离线消息", eventId, userId);
+            log.debug(">>> [{}] 准备为用户 {} 推送离线消息", eventId, userId);
             webSocketController.pushOfflineMessages(userId);
         } else {
             log.error(">>> [{}] WebSocket 连接建立，但无法获取 userId。用户将无法被标记为在线，消息推送会失败。", eventId);
@@ -107,7 +111,7 @@ public class WebSocketEventListener {
             }
         }
         
-        log.info(">>> [{}] 连接事件结束 (线程ID: {})", eventId, threadId);
+        log.debug(">>> [{}] 连接事件结束 (线程ID: {})", eventId, threadId);
     }
 
     /**
@@ -119,27 +123,27 @@ public class WebSocketEventListener {
         long threadId = Thread.currentThread().getId();
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
         
-        log.info(">>> [{}] 断开事件开始 (线程ID: {})", eventId, threadId);
-        log.info(">>> [{}] 会话ID: {}, CloseStatus: {}", eventId, headerAccessor.getSessionId(), event.getCloseStatus());
+        log.debug(">>> [{}] 断开事件开始 (线程ID: {})", eventId, threadId);
+        log.debug(">>> [{}] 会话ID: {}, CloseStatus: {}", eventId, headerAccessor.getSessionId(), event.getCloseStatus());
 
         // 尝试获取 Principal
         java.security.Principal principal = headerAccessor.getUser();
         Long userId = null;
         
         if (principal != null) {
-            log.info(">>> [{}] 断开时 Principal: Name={}, Class={}", eventId, principal.getName(), principal.getClass().getName());
+            log.debug(">>> [{}] 断开时 Principal: Name={}, Class={}", eventId, principal.getName(), principal.getClass().getName());
             
             // 检查是否是我们的自定义WebSocketPrincipal
             if (principal instanceof com.xm.game9.config.CustomHandshakeHandler.WebSocketPrincipal) {
                 com.xm.game9.config.CustomHandshakeHandler.WebSocketPrincipal wsPrincipal = 
                     (com.xm.game9.config.CustomHandshakeHandler.WebSocketPrincipal) principal;
                 userId = wsPrincipal.getUserId();
-                log.info(">>> [{}] 从自定义WebSocketPrincipal获取到userId: {}", eventId, userId);
+                log.debug(">>> [{}] 从自定义WebSocketPrincipal获取到userId: {}", eventId, userId);
             } else {
                 // 尝试从 Principal 的 name 中解析 userId
                 try {
                     userId = Long.parseLong(principal.getName());
-                    log.info(">>> [{}] 从 Principal Name 解析出 userId: {}", eventId, userId);
+                    log.debug(">>> [{}] 从 Principal Name 解析出 userId: {}", eventId, userId);
                 } catch (NumberFormatException e) {
                     log.warn(">>> [{}] Principal Name '{}' 无法解析为 Long", eventId, principal.getName());
                 }
@@ -154,7 +158,7 @@ public class WebSocketEventListener {
             if (attributes != null) {
                 userId = (Long) attributes.get("userId");
                 if (userId != null) {
-                    log.info(">>> [{}] 从Session Attributes获取到userId: {}", eventId, userId);
+                    log.debug(">>> [{}] 从Session Attributes获取到userId: {}", eventId, userId);
                 } else {
                     log.warn(">>> [{}] Session Attributes中未找到userId", eventId);
                     log.warn(">>> [{}] Session Attributes 内容: {}", eventId, attributes.keySet());
@@ -166,13 +170,14 @@ public class WebSocketEventListener {
         
         // 标记用户离线
         if (userId != null) {
-            log.info(">>> [{}] WebSocket 连接断开，准备将用户 {} 标记为离线", eventId, userId);
+            log.debug(">>> [{}] WebSocket 连接断开，准备将用户 {} 标记为离线", eventId, userId);
+            clusterMessageRelay.unregister(userId, headerAccessor.getSessionId());
             onlineStatusManager.userOffline(userId);
         } else {
             log.error(">>> [{}] WebSocket 连接断开，但无法获取userId", eventId);
         }
         
-        log.info(">>> [{}] 断开事件结束 (线程ID: {})", eventId, threadId);
+        log.debug(">>> [{}] 断开事件结束 (线程ID: {})", eventId, threadId);
     }
     
 }
\ No newline at end of file
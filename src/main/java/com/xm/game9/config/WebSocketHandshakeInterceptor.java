@@ -28,7 +28,7 @@ public class WebSocketHandshakeInterceptor implements HandshakeInterceptor {
     public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
                                  WebSocketHandler wsHandler, Map<String, Object> attributes) throws Exception {
         
-        log.info("WebSocket 握手开始: URI={}, Headers={}", request.getURI(), request.getHeaders());
+        log.debug("WebSocket 握手开始: URI={}, Headers={}", request.getURI(), request.getHeaders());
         
         // 从URL参数中获取userId
         String query = request.getURI().getQuery();
@@ -36,12 +36,12 @@ public class WebSocketHandshakeInterceptor implements HandshakeInterceptor {
             String userIdStr = query.split("userId=")[1].split("&")[0];
             try {
                 Long userId = Long.valueOf(userIdStr);
-                log.info("WebSocket 握手中提取到 userId: {}", userId);
+                log.debug("WebSocket 握手中提取到 userId: {}", userId);
                 
                 // 验证用户是否存在
                 User user = userService.getById(userId);
                 if (user != null) {
-                    log.info("WebSocket 握手验证用户 {} 成功，用户昵称: {}", userId, user.getUserNickname());
+                    log.debug("WebSocket 握手验证用户 {} 成功，用户昵称: {}", userId, user.getUserNickname());
                     attributes.put("userId", userId);
                     attributes.put("userNickname", user.getUserNickname());
                     return true;
@@ -64,7 +64,7 @@ public class WebSocketHandshakeInterceptor implements HandshakeInterceptor {
         if (exception != null) {
             log.error("WebSocket 握手后处理异常: {}", exception.getMessage(), exception);
         } else {
-            log.info("WebSocket 握手成功完成");
+            log.debug("WebSocket 握手成功完成");
         }
     }
 }
\ No newline at end of file
@@ -5,9 +5,12 @@ import com.xm.game9.common.BaseResponse;
 import com.xm.game9.common.ErrorCode;
 import com.xm.game9.common.ResultUtils;
 import com.xm.game9.exception.BusinessException;
+import com.xm.game9.model.domain.ChatMessage;
 import com.xm.game9.model.domain.User;
 import com.xm.game9.model.request.ChatMessageRequest;
 import com.xm.game9.model.vo.ChatMessageVO;
+import com.xm.game9.model.vo.ChatMessageWindowVO;
+import com.xm.game9.model.vo.ChatSessionPageVO;
 import com.xm.game9.model.vo.ChatSessionVO;
 import com.xm.game9.service.ChatMessageService;
 import com.xm.game9.service.ChatSessionService;
@@ -49,10 +52,10 @@ public class ChatController {
      * 
      * @param request 消息请求体
      * @param httpRequest HTTP请求
-     * @return 消息ID
+     * @return 消息ID（字符串形式，避免前端丢失精度）
      */
     @PostMapping("/message/send")
-    public BaseResponse<Long> sendMessage(@RequestBody ChatMessageRequest request, 
+    public BaseResponse<String> sendMessage(@RequestBody ChatMessageRequest request, 
                                          HttpServletRequest httpRequest) {
         User currentUser = userService.getLoginUser(httpRequest);
         if (currentUser == null) {
@@ -64,18 +67,15 @@ public class ChatController {
             throw new BusinessException(ErrorCode.NO_AUTH, "只能给好友发送消息");
         }
         
-        Long messageId = chatMessageService.sendMessage(
+        // 消息与会话由写后缓冲批量落库
+        ChatMessage message = chatMessageService.submitMessage(
             currentUser.getUserId(), 
             request.getReceiverId(), 
             request.getContent(), 
             request.getMessageType()
         );
         
-        // 更新会话信息
-        Long sessionId = chatSessionService.getOrCreateSession(currentUser.getUserId(), request.getReceiverId());
-        chatSessionService.updateSession(sessionId, request.getContent(), currentUser.getUserId());
-        
-        return ResultUtils.success(messageId);
+        return ResultUtils.success(String.valueOf(message.getMessageId()));
     }
     
     /**
@@ -105,12 +105,46 @@ public class ChatController {
         chatMessageService.markMessagesAsRead(currentUser.getUserId(), friendId);
         
         // 清除未读消息数
-        Long sessionId = chatSessionService.getOrCreateSession(currentUser.getUserId(), friendId);
-        chatSessionService.clearUnreadCount(sessionId, currentUser.getUserId());
+        chatSessionService.getOrCreateSession(currentUser.getUserId(), friendId);
+        chatSessionService.clearUnreadCount(currentUser.getUserId(), friendId);
         
         return ResultUtils.success(messageList);
     }
     
+    /**
+     * 按消息ID游标获取聊天记录（不统计总数）
+     * 
+     * @param friendId 好友ID
+     * @param before 加载更早的消息：当前最早一条消息的ID
+     * @param after 加载更新的消息：当前最新一条消息的ID
+     * @param size 每页数量
+     * @param httpRequest HTTP请求
+     * @return 消息窗口
+     */
+    @GetMapping("/message/history")
+    public BaseResponse<ChatMessageWindowVO> getChatMessageHistory(@RequestParam Long friendId,
+                                                                   @RequestParam(required = false) Long before,
+                                                                   @RequestParam(required = false) Long after,
+                                                                   @RequestParam(required = false) Integer size,
+                                                                   HttpServletRequest httpRequest) {
+        User currentUser = userService.getLoginUser(httpRequest);
+        if (currentUser == null) {
+            throw new BusinessException(ErrorCode.NOT_LOGIN, "用户未登录");
+        }
+        
+        ChatMessageWindowVO window = chatMessageService.getChatMessageHistory(
+            currentUser.getUserId(), friendId, before, after, size
+        );
+        
+        // 打开会话（不是向前翻页）时标记已读并清除未读消息数
+        if (before == null) {
+            chatMessageService.markMessagesAsRead(currentUser.getUserId(), friendId);
+            chatSessionService.clearUnreadCount(currentUser.getUserId(), friendId);
+        }
+        
+        return ResultUtils.success(window);
+    }
+    
     /**
      * 获取会话列表
      * 
@@ -127,6 +161,25 @@ public class ChatController {
         return ResultUtils.success(sessionList);
     }
     
+    /**
+     * 游标分页获取会话列表
+     * 
+     * @param cursor 上一页返回的游标，第一页不传
+     * @param size 每页数量
+     * @return 会话分页
+     */
+    @GetMapping("/session/page")
+    public BaseResponse<ChatSessionPageVO> getSessionPage(@RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) Integer size,
+                                                          HttpServletRequest httpRequest) {
+        User currentUser = userService.getLoginUser(httpRequest);
+        if (currentUser == null) {
+            throw new BusinessException(ErrorCode.NOT_LOGIN, "用户未登录");
+        }
+        
+        return ResultUtils.success(chatSessionService.getUserSessionPage(currentUser.getUserId(), cursor, size));
+    }
+    
     /**
      * 测试端点
      * 
@@ -171,8 +224,7 @@ public class ChatController {
         boolean result = chatMessageService.markMessagesAsRead(currentUser.getUserId(), friendId);
         
         // 清除未读消息数
-        Long sessionId = chatSessionService.getOrCreateSession(currentUser.getUserId(), friendId);
-        chatSessionService.clearUnreadCount(sessionId, currentUser.getUserId());
+        chatSessionService.clearUnreadCount(currentUser.getUserId(), friendId);
         
         return ResultUtils.success(result);
     }
@@ -8,12 +8,16 @@ import com.xm.game9.exception.BusinessException;
 import com.xm.game9.model.domain.Game;
 import com.xm.game9.model.domain.User;
 import com.xm.game9.model.request.game.*;
+import com.xm.game9.model.vo.FlashSaleStockVO;
 import com.xm.game9.model.vo.GameDetailVO;
+import com.xm.game9.model.vo.GamePlayerPointVO;
+import com.xm.game9.model.vo.GameTrendingVO;
 import com.xm.game9.model.vo.order.OrderVO;
 import com.xm.game9.service.GameService;
-import com.xm.game9.service.SteamApiService;
 import com.xm.game9.service.UserService;
-import com.xm.game9.utils.UploadUtil;
+import com.xm.game9.utils.GameCacheManager;
+import com.xm.game9.utils.GamePlayerTracker;
+import com.xm.game9.utils.ImagePipeline;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -24,7 +28,10 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.xm.game9.constant.UserConstant.ADMIN_ROLE;
 import static com.xm.game9.constant.UserConstant.USER_LOGIN_STATE;
@@ -40,6 +47,11 @@ import static com.xm.game9.constant.UserConstant.USER_LOGIN_STATE;
 @Slf4j
 public class GameController {
 
+    /**
+     * 批量查询在线人数的游戏数上限
+     */
+    private static final int MAX_ONLINE_COUNT_BATCH = 100;
+
     @Resource
     private GameService gameService;
 
@@ -47,10 +59,13 @@ public class GameController {
     private UserService userService;
 
     @Resource
-    private UploadUtil uploadUtil;
+    private ImagePipeline imagePipeline;
+
+    @Resource
+    private GamePlayerTracker gamePlayerTracker;
 
     @Resource
-    private SteamApiService steamApiService;
+    private GameCacheManager gameCacheManager;
 
     /**
      * 创建游戏
@@ -180,11 +195,11 @@ public class GameController {
 
         try {
             // 确保上传服务可用
-            if (uploadUtil == null) {
+            if (imagePipeline == null) {
                 throw new BusinessException(ErrorCode.SYSTEM_ERROR, "文件上传服务未初始化");
             }
 
-            String url = uploadUtil.uploadR2(file);
+            String url = imagePipeline.upload(file).getUrl();
             
             // 如果提供了游戏ID，直接更新游戏封面
             if (gameId != null && gameId > 0) {
@@ -192,6 +207,7 @@ public class GameController {
                 game.setGameId(gameId);
                 game.setGameCover(url);
                 boolean updated = gameService.updateById(game);
+                gameCacheManager.evict(gameId);
                 if (!updated) {
                     log.warn("更新游戏封面失败，游戏ID: {}", gameId);
                 } else {
@@ -274,7 +290,7 @@ public class GameController {
         }
 
         // 获取游戏信息
-        Game game = gameService.getById(gameId);
+        Game game = gameCacheManager.getGame(gameId);
         if (game == null) {
             throw new BusinessException(ErrorCode.GAME_NOT_FOUND, "游戏不存在");
         }
@@ -284,14 +300,87 @@ public class GameController {
             return ResultUtils.success(0);
         }
 
-        // 调用Steam API获取在线人数
-        try {
-            Integer appid = Integer.parseInt(game.getGameAppId());
-            return steamApiService.getNumberOfCurrentPlayers(appid);
-        } catch (NumberFormatException e) {
-            log.warn("游戏应用ID格式错误: {}", game.getGameAppId());
-            return ResultUtils.success(0);
+        // 读取后台定时采集的最新值，尚未采集到时返回0
+        return ResultUtils.success(gamePlayerTracker.getCurrent(List.of(gameId)).getOrDefault(gameId, 0));
+    }
+
+    /**
+     * 批量获取游戏当前在线玩家数量
+     *
+     * @param gameIds 游戏ID列表
+     * @return 游戏ID -> 在线玩家数量（不存在的游戏不包含在内）
+     */
+    @Operation(summary = "批量获取游戏在线人数", description = "批量获取多个游戏当前在线玩家数量，单次最多100个")
+    @GetMapping("/online-count/batch")
+    public BaseResponse<Map<Long, Integer>> getGameOnlineCounts(
+            @Parameter(description = "游戏ID列表", required = true) @RequestParam List<Long> gameIds) {
+        if (gameIds == null || gameIds.isEmpty()) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "游戏ID列表不能为空");
+        }
+        if (gameIds.size() > MAX_ONLINE_COUNT_BATCH) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "单次最多查询" + MAX_ONLINE_COUNT_BATCH + "个游戏");
+        }
+
+        Map<Long, Game> games = gameCacheManager.getGames(gameIds);
+        Map<Long, Integer> counts = gamePlayerTracker.getCurrent(games.keySet());
+        Map<Long, Integer> result = new HashMap<>();
+        games.forEach((gameId, game) -> {
+            boolean hasAppId = game.getGameAppId() != null && !game.getGameAppId().trim().isEmpty();
+            result.put(gameId, hasAppId ? counts.getOrDefault(gameId, 0) : 0);
+        });
+        return ResultUtils.success(result);
+    }
+
+    /**
+     * 获取游戏在线人数走势
+     *
+     * @param gameId 游戏ID
+     * @param range  时间范围：24h、7d（按小时）或 30d（按天）
+     * @return 按时间升序的数据点
+     */
+    @Operation(summary = "获取游戏在线人数走势", description = "返回24小时、7天（按小时）或30天（按天）的平均和峰值在线人数")
+    @GetMapping("/{gameId}/players/history")
+    public BaseResponse<List<GamePlayerPointVO>> getGamePlayerHistory(
+            @Parameter(description = "游戏ID") @PathVariable Long gameId,
+            @Parameter(description = "时间范围：24h、7d、30d") @RequestParam(defaultValue = "24h") String range) {
+        if (gameId == null || gameId <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "游戏ID参数错误");
+        }
+        return ResultUtils.success(gamePlayerTracker.getHistory(gameId, range));
+    }
+
+    /**
+     * 获取在线人数飙升榜
+     *
+     * @param limit 数量
+     * @return 按相对近7天均值的增长率降序的游戏
+     */
+    @Operation(summary = "获取在线人数飙升榜", description = "按当前在线人数相对近7天平均值的增长率排序")
+    @GetMapping("/players/trending")
+    public BaseResponse<List<GameTrendingVO>> getTrendingGames(
+            @Parameter(description = "数量，最多100") @RequestParam(defaultValue = "10") Integer limit) {
+        if (limit == null || limit <= 0 || limit > 100) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "数量参数错误");
+        }
+        List<GamePlayerTracker.TrendingEntry> entries = gamePlayerTracker.getTrending(limit);
+        Map<Long, Game> games = gameCacheManager.getGames(entries.stream().map(GamePlayerTracker.TrendingEntry::gameId).toList());
+        List<GameTrendingVO> result = new ArrayList<>(entries.size());
+        for (GamePlayerTracker.TrendingEntry entry : entries) {
+            Game game = games.get(entry.gameId());
+            if (game == null || Boolean.TRUE.equals(game.getGameIsRemoved())) {
+                continue;
+            }
+            GameTrendingVO vo = new GameTrendingVO();
+            vo.setGameId(entry.gameId());
+            vo.setGameName(game.getGameName());
+            vo.setGameCover(game.getGameCover());
+            vo.setGameCoverVariants(ImagePipeline.variantsOf(game.getGameCover()));
+            vo.setCurrentPlayers(entry.currentPlayers());
+            vo.setBaselinePlayers(entry.baselinePlayers());
+            vo.setGrowthRate(entry.growthRate());
+            result.add(vo);
         }
+        return ResultUtils.success(result);
     }
 
     /** 
@@ -318,6 +407,65 @@ public class GameController {
         return ResultUtils.success(result);
     }
 
+    /**
+     * 开启游戏秒杀模式
+     *
+     * @param flashSaleRequest 秒杀请求
+     * @param request          HTTP请求
+     * @return boolean (是否开启成功)
+     */
+    @Operation(summary = "开启秒杀", description = "开启后库存改由Redis原子扣减，并异步回写数据库")
+    @PostMapping("/flashSale/enable")
+    public BaseResponse<Boolean> enableFlashSale(@RequestBody GameFlashSaleRequest flashSaleRequest,
+                                                 HttpServletRequest request) {
+        if (!isAdmin(request)) {
+            throw new BusinessException(ErrorCode.NO_AUTH, "用户无权限");
+        }
+        if (flashSaleRequest == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数错误");
+        }
+        boolean result = gameService.enableFlashSale(flashSaleRequest.getGameId());
+        return ResultUtils.success(result);
+    }
+
+    /**
+     * 关闭游戏秒杀模式
+     *
+     * @param flashSaleRequest 秒杀请求
+     * @param request          HTTP请求
+     * @return boolean (是否关闭成功)
+     */
+    @Operation(summary = "关闭秒杀", description = "关闭秒杀并将剩余库存变化回写数据库")
+    @PostMapping("/flashSale/disable")
+    public BaseResponse<Boolean> disableFlashSale(@RequestBody GameFlashSaleRequest flashSaleRequest,
+                                                  HttpServletRequest request) {
+        if (!isAdmin(request)) {
+            throw new BusinessException(ErrorCode.NO_AUTH, "用户无权限");
+        }
+        if (flashSaleRequest == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数错误");
+        }
+        boolean result = gameService.disableFlashSale(flashSaleRequest.getGameId());
+        return ResultUtils.success(result);
+    }
+
+    /**
+     * 核对秒杀库存
+     *
+     * @param gameId  游戏ID
+     * @param request HTTP请求
+     * @return 核对结果
+     */
+    @Operation(summary = "核对秒杀库存", description = "核对Redis库存与数据库库存是否一致")
+    @GetMapping("/flashSale/{gameId}/check")
+    public BaseResponse<FlashSaleStockVO> checkFlashSaleStock(@Parameter(description = "游戏ID") @PathVariable Long gameId,
+                                                              HttpServletRequest request) {
+        if (!isAdmin(request)) {
+            throw new BusinessException(ErrorCode.NO_AUTH, "用户无权限");
+        }
+        return ResultUtils.success(gameService.checkFlashSaleStock(gameId));
+    }
+
     /**
      * 判断是否为管理员
      *
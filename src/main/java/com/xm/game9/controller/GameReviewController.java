@@ -8,6 +8,7 @@ import com.xm.game9.exception.BusinessException;
 import com.xm.game9.model.domain.User;
 import com.xm.game9.model.request.game.GameReviewRequest;
 import com.xm.game9.model.request.game.GameReviewUpdateRequest;
+import com.xm.game9.model.vo.GameRatingStatsVO;
 import com.xm.game9.model.vo.GameReviewVO;
 import com.xm.game9.service.GameReviewService;
 import com.xm.game9.service.UserService;
@@ -126,6 +127,21 @@ public class GameReviewController {
         return ResultUtils.success(averageRating);
     }
 
+    /**
+     * 获取游戏的评分汇总
+     *
+     * @param gameId 游戏ID
+     * @return 评价数、平均评分与星级分布
+     */
+    @Operation(summary = "获取游戏评分汇总", description = "获取指定游戏的评价数、平均评分与1-5星分布")
+    @GetMapping("/stats")
+    public BaseResponse<GameRatingStatsVO> getGameRatingStats(@RequestParam Long gameId) {
+        if (gameId == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数错误");
+        }
+        return ResultUtils.success(gameReviewService.getGameRatingStats(gameId));
+    }
+
     /**
      * 修改评价
      *
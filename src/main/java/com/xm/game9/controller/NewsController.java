@@ -9,8 +9,9 @@ import com.xm.game9.model.domain.News;
 import com.xm.game9.model.domain.User;
 import com.xm.game9.model.request.news.NewsCreateRequest;
 import com.xm.game9.model.request.news.NewsUpdateRequest;
+import com.xm.game9.model.vo.NewsSearchVO;
 import com.xm.game9.service.NewsService;
-import com.xm.game9.utils.UploadUtil;
+import com.xm.game9.utils.ImagePipeline;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -23,6 +24,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 
+import static com.xm.game9.constant.UserConstant.ADMIN_ROLE;
 import static com.xm.game9.constant.UserConstant.USER_LOGIN_STATE;
 
 /**
@@ -40,7 +42,7 @@ public class NewsController {
     private NewsService newsService;
 
     @Autowired
-    private UploadUtil uploadUtil;
+    private ImagePipeline imagePipeline;
 
     /**
      * 获取当前登录用户
@@ -135,11 +137,11 @@ public class NewsController {
 
         try {
             // 确保上传服务可用
-            if (uploadUtil == null) {
+            if (imagePipeline == null) {
                 throw new BusinessException(ErrorCode.SYSTEM_ERROR, "文件上传服务未初始化");
             }
 
-            String url = uploadUtil.uploadR2(file);
+            String url = imagePipeline.upload(file).getUrl();
             return ResultUtils.success(url);
         } catch (BusinessException e) {
             log.error("业务异常: {}", e.getDetailMessage());
@@ -378,6 +380,7 @@ public class NewsController {
             throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "资讯未发布或不存在");
         }
         newsService.incrementNewsViews(id);
+        newsService.mergePendingViews(List.of(news));
         return ResultUtils.success(news);
     }
 
@@ -498,9 +501,9 @@ public class NewsController {
      * @param pageSize 每页大小
      * @return 搜索结果
      */
-    @Operation(summary = "搜索资讯", description = "根据关键词搜索已发布的资讯")
+    @Operation(summary = "搜索资讯", description = "根据关键词搜索已发布的资讯，按相关度排序并返回高亮片段")
     @GetMapping("/search")
-    public BaseResponse<Page<News>> searchNews(
+    public BaseResponse<Page<NewsSearchVO>> searchNews(
             @Parameter(description = "搜索关键词", required = true) @RequestParam String keyword,
             @Parameter(description = "页码", required = false) @RequestParam(defaultValue = "1") Integer pageNum,
             @Parameter(description = "每页大小", required = false) @RequestParam(defaultValue = "10") Integer pageSize) {
@@ -513,7 +516,23 @@ public class NewsController {
         if (pageSize < 1) {
             pageSize = 10;
         }
-        Page<News> page = newsService.searchNews(keyword, pageNum, pageSize);
+        Page<NewsSearchVO> page = newsService.searchNews(keyword, pageNum, pageSize);
         return ResultUtils.success(page);
     }
+
+    /**
+     * 重建资讯检索索引
+     *
+     * @param request HTTP请求
+     * @return 收录的资讯数
+     */
+    @Operation(summary = "重建资讯检索索引", description = "管理员从数据库完整重建所有节点的资讯检索索引")
+    @PostMapping("/search/rebuild")
+    public BaseResponse<Integer> rebuildSearchIndex(HttpServletRequest request) {
+        User loginUser = getLoginUser(request);
+        if (loginUser.getUserIsAdmin() == null || loginUser.getUserIsAdmin() != ADMIN_ROLE) {
+            throw new BusinessException(ErrorCode.NO_AUTH, "用户无权限");
+        }
+        return ResultUtils.success(newsService.rebuildSearchIndex());
+    }
 }
\ No newline at end of file
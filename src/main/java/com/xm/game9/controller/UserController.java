@@ -10,10 +10,17 @@ import com.xm.game9.model.request.admin.AdminUserUpdateRequest;
 import com.xm.game9.model.request.admin.BatchImportGamesRequest;
 import com.xm.game9.model.request.admin.BatchImportUsersRequest;
 import com.xm.game9.model.request.user.*;
+import com.xm.game9.model.vo.ImportJobVO;
+import com.xm.game9.model.vo.signin.SignInCalendarVO;
+import com.xm.game9.model.vo.signin.SignInStatsVO;
+import com.xm.game9.model.vo.signin.SignInStreakVO;
+import com.xm.game9.model.vo.signin.SignInYearSummaryVO;
+import com.xm.game9.service.CatalogImportService;
 import com.xm.game9.service.GameService;
 import com.xm.game9.service.UserService;
+import com.xm.game9.utils.ImagePipeline;
+import com.xm.game9.utils.LoginUserCache;
 import com.xm.game9.utils.RedisUtil;
-import com.xm.game9.utils.UploadUtil;
 import com.xm.game9.utils.UserUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -21,6 +28,7 @@ import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.context.request.RequestContextHolder;
@@ -55,11 +63,17 @@ public class UserController {
     private GameService gameService;
 
     @Resource
-    private UploadUtil uploadUtil;
+    private CatalogImportService catalogImportService;
+
+    @Resource
+    private ImagePipeline imagePipeline;
 
     @Resource
     private RedisUtil redisUtil;
 
+    @Resource
+    private LoginUserCache loginUserCache;
+
     /**
      * 用户注册
      *
@@ -334,6 +348,7 @@ public class UserController {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数为空");
         }
         boolean result = userService.removeById(deleteRequest.getUserId());
+        loginUserCache.evictUser(deleteRequest.getUserId());
         return ResultUtils.success(result);
     }
 
@@ -358,7 +373,7 @@ public class UserController {
         }
 
         try {
-            String avatarUrl = uploadUtil.uploadR2(file);
+            String avatarUrl = imagePipeline.upload(file).getUrl();
 
             // 更新用户头像
             User user = new User();
@@ -368,6 +383,7 @@ public class UserController {
             if (!updated) {
                 throw new BusinessException(ErrorCode.SYSTEM_ERROR, "更新用户头像失败");
             }
+            loginUserCache.evictUser(loginUser.getUserId());
 
             return ResultUtils.success(avatarUrl);
         } catch (IOException e) {
@@ -416,6 +432,42 @@ public class UserController {
         return ResultUtils.success(count);
     }
 
+    /**
+     * 上传文件批量导入（后台执行）
+     *
+     * @param type        导入类型（user / game）
+     * @param file        CSV（首行为表头）或 NDJSON 文件
+     * @param httpRequest HTTP请求
+     * @return 任务ID
+     */
+    @Operation(summary = "上传文件批量导入", description = "上传 CSV 或 NDJSON 文件批量导入用户或游戏，返回任务ID，通过任务查询接口获取进度和逐行错误")
+    @PostMapping("/import/{type}")
+    public BaseResponse<String> submitImport(@PathVariable String type, @RequestParam("file") MultipartFile file,
+                                             HttpServletRequest httpRequest) {
+        // 仅管理员可操作
+        if (!userService.isAdmin(httpRequest)) {
+            throw new BusinessException(ErrorCode.NO_AUTH, "用户无权限");
+        }
+        return ResultUtils.success(catalogImportService.submit(type, file));
+    }
+
+    /**
+     * 查询导入任务进度
+     *
+     * @param jobId       任务ID
+     * @param httpRequest HTTP请求
+     * @return 任务进度
+     */
+    @Operation(summary = "查询导入任务进度", description = "查询批量导入任务的进度和逐行错误")
+    @GetMapping("/import/job/{jobId}")
+    public BaseResponse<ImportJobVO> getImportJob(@PathVariable String jobId, HttpServletRequest httpRequest) {
+        // 仅管理员可操作
+        if (!userService.isAdmin(httpRequest)) {
+            throw new BusinessException(ErrorCode.NO_AUTH, "用户无权限");
+        }
+        return ResultUtils.success(catalogImportService.getJob(jobId));
+    }
+
     /**
      * 用户签到
      *
@@ -500,6 +552,86 @@ public class UserController {
         return ResultUtils.success(count);
     }
 
+    /**
+     * 获取连续签到信息
+     *
+     * @param request HTTP请求
+     * @return 连续签到信息
+     */
+    @Operation(summary = "获取连续签到信息", description = "获取当前连续签到天数和最长连续签到天数")
+    @GetMapping("/sign/streak")
+    public BaseResponse<SignInStreakVO> getSignInStreak(HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        if (loginUser == null) {
+            throw new BusinessException(ErrorCode.NOT_LOGIN, "用户未登录");
+        }
+
+        return ResultUtils.success(userService.getSignInStreak(loginUser.getUserId()));
+    }
+
+    /**
+     * 获取月度签到日历
+     *
+     * @param year    年份
+     * @param month   月份
+     * @param request HTTP请求
+     * @return 签到日历
+     */
+    @Operation(summary = "获取月度签到日历", description = "获取用户指定月份的签到日期")
+    @GetMapping("/sign/calendar")
+    public BaseResponse<SignInCalendarVO> getSignInCalendar(
+            @RequestParam(defaultValue = "#{T(java.time.Year).now().getValue()}") Integer year,
+            @RequestParam(defaultValue = "#{T(java.time.LocalDate).now().getMonthValue()}") Integer month,
+            HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        if (loginUser == null) {
+            throw new BusinessException(ErrorCode.NOT_LOGIN, "用户未登录");
+        }
+
+        return ResultUtils.success(userService.getSignInCalendar(loginUser.getUserId(), year, month));
+    }
+
+    /**
+     * 获取多年签到汇总
+     *
+     * @param years   年数
+     * @param request HTTP请求
+     * @return 每年的签到汇总
+     */
+    @Operation(summary = "获取多年签到汇总", description = "获取用户最近几年每年、每月的签到天数")
+    @GetMapping("/sign/summary")
+    public BaseResponse<List<SignInYearSummaryVO>> getSignInSummary(
+            @RequestParam(defaultValue = "3") Integer years,
+            HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        if (loginUser == null) {
+            throw new BusinessException(ErrorCode.NOT_LOGIN, "用户未登录");
+        }
+
+        return ResultUtils.success(userService.getSignInSummary(loginUser.getUserId(), years));
+    }
+
+    /**
+     * 全站签到统计（管理员）
+     *
+     * @param startDate 开始日期
+     * @param endDate   结束日期
+     * @param request   HTTP请求
+     * @return 签到统计
+     */
+    @Operation(summary = "全站签到统计", description = "统计区间内每日签到人数、活跃人数和全勤人数")
+    @GetMapping("/sign/stats")
+    public BaseResponse<SignInStatsVO> getSignInStats(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            HttpServletRequest request) {
+        if (!userService.isAdmin(request)) {
+            throw new BusinessException(ErrorCode.NO_AUTH, "用户无权限");
+        }
+
+        return ResultUtils.success(userService.getSignInStats(startDate, endDate));
+    }
+
     /**
      * 根据用户ID获取用户信息
      *
@@ -1,10 +1,15 @@
 package com.xm.game9.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xm.game9.config.ClusterMessageRelay;
+import com.xm.game9.config.CustomHandshakeHandler;
+import com.xm.game9.model.request.ChatSyncRequest;
 import com.xm.game9.model.vo.ChatMessageVO;
+import com.xm.game9.model.vo.ChatSyncBatchVO;
 import com.xm.game9.service.ChatMessageService;
 import com.xm.game9.service.ChatSessionService;
 import com.xm.game9.service.UserService;
+import com.xm.game9.utils.LocalCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
@@ -14,8 +19,8 @@ import org.springframework.messaging.simp.user.SimpUser;
 import org.springframework.messaging.simp.user.SimpUserRegistry;
 import org.springframework.stereotype.Controller;
 
-import java.util.Date;
-import java.util.List;
+import java.security.Principal;
+import com.xm.game9.model.domain.ChatMessage;
 import com.xm.game9.model.domain.User;
 
 /**
@@ -39,33 +44,39 @@ public class WebSocketController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private ClusterMessageRelay clusterMessageRelay;
+    
     @Autowired
     private SimpUserRegistry userRegistry; // 注入用户注册表，用于调试
     
     private final ObjectMapper objectMapper = new ObjectMapper();
     
+    /**
+     * 发送者昵称、头像缓存
+     */
+    private final LocalCache<Long, User> senderCache = new LocalCache<>(10000, 60_000L);
+    
     /**
      * 处理聊天消息
      */
     @MessageMapping("/chat.send")
     public void sendMessage(@Payload String messagePayload) {
         try {
-            log.info("收到WebSocket消息: {}", messagePayload);
+            log.debug("收到WebSocket消息: {}", messagePayload);
             
             // 解析消息
             ChatMessageVO message = objectMapper.readValue(messagePayload, ChatMessageVO.class);
-            log.info("解析后的消息: 发送者={}, 接收者={}, 内容={}", 
-                message.getSenderId(), message.getReceiverId(), message.getContent());
             
-            // 获取发送者信息
-            User sender = userService.getById(message.getSenderId());
+            // 获取发送者信息（短期缓存，避免每条消息都查询用户表）
+            User sender = senderCache.get(message.getSenderId(), userService::getById);
             if (sender != null) {
                 message.setSenderNickname(sender.getUserNickname());
                 message.setSenderAvatar(sender.getUserAvatar());
             }
             
-            // 保存消息到数据库
-            Long messageId = chatMessageService.sendMessage(
+            // 写入预写日志，消息与会话由后台任务批量落库
+            ChatMessage saved = chatMessageService.submitMessage(
                 message.getSenderId(),
                 message.getReceiverId(),
                 message.getContent(),
@@ -73,35 +84,23 @@ public class WebSocketController {
             );
             
             // 设置消息ID和创建时间
-            message.setMessageId(messageId);
-            message.setCreateTime(new Date());
+            message.setMessageId(saved.getMessageId());
+            message.setMessageType(saved.getMessageType());
+            message.setCreateTime(saved.getCreateTime());
             message.setStatus(0); // 已发送
             
-            // 更新会话信息
-            Long sessionId = chatSessionService.getOrCreateSession(
-                message.getSenderId(), 
-                message.getReceiverId()
-            );
-            chatSessionService.updateSession(sessionId, message.getContent(), message.getSenderId());
-            
-            // --- 增强日志：准备推送消息 ---
-            log.info("准备推送消息给用户 {}: {}", message.getReceiverId(), message.getContent());
-            // 检查接收者在线状态
-            SimpUser simpUser = userRegistry.getUser(message.getReceiverId().toString());
-            log.info("推送前检查用户 {} 在线状态: {}, 会话数: {}", 
-                message.getReceiverId(), 
-                simpUser != null ? "在线" : "离线",
-                simpUser != null ? simpUser.getSessions().size() : 0);
-            // --- 增强日志结束 ---
+            if (log.isDebugEnabled()) {
+                SimpUser simpUser = userRegistry.getUser(message.getReceiverId().toString());
+                log.debug("推送前检查用户 {} 在线状态: {}, 会话数: {}", 
+                    message.getReceiverId(), 
+                    simpUser != null ? "在线" : "离线",
+                    simpUser != null ? simpUser.getSessions().size() : 0);
+            }
             
             // 尝试发送消息给接收者（如果在线）
             try {
-                messagingTemplate.convertAndSendToUser(
-                    message.getReceiverId().toString(),
-                    "/queue/messages",
-                    message
-                );
-                log.info("消息成功推送给用户 {}", message.getReceiverId());
+                clusterMessageRelay.sendToUser(message.getReceiverId(), "/queue/messages", message);
+                log.debug("消息成功推送给用户 {}", message.getReceiverId());
             } catch (Exception e) {
                 // 将日志级别提升到 ERROR，并打印完整堆栈
                 log.error("向用户 {} 推送消息失败: {}", message.getReceiverId(), e.getMessage(), e);
@@ -109,11 +108,7 @@ public class WebSocketController {
             
             // 发送确认消息给发送者
             try {
-                messagingTemplate.convertAndSendToUser(
-                    message.getSenderId().toString(),
-                    "/queue/confirm",
-                    message
-                );
+                clusterMessageRelay.sendToUser(message.getSenderId(), "/queue/confirm", message);
             } catch (Exception e) {
                 log.warn("发送确认消息失败: 发送者={}, 错误={}", 
                     message.getSenderId(), e.getMessage());
@@ -125,35 +120,72 @@ public class WebSocketController {
     }
     
     /**
-     * 推送离线消息给用户
+     * 连接建立后推送第一批离线消息（从服务端投递水位开始，单帧、数量有上限），
+     * 其余消息由客户端通过 /app/chat.sync 携带游标继续拉取
      * 
      * @param userId 用户ID
      */
     public void pushOfflineMessages(Long userId) {
         try {
-            // 获取用户的离线消息（未读消息）
-            List<ChatMessageVO> offlineMessages = chatMessageService.getOfflineMessages(userId);
-            
-            if (offlineMessages != null && !offlineMessages.isEmpty()) {
-                // 逐条推送离线消息
-                for (ChatMessageVO message : offlineMessages) {
-                    messagingTemplate.convertAndSendToUser(
-                        userId.toString(),
-                        "/queue/offline",
-                        message
-                    );
-                }
-                
-                // 标记这些消息为已推送
-                chatMessageService.markMessagesAsPushed(userId, offlineMessages.stream()
-                    .map(ChatMessageVO::getMessageId)
-                    .toArray(Long[]::new));
+            ChatSyncBatchVO batch = chatMessageService.syncMessages(userId, null, null);
+            if (!batch.getMessages().isEmpty()) {
+                messagingTemplate.convertAndSendToUser(userId.toString(), "/queue/sync", batch);
             }
         } catch (Exception e) {
             log.error("推送离线消息失败: userId={}", userId, e);
         }
     }
     
+    /**
+     * 处理重连同步请求：客户端携带已收到的最大消息ID，服务端回复其后的一批消息
+     */
+    @MessageMapping("/chat.sync")
+    public void syncMessages(@Payload String syncPayload, Principal principal) {
+        Long userId = resolveUserId(principal);
+        if (userId == null) {
+            log.warn("同步请求缺少用户身份，忽略");
+            return;
+        }
+        try {
+            ChatSyncRequest request = objectMapper.readValue(syncPayload, ChatSyncRequest.class);
+            ChatSyncBatchVO batch = chatMessageService.syncMessages(userId, request.getCursor(), request.getLimit());
+            messagingTemplate.convertAndSendToUser(userId.toString(), "/queue/sync", batch);
+        } catch (Exception e) {
+            log.error("处理消息同步失败: userId={}", userId, e);
+        }
+    }
+    
+    /**
+     * 处理投递确认：前移用户的投递水位
+     */
+    @MessageMapping("/chat.ack")
+    public void ackMessages(@Payload String ackPayload, Principal principal) {
+        Long userId = resolveUserId(principal);
+        if (userId == null) {
+            return;
+        }
+        try {
+            ChatSyncRequest request = objectMapper.readValue(ackPayload, ChatSyncRequest.class);
+            chatMessageService.ackMessages(userId, request.getCursor());
+        } catch (Exception e) {
+            log.error("处理消息确认失败: userId={}", userId, e);
+        }
+    }
+    
+    private static Long resolveUserId(Principal principal) {
+        if (principal instanceof CustomHandshakeHandler.WebSocketPrincipal wsPrincipal) {
+            return wsPrincipal.getUserId();
+        }
+        if (principal != null) {
+            try {
+                return Long.parseLong(principal.getName());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+    
     /**
      * 处理消息已读回执
      */
@@ -170,18 +202,10 @@ public class WebSocketController {
             );
             
             // 清除未读消息数
-            Long sessionId = chatSessionService.getOrCreateSession(
-                message.getReceiverId(),
-                message.getSenderId()
-            );
-            chatSessionService.clearUnreadCount(sessionId, message.getReceiverId());
+            chatSessionService.clearUnreadCount(message.getReceiverId(), message.getSenderId());
             
             // 发送已读回执给发送者
-            messagingTemplate.convertAndSendToUser(
-                message.getSenderId().toString(),
-                "/queue/read",
-                message
-            );
+            clusterMessageRelay.sendToUser(message.getSenderId(), "/queue/read", message);
             
             log.info("消息已读: 发送者={}, 接收者={}", 
                 message.getSenderId(), message.getReceiverId());
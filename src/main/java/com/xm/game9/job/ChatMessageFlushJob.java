@@ -0,0 +1,58 @@
+package com.xm.game9.job;
+
+import com.xm.game9.utils.ChatMessageWriteBuffer;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 聊天消息批量落库任务
+ * <p>
+ * 可在多个节点同时运行：每个分区由分区锁保证同一时刻只有一个节点写入。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class ChatMessageFlushJob {
+
+    /**
+     * 预写日志积压告警阈值
+     */
+    private static final long BACKLOG_WARN_THRESHOLD = 10_000L;
+
+    @Resource
+    private ChatMessageWriteBuffer chatMessageWriteBuffer;
+
+    /**
+     * 定期将预写日志中的消息批量写入数据库
+     */
+    @Scheduled(fixedDelayString = "${game9.chat.write-behind.flush-interval-ms:200}")
+    public void flush() {
+        try {
+            int count = chatMessageWriteBuffer.flush();
+            if (count > 0) {
+                log.debug("聊天消息落库完成, 共 {} 条", count);
+            }
+        } catch (Exception e) {
+            // 未确认的记录保留在待处理列表中，下次执行时重放
+            log.error("聊天消息落库失败，稍后重试: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 每分钟检查一次预写日志积压情况
+     */
+    @Scheduled(cron = "15 * * * * *")
+    public void checkBacklog() {
+        try {
+            long backlog = chatMessageWriteBuffer.backlog();
+            if (backlog > BACKLOG_WARN_THRESHOLD) {
+                log.warn("聊天预写日志积压 {} 条，请检查数据库写入是否正常", backlog);
+            }
+        } catch (Exception e) {
+            log.warn("检查聊天预写日志积压失败: {}", e.getMessage());
+        }
+    }
+}
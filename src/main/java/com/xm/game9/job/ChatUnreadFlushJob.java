@@ -0,0 +1,35 @@
+package com.xm.game9.job;
+
+import com.xm.game9.utils.ChatUnreadCounter;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 聊天未读数写库任务
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class ChatUnreadFlushJob {
+
+    @Resource
+    private ChatUnreadCounter chatUnreadCounter;
+
+    /**
+     * 定期将 Redis 中变更过的未读数写回 chat_session
+     */
+    @Scheduled(fixedDelayString = "${game9.chat.unread.flush-interval-ms:10000}")
+    public void flushUnread() {
+        try {
+            int count = chatUnreadCounter.flush();
+            if (count > 0) {
+                log.debug("聊天未读数写库完成, 涉及 {} 个用户", count);
+            }
+        } catch (Exception e) {
+            log.error("聊天未读数写库失败: {}", e.getMessage());
+        }
+    }
+}
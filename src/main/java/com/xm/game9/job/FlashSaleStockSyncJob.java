@@ -0,0 +1,106 @@
+package com.xm.game9.job;
+
+import com.xm.game9.model.vo.FlashSaleStockVO;
+import com.xm.game9.service.GameService;
+import com.xm.game9.utils.FlashSaleStockManager;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀库存同步任务
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class FlashSaleStockSyncJob {
+
+    @Resource
+    private FlashSaleStockManager flashSaleStockManager;
+
+    @Resource
+    private GameService gameService;
+
+    /**
+     * 定期将 Redis 中累积的库存变化批量回写数据库
+     */
+    @Scheduled(fixedDelayString = "${game9.flash-sale.sync-interval-ms:2000}")
+    public void syncStock() {
+        try {
+            int count = flashSaleStockManager.flushPending();
+            if (count > 0) {
+                log.debug("秒杀库存回写完成, 涉及 {} 个游戏", count);
+            }
+        } catch (Exception e) {
+            log.error("秒杀库存回写失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 启动时重新回写上次退出前遗留的同步中批次
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOnStartup() {
+        try {
+            int count = flashSaleStockManager.recoverInflight(0);
+            if (count > 0) {
+                log.info("秒杀库存遗留批次恢复完成, 批次数: {}", count);
+            }
+        } catch (Exception e) {
+            log.error("秒杀库存遗留批次恢复失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 每分钟重新回写存在超过1分钟仍未完成的批次
+     */
+    @Scheduled(cron = "30 * * * * *")
+    public void recoverInflight() {
+        try {
+            int count = flashSaleStockManager.recoverInflight(TimeUnit.MINUTES.toMillis(1));
+            if (count > 0) {
+                log.warn("秒杀库存遗留批次恢复完成, 批次数: {}", count);
+            }
+        } catch (Exception e) {
+            log.error("秒杀库存遗留批次恢复失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 每天凌晨4点30分清理7天前的回写日志
+     */
+    @Scheduled(cron = "0 30 4 * * *")
+    public void purgeFlushLog() {
+        try {
+            Date before = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(7));
+            int count = flashSaleStockManager.purgeFlushLog(before);
+            log.info("秒杀库存回写日志清理完成, 删除: {}", count);
+        } catch (Exception e) {
+            log.error("秒杀库存回写日志清理失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 每5分钟核对一次 Redis 与数据库库存
+     */
+    @Scheduled(cron = "0 */5 * * * *")
+    public void reconcileStock() {
+        for (Long gameId : flashSaleStockManager.getEnabledGameIds()) {
+            try {
+                FlashSaleStockVO result = gameService.checkFlashSaleStock(gameId);
+                if (!Boolean.TRUE.equals(result.getConsistent())) {
+                    log.error("秒杀库存不一致, 请人工核对 - {}", result);
+                }
+            } catch (Exception e) {
+                log.warn("秒杀库存核对失败 - gameId: {}, error: {}", gameId, e.getMessage());
+            }
+        }
+    }
+}
@@ -1,18 +1,15 @@
 package com.xm.game9.job;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.xm.game9.model.domain.Game;
-import com.xm.game9.service.GameService;
+import com.xm.game9.utils.GameSaleScheduler;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-
 /**
  * 游戏折扣定时任务
+ * <p>
+ * 折扣的开始和结束由 {@link GameSaleScheduler} 按登记的时刻触发，本任务只负责驱动检查和定期对账。
  *
  * @author X1aoM1ngTX
  */
@@ -21,83 +18,33 @@ import java.util.List;
 public class GameDiscountJob {
 
     @Resource
-    private GameService gameService;
-
-    @Resource
-    private JdbcTemplate jdbcTemplate;
+    private GameSaleScheduler gameSaleScheduler;
 
     /**
-     * 每秒检查一次折扣是否过期
+     * 检查并执行到期的折扣开始、结束事件（无到期事件时只有一次 Redis 查询）
      */
-    @Scheduled(cron = "0 * * * * *")
-    public void checkDiscountExpiration() {
-        // 先查询所有过期的游戏，用于日志记录
-        String checkSql = """
-                SELECT gameId, gameName, gameSaleEndTime
-                FROM game
-                WHERE gameOnSale = 1
-                AND gameSaleEndTime < NOW()
-                """;
-
-        List<Game> expiredGames = jdbcTemplate.query(checkSql, (rs, rowNum) -> {
-            Game game = new Game();
-            game.setGameId(rs.getLong("gameId"));
-            game.setGameName(rs.getString("gameName"));
-            game.setGameSaleEndTime(rs.getTimestamp("gameSaleEndTime"));
-            return game;
-        });
-
-        // 只有在发现过期游戏时才打印日志
-        if (!expiredGames.isEmpty()) {
-            log.info("开始检查游戏折扣过期情况");
-            log.info("发现 {} 个过期折扣游戏", expiredGames.size());
-            for (Game game : expiredGames) {
-                log.info("游戏 {} (ID: {}) 的折扣已过期，过期时间: {}",
-                        game.getGameName(), game.getGameId(), game.getGameSaleEndTime());
-            }
-
-            // 更新过期的折扣
-            String updateSql = """
-                        UPDATE game
-                        SET gameOnSale = 0,
-                            gameDiscountedPrices = NULL,
-                            gameDiscount = NULL,
-                            gameSaleStartTime = NULL,
-                            gameSaleEndTime = NULL
-                        WHERE gameOnSale = 1 AND gameSaleEndTime < NOW()
-                    """;
-
-            int updatedCount = jdbcTemplate.update(updateSql);
-            log.info("实际更新了 {} 个游戏的折扣状态", updatedCount);
-
-            // 验证更新结果
-            String verifySql = """
-                        SELECT COUNT(*)
-                        FROM game
-                        WHERE gameOnSale = 1
-                        AND gameSaleEndTime < NOW()
-                    """;
-
-            @SuppressWarnings("null")
-            int remainingCount = jdbcTemplate.queryForObject(verifySql, Integer.class);
-            log.info("更新后仍有 {} 个过期未处理的游戏", remainingCount);
-
-            // 获取更新后的游戏列表
-            LambdaQueryWrapper<Game> queryWrapper = new LambdaQueryWrapper<>();
-            queryWrapper.eq(Game::getGameOnSale, 0)
-                    .isNull(Game::getGameDiscount)
-                    .isNull(Game::getGameDiscountedPrices);
-
-            List<Game> updatedGames = gameService.list(queryWrapper);
-
-            for (Game game : updatedGames) {
-                log.info("游戏 {} 的折扣已被清除", game.getGameName());
+    @Scheduled(fixedDelayString = "${game9.sale.poll-interval-ms:1000}")
+    public void fireDueEvents() {
+        try {
+            int count = gameSaleScheduler.fireDueEvents();
+            if (count > 0) {
+                log.info("折扣状态更新完成, 游戏数: {}", count);
             }
+        } catch (Exception e) {
+            log.error("执行折扣事件失败: {}", e.getMessage());
+        }
+    }
 
-            if (updatedCount != expiredGames.size()) {
-                log.warn("预期更新 {} 个游戏，实际更新了 {} 个游戏",
-                        expiredGames.size(), updatedCount);
-            }
+    /**
+     * 启动时及每10分钟按数据库重新登记折扣事件，防止 Redis 数据丢失导致折扣不开始或不结束
+     */
+    @Scheduled(initialDelay = 0, fixedDelay = 600_000)
+    public void reconcile() {
+        try {
+            int count = gameSaleScheduler.reconcile();
+            log.debug("折扣事件对账完成, 登记事件数: {}", count);
+        } catch (Exception e) {
+            log.error("折扣事件对账失败: {}", e.getMessage());
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,51 @@
+package com.xm.game9.job;
+
+import com.xm.game9.utils.GamePlayerTracker;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 游戏在线人数采集定时任务
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class GamePlayerCountJob {
+
+    @Resource
+    private GamePlayerTracker gamePlayerTracker;
+
+    @Value("${game9.players.retention-days:90}")
+    private int retentionDays;
+
+    /**
+     * 按配置的间隔采集在线人数（采集在后台线程执行，集群内每个周期只有一个节点采集）
+     */
+    @Scheduled(fixedRateString = "${game9.players.collect-interval-ms:300000}", initialDelay = 30_000)
+    public void collect() {
+        try {
+            if (!gamePlayerTracker.collectInBackground()) {
+                log.warn("上一次在线人数采集尚未结束，跳过本次采集");
+            }
+        } catch (Exception e) {
+            log.error("发起在线人数采集失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 每天清理超过保留期的在线人数汇总数据
+     */
+    @Scheduled(cron = "0 40 4 * * *")
+    public void purge() {
+        try {
+            int count = gamePlayerTracker.purge(retentionDays);
+            log.info("清理过期在线人数数据完成, 删除行数: {}", count);
+        } catch (Exception e) {
+            log.error("清理过期在线人数数据失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.xm.game9.job;
+
+import com.xm.game9.service.GameReviewService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 游戏评分汇总重建任务
+ * <p>
+ * 汇总表由评价的增删改增量维护，每天凌晨按评价表完整重算一次，修正可能出现的偏差并刷新缓存。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class GameRatingStatsRebuildJob {
+
+    @Resource
+    private GameReviewService gameReviewService;
+
+    /**
+     * 每天凌晨3点30分执行
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    public void rebuildRatingStats() {
+        try {
+            long start = System.currentTimeMillis();
+            int count = gameReviewService.rebuildRatingStats();
+            log.info("游戏评分汇总重建完成, 游戏数: {}, 耗时: {}ms", count, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("游戏评分汇总重建失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.xm.game9.job;
+
+import com.xm.game9.utils.SnowflakeIdGenerator;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 雪花ID节点号续租任务
+ * <p>
+ * 节点宕机后不再续租，其节点号在租约过期后可被新节点租用。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class IdWorkerLeaseJob {
+
+    @Resource
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+
+    /**
+     * 每30秒续租一次（租约有效期为90秒）
+     */
+    @Scheduled(fixedDelay = 30_000, initialDelay = 30_000)
+    public void renewLease() {
+        try {
+            snowflakeIdGenerator.renewLease();
+        } catch (Exception e) {
+            log.error("续租workerId失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.xm.game9.job;
+
+import com.xm.game9.utils.NewsSearchIndex;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 资讯检索索引重建任务
+ * <p>
+ * 应用启动完成后构建索引（构建完成前搜索回退到数据库查询），之后每天按数据库完整重建一次，
+ * 修正增量更新可能遗漏的变更。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class NewsSearchIndexRebuildJob {
+
+    @Resource
+    private NewsSearchIndex newsSearchIndex;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuildIndex();
+    }
+
+    /**
+     * 每天凌晨4点执行
+     */
+    @Scheduled(cron = "${game9.news.search.rebuild-cron:0 0 4 * * *}")
+    public void rebuildIndex() {
+        try {
+            long start = System.currentTimeMillis();
+            int count = newsSearchIndex.rebuild();
+            log.info("资讯检索索引重建完成, 资讯数: {}, 耗时: {}ms", count, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("资讯检索索引重建失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.xm.game9.job;
+
+import com.xm.game9.utils.NewsTagIndex;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 资讯标签索引任务
+ * <p>
+ * 启动时若关联表为空（存量数据尚未迁移）则按资讯表回填；热门标签计数每天按关联表重新统计一次，
+ * 修正增量调整可能出现的偏差。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class NewsTagIndexJob {
+
+    @Resource
+    private NewsTagIndex newsTagIndex;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        try {
+            if (newsTagIndex.isEmpty()) {
+                long start = System.currentTimeMillis();
+                int count = newsTagIndex.rebuildAll();
+                log.info("资讯标签关联表回填完成, 资讯数: {}, 耗时: {}ms", count, System.currentTimeMillis() - start);
+            }
+        } catch (Exception e) {
+            log.error("资讯标签关联表回填失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 每天凌晨4点10分执行
+     */
+    @Scheduled(cron = "0 10 4 * * *")
+    public void recountHotTags() {
+        try {
+            int count = newsTagIndex.rebuildCounts();
+            log.info("热门标签计数校正完成, 标签数: {}", count);
+        } catch (Exception e) {
+            log.error("热门标签计数校正失败: {}", e.getMessage());
+        }
+    }
+}
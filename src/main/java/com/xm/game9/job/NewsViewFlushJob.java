@@ -0,0 +1,35 @@
+package com.xm.game9.job;
+
+import com.xm.game9.utils.NewsViewCounter;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 资讯浏览量写库任务
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class NewsViewFlushJob {
+
+    @Resource
+    private NewsViewCounter newsViewCounter;
+
+    /**
+     * 定期将缓冲的浏览量合并写入数据库
+     */
+    @Scheduled(fixedDelayString = "${game9.news.views.flush-interval-ms:5000}")
+    public void flushViews() {
+        try {
+            int count = newsViewCounter.flush();
+            if (count > 0) {
+                log.debug("资讯浏览量写库完成, 涉及 {} 篇资讯", count);
+            }
+        } catch (Exception e) {
+            log.error("资讯浏览量写库失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.xm.game9.job;
+
+import com.xm.game9.service.OrderService;
+import com.xm.game9.utils.OrderTimeoutManager;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 未支付订单超时取消任务
+ * <p>
+ * 可在多个节点同时运行：到期订单由超时队列原子分配，
+ * 取消时再以订单行锁和状态条件保证同一订单只会被取消一次。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class OrderTimeoutJob {
+
+    /**
+     * 每批处理的订单数
+     */
+    private static final int BATCH_SIZE = 200;
+
+    /**
+     * 单次执行最多处理的批数，避免长时间占用调度线程
+     */
+    private static final int MAX_BATCHES = 50;
+
+    /**
+     * 处理失败后的重试延迟（毫秒）
+     */
+    private static final long RETRY_DELAY_MILLIS = 30_000L;
+
+    @Resource
+    private OrderTimeoutManager orderTimeoutManager;
+
+    @Resource
+    private OrderService orderService;
+
+    /**
+     * 每5秒拉取一次到期订单
+     */
+    @Scheduled(fixedDelay = 5000)
+    public void cancelExpiredOrders() {
+        for (int i = 0; i < MAX_BATCHES; i++) {
+            List<Long> orderIds;
+            try {
+                orderIds = orderTimeoutManager.claimExpired(BATCH_SIZE);
+            } catch (Exception e) {
+                log.error("拉取超时订单失败: {}", e.getMessage());
+                return;
+            }
+            if (orderIds.isEmpty()) {
+                return;
+            }
+            try {
+                orderService.cancelExpiredOrders(orderIds);
+            } catch (Exception e) {
+                log.error("超时订单取消失败，稍后重试 - orderIds: {}, error: {}", orderIds, e.getMessage());
+                orderTimeoutManager.requeue(orderIds, RETRY_DELAY_MILLIS);
+                return;
+            }
+            if (orderIds.size() < BATCH_SIZE) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 每5分钟扫描一次数据库，兜底处理未进入超时队列的订单（Redis故障、历史订单等）
+     */
+    @Scheduled(cron = "30 */5 * * * *")
+    public void sweepExpiredOrders() {
+        try {
+            List<Long> orderIds = orderService.listExpiredUnpaidOrderIds(BATCH_SIZE);
+            if (!orderIds.isEmpty()) {
+                int cancelled = orderService.cancelExpiredOrders(orderIds);
+                log.info("兜底扫描取消超时订单 {} 个", cancelled);
+            }
+        } catch (Exception e) {
+            log.error("兜底扫描超时订单失败: {}", e.getMessage());
+        }
+    }
+}
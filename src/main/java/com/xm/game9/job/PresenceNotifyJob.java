@@ -0,0 +1,35 @@
+package com.xm.game9.job;
+
+import com.xm.game9.config.OnlineStatusManager;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 好友在线状态批量通知任务
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class PresenceNotifyJob {
+
+    @Resource
+    private OnlineStatusManager onlineStatusManager;
+
+    /**
+     * 每个周期合并推送一次上下线变化，连接风暴时把逐条推送收敛为按好友分组的批量推送
+     */
+    @Scheduled(fixedDelayString = "${game9.presence.notify-interval-ms:500}")
+    public void notifyStatusChanges() {
+        try {
+            int count = onlineStatusManager.flushStatusChanges();
+            if (count > 0) {
+                log.debug("好友在线状态通知完成, 共 {} 个用户状态变化", count);
+            }
+        } catch (Exception e) {
+            log.error("好友在线状态通知失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.xm.game9.job;
+
+import com.xm.game9.config.ClusterMessageRelay;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * WebSocket 路由心跳任务
+ * <p>
+ * 定期刷新本节点连接用户的路由，节点宕机后其路由在有效期过后自动失效。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class WebSocketRouteHeartbeatJob {
+
+    @Resource
+    private ClusterMessageRelay clusterMessageRelay;
+
+    /**
+     * 每30秒刷新一次（路由有效期为90秒）
+     */
+    @Scheduled(fixedDelay = 30_000, initialDelay = 30_000)
+    public void refreshRoutes() {
+        try {
+            clusterMessageRelay.refreshRoutes();
+        } catch (Exception e) {
+            log.warn("刷新WebSocket路由失败: {}", e.getMessage());
+        }
+    }
+}
@@ -30,6 +30,22 @@ public interface ChatMessageMapper extends BaseMapper<ChatMessage> {
                                            @Param("userId") Long userId, 
                                            @Param("friendId") Long friendId);
     
+    /**
+     * 按消息ID游标获取两个用户之间的聊天记录
+     *
+     * @param userId   当前用户ID
+     * @param friendId 好友ID
+     * @param before   只取ID小于该值的消息（向前翻页）
+     * @param after    只取ID大于该值的消息（加载更新的消息），与 before 互斥
+     * @param limit    数量
+     * @return 消息列表（after 为空时按ID倒序，否则按ID升序）
+     */
+    List<ChatMessageVO> getConversationMessages(@Param("userId") Long userId,
+                                                @Param("friendId") Long friendId,
+                                                @Param("before") Long before,
+                                                @Param("after") Long after,
+                                                @Param("limit") int limit);
+    
     /**
      * 获取未读消息数量
      *
@@ -46,4 +62,16 @@ public interface ChatMessageMapper extends BaseMapper<ChatMessage> {
      * @return 影响行数
      */
     int updateMessageStatus(@Param("senderId") Long senderId, @Param("receiverId") Long receiverId);
+    
+    /**
+     * 按消息ID升序读取用户收到的消息，用于重连同步
+     *
+     * @param receiverId 接收者ID
+     * @param cursor     游标（不含），为空时只读取未读消息
+     * @param limit      数量
+     * @return 消息列表
+     */
+    List<ChatMessage> getSyncMessages(@Param("receiverId") Long receiverId,
+                                      @Param("cursor") Long cursor,
+                                      @Param("limit") int limit);
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.xm.game9.model.domain.ChatSession;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -16,12 +17,18 @@ import java.util.List;
 public interface ChatSessionMapper extends BaseMapper<ChatSession> {
     
     /**
-     * 获取用户会话列表
+     * 按最后消息时间倒序获取用户会话
      *
-     * @param userId 用户ID
+     * @param userId     用户ID
+     * @param cursorTime 游标会话的最后消息时间（为空表示游标会话没有消息）
+     * @param cursorId   游标会话ID，为空时从头开始
+     * @param limit      数量，为空时不限制
      * @return 会话列表
      */
-    List<ChatSession> getUserSessions(@Param("userId") Long userId);
+    List<ChatSession> getUserSessions(@Param("userId") Long userId,
+                                      @Param("cursorTime") Date cursorTime,
+                                      @Param("cursorId") Long cursorId,
+                                      @Param("limit") Integer limit);
     
     /**
      * 获取两个用户之间的会话
@@ -31,18 +38,4 @@ public interface ChatSessionMapper extends BaseMapper<ChatSession> {
      * @return 会话信息
      */
     ChatSession getSessionByUsers(@Param("user1Id") Long user1Id, @Param("user2Id") Long user2Id);
-    
-    /**
-     * 更新会话信息
-     *
-     * @param sessionId      会话ID
-     * @param lastMessage    最后消息
-     * @param messageTime    消息时间
-     * @param isUser1Sender  是否是用户1发送的
-     * @return 影响行数
-     */
-    int updateSession(@Param("sessionId") Long sessionId, 
-                     @Param("lastMessage") String lastMessage,
-                     @Param("messageTime") java.util.Date messageTime,
-                     @Param("isUser1Sender") Boolean isUser1Sender);
 }
\ No newline at end of file
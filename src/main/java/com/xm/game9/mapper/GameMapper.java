@@ -40,4 +40,14 @@ public interface GameMapper extends BaseMapper<Game> {
      */
     @Update("UPDATE game SET gameStock = gameStock + 1 WHERE gameId = #{gameId}")
     boolean releaseStock(@Param("gameId") Long gameId);
-}
\ No newline at end of file
+
+    /**
+     * 批量释放预占的库存（同一游戏的多笔订单合并为一次更新）
+     *
+     * @param gameId 游戏ID
+     * @param count  释放数量
+     * @return 影响行数
+     */
+    @Update("UPDATE game SET gameStock = gameStock + #{count} WHERE gameId = #{gameId}")
+    int releaseStockBatch(@Param("gameId") Long gameId, @Param("count") int count);
+}
@@ -0,0 +1,63 @@
+package com.xm.game9.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.xm.game9.model.domain.GameRatingStats;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * @author X1aoM1ngTX
+ * @描述 针对表【gameRatingStats(游戏评分汇总表)】的数据库操作Mapper
+ */
+public interface GameRatingStatsMapper extends BaseMapper<GameRatingStats> {
+
+    /**
+     * 增加或减少一条评分
+     *
+     * @param gameId 游戏ID
+     * @param rating 评分（1-5）
+     * @param delta  1 表示新增，-1 表示移除
+     * @return 影响行数（汇总行不存在时为0）
+     */
+    @Update("UPDATE gameRatingStats SET ratingCount = ratingCount + #{delta}, "
+            + "ratingSum = ratingSum + #{delta} * #{rating}, "
+            + "star1 = star1 + IF(#{rating} = 1, #{delta}, 0), star2 = star2 + IF(#{rating} = 2, #{delta}, 0), "
+            + "star3 = star3 + IF(#{rating} = 3, #{delta}, 0), star4 = star4 + IF(#{rating} = 4, #{delta}, 0), "
+            + "star5 = star5 + IF(#{rating} = 5, #{delta}, 0) "
+            + "WHERE gameId = #{gameId}")
+    int applyRating(@Param("gameId") Long gameId, @Param("rating") int rating, @Param("delta") int delta);
+
+    /**
+     * 按评价表重新计算单个游戏的汇总
+     *
+     * @param gameId 游戏ID
+     * @return 影响行数
+     */
+    @Update("INSERT INTO gameRatingStats (gameId, ratingCount, ratingSum, star1, star2, star3, star4, star5) "
+            + "SELECT #{gameId}, COUNT(r.reviewId), COALESCE(SUM(ROUND(r.gameReviewRating)), 0), "
+            + "COUNT(IF(ROUND(r.gameReviewRating) = 1, 1, NULL)), COUNT(IF(ROUND(r.gameReviewRating) = 2, 1, NULL)), "
+            + "COUNT(IF(ROUND(r.gameReviewRating) = 3, 1, NULL)), COUNT(IF(ROUND(r.gameReviewRating) = 4, 1, NULL)), "
+            + "COUNT(IF(ROUND(r.gameReviewRating) = 5, 1, NULL)) "
+            + "FROM gameReview r WHERE r.gameId = #{gameId} AND r.gameReviewIsDeleted = 0 "
+            + "ON DUPLICATE KEY UPDATE ratingCount = VALUES(ratingCount), ratingSum = VALUES(ratingSum), "
+            + "star1 = VALUES(star1), star2 = VALUES(star2), star3 = VALUES(star3), "
+            + "star4 = VALUES(star4), star5 = VALUES(star5)")
+    int rebuild(@Param("gameId") Long gameId);
+
+    /**
+     * 按评价表重新计算全部游戏的汇总（已无有效评价的游戏清零）
+     *
+     * @return 影响行数
+     */
+    @Update("INSERT INTO gameRatingStats (gameId, ratingCount, ratingSum, star1, star2, star3, star4, star5) "
+            + "SELECT g.gameId, COUNT(r.reviewId), COALESCE(SUM(ROUND(r.gameReviewRating)), 0), "
+            + "COUNT(IF(ROUND(r.gameReviewRating) = 1, 1, NULL)), COUNT(IF(ROUND(r.gameReviewRating) = 2, 1, NULL)), "
+            + "COUNT(IF(ROUND(r.gameReviewRating) = 3, 1, NULL)), COUNT(IF(ROUND(r.gameReviewRating) = 4, 1, NULL)), "
+            + "COUNT(IF(ROUND(r.gameReviewRating) = 5, 1, NULL)) "
+            + "FROM game g LEFT JOIN gameReview r ON r.gameId = g.gameId AND r.gameReviewIsDeleted = 0 "
+            + "GROUP BY g.gameId "
+            + "ON DUPLICATE KEY UPDATE ratingCount = VALUES(ratingCount), ratingSum = VALUES(ratingSum), "
+            + "star1 = VALUES(star1), star2 = VALUES(star2), star3 = VALUES(star3), "
+            + "star4 = VALUES(star4), star5 = VALUES(star5)")
+    int rebuildAll();
+}
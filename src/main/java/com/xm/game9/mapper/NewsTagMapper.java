@@ -0,0 +1,42 @@
+package com.xm.game9.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.xm.game9.model.domain.NewsTag;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author X1aoM1ngTX
+ * @描述 针对表【newsTag(资讯标签关联表)】的数据库操作Mapper
+ */
+public interface NewsTagMapper extends BaseMapper<NewsTag> {
+
+    /**
+     * 锁定资讯行，串行化同一资讯的标签同步
+     *
+     * @param newsId 资讯ID
+     * @return 资讯ID，不存在返回null
+     */
+    @Select("SELECT newsId FROM news WHERE newsId = #{newsId} FOR UPDATE")
+    Long lockNews(@Param("newsId") Long newsId);
+
+    /**
+     * 统计每个标签关联的资讯数
+     *
+     * @return tagName、newsCount
+     */
+    @Select("SELECT tagName, COUNT(*) AS newsCount FROM newsTag GROUP BY tagName")
+    List<Map<String, Object>> countByTag();
+
+    /**
+     * 按关联资讯数取热门标签（Redis 不可用时使用）
+     *
+     * @param limit 数量
+     * @return 标签名
+     */
+    @Select("SELECT tagName FROM newsTag GROUP BY tagName ORDER BY COUNT(*) DESC, tagName LIMIT #{limit}")
+    List<String> selectHotTags(@Param("limit") int limit);
+}
@@ -1,6 +1,8 @@
 package com.xm.game9.model.domain;
 
 import com.baomidou.mybatisplus.annotation.*;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.Data;
 
 import java.io.Serial;
@@ -21,9 +23,10 @@ public class ChatMessage implements Serializable {
     private static final long serialVersionUID = 1L;
 
     /**
-     * 消息ID
+     * 消息ID（由 IdGenerator 预先分配，保证写后缓冲重放时幂等；雪花ID超出 JS 安全整数范围，序列化为字符串）
      */
-    @TableId(value = "messageId", type = IdType.AUTO)
+    @TableId(value = "messageId", type = IdType.INPUT)
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long messageId;
 
     /**
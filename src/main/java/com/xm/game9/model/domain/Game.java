@@ -4,6 +4,8 @@ import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.xm.game9.utils.ImagePipeline;
 import lombok.Data;
 
 import java.io.Serial;
@@ -11,6 +13,7 @@ import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Date;
+import java.util.Map;
 
 /**
  * 游戏表
@@ -92,4 +95,12 @@ public class Game implements Serializable {
      * 游戏应用ID
      */
     private String gameAppId;
-}
\ No newline at end of file
+
+    /**
+     * 封面各规格缩放图URL（由封面URL推导，不对应数据库列）
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Map<String, String> getGameCoverVariants() {
+        return ImagePipeline.variantsOf(gameCover);
+    }
+}
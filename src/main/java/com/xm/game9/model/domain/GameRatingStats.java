@@ -0,0 +1,70 @@
+package com.xm.game9.model.domain;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 游戏评分汇总表（由评价的增删改增量维护）
+ *
+ * @表名 gameRatingStats
+ */
+@TableName(value = "gameRatingStats")
+@Data
+public class GameRatingStats implements Serializable {
+    @Serial
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 游戏ID
+     */
+    @TableId(type = IdType.INPUT)
+    private Long gameId;
+
+    /**
+     * 有效评价数
+     */
+    private Long ratingCount;
+
+    /**
+     * 评分总和
+     */
+    private Long ratingSum;
+
+    /**
+     * 1星数量
+     */
+    private Long star1;
+
+    /**
+     * 2星数量
+     */
+    private Long star2;
+
+    /**
+     * 3星数量
+     */
+    private Long star3;
+
+    /**
+     * 4星数量
+     */
+    private Long star4;
+
+    /**
+     * 5星数量
+     */
+    private Long star5;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+}
@@ -4,11 +4,14 @@ import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.xm.game9.utils.ImagePipeline;
 import lombok.Data;
 
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.Date;
+import java.util.Map;
 
 /**
  * 资讯表
@@ -98,4 +101,12 @@ public class News implements Serializable {
      * 自定义标签（JSON格式存储多个标签）
      */
     private String newsCustomTags;
-}
\ No newline at end of file
+
+    /**
+     * 封面图各规格缩放图URL（由封面图URL推导，不对应数据库列）
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Map<String, String> getNewsCoverVariants() {
+        return ImagePipeline.variantsOf(newsCoverImage);
+    }
+}
@@ -0,0 +1,37 @@
+package com.xm.game9.model.domain;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 资讯标签关联表（仅包含已发布且未删除的资讯）
+ *
+ * @表名 newsTag
+ */
+@TableName(value = "newsTag")
+@Data
+public class NewsTag implements Serializable {
+    @Serial
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 标签名（含#前缀）
+     */
+    private String tagName;
+
+    /**
+     * 资讯ID
+     */
+    private Long newsId;
+
+    /**
+     * 资讯发布时间
+     */
+    private Date newsPublishTime;
+}
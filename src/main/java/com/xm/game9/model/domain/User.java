@@ -1,11 +1,14 @@
 package com.xm.game9.model.domain;
 
 import com.baomidou.mybatisplus.annotation.*;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.xm.game9.utils.ImagePipeline;
 import lombok.Data;
 
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.Date;
+import java.util.Map;
 
 /**
  * 用户表
@@ -74,4 +77,12 @@ public class User implements Serializable {
      * 最后在线时间
      */
     private Date userLastOnlineTime;
-}
\ No newline at end of file
+
+    /**
+     * 头像各规格缩放图URL（由头像URL推导，不对应数据库列）
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Map<String, String> getUserAvatarVariants() {
+        return ImagePipeline.variantsOf(userAvatar);
+    }
+}
@@ -4,6 +4,7 @@ import lombok.Data;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 
 /**
  * 发送消息请求
@@ -23,6 +24,7 @@ public class ChatMessageRequest {
      * 消息内容
      */
     @NotBlank(message = "消息内容不能为空")
+    @Size(max = 20000, message = "消息内容不能超过20000个字符")
     private String content;
     
     /**
@@ -0,0 +1,22 @@
+package com.xm.game9.model.request;
+
+import lombok.Data;
+
+/**
+ * 聊天消息同步请求
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class ChatSyncRequest {
+
+    /**
+     * 客户端已收到的最大消息ID（按字符串传递，避免精度丢失），同时作为确认前移投递水位；为空时从服务端水位开始
+     */
+    private Long cursor;
+
+    /**
+     * 每批消息数
+     */
+    private Integer limit;
+}
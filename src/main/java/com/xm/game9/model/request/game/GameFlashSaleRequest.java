@@ -0,0 +1,21 @@
+package com.xm.game9.model.request.game;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * 游戏秒杀开关请求体
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class GameFlashSaleRequest implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 4172398012947361025L;
+    /**
+     * 游戏ID
+     */
+    private Long gameId;
+}
@@ -1,5 +1,7 @@
 package com.xm.game9.model.vo;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.Data;
 
 import java.util.Date;
@@ -13,8 +15,9 @@ import java.util.Date;
 public class ChatMessageVO {
     
     /**
-     * 消息ID
+     * 消息ID（雪花ID超出 JS 安全整数范围，序列化为字符串）
      */
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long messageId;
     
     /**
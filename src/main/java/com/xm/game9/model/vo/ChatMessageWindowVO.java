@@ -0,0 +1,24 @@
+package com.xm.game9.model.vo;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 聊天记录窗口（按消息ID游标分页，不统计总数）
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class ChatMessageWindowVO {
+
+    /**
+     * 本窗口的消息（按消息ID倒序，最新的在前）
+     */
+    private List<ChatMessageVO> records;
+
+    /**
+     * 查询方向上是否还有更多消息
+     */
+    private Boolean hasMore;
+}
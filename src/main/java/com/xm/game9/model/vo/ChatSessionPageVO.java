@@ -0,0 +1,34 @@
+package com.xm.game9.model.vo;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 聊天会话游标分页视图对象
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class ChatSessionPageVO implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 本页会话（按最后消息时间倒序）
+     */
+    private List<ChatSessionVO> records;
+
+    /**
+     * 下一页游标，没有更多数据时为空
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有更多数据
+     */
+    private Boolean hasMore;
+}
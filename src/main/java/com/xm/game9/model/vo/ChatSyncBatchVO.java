@@ -0,0 +1,32 @@
+package com.xm.game9.model.vo;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 聊天消息同步批次
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class ChatSyncBatchVO {
+
+    /**
+     * 本批消息（按消息ID升序）
+     */
+    private List<ChatMessageVO> messages;
+
+    /**
+     * 下一批的游标（本批最后一条消息ID），客户端处理完本批后用它确认并继续同步（序列化为字符串）
+     */
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long nextCursor;
+
+    /**
+     * 是否还有更多消息
+     */
+    private Boolean hasMore;
+}
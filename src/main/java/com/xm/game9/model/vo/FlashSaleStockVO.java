@@ -0,0 +1,48 @@
+package com.xm.game9.model.vo;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * 秒杀库存核对视图对象
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class FlashSaleStockVO implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 游戏ID
+     */
+    private Long gameId;
+
+    /**
+     * Redis中的可售库存
+     */
+    private Long redisStock;
+
+    /**
+     * 尚未回写数据库的库存变化量
+     */
+    private Long pendingDelta;
+
+    /**
+     * 正在回写数据库的库存变化量
+     */
+    private Long inflightDelta;
+
+    /**
+     * 数据库中的库存
+     */
+    private Integer dbStock;
+
+    /**
+     * 是否一致（数据库库存 - 待同步量 - 同步中量 = Redis库存）
+     */
+    private Boolean consistent;
+}
@@ -1,10 +1,13 @@
 package com.xm.game9.model.vo;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.xm.game9.utils.ImagePipeline;
 import lombok.Data;
 
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.Date;
+import java.util.Map;
 
 /**
  * 好友信息视图
@@ -55,4 +58,12 @@ public class FriendVO implements Serializable {
      * 是否在线
      */
     private Boolean isOnline;
-} 
\ No newline at end of file
+
+    /**
+     * 好友头像各规格缩放图URL
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Map<String, String> getUserAvatarVariants() {
+        return ImagePipeline.variantsOf(userAvatar);
+    }
+}
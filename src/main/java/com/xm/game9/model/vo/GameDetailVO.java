@@ -7,6 +7,7 @@ import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Date;
+import java.util.Map;
 
 /**
  * 游戏详情视图对象
@@ -87,6 +88,11 @@ public class GameDetailVO implements Serializable {
      */
     private String gameCover;
 
+    /**
+     * 游戏封面缩放图（thumb、card、hero -> URL）
+     */
+    private Map<String, String> gameCoverVariants;
+
     /**
      * Steam应用ID
      */
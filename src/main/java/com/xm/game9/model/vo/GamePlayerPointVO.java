@@ -0,0 +1,34 @@
+package com.xm.game9.model.vo;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 游戏在线人数走势数据点视图对象
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class GamePlayerPointVO implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 时间段起点（24h/7d 为整点，30d 为当天零点）
+     */
+    private Date time;
+
+    /**
+     * 时间段内的平均在线人数
+     */
+    private Integer avgPlayers;
+
+    /**
+     * 时间段内的峰值在线人数
+     */
+    private Integer peakPlayers;
+}
@@ -0,0 +1,39 @@
+package com.xm.game9.model.vo;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * 游戏评分汇总视图对象
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class GameRatingStatsVO implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 游戏ID
+     */
+    private Long gameId;
+
+    /**
+     * 有效评价数
+     */
+    private Long ratingCount;
+
+    /**
+     * 平均评分（10分制，保留一位小数，与 /game/review/average 一致）
+     */
+    private Double averageRating;
+
+    /**
+     * 星级分布：星级(1-5) -> 评价数
+     */
+    private Map<Integer, Long> histogram;
+}
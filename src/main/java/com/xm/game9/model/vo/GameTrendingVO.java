@@ -0,0 +1,54 @@
+package com.xm.game9.model.vo;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * 在线人数飙升榜视图对象
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class GameTrendingVO implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 游戏ID
+     */
+    private Long gameId;
+
+    /**
+     * 游戏名
+     */
+    private String gameName;
+
+    /**
+     * 游戏封面
+     */
+    private String gameCover;
+
+    /**
+     * 游戏封面缩放图（thumb、card、hero -> URL）
+     */
+    private Map<String, String> gameCoverVariants;
+
+    /**
+     * 当前在线人数
+     */
+    private Integer currentPlayers;
+
+    /**
+     * 近7天平均在线人数
+     */
+    private Integer baselinePlayers;
+
+    /**
+     * 相对近7天平均值的增长率（0.5 表示增长 50%）
+     */
+    private Double growthRate;
+}
@@ -0,0 +1,39 @@
+package com.xm.game9.model.vo;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * 图片上传结果视图对象
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class ImageUploadVO implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 原图访问URL
+     */
+    private String url;
+
+    /**
+     * 图片内容的 SHA-256
+     */
+    private String sha256;
+
+    /**
+     * 尺寸规格 -> 缩放图URL（thumb、card、hero）
+     */
+    private Map<String, String> variants;
+
+    /**
+     * 是否与已上传的图片内容相同（未重复存储）
+     */
+    private Boolean deduplicated;
+}
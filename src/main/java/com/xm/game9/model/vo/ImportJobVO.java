@@ -0,0 +1,91 @@
+package com.xm.game9.model.vo;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 批量导入任务进度视图对象
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class ImportJobVO implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 任务ID
+     */
+    private String jobId;
+
+    /**
+     * 导入类型（user / game）
+     */
+    private String type;
+
+    /**
+     * 任务状态（RUNNING / SUCCEEDED / FAILED）
+     */
+    private String status;
+
+    /**
+     * 已读取的数据行数
+     */
+    private long processedRows;
+
+    /**
+     * 成功导入的行数
+     */
+    private long importedRows;
+
+    /**
+     * 失败或跳过的行数
+     */
+    private long failedRows;
+
+    /**
+     * 逐行错误（只保留前若干条，总数见 failedRows）
+     */
+    private List<RowError> errors = new ArrayList<>();
+
+    /**
+     * 任务整体失败原因
+     */
+    private String message;
+
+    /**
+     * 开始时间
+     */
+    private Date startTime;
+
+    /**
+     * 结束时间
+     */
+    private Date finishTime;
+
+    /**
+     * 行错误
+     */
+    @Data
+    public static class RowError implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * 行号（文件中的物理行号，从1开始；JSON 请求中为列表下标加1）
+         */
+        private long line;
+
+        /**
+         * 错误原因
+         */
+        private String reason;
+    }
+}
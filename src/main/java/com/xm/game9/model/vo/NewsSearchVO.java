@@ -0,0 +1,85 @@
+package com.xm.game9.model.vo;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 资讯搜索结果视图对象
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class NewsSearchVO implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 资讯ID
+     */
+    private Long newsId;
+
+    /**
+     * 资讯标题
+     */
+    private String newsTitle;
+
+    /**
+     * 资讯摘要
+     */
+    private String newsSummary;
+
+    /**
+     * 作者ID
+     */
+    private Long newsAuthorId;
+
+    /**
+     * 资讯封面图 URL
+     */
+    private String newsCoverImage;
+
+    /**
+     * 资讯封面缩放图（thumb、card、hero -> URL）
+     */
+    private Map<String, String> newsCoverVariants;
+
+    /**
+     * 发布时间
+     */
+    private Date newsPublishTime;
+
+    /**
+     * 浏览次数
+     */
+    private Integer newsViews;
+
+    /**
+     * 游戏标签ID
+     */
+    private Long newsGameTag;
+
+    /**
+     * 游戏标签名称
+     */
+    private String newsGameTagName;
+
+    /**
+     * 自定义标签（JSON格式）
+     */
+    private String newsCustomTags;
+
+    /**
+     * 高亮标题（已转义，命中部分以 em 标签包裹）
+     */
+    private String highlightTitle;
+
+    /**
+     * 高亮片段（摘要命中时取摘要，否则取正文中首个命中附近的片段）
+     */
+    private String highlightFragment;
+}
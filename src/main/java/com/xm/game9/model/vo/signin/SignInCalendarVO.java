@@ -0,0 +1,38 @@
+package com.xm.game9.model.vo.signin;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 月度签到日历视图对象
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class SignInCalendarVO implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private Integer year;
+
+    private Integer month;
+
+    /**
+     * 当月天数
+     */
+    private Integer daysInMonth;
+
+    /**
+     * 已签到的日期（几号）
+     */
+    private List<Integer> signedDays;
+
+    /**
+     * 当月签到天数
+     */
+    private Integer signedCount;
+}
@@ -0,0 +1,39 @@
+package com.xm.game9.model.vo.signin;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * 全站签到统计视图对象
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class SignInStatsVO implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private LocalDate startDate;
+
+    private LocalDate endDate;
+
+    /**
+     * 每日签到人数
+     */
+    private Map<LocalDate, Long> dailyCounts;
+
+    /**
+     * 区间内至少签到一次的人数
+     */
+    private Long activeUsers;
+
+    /**
+     * 区间内每天都签到的人数
+     */
+    private Long fullAttendanceUsers;
+}
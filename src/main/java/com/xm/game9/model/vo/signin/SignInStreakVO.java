@@ -0,0 +1,33 @@
+package com.xm.game9.model.vo.signin;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * 连续签到视图对象
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class SignInStreakVO implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 今日是否已签到
+     */
+    private Boolean signedToday;
+
+    /**
+     * 当前连续签到天数（今日未签到时截止到昨天）
+     */
+    private Integer currentStreak;
+
+    /**
+     * 保留期内最长连续签到天数
+     */
+    private Integer longestStreak;
+}
@@ -0,0 +1,36 @@
+package com.xm.game9.model.vo.signin;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 年度签到汇总视图对象
+ *
+ * @author X1aoM1ngTX
+ */
+@Data
+public class SignInYearSummaryVO implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private Integer year;
+
+    /**
+     * 全年签到天数
+     */
+    private Integer signedCount;
+
+    /**
+     * 当年内最长连续签到天数
+     */
+    private Integer longestStreak;
+
+    /**
+     * 每月签到天数（依次为1-12月）
+     */
+    private List<Integer> monthlyCounts;
+}
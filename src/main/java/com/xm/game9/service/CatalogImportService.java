@@ -0,0 +1,59 @@
+package com.xm.game9.service;
+
+import com.xm.game9.model.request.admin.BatchImportGamesRequest.GameImportInfo;
+import com.xm.game9.model.request.admin.BatchImportUsersRequest.UserImportInfo;
+import com.xm.game9.model.vo.ImportJobVO;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+
+/**
+ * 用户、游戏批量导入服务
+ *
+ * @author X1aoM1ngTX
+ */
+public interface CatalogImportService {
+
+    /**
+     * 导入类型：用户
+     */
+    String TYPE_USER = "user";
+
+    /**
+     * 导入类型：游戏
+     */
+    String TYPE_GAME = "game";
+
+    /**
+     * 提交文件导入任务，文件在后台分块导入
+     *
+     * @param type 导入类型（user / game）
+     * @param file 上传的 CSV 或 NDJSON 文件
+     * @return 任务ID
+     */
+    String submit(String type, MultipartFile file);
+
+    /**
+     * 查询导入任务进度
+     *
+     * @param jobId 任务ID
+     * @return 任务进度
+     */
+    ImportJobVO getJob(String jobId);
+
+    /**
+     * 同步导入用户
+     *
+     * @param users 用户列表
+     * @return 导入的用户数量
+     */
+    int importUsers(List<UserImportInfo> users);
+
+    /**
+     * 同步导入游戏
+     *
+     * @param games 游戏列表
+     * @return 导入的游戏数量
+     */
+    int importGames(List<GameImportInfo> games);
+}
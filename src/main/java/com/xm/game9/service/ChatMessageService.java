@@ -5,6 +5,8 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.xm.game9.model.domain.ChatMessage;
 import com.xm.game9.model.vo.ChatMessageVO;
+import com.xm.game9.model.vo.ChatMessageWindowVO;
+import com.xm.game9.model.vo.ChatSyncBatchVO;
 
 import java.util.List;
 
@@ -25,6 +27,17 @@ public interface ChatMessageService extends IService<ChatMessage> {
      * @return 消息ID
      */
     Long sendMessage(Long senderId, Long receiverId, String content, Integer messageType);
+
+    /**
+     * 提交消息：写入预写日志后立即返回，消息与会话由后台任务批量落库
+     *
+     * @param senderId    发送者ID
+     * @param receiverId  接收者ID
+     * @param content     消息内容
+     * @param messageType 消息类型
+     * @return 已分配消息ID和创建时间的消息
+     */
+    ChatMessage submitMessage(Long senderId, Long receiverId, String content, Integer messageType);
     
     /**
      * 获取聊天消息列表
@@ -37,6 +50,18 @@ public interface ChatMessageService extends IService<ChatMessage> {
      */
     IPage<ChatMessageVO> getChatMessageList(Long userId, Long friendId, int page, int size);
     
+    /**
+     * 按消息ID游标获取聊天记录，不统计总数，翻页代价与深度无关
+     *
+     * @param userId   当前用户ID
+     * @param friendId 好友ID
+     * @param before   加载更早的消息：只取ID小于该值的消息
+     * @param after    加载更新的消息：只取ID大于该值的消息，与 before 互斥；两者都为空时取最新一页
+     * @param size     每页数量
+     * @return 消息窗口
+     */
+    ChatMessageWindowVO getChatMessageHistory(Long userId, Long friendId, Long before, Long after, Integer size);
+    
     /**
      * 获取未读消息数量
      *
@@ -55,19 +80,20 @@ public interface ChatMessageService extends IService<ChatMessage> {
     boolean markMessagesAsRead(Long readerId, Long senderId);
     
     /**
-     * 获取离线消息
+     * 重连同步：读取游标之后的一批消息
      *
      * @param userId 用户ID
-     * @return 离线消息列表
+     * @param cursor 客户端已收到的最大消息ID（同时确认前移投递水位），为空时从服务端水位开始
+     * @param limit  每批数量
+     * @return 消息批次
      */
-    List<ChatMessageVO> getOfflineMessages(Long userId);
+    ChatSyncBatchVO syncMessages(Long userId, Long cursor, Integer limit);
     
     /**
-     * 标记消息为已推送
+     * 确认已收到游标及之前的消息，前移投递水位
      *
-     * @param userId     用户ID
-     * @param messageIds 消息ID数组
-     * @return 是否成功
+     * @param userId 用户ID
+     * @param cursor 已收到的最大消息ID
      */
-    boolean markMessagesAsPushed(Long userId, Long[] messageIds);
+    void ackMessages(Long userId, Long cursor);
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.xm.game9.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.xm.game9.model.domain.ChatSession;
+import com.xm.game9.model.vo.ChatSessionPageVO;
 import com.xm.game9.model.vo.ChatSessionVO;
 
 import java.util.List;
@@ -21,6 +22,16 @@ public interface ChatSessionService extends IService<ChatSession> {
      */
     List<ChatSessionVO> getUserSessions(Long userId);
     
+    /**
+     * 游标分页获取用户会话列表（按最后消息时间倒序）
+     *
+     * @param userId 用户ID
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size   每页数量
+     * @return 会话分页
+     */
+    ChatSessionPageVO getUserSessionPage(Long userId, String cursor, Integer size);
+    
     /**
      * 获取或创建会话
      *
@@ -31,21 +42,11 @@ public interface ChatSessionService extends IService<ChatSession> {
     Long getOrCreateSession(Long user1Id, Long user2Id);
     
     /**
-     * 更新会话信息
-     *
-     * @param sessionId     会话ID
-     * @param lastMessage   最后消息
-     * @param senderId      发送者ID
-     * @return 是否成功
-     */
-    boolean updateSession(Long sessionId, String lastMessage, Long senderId);
-    
-    /**
-     * 清除未读消息数
+     * 清除用户与好友会话的未读消息数
      *
-     * @param sessionId 会话ID
-     * @param userId    用户ID
-     * @return 是否成功
+     * @param userId   用户ID
+     * @param friendId 好友ID
+     * @return 清除的未读数
      */
-    boolean clearUnreadCount(Long sessionId, Long userId);
+    long clearUnreadCount(Long userId, Long friendId);
 }
\ No newline at end of file
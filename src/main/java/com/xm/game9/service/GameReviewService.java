@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import com.xm.game9.model.domain.GameReview;
 import com.xm.game9.model.request.game.GameReviewRequest;
 import com.xm.game9.model.request.game.GameReviewUpdateRequest;
+import com.xm.game9.model.vo.GameRatingStatsVO;
 import com.xm.game9.model.vo.GameReviewVO;
 
 import java.util.List;
@@ -60,6 +61,21 @@ public interface GameReviewService extends IService<GameReview> {
      */
     Double getGameAverageRating(Long gameId);
 
+    /**
+     * 获取游戏的评分汇总（评价数、平均分、星级分布）
+     *
+     * @param gameId 游戏ID
+     * @return 评分汇总
+     */
+    GameRatingStatsVO getGameRatingStats(Long gameId);
+
+    /**
+     * 按评价表重新计算全部游戏的评分汇总，并刷新缓存
+     *
+     * @return 重新计算的游戏数
+     */
+    int rebuildRatingStats();
+
     /**
      * 修改评价
      *
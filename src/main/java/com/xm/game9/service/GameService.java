@@ -9,6 +9,7 @@ import com.xm.game9.model.request.game.GameQueryRequest;
 import com.xm.game9.model.request.game.GameStatusRequest;
 import com.xm.game9.model.request.game.GameSteamUrlUpdateRequest;
 import com.xm.game9.model.request.game.GameUpdateRequest;
+import com.xm.game9.model.vo.FlashSaleStockVO;
 import com.xm.game9.model.vo.GameDetailVO;
 import com.xm.game9.model.vo.order.OrderVO;
 import org.springframework.stereotype.Service;
@@ -112,4 +113,28 @@ public interface GameService extends IService<Game> {
      */
     boolean updateGameAppIdBySteamUrl(GameSteamUrlUpdateRequest gameSteamUrlUpdateRequest);
 
+    /**
+     * 开启秒杀模式（库存改由 Redis 原子扣减）
+     *
+     * @param gameId 游戏ID
+     * @return 是否开启成功
+     */
+    boolean enableFlashSale(Long gameId);
+
+    /**
+     * 关闭秒杀模式
+     *
+     * @param gameId 游戏ID
+     * @return 是否关闭成功
+     */
+    boolean disableFlashSale(Long gameId);
+
+    /**
+     * 核对秒杀库存
+     *
+     * @param gameId 游戏ID
+     * @return 核对结果
+     */
+    FlashSaleStockVO checkFlashSaleStock(Long gameId);
+
 }
@@ -3,7 +3,9 @@ package com.xm.game9.service;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.xm.game9.model.domain.News;
+import com.xm.game9.model.vo.NewsSearchVO;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -97,6 +99,13 @@ public interface NewsService extends IService<News> {
      */
     void incrementNewsViews(Long id);
 
+    /**
+     * 将尚未写库的浏览量合并到资讯的浏览次数中（仅修改传入的对象）
+     *
+     * @param newsList 资讯列表
+     */
+    void mergePendingViews(Collection<News> newsList);
+
     /**
      * 根据游戏标签获取资讯列表
      *
@@ -143,6 +152,13 @@ public interface NewsService extends IService<News> {
      * @param pageSize 每页大小
      * @return 搜索结果
      */
-    Page<News> searchNews(String keyword, Integer pageNum, Integer pageSize);
+    Page<NewsSearchVO> searchNews(String keyword, Integer pageNum, Integer pageSize);
+
+    /**
+     * 重建资讯检索索引（所有节点）
+     *
+     * @return 本节点收录的资讯数
+     */
+    int rebuildSearchIndex();
 
 }
\ No newline at end of file
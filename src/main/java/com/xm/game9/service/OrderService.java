@@ -64,6 +64,22 @@ public interface OrderService extends IService<Orders> {
      */
     boolean cancelOrder(Long orderId);
 
+    /**
+     * 批量取消支付超时的订单，并按游戏合并释放库存
+     *
+     * @param orderIds 候选订单ID（已支付或未到期的订单会被忽略）
+     * @return 实际取消的订单数
+     */
+    int cancelExpiredOrders(List<Long> orderIds);
+
+    /**
+     * 查询已超时但仍未支付的订单ID（超时队列的兜底扫描）
+     *
+     * @param limit 最多返回条数
+     * @return 订单ID列表
+     */
+    List<Long> listExpiredUnpaidOrderIds(int limit);
+
     /**
      * 退款订单
      *
@@ -1,125 +1,233 @@
 package com.xm.game9.service;
 
-import com.xm.game9.common.BaseResponse;
-import com.xm.game9.common.ErrorCode;
-import com.xm.game9.common.ResultUtils;
-import com.xm.game9.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
-import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
-import java.security.SecureRandom;
-import java.security.cert.X509Certificate;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Steam API服务
+ * <p>
+ * 供 {@link com.xm.game9.utils.GamePlayerTracker} 定时批量采集在线人数，接口读取的是采集后保存在 Redis 中的数据。
+ * 同一 appid 同时只有一个上游请求，并发的查询共享其结果。
+ * <p>
+ * 上游请求走 JDK HttpClient 的长连接池，在固定大小的线程池中执行（线程和队列都满时直接拒绝），
+ * 连续失败达到阈值后熔断一段时间，期间不再请求上游，冷却后放行一个试探请求。
  */
 @Service
 @Slf4j
 public class SteamApiService {
 
+    /**
+     * 同时进行的上游请求数上限
+     */
+    private static final int MAX_CONCURRENT_CALLS = 8;
+
+    /**
+     * 等待上游请求的队列长度
+     */
+    private static final int MAX_QUEUED_CALLS = 128;
+
+    /**
+     * 连续失败多少次后熔断
+     */
+    private static final int FAILURE_THRESHOLD = 5;
+
+    /**
+     * 熔断持续时长（毫秒）
+     */
+    private static final long OPEN_MILLIS = 30_000L;
+
     private final RestTemplate restTemplate;
 
-    // 从配置文件中读取Steam API Key
-    @Value("${steam.api.key:}")
-    private String steamApiKey;
+    private final String steamApiKey;
 
-    public SteamApiService() {
-        this.restTemplate = createUnsafeRestTemplate();
-    }
+    private final String baseUrl;
+
+    private final ThreadPoolExecutor executor;
 
     /**
-     * 创建忽略SSL证书验证的RestTemplate
+     * 进行中的上游请求（appid -> 结果），用于合并并发查询
      */
-    private RestTemplate createUnsafeRestTemplate() {
-        try {
-            // 创建信任所有证书的SSL上下文
-            SSLContext sslContext = SSLContext.getInstance("TLS");
-            sslContext.init(null, new TrustManager[]{
-                    new X509TrustManager() {
-                        public X509Certificate[] getAcceptedIssuers() {
-                            return new X509Certificate[0];
-                        }
-
-                        public void checkClientTrusted(X509Certificate[] certs, String authType) {
-                        }
-
-                        public void checkServerTrusted(X509Certificate[] certs, String authType) {
-                        }
-                    }
-            }, new SecureRandom());
-
-            // 设置默认的SSL上下文
-            HttpsURLConnection.setDefaultSSLSocketFactory(sslContext.getSocketFactory());
-            HttpsURLConnection.setDefaultHostnameVerifier((hostname, session) -> true);
-
-            // 创建RestTemplate
-            SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-            factory.setConnectTimeout(5000);
-            factory.setReadTimeout(5000);
-
-            return new RestTemplate(factory);
-        } catch (Exception e) {
-            log.error("创建RestTemplate失败", e);
-            return new RestTemplate();
+    private final ConcurrentHashMap<Integer, CompletableFuture<Integer>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+
+    private volatile long openUntil;
+
+    public SteamApiService(@Value("${steam.api.key:}") String steamApiKey,
+                           @Value("${steam.api.base-url:https://api.steampowered.com}") String baseUrl) {
+        this.steamApiKey = steamApiKey == null ? "" : steamApiKey.trim();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.restTemplate = createRestTemplate();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(MAX_CONCURRENT_CALLS, MAX_CONCURRENT_CALLS, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_CALLS), r -> {
+            Thread thread = new Thread(r, "steam-api-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        if (this.steamApiKey.isEmpty()) {
+            log.warn("未配置Steam API Key，可能无法正常获取数据");
         }
     }
 
     /**
-     * 获取游戏当前在线玩家数量
+     * 创建基于 JDK HttpClient 连接池的 RestTemplate（使用 JDK 默认的证书验证）
+     */
+    private RestTemplate createRestTemplate() {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(2))
+                .build();
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(Duration.ofSeconds(3));
+        return new RestTemplate(factory);
+    }
+
+    /**
+     * 向上游获取最新的在线玩家数量（用于定时采集）
      *
-     * @param appid Steam应用ID (uint32)
-     * @return 在线玩家数量
+     * @param appids     Steam应用ID集合
+     * @param waitMillis 整体最多等待的时长（毫秒）
+     * @return appid -> 在线玩家数量，获取失败或上游返回失败结果的 appid 不包含在内
      */
-    public BaseResponse<Integer> getNumberOfCurrentPlayers(Integer appid) {
-        if (appid == null || appid <= 0) {
-            throw new BusinessException(ErrorCode.PARAMS_ERROR, "Steam应用ID参数错误");
+    public Map<Integer, Integer> fetchNumberOfCurrentPlayers(Collection<Integer> appids, long waitMillis) {
+        Map<Integer, CompletableFuture<Integer>> futures = new LinkedHashMap<>();
+        for (Integer appid : appids) {
+            if (appid != null && appid > 0) {
+                futures.putIfAbsent(appid, refresh(appid));
+            }
+        }
+        long deadline = System.currentTimeMillis() + waitMillis;
+        Map<Integer, Integer> result = new HashMap<>();
+        for (Map.Entry<Integer, CompletableFuture<Integer>> entry : futures.entrySet()) {
+            try {
+                long remaining = Math.max(0L, deadline - System.currentTimeMillis());
+                Integer count = entry.getValue().get(remaining, TimeUnit.MILLISECONDS);
+                if (count != null) {
+                    result.put(entry.getKey(), count);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.debug("采集Steam在线人数失败，appid: {}, 错误: {}", entry.getKey(), e.getMessage());
+            }
         }
+        return result;
+    }
 
+    /**
+     * 发起（或加入进行中的）上游请求，上游返回失败结果时以 null 完成
+     */
+    private CompletableFuture<Integer> refresh(Integer appid) {
+        CompletableFuture<Integer> existing = inFlight.get(appid);
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        existing = inFlight.putIfAbsent(appid, future);
+        if (existing != null) {
+            return existing;
+        }
+        future.whenComplete((count, error) -> inFlight.remove(appid, future));
+        if (!allowRequest()) {
+            future.completeExceptionally(new IllegalStateException("Steam API熔断中"));
+            return future;
+        }
         try {
-            // 修改URL，添加API Key参数
-            String url;
-            if (steamApiKey != null && !steamApiKey.trim().isEmpty()) {
-                url = String.format("https://api.steampowered.com/ISteamUserStats/GetNumberOfCurrentPlayers/v1/?appid=%d&key=%s",
-                        appid, steamApiKey);
-            } else {
-                // 如果没有API Key，则不添加key参数（某些情况下可能仍然工作）
-                url = String.format("https://api.steampowered.com/ISteamUserStats/GetNumberOfCurrentPlayers/v1/?appid=%d",
-                        appid);
-                log.warn("未配置Steam API Key，可能无法正常获取数据");
-            }
+            executor.execute(() -> {
+                try {
+                    Integer count = fetch(appid);
+                    onSuccess();
+                    future.complete(count);
+                } catch (Exception e) {
+                    onFailure();
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 线程池已满视为过载，不计入熔断，但需要释放试探名额
+            trialInFlight.set(false);
+            future.completeExceptionally(new IllegalStateException("Steam API请求过多"));
+        }
+        return future;
+    }
+
+    private Integer fetch(Integer appid) {
+        String url = baseUrl + "/ISteamUserStats/GetNumberOfCurrentPlayers/v1/?appid=" + appid;
+        log.debug("调用Steam API: {}", url);
+        if (!steamApiKey.isEmpty()) {
+            url += "&key=" + steamApiKey;
+        }
+        SteamApiResponse response = restTemplate.getForObject(url, SteamApiResponse.class);
+        if (response == null || response.getResponse() == null) {
+            throw new IllegalStateException("Steam API返回数据格式异常");
+        }
+        String result = response.getResponse().getResult();
+        if (result != null && !"1".equals(result)) {
+            // 应用不存在等业务失败说明上游可用，不计入熔断，但没有有效的在线人数
+            log.warn("Steam API调用失败，appid: {}, result: {}", appid, result);
+            return null;
+        }
+        return response.getResponse().getPlayer_count();
+    }
 
-            log.info("调用Steam API: {}", url);
+    /**
+     * 熔断器放行判断：关闭时放行；打开且未到冷却时间时拒绝；冷却后只放行一个试探请求
+     */
+    private boolean allowRequest() {
+        if (consecutiveFailures.get() < FAILURE_THRESHOLD) {
+            return true;
+        }
+        if (System.currentTimeMillis() < openUntil) {
+            return false;
+        }
+        return trialInFlight.compareAndSet(false, true);
+    }
 
-            SteamApiResponse response = restTemplate.getForObject(url, SteamApiResponse.class);
+    private void onSuccess() {
+        consecutiveFailures.set(0);
+        trialInFlight.set(false);
+    }
 
-            if (response != null && response.getResponse() != null) {
-                // 检查API调用是否成功
-                if ("1".equals(response.getResponse().getResult()) || response.getResponse().getResult() == null) {
-                    return ResultUtils.success(response.getResponse().getPlayer_count());
-                } else {
-                    log.warn("Steam API调用失败，appid: {}, result: {}", appid, response.getResponse().getResult());
-                    return ResultUtils.success(0);
-                }
-            } else {
-                log.warn("Steam API返回数据格式异常，appid: {}", appid);
-                return ResultUtils.success(0);
+    private void onFailure() {
+        if (consecutiveFailures.incrementAndGet() >= FAILURE_THRESHOLD) {
+            openUntil = System.currentTimeMillis() + OPEN_MILLIS;
+            if (trialInFlight.compareAndSet(true, false) || consecutiveFailures.get() == FAILURE_THRESHOLD) {
+                log.warn("Steam API连续失败{}次，熔断{}秒", consecutiveFailures.get(), OPEN_MILLIS / 1000);
             }
-
-        } catch (Exception e) {
-            log.error("调用Steam API失败，appid: {}, 错误: {}", appid, e.getMessage(), e);
-            return ResultUtils.success(0);
         }
     }
 
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
     /**
      * Steam API响应内部类
      */
@@ -140,4 +248,4 @@ public class SteamApiService {
         private String result; // 1表示成功，2表示失败
 
     }
-}
\ No newline at end of file
+}
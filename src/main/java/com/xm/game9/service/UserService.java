@@ -5,6 +5,10 @@ import com.xm.game9.model.domain.User;
 import com.xm.game9.model.request.admin.AdminUserUpdateRequest;
 import com.xm.game9.model.request.admin.BatchImportUsersRequest;
 import com.xm.game9.model.request.user.*;
+import com.xm.game9.model.vo.signin.SignInCalendarVO;
+import com.xm.game9.model.vo.signin.SignInStatsVO;
+import com.xm.game9.model.vo.signin.SignInStreakVO;
+import com.xm.game9.model.vo.signin.SignInYearSummaryVO;
 import jakarta.mail.MessagingException;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.stereotype.Service;
@@ -105,4 +109,24 @@ public interface UserService extends IService<User> {
      * 获取用户一年内的签到次数
      */
     long countSignInDays(Long userId, int year);
+
+    /**
+     * 获取用户连续签到信息（当前连续、最长连续）
+     */
+    SignInStreakVO getSignInStreak(Long userId);
+
+    /**
+     * 获取用户某月的签到日历
+     */
+    SignInCalendarVO getSignInCalendar(Long userId, int year, int month);
+
+    /**
+     * 获取用户最近几年的签到汇总
+     */
+    List<SignInYearSummaryVO> getSignInSummary(Long userId, int years);
+
+    /**
+     * 全站签到统计（每日签到人数、区间活跃人数、全勤人数）
+     */
+    SignInStatsVO getSignInStats(LocalDate startDate, LocalDate endDate);
 }
\ No newline at end of file
@@ -0,0 +1,563 @@
+package com.xm.game9.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xm.game9.common.ErrorCode;
+import com.xm.game9.exception.BusinessException;
+import com.xm.game9.model.request.admin.BatchImportGamesRequest.GameImportInfo;
+import com.xm.game9.model.request.admin.BatchImportUsersRequest.UserImportInfo;
+import com.xm.game9.model.vo.ImportJobVO;
+import com.xm.game9.service.CatalogImportService;
+import com.xm.game9.utils.GameCacheManager;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 用户、游戏批量导入服务
+ * <p>
+ * 上传的 CSV（首行为表头，字段名与 JSON 导入一致）或 NDJSON（每行一个 JSON 对象）先落到临时文件，
+ * 由后台线程逐行读取，每 {@value #CHUNK_SIZE} 行为一块：块内每个唯一字段用一条 IN 查询去重，
+ * 密码在有界线程池中并行哈希，然后一次 JDBC 批量插入（导入专用连接池开启了 rewriteBatchedStatements，合并为多值 INSERT）。
+ * 任务进度和逐行错误保存在 Redis 中，任意节点都可以查询。
+ *
+ * @author X1aoM1ngTX
+ */
+@Service
+@Slf4j
+public class CatalogImportServiceImpl implements CatalogImportService {
+
+    private static final String STATUS_RUNNING = "RUNNING";
+    private static final String STATUS_SUCCEEDED = "SUCCEEDED";
+    private static final String STATUS_FAILED = "FAILED";
+
+    private static final String JOB_KEY_PREFIX = "import:job:";
+
+    /**
+     * 任务进度保留时间（小时）
+     */
+    private static final long JOB_TTL_HOURS = 24L;
+
+    /**
+     * 每块行数
+     */
+    private static final int CHUNK_SIZE = 1000;
+
+    /**
+     * 每个任务最多保留的行错误数
+     */
+    private static final int MAX_ERRORS = 1000;
+
+    private static final String INSERT_USER_SQL = "INSERT INTO `user` "
+            + "(userName, userEmail, userPassword, userPhone, userIsAdmin) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String INSERT_GAME_SQL = "INSERT INTO game "
+            + "(gameName, gameDescription, gamePrice, gameStock) VALUES (?, ?, ?, ?)";
+
+    @Resource(name = "importJdbcTemplate")
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private GameCacheManager gameCacheManager;
+
+    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+
+    /**
+     * 后台导入线程：同一时刻只执行一个导入任务，最多排队若干个
+     */
+    private final ThreadPoolExecutor importExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(4), r -> new Thread(r, "catalog-import"));
+
+    /**
+     * 密码哈希线程池，队列容量为一块的行数，排满时由调用线程自己计算
+     */
+    private final ThreadPoolExecutor hashExecutor = new ThreadPoolExecutor(
+            Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(),
+            60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(CHUNK_SIZE),
+            r -> new Thread(r, "catalog-import-hash"), new ThreadPoolExecutor.CallerRunsPolicy());
+
+    {
+        hashExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        importExecutor.shutdownNow();
+        hashExecutor.shutdownNow();
+    }
+
+    // ===== 后台导入 =====
+
+    /**
+     * 提交文件导入任务
+     *
+     * @param type 导入类型（user / game）
+     * @param file 上传的 CSV 或 NDJSON 文件
+     * @return 任务ID
+     */
+    @Override
+    public String submit(String type, MultipartFile file) {
+        if (!TYPE_USER.equals(type) && !TYPE_GAME.equals(type)) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "不支持的导入类型");
+        }
+        if (file == null || file.isEmpty()) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "导入文件为空");
+        }
+        Path tempFile;
+        try {
+            // 请求结束后上传文件会被清理，先转存到临时文件再由后台线程读取
+            tempFile = Files.createTempFile("game9-import-", ".tmp");
+            file.transferTo(tempFile);
+        } catch (IOException e) {
+            log.error("保存导入文件失败", e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "保存导入文件失败");
+        }
+        boolean ndjson = isNdjson(file.getOriginalFilename(), tempFile);
+
+        ImportJobVO job = new ImportJobVO();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setType(type);
+        job.setStatus(STATUS_RUNNING);
+        job.setStartTime(new Date());
+        saveJob(job);
+        try {
+            importExecutor.execute(() -> runJob(job, tempFile, ndjson));
+        } catch (RejectedExecutionException e) {
+            deleteQuietly(tempFile);
+            stringRedisTemplate.delete(JOB_KEY_PREFIX + job.getJobId());
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "导入任务过多，请稍后再试");
+        }
+        log.info("导入任务已提交 - jobId: {}, type: {}, file: {}", job.getJobId(), type, file.getOriginalFilename());
+        return job.getJobId();
+    }
+
+    /**
+     * 查询导入任务进度
+     *
+     * @param jobId 任务ID
+     * @return 任务进度
+     */
+    @Override
+    public ImportJobVO getJob(String jobId) {
+        String json = stringRedisTemplate.opsForValue().get(JOB_KEY_PREFIX + jobId);
+        if (json == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "导入任务不存在或已过期");
+        }
+        try {
+            return objectMapper.readValue(json, ImportJobVO.class);
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取导入任务失败");
+        }
+    }
+
+    private void runJob(ImportJobVO job, Path file, boolean ndjson) {
+        long start = System.currentTimeMillis();
+        try {
+            if (TYPE_USER.equals(job.getType())) {
+                UserChunkWriter writer = new UserChunkWriter(job);
+                readFile(file, ndjson, UserImportInfo.class, job, chunk -> {
+                    writer.write(chunk);
+                    saveJob(job);
+                });
+            } else {
+                GameChunkWriter writer = new GameChunkWriter(job);
+                readFile(file, ndjson, GameImportInfo.class, job, chunk -> {
+                    writer.write(chunk);
+                    saveJob(job);
+                });
+            }
+            job.setStatus(STATUS_SUCCEEDED);
+        } catch (Exception e) {
+            log.error("导入任务失败 - jobId: {}", job.getJobId(), e);
+            job.setStatus(STATUS_FAILED);
+            job.setMessage(e.getMessage());
+        } finally {
+            job.setFinishTime(new Date());
+            saveJob(job);
+            deleteQuietly(file);
+            log.info("导入任务结束 - jobId: {}, status: {}, processed: {}, imported: {}, failed: {}, 耗时: {}ms",
+                    job.getJobId(), job.getStatus(), job.getProcessedRows(), job.getImportedRows(),
+                    job.getFailedRows(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 逐行读取文件，每满一块交给 consumer 处理
+     */
+    private <T> void readFile(Path file, boolean ndjson, Class<T> type, ImportJobVO job,
+                              Consumer<List<Row<T>>> consumer) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<String> header = null;
+            List<Row<T>> chunk = new ArrayList<>(CHUNK_SIZE);
+            String line;
+            long lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (lineNo == 1 && line.startsWith("\uFEFF")) {
+                    line = line.substring(1);
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (!ndjson && header == null) {
+                    header = parseCsvLine(line);
+                    continue;
+                }
+                job.setProcessedRows(job.getProcessedRows() + 1);
+                try {
+                    T value = ndjson ? objectMapper.readValue(line, type) : csvToObject(header, line, type);
+                    chunk.add(new Row<>(lineNo, value));
+                } catch (Exception e) {
+                    addError(job, lineNo, "格式错误: " + e.getMessage());
+                }
+                if (chunk.size() >= CHUNK_SIZE) {
+                    consumer.accept(chunk);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                consumer.accept(chunk);
+            }
+        }
+    }
+
+    private <T> T csvToObject(List<String> header, String line, Class<T> type) {
+        List<String> values = parseCsvLine(line);
+        if (values.size() > header.size()) {
+            throw new IllegalArgumentException("列数多于表头");
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            if (!values.get(i).isEmpty()) {
+                fields.put(header.get(i).trim(), values.get(i));
+            }
+        }
+        return objectMapper.convertValue(fields, type);
+    }
+
+    /**
+     * 解析一行 CSV（支持双引号包裹和 "" 转义，不支持字段内换行）
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private boolean isNdjson(String filename, Path file) {
+        String name = filename == null ? "" : filename.toLowerCase();
+        if (name.endsWith(".csv")) {
+            return false;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")) {
+            return true;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.replace("\uFEFF", "").trim();
+                if (!trimmed.isEmpty()) {
+                    return trimmed.startsWith("{");
+                }
+            }
+        } catch (IOException e) {
+            log.warn("识别导入文件格式失败: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    private void saveJob(ImportJobVO job) {
+        try {
+            stringRedisTemplate.opsForValue().set(JOB_KEY_PREFIX + job.getJobId(),
+                    objectMapper.writeValueAsString(job), JOB_TTL_HOURS, TimeUnit.HOURS);
+        } catch (Exception e) {
+            log.warn("保存导入任务进度失败 - jobId: {}, error: {}", job.getJobId(), e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除导入临时文件失败: {}", file);
+        }
+    }
+
+    // ===== 同步导入（JSON 请求） =====
+
+    /**
+     * 同步导入用户（与文件导入使用相同的分块去重和批量插入）
+     *
+     * @param users 用户列表
+     * @return 导入的用户数量
+     */
+    @Override
+    public int importUsers(List<UserImportInfo> users) {
+        ImportJobVO job = new ImportJobVO();
+        UserChunkWriter writer = new UserChunkWriter(job);
+        forEachChunk(users, job, writer::write);
+        return (int) job.getImportedRows();
+    }
+
+    /**
+     * 同步导入游戏（与文件导入使用相同的分块去重和批量插入）
+     *
+     * @param games 游戏列表
+     * @return 导入的游戏数量
+     */
+    @Override
+    public int importGames(List<GameImportInfo> games) {
+        ImportJobVO job = new ImportJobVO();
+        GameChunkWriter writer = new GameChunkWriter(job);
+        forEachChunk(games, job, writer::write);
+        return (int) job.getImportedRows();
+    }
+
+    private <T> void forEachChunk(List<T> items, ImportJobVO job, Consumer<List<Row<T>>> consumer) {
+        for (int from = 0; from < items.size(); from += CHUNK_SIZE) {
+            List<Row<T>> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(from + CHUNK_SIZE, items.size()); i++) {
+                chunk.add(new Row<>(i + 1, items.get(i)));
+            }
+            job.setProcessedRows(job.getProcessedRows() + chunk.size());
+            consumer.accept(chunk);
+        }
+    }
+
+    // ===== 分块写入 =====
+
+    /**
+     * 用户分块写入：用户名、邮箱均唯一，文件内重复和库中已存在的行记为错误
+     */
+    private class UserChunkWriter {
+
+        private final ImportJobVO job;
+        private final Set<String> seenNames = new HashSet<>();
+        private final Set<String> seenEmails = new HashSet<>();
+
+        UserChunkWriter(ImportJobVO job) {
+            this.job = job;
+        }
+
+        void write(List<Row<UserImportInfo>> chunk) {
+            List<Row<UserImportInfo>> valid = new ArrayList<>();
+            for (Row<UserImportInfo> row : chunk) {
+                UserImportInfo info = row.value();
+                if (StringUtils.isAnyBlank(info.getUserName(), info.getUserEmail(), info.getUserPassword())) {
+                    addError(job, row.line(), "用户信息不完整");
+                } else if (!seenNames.add(info.getUserName())) {
+                    addError(job, row.line(), "文件中用户名重复: " + info.getUserName());
+                } else if (!seenEmails.add(info.getUserEmail())) {
+                    addError(job, row.line(), "文件中邮箱重复: " + info.getUserEmail());
+                } else {
+                    valid.add(row);
+                }
+            }
+            if (valid.isEmpty()) {
+                return;
+            }
+
+            Set<String> existingNames = selectExisting("`user`", "userName",
+                    valid.stream().map(row -> row.value().getUserName()).toList());
+            Set<String> existingEmails = selectExisting("`user`", "userEmail",
+                    valid.stream().map(row -> row.value().getUserEmail()).toList());
+            List<Row<UserImportInfo>> toInsert = new ArrayList<>();
+            for (Row<UserImportInfo> row : valid) {
+                if (existingNames.contains(row.value().getUserName())) {
+                    addError(job, row.line(), "用户名已存在: " + row.value().getUserName());
+                } else if (existingEmails.contains(row.value().getUserEmail())) {
+                    addError(job, row.line(), "邮箱已存在: " + row.value().getUserEmail());
+                } else {
+                    toInsert.add(row);
+                }
+            }
+            if (toInsert.isEmpty()) {
+                return;
+            }
+
+            // BCrypt 计算量大，在有界线程池中并行
+            List<CompletableFuture<String>> hashes = toInsert.stream()
+                    .map(row -> CompletableFuture.supplyAsync(
+                            () -> passwordEncoder.encode(row.value().getUserPassword()), hashExecutor))
+                    .toList();
+            List<Object[]> args = new ArrayList<>(toInsert.size());
+            for (int i = 0; i < toInsert.size(); i++) {
+                UserImportInfo info = toInsert.get(i).value();
+                args.add(new Object[]{info.getUserName(), info.getUserEmail(), hashes.get(i).join(),
+                        info.getUserPhone(), info.getUserIsAdmin() == null ? 0 : info.getUserIsAdmin()});
+            }
+            insert(INSERT_USER_SQL, toInsert, args, job);
+        }
+    }
+
+    /**
+     * 游戏分块写入：游戏名不能重复
+     */
+    private class GameChunkWriter {
+
+        private final ImportJobVO job;
+        private final Set<String> seenNames = new HashSet<>();
+
+        GameChunkWriter(ImportJobVO job) {
+            this.job = job;
+        }
+
+        void write(List<Row<GameImportInfo>> chunk) {
+            List<Row<GameImportInfo>> valid = new ArrayList<>();
+            for (Row<GameImportInfo> row : chunk) {
+                GameImportInfo info = row.value();
+                if (StringUtils.isAnyBlank(info.getGameName(), info.getGameDescription())
+                        || info.getGamePrice() == null || info.getGameStock() == null) {
+                    addError(job, row.line(), "游戏信息不完整");
+                } else if (info.getGamePrice().compareTo(BigDecimal.ZERO) < 0 || info.getGameStock() < 0) {
+                    addError(job, row.line(), "价格和库存不能为负数");
+                } else if (!seenNames.add(info.getGameName())) {
+                    addError(job, row.line(), "文件中游戏名重复: " + info.getGameName());
+                } else {
+                    valid.add(row);
+                }
+            }
+            if (valid.isEmpty()) {
+                return;
+            }
+
+            Set<String> existing = selectExisting("game", "gameName",
+                    valid.stream().map(row -> row.value().getGameName()).toList());
+            List<Row<GameImportInfo>> toInsert = new ArrayList<>();
+            List<Object[]> args = new ArrayList<>();
+            for (Row<GameImportInfo> row : valid) {
+                GameImportInfo info = row.value();
+                if (existing.contains(info.getGameName())) {
+                    addError(job, row.line(), "游戏名已存在: " + info.getGameName());
+                } else {
+                    toInsert.add(row);
+                    args.add(new Object[]{info.getGameName(), info.getGameDescription(),
+                            info.getGamePrice(), info.getGameStock()});
+                }
+            }
+            if (toInsert.isEmpty()) {
+                return;
+            }
+            if (insert(INSERT_GAME_SQL, toInsert, args, job) > 0) {
+                // 新游戏需要出现在游戏列表缓存中
+                List<Long> gameIds = new NamedParameterJdbcTemplate(jdbcTemplate).queryForList(
+                        "SELECT gameId FROM game WHERE gameName IN (:names)",
+                        new MapSqlParameterSource("names",
+                                toInsert.stream().map(row -> row.value().getGameName()).toList()),
+                        Long.class);
+                gameCacheManager.evict(gameIds);
+            }
+        }
+    }
+
+    /**
+     * 一条 IN 查询取出已存在的值
+     */
+    private Set<String> selectExisting(String table, String column, List<String> values) {
+        return new HashSet<>(new NamedParameterJdbcTemplate(jdbcTemplate).queryForList(
+                "SELECT " + column + " FROM " + table + " WHERE " + column + " IN (:values)",
+                new MapSqlParameterSource("values", values), String.class));
+    }
+
+    /**
+     * 批量插入；与并发写入冲突导致整批失败时逐行重试，记录冲突的行
+     *
+     * @return 插入的行数
+     */
+    private <T> int insert(String sql, List<Row<T>> rows, List<Object[]> args, ImportJobVO job) {
+        try {
+            jdbcTemplate.batchUpdate(sql, args);
+            job.setImportedRows(job.getImportedRows() + rows.size());
+            return rows.size();
+        } catch (DuplicateKeyException e) {
+            log.warn("批量插入出现重复数据，逐行重试 - rows: {}", rows.size());
+        }
+        int inserted = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            try {
+                jdbcTemplate.update(sql, args.get(i));
+                inserted++;
+            } catch (DataAccessException e) {
+                addError(job, rows.get(i).line(), e instanceof DuplicateKeyException ? "数据已存在" : "写入失败");
+            }
+        }
+        job.setImportedRows(job.getImportedRows() + inserted);
+        return inserted;
+    }
+
+    private static void addError(ImportJobVO job, long line, String reason) {
+        job.setFailedRows(job.getFailedRows() + 1);
+        if (job.getErrors().size() < MAX_ERRORS) {
+            ImportJobVO.RowError error = new ImportJobVO.RowError();
+            error.setLine(line);
+            error.setReason(reason);
+            job.getErrors().add(error);
+        }
+    }
+
+    /**
+     * 一行数据及其行号
+     */
+    private record Row<T>(long line, T value) {
+    }
+}
@@ -1,18 +1,32 @@
 package com.xm.game9.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xm.game9.common.ErrorCode;
+import com.xm.game9.exception.BusinessException;
 import com.xm.game9.mapper.ChatMessageMapper;
 import com.xm.game9.model.domain.ChatMessage;
+import com.xm.game9.model.domain.User;
 import com.xm.game9.model.vo.ChatMessageVO;
+import com.xm.game9.model.vo.ChatMessageWindowVO;
+import com.xm.game9.model.vo.ChatSyncBatchVO;
 import com.xm.game9.service.ChatMessageService;
+import com.xm.game9.utils.ChatDeliveryWatermark;
+import com.xm.game9.utils.ChatMessageWriteBuffer;
+import com.xm.game9.utils.ChatUnreadCounter;
+import com.xm.game9.utils.EntityBatchLoader;
+import com.xm.game9.utils.IdGenerator;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 聊天消息服务实现类
@@ -20,10 +34,51 @@ import java.util.List;
  * @author X1aoM1ngTX
  */
 @Service
+@Slf4j
 public class ChatMessageServiceImpl extends ServiceImpl<ChatMessageMapper, ChatMessage> implements ChatMessageService {
     
     @Autowired
     private ChatMessageMapper chatMessageMapper;
+
+    @Autowired
+    private ChatMessageWriteBuffer chatMessageWriteBuffer;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private ChatUnreadCounter chatUnreadCounter;
+
+    @Autowired
+    private ChatDeliveryWatermark chatDeliveryWatermark;
+
+    @Autowired
+    private EntityBatchLoader entityBatchLoader;
+
+    /**
+     * 聊天记录默认每页数量
+     */
+    private static final int DEFAULT_HISTORY_PAGE_SIZE = 20;
+
+    /**
+     * 聊天记录每页数量上限
+     */
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+
+    /**
+     * 重连同步默认每批消息数
+     */
+    private static final int DEFAULT_SYNC_BATCH_SIZE = 100;
+
+    /**
+     * 重连同步每批消息数上限
+     */
+    private static final int MAX_SYNC_BATCH_SIZE = 200;
+
+    /**
+     * 消息内容长度上限（UTF-16 字符数）：content 列为 TEXT（65535 字节），每个字符的 UTF-8 编码不超过 3 字节
+     */
+    private static final int MAX_CONTENT_LENGTH = 20000;
     
     /**
      * 发送消息
@@ -37,6 +92,7 @@ public class ChatMessageServiceImpl extends ServiceImpl<ChatMessageMapper, ChatM
     @Override
     public Long sendMessage(Long senderId, Long receiverId, String content, Integer messageType) {
         ChatMessage message = new ChatMessage();
+        message.setMessageId(idGenerator.nextId());
         message.setSenderId(senderId);
         message.setReceiverId(receiverId);
         message.setContent(content);
@@ -46,8 +102,60 @@ public class ChatMessageServiceImpl extends ServiceImpl<ChatMessageMapper, ChatM
         message.setUpdateTime(new Date());
         
         save(message);
+        incrementUnread(message);
         return message.getMessageId();
     }
+
+    /**
+     * 提交消息：写入预写日志后立即返回，Redis 不可用时同步落库
+     *
+     * @param senderId    发送者ID
+     * @param receiverId  接收者ID
+     * @param content     消息内容
+     * @param messageType 消息类型
+     * @return 已分配消息ID和创建时间的消息
+     */
+    @Override
+    public ChatMessage submitMessage(Long senderId, Long receiverId, String content, Integer messageType) {
+        // 超长内容写入数据库必然失败，必须在写入预写日志前拒绝，否则会阻塞所在分区
+        if (content == null || content.isBlank()) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "消息内容不能为空");
+        }
+        if (content.length() > MAX_CONTENT_LENGTH) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "消息内容不能超过" + MAX_CONTENT_LENGTH + "个字符");
+        }
+        ChatMessage message = new ChatMessage();
+        message.setMessageId(idGenerator.nextId());
+        message.setSenderId(senderId);
+        message.setReceiverId(receiverId);
+        message.setContent(content);
+        message.setMessageType(messageType == null ? 1 : messageType);
+        message.setStatus(0); // 已发送
+        message.setCreateTime(new Date());
+        message.setUpdateTime(message.getCreateTime());
+
+        try {
+            chatMessageWriteBuffer.append(message);
+        } catch (DataAccessException e) {
+            log.warn("写入聊天预写日志失败，改为同步落库 - messageId: {}, error: {}", message.getMessageId(), e.getMessage());
+            chatMessageWriteBuffer.writeThrough(List.of(message));
+        }
+        incrementUnread(message);
+        return message;
+    }
+
+    /**
+     * 接收者未读数 +1，失败时只记录日志，计数可在清零或重建时修正
+     *
+     * @param message 消息
+     */
+    private void incrementUnread(ChatMessage message) {
+        try {
+            chatUnreadCounter.increment(message.getReceiverId(), message.getSenderId(), message.getMessageId());
+        } catch (DataAccessException e) {
+            log.warn("累加聊天未读数失败 - messageId: {}, error: {}", message.getMessageId(), e.getMessage());
+        }
+    }
     
     /**
     * 获取聊天消息列表，分页
@@ -64,6 +172,41 @@ public class ChatMessageServiceImpl extends ServiceImpl<ChatMessageMapper, ChatM
         return chatMessageMapper.getChatMessageList(pageParam, userId, friendId);
     }
     
+    /**
+     * 按消息ID游标获取聊天记录
+     *
+     * @param userId   当前用户ID
+     * @param friendId 好友ID
+     * @param before   只取ID小于该值的消息
+     * @param after    只取ID大于该值的消息
+     * @param size     每页数量
+     * @return 消息窗口
+     */
+    @Override
+    public ChatMessageWindowVO getChatMessageHistory(Long userId, Long friendId, Long before, Long after, Integer size) {
+        if (before != null && after != null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "before 和 after 不能同时指定");
+        }
+        int pageSize = size == null || size <= 0 ? DEFAULT_HISTORY_PAGE_SIZE : Math.min(size, MAX_HISTORY_PAGE_SIZE);
+
+        // 多查一条用于判断是否还有更多
+        List<ChatMessageVO> records = new ArrayList<>(
+                chatMessageMapper.getConversationMessages(userId, friendId, before, after, pageSize + 1));
+        boolean hasMore = records.size() > pageSize;
+        if (hasMore) {
+            records = new ArrayList<>(records.subList(0, pageSize));
+        }
+        if (after != null) {
+            // 加载更新的消息时按ID升序取紧邻的一段，返回前统一为倒序
+            Collections.reverse(records);
+        }
+
+        ChatMessageWindowVO window = new ChatMessageWindowVO();
+        window.setRecords(records);
+        window.setHasMore(hasMore);
+        return window;
+    }
+    
     /**
      * 获取用户未读消息总数
      *
@@ -72,7 +215,12 @@ public class ChatMessageServiceImpl extends ServiceImpl<ChatMessageMapper, ChatM
      */
     @Override
     public Long getUnreadCount(Long userId) {
-        return chatMessageMapper.getUnreadCount(userId);
+        try {
+            return chatUnreadCounter.getTotal(userId);
+        } catch (DataAccessException e) {
+            log.warn("读取聊天未读总数失败，改为统计数据库 - userId: {}, error: {}", userId, e.getMessage());
+            return chatMessageMapper.getUnreadCount(userId);
+        }
     }
     
     /**
@@ -89,23 +237,42 @@ public class ChatMessageServiceImpl extends ServiceImpl<ChatMessageMapper, ChatM
     }
     
     /**
-     * 获取用户的离线消息
+     * 重连同步：从游标（或服务端投递水位）之后按消息ID升序读取一批消息
      *
      * @param userId 用户ID
-     * @return 离线消息列表
+     * @param cursor 客户端已收到的最大消息ID，为空时从服务端水位开始
+     * @param limit  每批数量
+     * @return 消息批次
      */
     @Override
-    public List<ChatMessageVO> getOfflineMessages(Long userId) {
-        // 获取用户的所有未读消息
-        QueryWrapper<ChatMessage> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("receiver_id", userId)
-                   .eq("status", 0) // 未读状态
-                   .orderByDesc("create_time");
-        
-        List<ChatMessage> messages = list(queryWrapper);
-        
-        // 转换为VO对象
-        return messages.stream().map(msg -> {
+    public ChatSyncBatchVO syncMessages(Long userId, Long cursor, Integer limit) {
+        int batchSize = limit == null || limit <= 0 ? DEFAULT_SYNC_BATCH_SIZE : Math.min(limit, MAX_SYNC_BATCH_SIZE);
+        Long from = cursor;
+        try {
+            // 本次从游标与服务端水位中较大的一个之后读取，避免重复下发；
+            // 客户端带上的游标同时作为确认，前移后的水位可能因未落库消息被截断，只用于下次重连
+            Long watermark = chatDeliveryWatermark.get(userId);
+            if (cursor != null) {
+                chatDeliveryWatermark.advance(userId, cursor);
+            }
+            if (watermark != null && (from == null || watermark > from)) {
+                from = watermark;
+            }
+        } catch (DataAccessException e) {
+            log.warn("读取聊天投递水位失败，使用客户端游标 - userId: {}, error: {}", userId, e.getMessage());
+        }
+
+        // 多查一条用于判断是否还有下一批
+        List<ChatMessage> messages = chatMessageMapper.getSyncMessages(userId, from, batchSize + 1);
+        boolean hasMore = messages.size() > batchSize;
+        if (hasMore) {
+            messages = messages.subList(0, batchSize);
+        }
+
+        Map<Long, User> senders = entityBatchLoader.loadUsers(
+                EntityBatchLoader.collectIds(messages, ChatMessage::getSenderId));
+        List<ChatMessageVO> records = new ArrayList<>(messages.size());
+        for (ChatMessage msg : messages) {
             ChatMessageVO vo = new ChatMessageVO();
             vo.setMessageId(msg.getMessageId());
             vo.setSenderId(msg.getSenderId());
@@ -114,31 +281,32 @@ public class ChatMessageServiceImpl extends ServiceImpl<ChatMessageMapper, ChatM
             vo.setMessageType(msg.getMessageType());
             vo.setStatus(msg.getStatus());
             vo.setCreateTime(msg.getCreateTime());
-            return vo;
-        }).toList();
+            User sender = senders.get(msg.getSenderId());
+            if (sender != null) {
+                vo.setSenderNickname(sender.getUserNickname());
+                vo.setSenderAvatar(sender.getUserAvatar());
+            }
+            records.add(vo);
+        }
+
+        ChatSyncBatchVO batch = new ChatSyncBatchVO();
+        batch.setMessages(records);
+        batch.setHasMore(hasMore);
+        batch.setNextCursor(messages.isEmpty() ? from : messages.get(messages.size() - 1).getMessageId());
+        return batch;
     }
-    
+
     /**
-     * 标记消息为已推送
+     * 确认已收到游标及之前的消息，只前移投递水位，不逐条更新消息状态
      *
-     * @param userId     用户ID
-     * @param messageIds 消息ID数组
-     * @return 更新是否成功
+     * @param userId 用户ID
+     * @param cursor 已收到的最大消息ID
      */
     @Override
-    public boolean markMessagesAsPushed(Long userId, Long[] messageIds) {
-        if (messageIds == null || messageIds.length == 0) {
-            return false;
+    public void ackMessages(Long userId, Long cursor) {
+        if (cursor == null || cursor <= 0) {
+            return;
         }
-        
-        // 批量更新消息状态为已推送
-        QueryWrapper<ChatMessage> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("receiver_id", userId)
-                   .in("message_id", (Object[]) messageIds);
-        
-        ChatMessage updateEntity = new ChatMessage();
-        updateEntity.setStatus(1); // 已推送状态
-        
-        return update(updateEntity, queryWrapper);
+        chatDeliveryWatermark.advance(userId, cursor);
     }
-}
\ No newline at end of file
+}
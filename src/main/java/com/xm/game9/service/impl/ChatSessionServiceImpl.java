@@ -1,19 +1,28 @@
 package com.xm.game9.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xm.game9.common.ErrorCode;
+import com.xm.game9.config.OnlineStatusManager;
+import com.xm.game9.exception.BusinessException;
 import com.xm.game9.mapper.ChatSessionMapper;
 import com.xm.game9.model.domain.ChatSession;
 import com.xm.game9.model.domain.User;
+import com.xm.game9.model.vo.ChatSessionPageVO;
 import com.xm.game9.model.vo.ChatSessionVO;
 import com.xm.game9.service.ChatSessionService;
-import com.xm.game9.service.UserService;
-import com.xm.game9.utils.RedisUtil;
+import com.xm.game9.utils.ChatUnreadCounter;
+import com.xm.game9.utils.EntityBatchLoader;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 聊天会话服务实现类
@@ -21,16 +30,35 @@ import java.util.List;
  * @author X1aoM1ngTX
  */
 @Service
+@Slf4j
 public class ChatSessionServiceImpl extends ServiceImpl<ChatSessionMapper, ChatSession> implements ChatSessionService {
     
     @Autowired
     private ChatSessionMapper chatSessionMapper;
     
     @Autowired
-    private UserService userService;
+    private EntityBatchLoader entityBatchLoader;
     
     @Autowired
-    private RedisUtil redisUtil;
+    private OnlineStatusManager onlineStatusManager;
+    
+    @Autowired
+    private ChatUnreadCounter chatUnreadCounter;
+    
+    /**
+     * 游标分页默认数量
+     */
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    
+    /**
+     * 游标分页最大数量
+     */
+    private static final int MAX_PAGE_SIZE = 100;
+    
+    /**
+     * 游标中表示"没有最后消息时间"的占位符
+     */
+    private static final String NULL_TIME = "n";
     
     /**
      * 获取用户会话列表
@@ -40,9 +68,77 @@ public class ChatSessionServiceImpl extends ServiceImpl<ChatSessionMapper, ChatS
      */
     @Override
     public List<ChatSessionVO> getUserSessions(Long userId) {
-        List<ChatSession> sessions = chatSessionMapper.getUserSessions(userId);
-        List<ChatSessionVO> result = new ArrayList<>();
+        return toSessionVOs(userId, chatSessionMapper.getUserSessions(userId, null, null, null));
+    }
+    
+    /**
+     * 按最后消息时间倒序游标分页获取用户会话
+     *
+     * @param userId 用户ID
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size   每页数量
+     * @return 会话分页
+     */
+    @Override
+    public ChatSessionPageVO getUserSessionPage(Long userId, String cursor, Integer size) {
+        int pageSize = size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        Date cursorTime = null;
+        Long cursorId = null;
+        if (StringUtils.isNotBlank(cursor)) {
+            String[] parts = cursor.split("_", 2);
+            try {
+                if (parts.length != 2) {
+                    throw new NumberFormatException(cursor);
+                }
+                cursorTime = NULL_TIME.equals(parts[0]) ? null : new Date(Long.parseLong(parts[0]));
+                cursorId = Long.parseLong(parts[1]);
+            } catch (NumberFormatException e) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "游标格式错误");
+            }
+        }
+        
+        // 多查一条用于判断是否还有下一页
+        List<ChatSession> sessions = chatSessionMapper.getUserSessions(userId, cursorTime, cursorId, pageSize + 1);
+        boolean hasMore = sessions.size() > pageSize;
+        if (hasMore) {
+            sessions = sessions.subList(0, pageSize);
+        }
+        
+        ChatSessionPageVO page = new ChatSessionPageVO();
+        page.setRecords(toSessionVOs(userId, sessions));
+        page.setHasMore(hasMore);
+        if (hasMore) {
+            ChatSession last = sessions.get(sessions.size() - 1);
+            String time = last.getLastMessageTime() == null
+                    ? NULL_TIME : String.valueOf(last.getLastMessageTime().getTime());
+            page.setNextCursor(time + "_" + last.getSessionId());
+        }
+        return page;
+    }
+    
+    /**
+     * 组装会话视图：对方资料一次 IN 查询，在线状态一次批量查询
+     *
+     * @param userId   当前用户ID
+     * @param sessions 会话列表
+     * @return 会话视图列表
+     */
+    private List<ChatSessionVO> toSessionVOs(Long userId, List<ChatSession> sessions) {
+        if (sessions.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<Long> friendIds = EntityBatchLoader.collectIds(sessions,
+                session -> session.getUser1Id().equals(userId) ? session.getUser2Id() : session.getUser1Id());
+        Map<Long, User> friends = entityBatchLoader.loadUsers(friendIds);
+        Map<Long, Boolean> onlineStatus = onlineStatusManager.getOnlineStatus(friendIds);
+        Map<Long, Integer> unreadCounts = null;
+        try {
+            unreadCounts = chatUnreadCounter.getCounts(userId);
+        } catch (DataAccessException e) {
+            log.warn("读取聊天未读数失败，使用数据库中的未读数 - userId: {}, error: {}", userId, e.getMessage());
+        }
         
+        List<ChatSessionVO> result = new ArrayList<>(sessions.size());
         for (ChatSession session : sessions) {
             ChatSessionVO vo = new ChatSessionVO();
             vo.setSessionId(session.getSessionId());
@@ -50,30 +146,26 @@ public class ChatSessionServiceImpl extends ServiceImpl<ChatSessionMapper, ChatS
             vo.setLastMessageTime(session.getLastMessageTime());
             
             // 确定对方用户ID
-            Long friendId = session.getUser1Id().equals(userId) ? session.getUser2Id() : session.getUser1Id();
+            boolean isUser1 = session.getUser1Id().equals(userId);
+            Long friendId = isUser1 ? session.getUser2Id() : session.getUser1Id();
             vo.setFriendId(friendId);
             
-            // 获取对方用户信息
-            User friend = userService.getById(friendId);
+            User friend = friends.get(friendId);
             if (friend != null) {
                 vo.setFriendNickname(friend.getUserNickname());
                 vo.setFriendAvatar(friend.getUserAvatar());
             }
+            vo.setOnline(onlineStatus.getOrDefault(friendId, false));
             
-            // 使用与好友系统相同的方法检查在线状态
-            boolean isOnline = redisUtil.hasKey("user:online:" + friendId);
-            vo.setOnline(isOnline);
-            
-            // 设置未读消息数
-            if (session.getUser1Id().equals(userId)) {
-                vo.setUnreadCount(session.getUnreadCountUser1());
+            // 设置未读消息数，Redis 不可用时使用最近一次写回数据库的值
+            if (unreadCounts != null) {
+                vo.setUnreadCount(unreadCounts.getOrDefault(friendId, 0));
             } else {
-                vo.setUnreadCount(session.getUnreadCountUser2());
+                vo.setUnreadCount(isUser1 ? session.getUnreadCountUser1() : session.getUnreadCountUser2());
             }
             
             result.add(vo);
         }
-        
         return result;
     }
     
@@ -109,46 +201,14 @@ public class ChatSessionServiceImpl extends ServiceImpl<ChatSessionMapper, ChatS
     }
     
     /**
-     * 更新会话的最后一条消息和未读消息数
+     * 清除用户与好友会话的未读消息数（只修改 Redis 计数，由定时任务写回数据库）
      *
-     * @param sessionId   会话ID
-     * @param lastMessage 最后一条消息内容
-     * @param senderId    发送者ID
-     * @return 更新是否成功
+     * @param userId   用户ID
+     * @param friendId 好友ID
+     * @return 清除的未读数
      */
     @Override
-    public boolean updateSession(Long sessionId, String lastMessage, Long senderId) {
-        ChatSession session = getById(sessionId);
-        if (session == null) {
-            return false;
-        }
-        
-        Boolean isUser1Sender = session.getUser1Id().equals(senderId);
-        int result = chatSessionMapper.updateSession(sessionId, lastMessage, new Date(), isUser1Sender);
-        
-        return result > 0;
-    }
-    
-    /**
-     * 清除会话的未读消息数
-     *
-     * @param sessionId 会话ID
-     * @param userId    用户ID
-     * @return 清除是否成功
-     */
-    @Override
-    public boolean clearUnreadCount(Long sessionId, Long userId) {
-        ChatSession session = getById(sessionId);
-        if (session == null) {
-            return false;
-        }
-        
-        if (session.getUser1Id().equals(userId)) {
-            session.setUnreadCountUser1(0);
-        } else {
-            session.setUnreadCountUser2(0);
-        }
-        
-        return updateById(session);
+    public long clearUnreadCount(Long userId, Long friendId) {
+        return chatUnreadCounter.reset(userId, friendId);
     }
 }
\ No newline at end of file
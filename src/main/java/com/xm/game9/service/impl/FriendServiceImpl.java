@@ -2,6 +2,7 @@ package com.xm.game9.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.xm.game9.common.ErrorCode;
+import com.xm.game9.config.OnlineStatusManager;
 import com.xm.game9.exception.BusinessException;
 import com.xm.game9.mapper.FriendRelationshipMapper;
 import com.xm.game9.model.domain.FriendRelationship;
@@ -19,6 +20,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author X1aoM1ngTX
@@ -40,6 +42,8 @@ public class FriendServiceImpl extends ServiceImpl<FriendRelationshipMapper, Fri
     private FriendRelationshipMapper friendRelationshipMapper;
     @Resource
     private RedisUtil redisUtil;
+    @Resource
+    private OnlineStatusManager onlineStatusManager;
 
     /**
      * 发送好友请求
@@ -188,10 +192,11 @@ public class FriendServiceImpl extends ServiceImpl<FriendRelationshipMapper, Fri
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数错误");
         }
         List<FriendVO> friendList = friendRelationshipMapper.selectFriendsByUserId(userId);
-        // 查 Redis 并设置 isOnline
+        // 一次批量查询所有好友的在线状态
+        Map<Long, Boolean> onlineStatus = onlineStatusManager.getOnlineStatus(
+                friendList.stream().map(FriendVO::getFriendId).toList());
         for (FriendVO friend : friendList) {
-            boolean isOnline = redisUtil.hasKey("user:online:" + friend.getFriendId());
-            friend.setIsOnline(isOnline);
+            friend.setIsOnline(Boolean.TRUE.equals(onlineStatus.get(friend.getFriendId())));
         }
         return friendList;
     }
@@ -4,18 +4,23 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.xm.game9.common.ErrorCode;
 import com.xm.game9.exception.BusinessException;
+import com.xm.game9.mapper.GameRatingStatsMapper;
 import com.xm.game9.mapper.GameReviewMapper;
 import com.xm.game9.model.domain.Game;
+import com.xm.game9.model.domain.GameRatingStats;
 import com.xm.game9.model.domain.GameReview;
 import com.xm.game9.model.domain.User;
 import com.xm.game9.model.domain.UserLibrary;
 import com.xm.game9.model.request.game.GameReviewRequest;
 import com.xm.game9.model.request.game.GameReviewUpdateRequest;
+import com.xm.game9.model.vo.GameRatingStatsVO;
 import com.xm.game9.model.vo.GameReviewVO;
 import com.xm.game9.service.GameReviewService;
 import com.xm.game9.service.GameService;
 import com.xm.game9.service.UserLibraryService;
 import com.xm.game9.service.UserService;
+import com.xm.game9.utils.EntityBatchLoader;
+import com.xm.game9.utils.GameRatingStatsCache;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -26,7 +31,9 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -47,6 +54,15 @@ public class GameReviewServiceImpl extends ServiceImpl<GameReviewMapper, GameRev
     @Resource
     private UserLibraryService userLibraryService;
 
+    @Resource
+    private EntityBatchLoader entityBatchLoader;
+
+    @Resource
+    private GameRatingStatsMapper gameRatingStatsMapper;
+
+    @Resource
+    private GameRatingStatsCache gameRatingStatsCache;
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Long createReview(Long userId, GameReviewRequest gameReviewRequest) {
@@ -100,6 +116,7 @@ public class GameReviewServiceImpl extends ServiceImpl<GameReviewMapper, GameRev
         if (!result) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "评价失败");
         }
+        applyRating(gameReview.getGameId(), gameReview.getGameReviewRating(), 1);
 
         return gameReview.getReviewId();
     }
@@ -154,11 +171,16 @@ public class GameReviewServiceImpl extends ServiceImpl<GameReviewMapper, GameRev
             throw new BusinessException(ErrorCode.NO_AUTH, "无权删除他人的评价");
         }
 
-        return lambdaUpdate()
+        // 逻辑删除条件保证同一评价只会从汇总中扣除一次
+        boolean deleted = lambdaUpdate()
                 .eq(GameReview::getReviewId, reviewId)
                 .set(GameReview::getGameReviewIsDeleted, true)
                 .set(GameReview::getGameReviewUpdateTime, new Date())
                 .update();
+        if (deleted) {
+            applyRating(gameReview.getGameId(), gameReview.getGameReviewRating(), -1);
+        }
+        return deleted;
     }
 
     @Override
@@ -166,26 +188,36 @@ public class GameReviewServiceImpl extends ServiceImpl<GameReviewMapper, GameRev
         if (gameId == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数错误");
         }
+        GameRatingStats stats = loadRatingStats(gameId);
+        return toAverageRating(stats.getRatingSum(), stats.getRatingCount());
+    }
 
-        List<GameReview> reviews = lambdaQuery()
-                .eq(GameReview::getGameId, gameId)
-                .eq(GameReview::getGameReviewIsDeleted, false)
-                .list();
-
-        if (reviews.isEmpty()) {
-            return 0.0;
+    @Override
+    public GameRatingStatsVO getGameRatingStats(Long gameId) {
+        if (gameId == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数错误");
         }
+        GameRatingStats stats = loadRatingStats(gameId);
+        GameRatingStatsVO vo = new GameRatingStatsVO();
+        vo.setGameId(gameId);
+        vo.setRatingCount(stats.getRatingCount());
+        vo.setAverageRating(toAverageRating(stats.getRatingSum(), stats.getRatingCount()));
+        Map<Integer, Long> histogram = new LinkedHashMap<>();
+        histogram.put(1, stats.getStar1());
+        histogram.put(2, stats.getStar2());
+        histogram.put(3, stats.getStar3());
+        histogram.put(4, stats.getStar4());
+        histogram.put(5, stats.getStar5());
+        vo.setHistogram(histogram);
+        return vo;
+    }
 
-        // 计算5分制平均分
-        double sum = reviews.stream()
-                .mapToInt(GameReview::getGameReviewRating)
-                .sum();
-
-        // 转换为10分制平均分并保留一位小数
-        return BigDecimal.valueOf(sum)
-                .divide(BigDecimal.valueOf(reviews.size()), 1, RoundingMode.HALF_UP)
-                .multiply(BigDecimal.valueOf(2))
-                .doubleValue();
+    @Override
+    public int rebuildRatingStats() {
+        gameRatingStatsMapper.rebuildAll();
+        List<GameRatingStats> all = gameRatingStatsMapper.selectList(null);
+        gameRatingStatsCache.putAll(all);
+        return all.size();
     }
 
     @Override
@@ -213,19 +245,82 @@ public class GameReviewServiceImpl extends ServiceImpl<GameReviewMapper, GameRev
             }
         }
 
-        // 更新评价
-        return lambdaUpdate()
+        // 更新评价（评分变化时以原评分为条件，防止并发修改导致汇总重复计算）
+        Integer oldRating = gameReview.getGameReviewRating();
+        Integer newRating = gameReviewUpdateRequest.getRating();
+        boolean ratingChanged = newRating != null && !newRating.equals(oldRating);
+        boolean updated = lambdaUpdate()
                 .eq(GameReview::getReviewId, gameReviewUpdateRequest.getReviewId())
-                .set(gameReviewUpdateRequest.getRating() != null, GameReview::getGameReviewRating, gameReviewUpdateRequest.getRating())
+                .eq(ratingChanged, GameReview::getGameReviewRating, oldRating)
+                .set(newRating != null, GameReview::getGameReviewRating, newRating)
                 .set(StringUtils.isNotBlank(gameReviewUpdateRequest.getContent()), GameReview::getGameReviewContent, gameReviewUpdateRequest.getContent())
                 .set(GameReview::getGameReviewUpdateTime, new Date())
                 .update();
+        if (!updated && ratingChanged) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "评价已被修改，请刷新后重试");
+        }
+        if (updated && ratingChanged) {
+            applyRating(gameReview.getGameId(), oldRating, -1);
+            applyRating(gameReview.getGameId(), newRating, 1);
+        }
+        return updated;
+    }
+
+    /**
+     * 在当前事务中更新评分汇总，提交后同步到缓存
+     */
+    private void applyRating(Long gameId, Integer rating, int delta) {
+        if (rating == null || rating < 1 || rating > 5) {
+            // 历史数据中的非法评分不计入汇总，由重建任务统一修正
+            log.warn("忽略非法评分 - gameId: {}, rating: {}", gameId, rating);
+            return;
+        }
+        if (gameRatingStatsMapper.applyRating(gameId, rating, delta) > 0) {
+            gameRatingStatsCache.applyAfterCommit(gameId, rating, delta);
+        } else {
+            // 汇总行尚未建立（历史游戏首次变更），按评价表完整计算一次，已包含本次变更
+            gameRatingStatsMapper.rebuild(gameId);
+            gameRatingStatsCache.evictAfterCommit(gameId);
+        }
+    }
+
+    /**
+     * 读取评分汇总（缓存 -> 汇总表，汇总行不存在时按评价表计算一次）
+     */
+    private GameRatingStats loadRatingStats(Long gameId) {
+        GameRatingStats stats = gameRatingStatsCache.get(gameId);
+        if (stats != null) {
+            return stats;
+        }
+        stats = gameRatingStatsMapper.selectById(gameId);
+        if (stats == null) {
+            gameRatingStatsMapper.rebuild(gameId);
+            stats = gameRatingStatsMapper.selectById(gameId);
+        }
+        gameRatingStatsCache.put(stats);
+        return stats;
+    }
+
+    /**
+     * 5分制总分换算为10分制平均分（保留一位小数）
+     */
+    private Double toAverageRating(Long sum, Long count) {
+        if (count == null || count <= 0) {
+            return 0.0;
+        }
+        return BigDecimal.valueOf(sum)
+                .divide(BigDecimal.valueOf(count), 1, RoundingMode.HALF_UP)
+                .multiply(BigDecimal.valueOf(2))
+                .doubleValue();
     }
 
     /**
      * 将GameReview列表转换为GameReviewVO列表
      */
     private List<GameReviewVO> convertToVOList(List<GameReview> gameReviews) {
+        // 一页评价的用户信息一次查询
+        Map<Long, User> users = entityBatchLoader.loadUsers(
+                EntityBatchLoader.collectIds(gameReviews, GameReview::getUserId));
         return gameReviews.stream().map(gameReview -> {
             GameReviewVO gameReviewVO = new GameReviewVO();
             // 手动设置属性，避免字段名不匹配问题
@@ -237,7 +332,7 @@ public class GameReviewServiceImpl extends ServiceImpl<GameReviewMapper, GameRev
             gameReviewVO.setCreateTime(gameReview.getGameReviewCreateTime());
 
             // 获取用户名
-            User user = userService.getById(gameReview.getUserId());
+            User user = users.get(gameReview.getUserId());
             if (user != null) {
                 gameReviewVO.setUserName(user.getUserName());
             }
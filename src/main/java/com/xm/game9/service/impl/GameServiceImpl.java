@@ -1,6 +1,7 @@
 package com.xm.game9.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.xm.game9.common.ErrorCode;
@@ -14,11 +15,17 @@ import com.xm.game9.model.request.game.GameStatusRequest;
 import com.xm.game9.model.request.game.GameSteamUrlUpdateRequest;
 import com.xm.game9.model.request.game.GameUpdateRequest;
 import com.xm.game9.model.request.order.CreateOrderRequest;
+import com.xm.game9.model.vo.FlashSaleStockVO;
 import com.xm.game9.model.vo.GameDetailVO;
 import com.xm.game9.model.vo.order.OrderVO;
+import com.xm.game9.service.CatalogImportService;
 import com.xm.game9.service.GameService;
 import com.xm.game9.service.OrderService;
 import com.xm.game9.service.UserLibraryService;
+import com.xm.game9.utils.FlashSaleStockManager;
+import com.xm.game9.utils.GameCacheManager;
+import com.xm.game9.utils.GameSaleScheduler;
+import com.xm.game9.utils.ImagePipeline;
 import com.xm.game9.utils.SteamUrlParser;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
@@ -29,7 +36,8 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -50,6 +58,18 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
     @Resource
     private UserLibraryService userLibraryService;
 
+    @Resource
+    private GameCacheManager gameCacheManager;
+
+    @Resource
+    private FlashSaleStockManager flashSaleStockManager;
+
+    @Resource
+    private GameSaleScheduler gameSaleScheduler;
+
+    @Resource
+    private CatalogImportService catalogImportService;
+
     private static final BigDecimal ZERO = new BigDecimal("0.00");
 
     /**
@@ -95,6 +115,7 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
         if (!saveResult) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "创建失败");
         }
+        gameCacheManager.evict(game.getGameId());
         return game.getGameId();
     }
 
@@ -105,9 +126,7 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
      */
     @Override
     public List<Game> getAllGames() {
-        return lambdaQuery()
-                .orderByDesc(Game::getGameCreatedTime)
-                .list();
+        return gameCacheManager.getAllGames();
     }
 
     /**
@@ -146,7 +165,7 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
         }
 
         // 获取游戏基本信息
-        Game game = getById(gameId);
+        Game game = gameCacheManager.getGame(gameId);
         if (game == null) {
             throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "游戏不存在");
         }
@@ -157,11 +176,14 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
         gameDetailVO.setGameName(game.getGameName());
         gameDetailVO.setGameDescription(game.getGameDescription());
         gameDetailVO.setGamePrice(game.getGamePrice());
-        gameDetailVO.setGameStock(game.getGameStock());
+        // 秒杀模式下以 Redis 中的实时库存为准
+        Integer flashStock = flashSaleStockManager.getStock(gameId);
+        gameDetailVO.setGameStock(flashStock != null ? flashStock : game.getGameStock());
         gameDetailVO.setGameReleaseDate(game.getGameReleaseDate());
         gameDetailVO.setGameDev(game.getGameDev());
         gameDetailVO.setGamePub(game.getGamePub());
         gameDetailVO.setGameCover(game.getGameCover());
+        gameDetailVO.setGameCoverVariants(ImagePipeline.variantsOf(game.getGameCover()));
         gameDetailVO.setGameIsRemoved(game.getGameIsRemoved());
         gameDetailVO.setGameOnSale(game.getGameOnSale());
         gameDetailVO.setGameDiscount(game.getGameDiscount());
@@ -218,17 +240,35 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
         if (GamePriceIsFree && GameOnSale) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "免费游戏不能打折");
         }
+        // 秒杀期间库存由 Redis 管理，直接改数据库会破坏两者的对应关系
+        if (gameUpdateRequest.getGameStock() != null
+                && !gameUpdateRequest.getGameStock().equals(game.getGameStock())
+                && flashSaleStockManager.isEnabled(game.getGameId())) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "秒杀进行中，请先关闭秒杀再修改库存");
+        }
         game.setGameStock(gameUpdateRequest.getGameStock());
         game.setGamePub(gameUpdateRequest.getGamePub());
         game.setGameDev(gameUpdateRequest.getGameDev());
         game.setGameReleaseDate(gameUpdateRequest.getGameReleaseDate());
         game.setGameOnSale(gameUpdateRequest.getGameOnSale() ? 1 : 0);
         if (gameUpdateRequest.getGameOnSale()) {
+            Date saleStart = gameUpdateRequest.getGameSaleStartTime();
+            Date saleEnd = gameUpdateRequest.getGameSaleEndTime();
+            if (saleEnd != null && !saleEnd.after(new Date())) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "折扣结束时间必须晚于当前时间");
+            }
+            if (saleStart != null && saleEnd != null && !saleEnd.after(saleStart)) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "折扣结束时间必须晚于开始时间");
+            }
             game.setGameDiscount(gameUpdateRequest.getGameDiscount());
-            game.setGameSaleStartTime(gameUpdateRequest.getGameSaleStartTime());
-            game.setGameSaleEndTime(gameUpdateRequest.getGameSaleEndTime());
-            // 计算折扣价格
-            if (game.getGamePrice() != null && gameUpdateRequest.getGameDiscount() != null) {
+            game.setGameSaleStartTime(saleStart);
+            game.setGameSaleEndTime(saleEnd);
+            if (saleStart != null && saleStart.after(new Date())) {
+                // 折扣尚未开始，由折扣定时器在开始时刻计算折扣价并置为打折中
+                game.setGameOnSale(0);
+                game.setGameDiscountedPrices(null);
+            } else if (game.getGamePrice() != null && gameUpdateRequest.getGameDiscount() != null) {
+                // 计算折扣价格
                 BigDecimal discountedPrice = game.getGamePrice()
                         .multiply(BigDecimal.ONE.subtract(gameUpdateRequest.getGameDiscount()))
                         .setScale(2, RoundingMode.HALF_UP);
@@ -243,7 +283,20 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
         }
         game.setGameCover(gameUpdateRequest.getGameCover());
         game.setGameAppId(gameUpdateRequest.getGameAppId());
-        return updateById(game);
+        // updateById 会跳过为 null 的字段，关闭折扣或折扣尚未开始时需要显式把对应列置空
+        boolean updated = update(game, new LambdaUpdateWrapper<Game>()
+                .eq(Game::getGameId, game.getGameId())
+                .set(game.getGameDiscount() == null, Game::getGameDiscount, null)
+                .set(game.getGameSaleStartTime() == null, Game::getGameSaleStartTime, null)
+                .set(game.getGameSaleEndTime() == null, Game::getGameSaleEndTime, null)
+                .set(game.getGameDiscountedPrices() == null, Game::getGameDiscountedPrices, null));
+        if (gameUpdateRequest.getGameOnSale()) {
+            gameSaleScheduler.scheduleAfterCommit(game.getGameId(), game.getGameSaleStartTime(), game.getGameSaleEndTime());
+        } else {
+            gameSaleScheduler.cancelAfterCommit(game.getGameId());
+        }
+        gameCacheManager.evict(game.getGameId());
+        return updated;
     }
 
     /**
@@ -264,7 +317,9 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
         }
 
         game.setGameIsRemoved(gameStatusRequest.isGameIsRemoved());
-        return updateById(game);
+        boolean updated = updateById(game);
+        gameCacheManager.evict(game.getGameId());
+        return updated;
     }
 
     /**
@@ -278,7 +333,9 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
         if (gameId == null || gameId <= 0) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数错误");
         }
-        return removeById(gameId);
+        boolean removed = removeById(gameId);
+        gameCacheManager.evict(gameId);
+        return removed;
     }
 
     /**
@@ -296,8 +353,8 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数错误");
         }
 
-        // 2. 检查游戏是否存在且未下架
-        Game game = getById(gameId);
+        // 2. 检查游戏是否存在且未下架（读缓存，库存以第5步的原子扣减为准）
+        Game game = gameCacheManager.getGame(gameId);
         if (game == null) {
             throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "游戏不存在");
         }
@@ -305,28 +362,34 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "游戏已下架");
         }
 
-        // 3. 检查库存
-        if (game.getGameStock() <= 0) {
-            throw new BusinessException(ErrorCode.PARAMS_ERROR, "游戏库存不足");
-        }
-
-        // 4. 检查用户是否已拥有该游戏
+        // 3. 检查用户是否已拥有该游戏
         if (userLibraryService.hasGame(userId, gameId)) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "已拥有该游戏");
         }
 
-        // 5. 预占库存（原子操作，防止超卖）
-        int stockUpdateCount = gameMapper.decreaseStockForUpdate(gameId);
-        if (stockUpdateCount == 0) {
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "库存不足，购买失败");
+        // 4. 预占库存（秒杀模式在 Redis 中原子扣减，否则在数据库中扣减，均可防止超卖）
+        long reserved = flashSaleStockManager.reserve(gameId);
+        if (reserved == FlashSaleStockManager.NOT_ENABLED) {
+            reserved = gameMapper.decreaseStockForUpdate(gameId);
+            if (reserved > 0 && flashSaleStockManager.isEnabled(gameId)) {
+                // 等待行锁期间秒杀模式已开启，Redis 库存未计入本次扣减，回滚后重试
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "库存模式切换中，请稍后重试");
+            }
+            if (reserved > 0) {
+                // 数据库库存已变化，事务提交后失效游戏缓存
+                gameCacheManager.evict(gameId);
+            }
+        }
+        if (reserved == 0) {
+            throw new BusinessException(ErrorCode.GAME_STOCK_ERROR, "库存不足，购买失败");
         }
 
-        // 6. 判断游戏是否在打折，使用正确的价格
+        // 5. 判断游戏是否在打折，使用正确的价格
         BigDecimal orderAmount = game.getGameOnSale() != null && game.getGameOnSale() == 1 
                 ? game.getGameDiscountedPrices() 
                 : game.getGamePrice();
         
-        // 7. 免费游戏也创建订单，等待用户确认
+        // 6. 免费游戏也创建订单，等待用户确认
         if (orderAmount.compareTo(ZERO) == 0) {
             // 创建订单请求
             CreateOrderRequest createOrderRequest = new CreateOrderRequest();
@@ -341,7 +404,7 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
             return orderVO;
         }
         
-        // 8. 创建订单请求
+        // 7. 创建订单请求
         CreateOrderRequest createOrderRequest = new CreateOrderRequest();
         createOrderRequest.setUserId(userId);
         createOrderRequest.setGameId(gameId);
@@ -349,7 +412,7 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
         createOrderRequest.setPaymentMethod("WALLET"); // 默认使用钱包支付
         createOrderRequest.setDescription("购买游戏：" + game.getGameName());
 
-        // 9. 调用订单服务创建订单
+        // 8. 调用订单服务创建订单
         OrderVO orderVO = orderService.createOrder(createOrderRequest);
 
         return orderVO;
@@ -400,6 +463,11 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
         if (!updateStock) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "购买失败，请重试");
         }
+        if (flashSaleStockManager.isEnabled(gameId)) {
+            // 秒杀模式下库存由 Redis 管理，数据库扣减会使两边不一致，回滚
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "该游戏正在秒杀，请通过下单购买");
+        }
+        gameCacheManager.evict(gameId);
 
         // 6. 添加到用户游戏库
         try {
@@ -426,41 +494,8 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "游戏列表为空");
         }
 
-        List<Game> gameList = new ArrayList<>();
-        for (BatchImportGamesRequest.GameImportInfo gameInfo : games) {
-            // 参数校验
-            if (StringUtils.isAnyBlank(
-                    gameInfo.getGameName(),
-                    gameInfo.getGameDescription()) ||
-                    gameInfo.getGamePrice() == null ||
-                    gameInfo.getGameStock() == null) {
-                log.warn("游戏信息不完整: {}", gameInfo);
-                continue;
-            }
-
-            // 检查游戏名是否已存在
-            if (lambdaQuery().eq(Game::getGameName, gameInfo.getGameName()).exists()) {
-                log.warn("游戏名已存在: {}", gameInfo.getGameName());
-                continue;
-            }
-
-            // 创建游戏对象
-            Game game = new Game();
-            game.setGameName(gameInfo.getGameName());
-            game.setGameDescription(gameInfo.getGameDescription());
-            game.setGamePrice(gameInfo.getGamePrice());
-            game.setGameStock(gameInfo.getGameStock());
-
-            gameList.add(game);
-        }
-
-        if (gameList.isEmpty()) {
-            return 0;
-        }
-
-        // 批量插入
-        saveBatch(gameList);
-        return gameList.size();
+        // 分块去重（每块一条 IN 查询）后批量插入
+        return catalogImportService.importGames(games);
     }
 
     /**
@@ -502,6 +537,7 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
         // 更新游戏的AppID
         game.setGameAppId(appId);
         boolean result = updateById(game);
+        gameCacheManager.evict(game.getGameId());
         
         if (result) {
             log.info("成功更新游戏AppID - 游戏ID: {}, 游戏名: {}, Steam URL: {}, AppID: {}", 
@@ -514,8 +550,87 @@ public class GameServiceImpl extends ServiceImpl<GameMapper, Game> implements Ga
         return result;
     }
 
-}
-
-
+    /**
+     * 开启秒杀模式
+     *
+     * @param gameId 游戏ID
+     * @return 是否开启成功
+     */
+    @Override
+    public boolean enableFlashSale(Long gameId) {
+        if (gameId == null || gameId <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "游戏ID参数错误");
+        }
+        Game game = getById(gameId);
+        if (game == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "游戏不存在");
+        }
+        if (game.getGameIsRemoved()) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "游戏已下架");
+        }
+        if (!flashSaleStockManager.enable(gameId)) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "该游戏已开启秒杀");
+        }
+        return true;
+    }
 
+    /**
+     * 关闭秒杀模式，剩余库存变化立即回写数据库
+     *
+     * @param gameId 游戏ID
+     * @return 是否关闭成功
+     */
+    @Override
+    public boolean disableFlashSale(Long gameId) {
+        if (gameId == null || gameId <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "游戏ID参数错误");
+        }
+        if (!flashSaleStockManager.isEnabled(gameId)) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "该游戏未开启秒杀");
+        }
+        flashSaleStockManager.disable(gameId);
+        gameCacheManager.evict(gameId);
+        return true;
+    }
 
+    /**
+     * 核对秒杀库存（MySQL库存 - 待同步量 - 同步中量 应等于 Redis库存）
+     *
+     * @param gameId 游戏ID
+     * @return 核对结果
+     */
+    @Override
+    public FlashSaleStockVO checkFlashSaleStock(Long gameId) {
+        if (gameId == null || gameId <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "游戏ID参数错误");
+        }
+        // 读取期间若有下单或回写，Redis与MySQL的读取不在同一时刻，重试几次
+        FlashSaleStockVO vo = null;
+        for (int i = 0; i < 3; i++) {
+            long[] before = flashSaleStockManager.snapshot(gameId);
+            if (before[0] < 0) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "该游戏未开启秒杀");
+            }
+            Game game = getById(gameId);
+            if (game == null) {
+                throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "游戏不存在");
+            }
+            long[] after = flashSaleStockManager.snapshot(gameId);
+            vo = new FlashSaleStockVO();
+            vo.setGameId(gameId);
+            vo.setRedisStock(after[0]);
+            vo.setPendingDelta(after[1]);
+            vo.setInflightDelta(after[2]);
+            vo.setDbStock(game.getGameStock());
+            vo.setConsistent(game.getGameStock() - after[1] - after[2] == after[0]);
+            // 一致，或前后快照相同（期间无并发变化）时结果可信
+            if (vo.getConsistent() || Arrays.equals(before, after)) {
+                break;
+            }
+        }
+        if (!vo.getConsistent()) {
+            log.warn("秒杀库存核对不一致: {}", vo);
+        }
+        return vo;
+    }
+}
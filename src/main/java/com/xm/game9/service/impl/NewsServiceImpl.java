@@ -1,22 +1,35 @@
 package com.xm.game9.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.xm.game9.common.ErrorCode;
 import com.xm.game9.exception.BusinessException;
 import com.xm.game9.mapper.NewsMapper;
+import com.xm.game9.mapper.NewsTagMapper;
 import com.xm.game9.model.domain.News;
 import com.xm.game9.model.domain.Game;
-import com.xm.game9.mapper.GameMapper;
+import com.xm.game9.model.domain.NewsTag;
+import com.xm.game9.model.vo.NewsSearchVO;
 import com.xm.game9.service.NewsService;
+import com.xm.game9.utils.GameCacheManager;
+import com.xm.game9.utils.ImagePipeline;
+import com.xm.game9.utils.NewsSearchIndex;
+import com.xm.game9.utils.NewsTagIndex;
+import com.xm.game9.utils.NewsViewCounter;
 import jakarta.annotation.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -42,7 +55,19 @@ public class NewsServiceImpl extends ServiceImpl<NewsMapper, News>
     private NewsMapper newsMapper;
 
     @Resource
-    private GameMapper gameMapper;
+    private GameCacheManager gameCacheManager;
+
+    @Resource
+    private NewsViewCounter newsViewCounter;
+
+    @Resource
+    private NewsSearchIndex newsSearchIndex;
+
+    @Resource
+    private NewsTagIndex newsTagIndex;
+
+    @Resource
+    private NewsTagMapper newsTagMapper;
 
     /**
      * 解析和验证自定义标签
@@ -56,11 +81,13 @@ public class NewsServiceImpl extends ServiceImpl<NewsMapper, News>
         }
 
         List<String> tags = new java.util.ArrayList<>();
+        // 大小写不同的标签视为同一个，保留第一次出现的写法
+        Set<String> normalized = new HashSet<>();
         Matcher matcher = TAG_PATTERN.matcher(tagsText);
         
         while (matcher.find()) {
             String tag = matcher.group(1);
-            if (tag.length() <= 20) { // 限制标签长度
+            if (tag.length() <= 20 && normalized.add(NewsTagIndex.normalize(tag))) { // 限制标签长度
                 tags.add("#" + tag);
             }
         }
@@ -78,22 +105,13 @@ public class NewsServiceImpl extends ServiceImpl<NewsMapper, News>
     }
 
     /**
-     * 从JSON格式的标签字符串中提取标签列表
+     * 资讯变更后同步检索索引和标签索引
      *
-     * @param tagsJson JSON格式的标签字符串
-     * @return 标签列表
+     * @param newsId 资讯ID
      */
-    private List<String> extractTagsFromJson(String tagsJson) {
-        if (!StringUtils.hasText(tagsJson)) {
-            return new java.util.ArrayList<>();
-        }
-
-        try {
-            return objectMapper.readValue(tagsJson, List.class);
-        } catch (Exception e) {
-            log.error("解析标签JSON失败", e);
-            return new java.util.ArrayList<>();
-        }
+    private void onNewsChanged(Long newsId) {
+        newsSearchIndex.refreshAfterCommit(newsId);
+        newsTagIndex.sync(newsId);
     }
 
     /**
@@ -133,7 +151,7 @@ public class NewsServiceImpl extends ServiceImpl<NewsMapper, News>
 
         // 如果设置了游戏标签，自动填充游戏标签名称
         if (news.getNewsGameTag() != null && news.getNewsGameTag() > 0) {
-            Game game = gameMapper.selectById(news.getNewsGameTag());
+            Game game = gameCacheManager.getGame(news.getNewsGameTag());
             if (game != null) {
                 news.setNewsGameTagName(game.getGameName());
             }
@@ -149,6 +167,7 @@ public class NewsServiceImpl extends ServiceImpl<NewsMapper, News>
         if (!saveResult) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "资讯保存失败");
         }
+        onNewsChanged(news.getNewsId());
         return news.getNewsId();
     }
 
@@ -197,7 +216,7 @@ public class NewsServiceImpl extends ServiceImpl<NewsMapper, News>
         updateNews.setNewsGameTag(news.getNewsGameTag());
         // 如果设置了游戏标签，自动填充游戏标签名称
         if (news.getNewsGameTag() != null && news.getNewsGameTag() > 0) {
-            Game game = gameMapper.selectById(news.getNewsGameTag());
+            Game game = gameCacheManager.getGame(news.getNewsGameTag());
             if (game != null) {
                 updateNews.setNewsGameTagName(game.getGameName());
             }
@@ -219,6 +238,7 @@ public class NewsServiceImpl extends ServiceImpl<NewsMapper, News>
         if (!updateResult) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "更新资讯失败");
         }
+        onNewsChanged(news.getNewsId());
         return true;
     }
 
@@ -259,7 +279,9 @@ public class NewsServiceImpl extends ServiceImpl<NewsMapper, News>
         updateNews.setNewsPublishTime(new Date());
         updateNews.setNewsUpdateTime(new Date());
 
-        return this.updateById(updateNews);
+        boolean result = this.updateById(updateNews);
+        onNewsChanged(id);
+        return result;
     }
 
     /**
@@ -281,7 +303,9 @@ public class NewsServiceImpl extends ServiceImpl<NewsMapper, News>
         updateNews.setNewsUpdateTime(new Date());
         // 发布时间不清空，保留历史记录
 
-        return this.updateById(updateNews);
+        boolean result = this.updateById(updateNews);
+        onNewsChanged(id);
+        return result;
     }
 
     /**
@@ -394,7 +418,9 @@ public class NewsServiceImpl extends ServiceImpl<NewsMapper, News>
         updateNews.setNewsIsDelete(1);
         updateNews.setNewsUpdateTime(new Date());
 
-        return this.updateById(updateNews);
+        boolean result = this.updateById(updateNews);
+        onNewsChanged(id);
+        return result;
     }
 
     /**
@@ -408,14 +434,28 @@ public class NewsServiceImpl extends ServiceImpl<NewsMapper, News>
             log.warn("Attempted to increment views for invalid news ID: " + id);
             return; // 或者抛出异常，取决于业务需求
         }
-        // 使用 LambdaUpdateWrapper 原子性更新浏览次数
-        LambdaUpdateWrapper<News> updateWrapper = new LambdaUpdateWrapper<>();
-        updateWrapper.eq(News::getNewsId, id)
-                .setSql("newsViews = newsViews + 1");
-        boolean updated = this.update(updateWrapper);
-        if (!updated) {
-            // 可能资讯不存在或已被删除，记录日志
-            log.warn("Failed to increment views for news ID: " + id + ". News might not exist or be deleted.");
+        // 先累加到缓冲计数器，由定时任务批量写库，避免热点资讯的行锁竞争
+        newsViewCounter.increment(id);
+    }
+
+    /**
+     * 将尚未写库的浏览量合并到资讯的浏览次数中
+     *
+     * @param newsList 资讯列表
+     */
+    @Override
+    public void mergePendingViews(Collection<News> newsList) {
+        if (newsList == null || newsList.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> pending = newsViewCounter.getPending(
+                newsList.stream().map(News::getNewsId).toList());
+        for (News news : newsList) {
+            Long delta = pending.get(news.getNewsId());
+            if (delta != null) {
+                int views = news.getNewsViews() == null ? 0 : news.getNewsViews();
+                news.setNewsViews((int) Math.min(Integer.MAX_VALUE, views + delta));
+            }
         }
     }
 
@@ -497,16 +537,26 @@ public class NewsServiceImpl extends ServiceImpl<NewsMapper, News>
             pageSize = 10;
         }
 
-        // 确保标签格式正确（以#开头）
-        String tagQuery = customTag.startsWith("#") ? customTag : "#" + customTag;
+        // 与关联表中的标签一样规范化（以#开头、小写）
+        String tagQuery = NewsTagIndex.normalize(customTag);
 
-        LambdaQueryWrapper<News> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.like(News::getNewsCustomTags, tagQuery)
-                .eq(News::getNewsStatus, 1) // 只查询已发布的资讯
-                .eq(News::getNewsIsDelete, 0) // 未删除的资讯
-                .orderByDesc(News::getNewsPublishTime); // 按发布时间降序
+        // 关联表只包含已发布且未删除的资讯，按 (tagName, newsPublishTime) 索引分页
+        Page<NewsTag> tagPage = newsTagMapper.selectPage(new Page<>(pageNum, pageSize),
+                new LambdaQueryWrapper<NewsTag>()
+                        .select(NewsTag::getNewsId)
+                        .eq(NewsTag::getTagName, tagQuery)
+                        .orderByDesc(NewsTag::getNewsPublishTime)
+                        .orderByDesc(NewsTag::getNewsId));
 
-        return this.page(new Page<>(pageNum, pageSize), queryWrapper);
+        Page<News> result = new Page<>(pageNum, pageSize, tagPage.getTotal());
+        List<Long> newsIds = tagPage.getRecords().stream().map(NewsTag::getNewsId).toList();
+        if (newsIds.isEmpty()) {
+            return result;
+        }
+        Map<Long, News> newsMap = this.listByIds(newsIds).stream()
+                .collect(Collectors.toMap(News::getNewsId, Function.identity()));
+        result.setRecords(newsIds.stream().map(newsMap::get).filter(Objects::nonNull).toList());
+        return result;
     }
 
     /**
@@ -520,35 +570,12 @@ public class NewsServiceImpl extends ServiceImpl<NewsMapper, News>
         if (limit == null || limit <= 0) {
             limit = 20;
         }
-
-        // 查询所有已发布资讯的自定义标签
-        LambdaQueryWrapper<News> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.select(News::getNewsCustomTags)
-                .isNotNull(News::getNewsCustomTags)
-                .eq(News::getNewsStatus, 1)
-                .eq(News::getNewsIsDelete, 0);
-
-        List<News> newsList = this.list(queryWrapper);
-        
-        // 统计标签频率
-        java.util.Map<String, Integer> tagCountMap = new java.util.HashMap<>();
-        for (News news : newsList) {
-            List<String> tags = extractTagsFromJson(news.getNewsCustomTags());
-            for (String tag : tags) {
-                tagCountMap.put(tag, tagCountMap.getOrDefault(tag, 0) + 1);
-            }
-        }
-
-        // 按使用频率排序并返回前N个标签
-        return tagCountMap.entrySet().stream()
-                .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
-                .limit(limit)
-                .map(java.util.Map.Entry::getKey)
-                .collect(java.util.stream.Collectors.toList());
+        // 标签计数由资讯变更增量维护在 Redis 有序集合中
+        return newsTagIndex.getHotTags(limit);
     }
 
     /**
-     * 搜索资讯
+     * 搜索资讯（检索索引按相关度排序；索引尚未构建完成时回退到数据库模糊查询）
      *
      * @param keyword  搜索关键词
      * @param pageNum  页码
@@ -556,26 +583,85 @@ public class NewsServiceImpl extends ServiceImpl<NewsMapper, News>
      * @return 搜索结果
      */
     @Override
-    public Page<News> searchNews(String keyword, Integer pageNum, Integer pageSize) {
+    public Page<NewsSearchVO> searchNews(String keyword, Integer pageNum, Integer pageSize) {
         if (!StringUtils.hasText(keyword)) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "搜索关键词不能为空");
         }
-        
-        // 构建查询条件
-        LambdaQueryWrapper<News> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(News::getNewsStatus, 1)  // 只搜索已发布的资讯
-                   .eq(News::getNewsIsDelete, 0)  // 排除已删除的资讯
-                   .and(wrapper -> wrapper
-                       .like(News::getNewsTitle, keyword)  // 标题包含关键词
-                       .or()
-                       .like(News::getNewsSummary, keyword)  // 摘要包含关键词
-                       .or()
-                       .like(News::getNewsContent, keyword)  // 内容包含关键词
-                   )
-                   .orderByDesc(News::getNewsPublishTime);  // 按发布时间降序排序
-        
-        // 执行分页查询
-        Page<News> page = new Page<>(pageNum, pageSize);
-        return this.page(page, queryWrapper);
+        if (pageNum == null || pageNum < 1) {
+            pageNum = 1;
+        }
+        if (pageSize == null || pageSize < 1) {
+            pageSize = 10;
+        }
+
+        Page<NewsSearchVO> result = new Page<>(pageNum, pageSize);
+        List<News> records;
+        if (newsSearchIndex.isReady()) {
+            NewsSearchIndex.SearchResult hits = newsSearchIndex.search(keyword, (pageNum - 1) * pageSize, pageSize);
+            result.setTotal(hits.total());
+            if (hits.newsIds().isEmpty()) {
+                return result;
+            }
+            Map<Long, News> newsMap = this.listByIds(hits.newsIds()).stream()
+                    .collect(Collectors.toMap(News::getNewsId, Function.identity()));
+            // 按相关度顺序输出，跳过索引尚未同步的已下线资讯
+            records = hits.newsIds().stream()
+                    .map(newsMap::get)
+                    .filter(news -> news != null && news.getNewsStatus() == 1 && news.getNewsIsDelete() == 0)
+                    .toList();
+        } else {
+            LambdaQueryWrapper<News> queryWrapper = new LambdaQueryWrapper<>();
+            queryWrapper.eq(News::getNewsStatus, 1)  // 只搜索已发布的资讯
+                       .eq(News::getNewsIsDelete, 0)  // 排除已删除的资讯
+                       .and(wrapper -> wrapper
+                           .like(News::getNewsTitle, keyword)  // 标题包含关键词
+                           .or()
+                           .like(News::getNewsSummary, keyword)  // 摘要包含关键词
+                           .or()
+                           .like(News::getNewsContent, keyword)  // 内容包含关键词
+                       )
+                       .orderByDesc(News::getNewsPublishTime);  // 按发布时间降序排序
+            Page<News> page = this.page(new Page<>(pageNum, pageSize), queryWrapper);
+            result.setTotal(page.getTotal());
+            records = page.getRecords();
+        }
+
+        mergePendingViews(records);
+        result.setRecords(records.stream().map(news -> toSearchVO(news, keyword)).toList());
+        return result;
+    }
+
+    private NewsSearchVO toSearchVO(News news, String keyword) {
+        NewsSearchVO vo = new NewsSearchVO();
+        vo.setNewsId(news.getNewsId());
+        vo.setNewsTitle(news.getNewsTitle());
+        vo.setNewsSummary(news.getNewsSummary());
+        vo.setNewsAuthorId(news.getNewsAuthorId());
+        vo.setNewsCoverImage(news.getNewsCoverImage());
+        vo.setNewsCoverVariants(ImagePipeline.variantsOf(news.getNewsCoverImage()));
+        vo.setNewsPublishTime(news.getNewsPublishTime());
+        vo.setNewsViews(news.getNewsViews());
+        vo.setNewsGameTag(news.getNewsGameTag());
+        vo.setNewsGameTagName(news.getNewsGameTagName());
+        vo.setNewsCustomTags(news.getNewsCustomTags());
+        vo.setHighlightTitle(NewsSearchIndex.highlight(news.getNewsTitle(), keyword, false));
+        String summary = NewsSearchIndex.highlight(news.getNewsSummary(), keyword, false);
+        if (summary != null && summary.contains("<em>")) {
+            vo.setHighlightFragment(summary);
+        } else {
+            String fragment = NewsSearchIndex.highlight(news.getNewsContent(), keyword, true);
+            vo.setHighlightFragment(fragment != null && fragment.contains("<em>") ? fragment : summary);
+        }
+        return vo;
+    }
+
+    /**
+     * 重建资讯检索索引（所有节点）
+     *
+     * @return 本节点收录的资讯数
+     */
+    @Override
+    public int rebuildSearchIndex() {
+        return newsSearchIndex.rebuildAll();
     }
-}
\ No newline at end of file
+}
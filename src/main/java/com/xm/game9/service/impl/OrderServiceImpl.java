@@ -19,6 +19,11 @@ import com.xm.game9.service.OrderService;
 import com.xm.game9.service.WalletService;
 import com.xm.game9.service.UserService;
 import com.xm.game9.service.UserLibraryService;
+import com.xm.game9.utils.EntityBatchLoader;
+import com.xm.game9.utils.FlashSaleStockManager;
+import com.xm.game9.utils.GameCacheManager;
+import com.xm.game9.utils.IdGenerator;
+import com.xm.game9.utils.OrderTimeoutManager;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,11 +31,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * 订单服务实现类
@@ -60,6 +66,21 @@ public class OrderServiceImpl extends ServiceImpl<OrdersMapper, Orders> implemen
     @Autowired
     private UserLibraryService userLibraryService;
 
+    @Autowired
+    private GameCacheManager gameCacheManager;
+
+    @Autowired
+    private FlashSaleStockManager flashSaleStockManager;
+
+    @Autowired
+    private OrderTimeoutManager orderTimeoutManager;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private EntityBatchLoader entityBatchLoader;
+
     private static final BigDecimal ZERO = new BigDecimal("0.00");
 
     @Override
@@ -91,7 +112,7 @@ public class OrderServiceImpl extends ServiceImpl<OrdersMapper, Orders> implemen
         }
 
         // 检查游戏是否存在
-        Game game = gameMapper.selectById(gameId);
+        Game game = gameCacheManager.getGame(gameId);
         if (game == null) {
             throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "游戏不存在");
         }
@@ -123,6 +144,9 @@ public class OrderServiceImpl extends ServiceImpl<OrdersMapper, Orders> implemen
         log.info("创建订单成功 - userId: {}, gameId: {}, orderNo: {}, amount: {}", 
                 userId, gameId, order.getOrderNo(), orderAmount);
 
+        // 登记支付超时，到期未支付将自动取消并释放库存
+        orderTimeoutManager.schedule(order.getOrderId());
+
         return convertToOrderVO(order);
     }
 
@@ -168,9 +192,7 @@ public class OrderServiceImpl extends ServiceImpl<OrdersMapper, Orders> implemen
                .orderByDesc(Orders::getCreatedTime);
 
         List<Orders> orders = list(wrapper);
-        return orders.stream()
-                .map(this::convertToOrderVO)
-                .collect(Collectors.toList());
+        return convertToOrderVOList(orders);
     }
 
     @Override
@@ -206,9 +228,9 @@ public class OrderServiceImpl extends ServiceImpl<OrdersMapper, Orders> implemen
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "订单已支付或状态已改变，请刷新页面");
         }
 
-        // 锁定游戏记录，确保库存信息的一致性
-        Game lockedGame = gameMapper.selectByIdForUpdate(lockedOrder.getGameId());
-        if (lockedGame == null) {
+        // 库存已在下单时预占，这里只需确认游戏存在，无需再锁定游戏行（热门游戏的行锁会让支付串行化）
+        Game game = gameCacheManager.getGame(lockedOrder.getGameId());
+        if (game == null) {
             throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "游戏不存在");
         }
 
@@ -283,6 +305,7 @@ public class OrderServiceImpl extends ServiceImpl<OrdersMapper, Orders> implemen
         if (!updated) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "订单状态更新失败");
         }
+        orderTimeoutManager.remove(orderId);
 
         // 支付成功后，将游戏添加到用户游戏库
         try {
@@ -320,24 +343,94 @@ public class OrderServiceImpl extends ServiceImpl<OrdersMapper, Orders> implemen
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "订单状态不正确，无法取消");
         }
 
-        // 更新订单状态
-        order.setOrderStatus(3); // 已取消
-        order.setUpdateTime(LocalDateTime.now());
-
-        boolean updated = updateById(order);
+        // 更新订单状态（带状态条件，避免并发取消重复释放库存）
+        boolean updated = lambdaUpdate()
+                .eq(Orders::getOrderId, orderId)
+                .eq(Orders::getOrderStatus, 1)
+                .set(Orders::getOrderStatus, 3) // 已取消
+                .set(Orders::getUpdateTime, LocalDateTime.now())
+                .update();
         
-        // 释放预占的库存
+        // 释放预占的库存（秒杀模式下在事务提交后归还到 Redis）
         if (updated) {
-            boolean stockReleased = gameMapper.releaseStock(order.getGameId());
+            boolean stockReleased = flashSaleStockManager.releaseAfterCommit(order.getGameId());
+            if (!stockReleased && gameMapper.releaseStock(order.getGameId())) {
+                // 数据库库存已变化，事务提交后失效游戏缓存
+                gameCacheManager.evict(order.getGameId());
+                stockReleased = true;
+            }
             if (stockReleased) {
                 log.info("库存释放成功 - orderId: {}, gameId: {}", orderId, order.getGameId());
             }
+            orderTimeoutManager.remove(orderId);
             log.info("订单取消成功 - orderId: {}, orderNo: {}", orderId, order.getOrderNo());
         }
         
         return updated;
     }
 
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int cancelExpiredOrders(List<Long> orderIds) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime deadline = now.minus(Duration.ofMillis(orderTimeoutManager.getPayTimeoutMillis()));
+
+        // 锁定仍处于待支付且已超时的订单，与支付流程互斥
+        List<Orders> expiredOrders = lambdaQuery()
+                .in(Orders::getOrderId, orderIds)
+                .eq(Orders::getOrderStatus, 1)
+                .le(Orders::getCreatedTime, deadline)
+                .last("FOR UPDATE")
+                .list();
+        if (expiredOrders.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> expiredIds = expiredOrders.stream().map(Orders::getOrderId).toList();
+        lambdaUpdate()
+                .in(Orders::getOrderId, expiredIds)
+                .eq(Orders::getOrderStatus, 1)
+                .set(Orders::getOrderStatus, 3) // 已取消
+                .set(Orders::getCancelReason, "支付超时，系统自动取消")
+                .set(Orders::getUpdateTime, now)
+                .update();
+
+        // 按游戏合并，每个游戏只释放一次库存
+        Map<Long, Integer> releaseCounts = new HashMap<>();
+        for (Orders order : expiredOrders) {
+            releaseCounts.merge(order.getGameId(), 1, Integer::sum);
+        }
+        List<Long> releasedInDatabase = new ArrayList<>();
+        releaseCounts.forEach((gameId, count) -> {
+            if (!flashSaleStockManager.releaseAfterCommit(gameId, count)) {
+                gameMapper.releaseStockBatch(gameId, count);
+                releasedInDatabase.add(gameId);
+            }
+        });
+        gameCacheManager.evict(releasedInDatabase);
+
+        log.info("超时订单自动取消 - 订单数: {}, 涉及游戏数: {}", expiredIds.size(), releaseCounts.size());
+        return expiredIds.size();
+    }
+
+    @Override
+    public List<Long> listExpiredUnpaidOrderIds(int limit) {
+        LocalDateTime deadline = LocalDateTime.now()
+                .minus(Duration.ofMillis(orderTimeoutManager.getPayTimeoutMillis()));
+        return lambdaQuery()
+                .select(Orders::getOrderId)
+                .eq(Orders::getOrderStatus, 1)
+                .le(Orders::getCreatedTime, deadline)
+                .last("LIMIT " + limit)
+                .list()
+                .stream()
+                .map(Orders::getOrderId)
+                .toList();
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public boolean refundOrder(Long orderId, String reason) {
@@ -444,10 +537,8 @@ public class OrderServiceImpl extends ServiceImpl<OrdersMapper, Orders> implemen
 
     @Override
     public String generateOrderNo() {
-        // 生成格式：ORDER + 时间戳 + 随机数
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        String random = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        return "ORDER" + timestamp + random;
+        // 生成格式：ORDER + 雪花ID，按时间递增，避免随机值导致唯一索引页分裂
+        return idGenerator.nextId("ORDER");
     }
 
     /**
@@ -457,37 +548,57 @@ public class OrderServiceImpl extends ServiceImpl<OrdersMapper, Orders> implemen
      * @return 订单视图对象
      */
     private OrderVO convertToOrderVO(Orders order) {
-        OrderVO orderVO = new OrderVO();
-        BeanUtils.copyProperties(order, orderVO);
-        
-        // 设置用户名
-        User user = userService.getById(order.getUserId());
-        if (user != null) {
-            orderVO.setUserName(user.getUserName());
+        return convertToOrderVOList(List.of(order)).get(0);
+    }
+
+    /**
+     * 批量转换为订单视图对象（用户、游戏各一次批量查询）
+     *
+     * @param orders 订单实体列表
+     * @return 订单视图对象列表
+     */
+    private List<OrderVO> convertToOrderVOList(List<Orders> orders) {
+        if (orders.isEmpty()) {
+            return new ArrayList<>();
         }
-        
-        // 设置游戏名称
+        Map<Long, User> users = entityBatchLoader.loadUsers(EntityBatchLoader.collectIds(orders, Orders::getUserId));
+        Map<Long, Game> games = Map.of();
         try {
-            Game game = gameMapper.selectById(order.getGameId());
+            games = entityBatchLoader.loadGames(EntityBatchLoader.collectIds(orders, Orders::getGameId));
+        } catch (Exception e) {
+            log.warn("批量获取游戏名称失败", e);
+        }
+
+        List<OrderVO> orderVOList = new ArrayList<>(orders.size());
+        for (Orders order : orders) {
+            OrderVO orderVO = new OrderVO();
+            BeanUtils.copyProperties(order, orderVO);
+
+            // 设置用户名
+            User user = users.get(order.getUserId());
+            if (user != null) {
+                orderVO.setUserName(user.getUserName());
+            }
+
+            // 设置游戏名称
+            Game game = games.get(order.getGameId());
             if (game != null) {
                 orderVO.setGameName(game.getGameName());
             }
-        } catch (Exception e) {
-            log.warn("获取游戏名称失败 - gameId: {}", order.getGameId(), e);
-        }
-        
-        // 设置订单状态描述
-        if (order.getOrderStatus() != null) {
-            String statusDesc = switch (order.getOrderStatus()) {
-                case 1 -> "待支付";
-                case 2 -> "已支付";
-                case 3 -> "已取消";
-                case 4 -> "已退款";
-                default -> "未知";
-            };
-            orderVO.setOrderStatusDesc(statusDesc);
+
+            // 设置订单状态描述
+            if (order.getOrderStatus() != null) {
+                String statusDesc = switch (order.getOrderStatus()) {
+                    case 1 -> "待支付";
+                    case 2 -> "已支付";
+                    case 3 -> "已取消";
+                    case 4 -> "已退款";
+                    default -> "未知";
+                };
+                orderVO.setOrderStatusDesc(statusDesc);
+            }
+            orderVOList.add(orderVO);
         }
-        
-        return orderVO;
+        return orderVOList;
     }
 }
\ No newline at end of file
@@ -9,12 +9,19 @@ import com.xm.game9.model.domain.User;
 import com.xm.game9.model.request.admin.AdminUserUpdateRequest;
 import com.xm.game9.model.request.admin.BatchImportUsersRequest;
 import com.xm.game9.model.request.user.*;
+import com.xm.game9.model.vo.signin.SignInCalendarVO;
+import com.xm.game9.model.vo.signin.SignInStatsVO;
+import com.xm.game9.model.vo.signin.SignInStreakVO;
+import com.xm.game9.model.vo.signin.SignInYearSummaryVO;
+import com.xm.game9.service.CatalogImportService;
 import com.xm.game9.service.UserService;
 import com.xm.game9.utils.EmailUtil;
 import com.xm.game9.utils.EncryptionUtil;
+import com.xm.game9.utils.ImagePipeline;
+import com.xm.game9.utils.LoginUserCache;
 import com.xm.game9.utils.RedisUtil;
 import com.xm.game9.utils.SessionManager;
-import com.xm.game9.utils.UploadUtil;
+import com.xm.game9.utils.SignInBitmap;
 import com.xm.game9.utils.UserUtils;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
@@ -22,6 +29,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -30,10 +38,15 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.time.LocalDate;
-import java.time.Year;
+import java.time.YearMonth;
 import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import static com.xm.game9.constant.UserConstant.ADMIN_ROLE;
@@ -49,22 +62,33 @@ import static com.xm.game9.constant.UserConstant.USER_LOGIN_STATE;
 public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements UserService {
 
     private static final String VERIFY_CODE_PREFIX = "verify:code:";
+    /**
+     * 全站签到统计最大天数
+     */
+    private static final int MAX_SIGN_IN_STATS_DAYS = 31;
     private static final String SALT = "xm";
     private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
     @Resource
     private UserMapper userMapper;
     @Resource
+    private CatalogImportService catalogImportService;
+    @Resource
     private JavaMailSender javaMailSender;
     @Resource
-    private UploadUtil uploadUtil;
+    private ImagePipeline imagePipeline;
     @Value("${spring.mail.username}")
     private String emailFrom;
+    @Value("${game9.sign-in.retention-years:2}")
+    private int signInRetentionYears;
     @Resource
     private RedisUtil redisUtil;
     
     @Resource
     private SessionManager sessionManager;
 
+    @Resource
+    private LoginUserCache loginUserCache;
+
     // 初始化邮箱地址
     @PostConstruct
     public void init() {
@@ -254,6 +278,14 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
             throw new BusinessException(ErrorCode.NOT_LOGIN, "用户未登录");
         }
         
+        // 命中登录用户缓存时直接返回（用户变更、下线、登出时会广播失效）
+        String sessionId = request.getSession().getId();
+        User cachedUser = loginUserCache.get(sessionId, currentUser.getUserId());
+        if (cachedUser != null) {
+            return cachedUser;
+        }
+        long cacheVersion = loginUserCache.currentVersion();
+
         // 验证Session是否有效（防止在其他设备登录后，当前设备的Session仍然可用）
         if (!sessionManager.validateSession(currentUser.getUserId(), request)) {
             // 清除当前Session的登录状态
@@ -261,12 +293,13 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
             throw new BusinessException(ErrorCode.NOT_LOGIN, "账号已在其他设备登录，请重新登录");
         }
         
-        // 从数据库查询（追求性能的话可以注释，直接走缓存）
+        // 从数据库查询最新信息并放入缓存
         long userId = currentUser.getUserId();
         currentUser = getById(userId);
         if (currentUser == null) {
             throw new BusinessException(ErrorCode.USER_NOT_FOUND, "用户不存在");
         }
+        loginUserCache.put(sessionId, currentUser, cacheVersion);
         return currentUser;
     }
 
@@ -341,7 +374,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         user.setUserProfile(updateRequest.getUserProfile());
 
         log.info("[Service-用户信息修改] 用户ID:{}, 时间:{}", userId, java.time.LocalDateTime.now());
-        return updateById(user);
+        boolean updated = updateById(user);
+        loginUserCache.evictUser(userId);
+        return updated;
     }
 
     /**
@@ -394,7 +429,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         
         user.setUserIsAdmin(updateRequest.getUserIsAdmin());
 
-        return updateById(user);
+        boolean updated = updateById(user);
+        loginUserCache.evictUser(userId);
+        return updated;
     }
 
     /**
@@ -532,6 +569,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         // 更新成功后删除验证码
         boolean updated = updateById(user);
         if (updated) {
+            loginUserCache.evictUser(user.getUserId());
             redisUtil.delete(key);
             log.info("重置密码成功 - 邮箱: {}", resetRequest.getEmail());
         }
@@ -583,8 +621,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         }
 
         try {
-            // 4. 上传文件到阿里云OSS
-            String avatarUrl = uploadUtil.uploadR2(file);
+            // 4. 上传头像（按内容去重并生成缩放图）
+            String avatarUrl = imagePipeline.upload(file).getUrl();
 
             // 5. 更新用户头像URL
             User user = getById(userId);
@@ -597,6 +635,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
             if (!updated) {
                 throw new BusinessException(ErrorCode.USER_AVATAR_UPLOAD_ERROR, "更新用户头像失败");
             }
+            loginUserCache.evictUser(userId);
 
             return avatarUrl;
         } catch (IOException e) {
@@ -618,41 +657,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户列表为空");
         }
 
-        List<User> userList = new ArrayList<>();
-        for (BatchImportUsersRequest.UserImportInfo userInfo : users) {
-            // 参数校验
-            if (StringUtils.isAnyBlank(
-                    userInfo.getUserName(),
-                    userInfo.getUserEmail(),
-                    userInfo.getUserPassword())) {
-                log.warn("用户信息不完整: {}", userInfo);
-                continue;
-            }
-
-            // 检查用户名是否已存在
-            if (userMapper.selectByUserName(userInfo.getUserName()) != null) {
-                log.warn("用户名已存在: {}", userInfo.getUserName());
-                continue;
-            }
-
-            // 创建用户对象
-            User user = new User();
-            user.setUserName(userInfo.getUserName());
-            user.setUserEmail(userInfo.getUserEmail());
-            user.setUserPassword(passwordEncoder.encode(userInfo.getUserPassword()));
-            user.setUserPhone(userInfo.getUserPhone());
-            user.setUserIsAdmin(userInfo.getUserIsAdmin());
-
-            userList.add(user);
-        }
-
-        if (userList.isEmpty()) {
-            return 0;
-        }
-
-        // 批量插入
-        saveBatch(userList);
-        return userList.size();
+        // 分块去重（每块一条 IN 查询）、并行哈希密码后批量插入
+        return catalogImportService.importUsers(users);
     }
 
     /**
@@ -668,24 +674,25 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
 
         // 获取当前日期
         LocalDate today = LocalDate.now();
-        String key = String.format("sign:%d:%d", userId, today.getYear());
+        String key = signKey(userId, today.getYear());
         int dayOfYear = today.getDayOfYear() - 1; // 从0开始计数
 
         try {
-            // 判断是否已经签到
-            Boolean signed = redisUtil.getBit(key, dayOfYear);
-            if (Boolean.TRUE.equals(signed)) {
+            // 设置签到标记，SETBIT 返回旧值，可原子判断是否已经签到
+            if (redisUtil.setBit(key, dayOfYear, true)) {
                 throw new BusinessException(ErrorCode.OPERATION_ERROR, "今天已经签到过了");
             }
 
-            // 设置签到标记
-            redisUtil.setBit(key, dayOfYear, true);
+            // 全站当日签到位图（偏移量为用户ID），用于 BITCOUNT/BITOP 统计
+            String dayKey = signDayKey(today);
+            redisUtil.setBit(dayKey, Math.toIntExact(userId), true);
 
-            // 设置过期时间为下一年的1月1日
-            LocalDate firstDayOfNextYear = today.plusYears(1).withDayOfYear(1);
-            long expireSeconds = firstDayOfNextYear.atStartOfDay(ZoneId.systemDefault()).toEpochSecond()
-                    - System.currentTimeMillis() / 1000;
+            // 保留若干年，供连续签到和多年汇总使用
+            long expireAt = today.withDayOfYear(1).plusYears(1L + signInRetentionYears)
+                    .atStartOfDay(ZoneId.systemDefault()).toEpochSecond();
+            long expireSeconds = expireAt - System.currentTimeMillis() / 1000;
             redisUtil.expire(key, expireSeconds, TimeUnit.SECONDS);
+            redisUtil.expire(dayKey, expireSeconds, TimeUnit.SECONDS);
 
             log.info("用户签到成功 - userId: {}, date: {}", userId, today);
         } catch (BusinessException e) {
@@ -712,7 +719,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
             throw new BusinessException(ErrorCode.NULL_ERROR, "日期不能为空");
         }
 
-        String key = String.format("sign:%d:%d", userId, date.getYear());
+        String key = signKey(userId, date.getYear());
         int dayOfYear = date.getDayOfYear() - 1;
 
         try {
@@ -740,17 +747,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "年份不正确");
         }
 
-        String key = String.format("sign:%d:%d", userId, year);
-        List<LocalDate> signInDates = new ArrayList<>();
-
         try {
-            int daysInYear = Year.of(year).length();
-            for (int i = 0; i < daysInYear; i++) {
-                if (Boolean.TRUE.equals(redisUtil.getBit(key, i))) {
-                    signInDates.add(LocalDate.ofYearDay(year, i + 1));
-                }
-            }
-            return signInDates;
+            return loadSignInBitmaps(userId, year, year).get(0).signedDates();
         } catch (Exception e) {
             log.error("获取签到历史失败 - userId: {}, year: {}, error: {}", userId, year, e.getMessage());
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "获取签到历史失败");
@@ -774,11 +772,185 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         }
 
         try {
-            String key = String.format("sign:%d:%d", userId, year);
+            String key = signKey(userId, year);
             return redisUtil.bitCount(key);
         } catch (Exception e) {
             log.error("统计签到次数失败 - userId: {}, year: {}, error: {}", userId, year, e.getMessage());
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "统计签到次数失败");
         }
     }
+
+    /**
+     * 获取用户连续签到信息（保留期内的位图一次取回）
+     *
+     * @param userId 用户ID
+     * @return 连续签到信息
+     */
+    @Override
+    public SignInStreakVO getSignInStreak(Long userId) {
+        if (userId == null || userId <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户ID不合法");
+        }
+
+        LocalDate today = LocalDate.now();
+        int thisYear = today.getYear();
+        List<SignInBitmap> bitmaps = loadSignInBitmaps(userId, thisYear - signInRetentionYears, thisYear);
+        SignInBitmap current = bitmaps.get(bitmaps.size() - 1);
+
+        // 当前连续：今日未签到时从昨天开始往前数，跨年时继续数上一年的年末
+        boolean signedToday = current.isSigned(today);
+        LocalDate cursor = signedToday ? today : today.minusDays(1);
+        int currentStreak = 0;
+        for (int i = bitmaps.size() - 1; i >= 0; i--) {
+            SignInBitmap bitmap = bitmaps.get(i);
+            if (bitmap.getYear() > cursor.getYear()) {
+                continue;
+            }
+            int streak = bitmap.streakEndingAt(cursor.getDayOfYear());
+            currentStreak += streak;
+            if (streak < cursor.getDayOfYear()) {
+                break;
+            }
+            // 一直连续到1月1日，接着数上一年的12月31日
+            cursor = cursor.withDayOfYear(1).minusDays(1);
+        }
+
+        // 最长连续：年内最长，以及上一年末尾与下一年开头相接的情况
+        int longestStreak = 0;
+        int carry = 0;
+        for (SignInBitmap bitmap : bitmaps) {
+            longestStreak = Math.max(longestStreak, bitmap.longestStreak());
+            int leading = bitmap.leadingStreak();
+            if (leading == bitmap.lengthOfYear()) {
+                carry += leading;
+            } else {
+                longestStreak = Math.max(longestStreak, carry + leading);
+                carry = bitmap.trailingStreak();
+            }
+            longestStreak = Math.max(longestStreak, carry);
+        }
+
+        SignInStreakVO streakVO = new SignInStreakVO();
+        streakVO.setSignedToday(signedToday);
+        streakVO.setCurrentStreak(currentStreak);
+        streakVO.setLongestStreak(longestStreak);
+        return streakVO;
+    }
+
+    /**
+     * 获取用户某月的签到日历
+     *
+     * @param userId 用户ID
+     * @param year   年份
+     * @param month  月份
+     * @return 签到日历
+     */
+    @Override
+    public SignInCalendarVO getSignInCalendar(Long userId, int year, int month) {
+        if (userId == null || userId <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户ID不合法");
+        }
+        if (year <= 0 || month < 1 || month > 12) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "年份或月份不正确");
+        }
+
+        SignInBitmap bitmap = loadSignInBitmaps(userId, year, year).get(0);
+        List<Integer> signedDays = bitmap.signedDaysOfMonth(month);
+
+        SignInCalendarVO calendarVO = new SignInCalendarVO();
+        calendarVO.setYear(year);
+        calendarVO.setMonth(month);
+        calendarVO.setDaysInMonth(YearMonth.of(year, month).lengthOfMonth());
+        calendarVO.setSignedDays(signedDays);
+        calendarVO.setSignedCount(signedDays.size());
+        return calendarVO;
+    }
+
+    /**
+     * 获取用户最近几年的签到汇总
+     *
+     * @param userId 用户ID
+     * @param years  年数（不超过保留年数 + 1）
+     * @return 每年的汇总（按年份升序）
+     */
+    @Override
+    public List<SignInYearSummaryVO> getSignInSummary(Long userId, int years) {
+        if (userId == null || userId <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户ID不合法");
+        }
+        if (years <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "年数不正确");
+        }
+        int span = Math.min(years, signInRetentionYears + 1);
+        int thisYear = LocalDate.now().getYear();
+
+        List<SignInYearSummaryVO> summaries = new ArrayList<>(span);
+        for (SignInBitmap bitmap : loadSignInBitmaps(userId, thisYear - span + 1, thisYear)) {
+            SignInYearSummaryVO summaryVO = new SignInYearSummaryVO();
+            summaryVO.setYear(bitmap.getYear());
+            summaryVO.setSignedCount(bitmap.count());
+            summaryVO.setLongestStreak(bitmap.longestStreak());
+            summaryVO.setMonthlyCounts(bitmap.monthlyCounts());
+            summaries.add(summaryVO);
+        }
+        return summaries;
+    }
+
+    /**
+     * 全站签到统计（在 Redis 服务端 BITCOUNT/BITOP 完成，不拉取位图）
+     *
+     * @param startDate 开始日期
+     * @param endDate   结束日期
+     * @return 签到统计
+     */
+    @Override
+    public SignInStatsVO getSignInStats(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null || startDate.isAfter(endDate)) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "日期范围不正确");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) >= MAX_SIGN_IN_STATS_DAYS) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "统计范围不能超过" + MAX_SIGN_IN_STATS_DAYS + "天");
+        }
+
+        Map<LocalDate, Long> dailyCounts = new LinkedHashMap<>();
+        List<String> dayKeys = new ArrayList<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            String dayKey = signDayKey(date);
+            dayKeys.add(dayKey);
+            dailyCounts.put(date, redisUtil.bitCount(dayKey));
+        }
+
+        String tempKey = "sign:tmp:" + UUID.randomUUID();
+        SignInStatsVO statsVO = new SignInStatsVO();
+        statsVO.setStartDate(startDate);
+        statsVO.setEndDate(endDate);
+        statsVO.setDailyCounts(dailyCounts);
+        statsVO.setActiveUsers(redisUtil.bitOpCount(RedisStringCommands.BitOperation.OR, tempKey, dayKeys));
+        statsVO.setFullAttendanceUsers(redisUtil.bitOpCount(RedisStringCommands.BitOperation.AND, tempKey, dayKeys));
+        return statsVO;
+    }
+
+    /**
+     * 一次 MGET 取回 [fromYear, toYear] 各年的签到位图
+     */
+    private List<SignInBitmap> loadSignInBitmaps(Long userId, int fromYear, int toYear) {
+        List<String> keys = new ArrayList<>();
+        for (int year = fromYear; year <= toYear; year++) {
+            keys.add(signKey(userId, year));
+        }
+        List<byte[]> values = redisUtil.getBitmaps(keys);
+        List<SignInBitmap> bitmaps = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            bitmaps.add(new SignInBitmap(fromYear + i, values.get(i)));
+        }
+        return bitmaps;
+    }
+
+    private String signKey(Long userId, int year) {
+        return String.format("sign:%d:%d", userId, year);
+    }
+
+    private String signDayKey(LocalDate date) {
+        return "sign:day:" + date.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
 }
@@ -16,6 +16,7 @@ import com.xm.game9.model.vo.wallet.WalletVO;
 import com.xm.game9.model.vo.wallet.WalletTransactionVO;
 import com.xm.game9.service.WalletService;
 import com.xm.game9.service.UserService;
+import com.xm.game9.utils.EntityBatchLoader;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,8 +25,9 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * 钱包服务实现类
@@ -46,6 +48,9 @@ public class WalletServiceImpl extends ServiceImpl<WalletMapper, Wallet> impleme
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private EntityBatchLoader entityBatchLoader;
+
     private static final BigDecimal ZERO = new BigDecimal("0.00");
 
     @Override
@@ -276,9 +281,7 @@ public class WalletServiceImpl extends ServiceImpl<WalletMapper, Wallet> impleme
                .orderByDesc(WalletTransaction::getCreatedTime);
 
         List<WalletTransaction> transactions = walletTransactionMapper.selectList(wrapper);
-        return transactions.stream()
-                .map(this::convertToWalletTransactionVO)
-                .collect(Collectors.toList());
+        return convertToWalletTransactionVOList(transactions);
     }
 
     @Override
@@ -299,9 +302,7 @@ public class WalletServiceImpl extends ServiceImpl<WalletMapper, Wallet> impleme
                .orderByDesc(WalletTransaction::getCreatedTime);
 
         Page<WalletTransaction> result = walletTransactionMapper.selectPage(page, wrapper);
-        return result.getRecords().stream()
-                .map(this::convertToWalletTransactionVO)
-                .collect(Collectors.toList());
+        return convertToWalletTransactionVOList(result.getRecords());
     }
 
     @Override
@@ -512,18 +513,35 @@ public class WalletServiceImpl extends ServiceImpl<WalletMapper, Wallet> impleme
         return walletVO;
     }
 
+    /**
+     * 批量转换为钱包交易记录视图对象（用户信息一次批量查询）
+     *
+     * @param transactions 交易记录实体列表
+     * @return 交易记录视图对象列表
+     */
+    private List<WalletTransactionVO> convertToWalletTransactionVOList(List<WalletTransaction> transactions) {
+        // 交易记录通常属于同一用户，去重后只需查询一次
+        Map<Long, User> users = entityBatchLoader.loadUsers(
+                EntityBatchLoader.collectIds(transactions, WalletTransaction::getUserId));
+        List<WalletTransactionVO> voList = new ArrayList<>(transactions.size());
+        for (WalletTransaction transaction : transactions) {
+            voList.add(convertToWalletTransactionVO(transaction, users.get(transaction.getUserId())));
+        }
+        return voList;
+    }
+
     /**
      * 转换为钱包交易记录视图对象
      *
      * @param transaction 交易记录实体
+     * @param user        交易所属用户
      * @return 交易记录视图对象
      */
-    private WalletTransactionVO convertToWalletTransactionVO(WalletTransaction transaction) {
+    private WalletTransactionVO convertToWalletTransactionVO(WalletTransaction transaction, User user) {
         WalletTransactionVO vo = new WalletTransactionVO();
         BeanUtils.copyProperties(transaction, vo);
         
         // 设置用户名
-        User user = userService.getById(transaction.getUserId());
         if (user != null) {
             vo.setUserName(user.getUserName());
         }
@@ -0,0 +1,97 @@
+package com.xm.game9.utils;
+
+import jakarta.annotation.Resource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聊天消息投递水位
+ * <p>
+ * 每个用户记录一个已确认收到的最大消息ID（消息ID由全局ID生成器分配，按时间递增），
+ * 客户端确认后只前移水位，不再逐条更新 chat_message 的状态。
+ * 重连同步时从水位之后开始读取，水位丢失时退化为只同步未读消息。
+ * <ul>
+ *     <li>精度：消息ID超出 Lua 数字（双精度）的精确范围，水位以 19 位补零的字符串保存并按字典序比较</li>
+ *     <li>顺序：不同会话的消息分区落库，ID 较小的消息可能晚于 ID 较大的消息落库，
+ *     因此水位不会越过接收者尚未落库的最小消息ID（见 {@link ChatMessageWriteBuffer#inflightKey}），
+ *     这部分较大ID的消息在下次同步时会重复下发，客户端按消息ID去重</li>
+ * </ul>
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+public class ChatDeliveryWatermark {
+
+    private static final String KEY_PREFIX = "chat:sync:watermark:";
+
+    /**
+     * 水位过期时间（秒），长期未登录的用户过期后按未读消息同步
+     */
+    private static final long KEY_TTL_SECONDS = TimeUnit.DAYS.toSeconds(30);
+
+    /**
+     * 只在新水位大于当前水位时写入，且不越过未落库的最小消息ID，返回写入后的水位（原样返回字符串）
+     * <p>
+     * KEYS: 水位, 未落库消息索引；ARGV: 19 位补零的新水位, ttl
+     */
+    private static final DefaultRedisScript<String> ADVANCE_SCRIPT = new DefaultRedisScript<>("""
+            local function pad(s)
+                return string.rep('0', 19 - #s) .. s
+            end
+            local function decrement(s)
+                local i = #s
+                while string.byte(s, i) == 48 do
+                    i = i - 1
+                end
+                return string.sub(s, 1, i - 1) .. string.char(string.byte(s, i) - 1) .. string.rep('9', #s - i)
+            end
+            local cursor = ARGV[1]
+            local pending = redis.call('ZRANGE', KEYS[2], 0, 0)[1]
+            if pending then
+                pending = string.sub(pending, 1, 19)
+                if cursor >= pending then
+                    cursor = decrement(pending)
+                end
+            end
+            local current = redis.call('GET', KEYS[1])
+            current = current and pad(current) or ''
+            if cursor > current then
+                current = cursor
+                redis.call('SET', KEYS[1], cursor)
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            return current
+            """, String.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 获取用户的投递水位
+     *
+     * @param userId 用户ID
+     * @return 已确认的最大消息ID，没有记录时为空
+     */
+    public Long get(Long userId) {
+        String value = stringRedisTemplate.opsForValue().get(KEY_PREFIX + userId);
+        return value == null ? null : Long.valueOf(value);
+    }
+
+    /**
+     * 前移用户的投递水位（不会回退，也不会越过尚未落库的消息）
+     *
+     * @param userId 用户ID
+     * @param cursor 已确认收到的最大消息ID
+     * @return 前移后的水位，可能小于 cursor
+     */
+    public long advance(Long userId, long cursor) {
+        String watermark = stringRedisTemplate.execute(ADVANCE_SCRIPT,
+                List.of(KEY_PREFIX + userId, ChatMessageWriteBuffer.inflightKey(userId)),
+                String.format("%019d", Math.max(cursor, 0)), String.valueOf(KEY_TTL_SECONDS));
+        return watermark == null ? cursor : Long.parseLong(watermark);
+    }
+}
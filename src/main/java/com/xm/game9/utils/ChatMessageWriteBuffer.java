@@ -0,0 +1,548 @@
+package com.xm.game9.utils;
+
+import com.xm.game9.model.domain.ChatMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聊天消息写后缓冲（Write-Behind）
+ * <p>
+ * 发送消息时只写入 Redis Stream 作为预写日志（WAL），随后立即推送给接收者；
+ * 后台任务按批从 Stream 读取，使用 JDBC 批量写入 chat_message 并合并更新 chat_session，
+ * 数据库事务提交后再 XACK/XDEL。
+ * <ul>
+ *     <li>持久性：消息写入 Stream 成功后才向发送者确认，Redis 不可用时由调用方同步落库</li>
+ *     <li>顺序：按会话双方哈希分区，每个分区同一时刻只有一个节点持锁写入，每批写入前续期分区锁，续期失败立即停止，
+ *     会话内严格按 Stream 顺序落库</li>
+ *     <li>崩溃恢复：已读取未确认的记录保留在消费组的待处理列表中，每个节点使用自己的消费者名，
+ *     取得分区锁后先把其他消费者（通常是已崩溃的节点）的待处理记录认领过来，再优先重放；
+ *     消息ID预先分配，写入前先查出已存在的消息跳过，插入使用 INSERT IGNORE 兜底，重放不会产生重复消息或重复计入会话</li>
+ *     <li>毒记录：整批写入因非暂时性错误失败时逐条重试，仍失败的记录移入死信 Stream {@code chat:wal:dead} 后确认删除，
+ *     不会阻塞所在分区</li>
+ *     <li>未落库索引：每个接收者一个有序集合记录已写入预写日志、尚未落库的消息，投递水位不会越过其中最小的消息ID</li>
+ *     <li>未读数：由 {@link ChatUnreadCounter} 在 Redis 中维护并定期写回，这里只在新建会话时写入初始值</li>
+ * </ul>
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class ChatMessageWriteBuffer {
+
+    /**
+     * Stream key 前缀，后接分区号
+     */
+    private static final String STREAM_KEY_PREFIX = "chat:wal:";
+
+    /**
+     * 死信 Stream：无法写入数据库的记录
+     */
+    private static final String DEAD_LETTER_KEY = "chat:wal:dead";
+
+    /**
+     * 死信 Stream 保留的最大记录数
+     */
+    private static final long DEAD_LETTER_MAX_LEN = 10_000;
+
+    /**
+     * 分区写入锁 key 前缀
+     */
+    private static final String LOCK_KEY_PREFIX = "chat:wal:lock:";
+
+    /**
+     * 接收者未落库消息索引 key 前缀，后接接收者ID
+     * <p>
+     * 有序集合，分值均为 0，成员为 {@code 19位补零消息ID:发送者ID}，按字典序即按消息ID排序
+     */
+    private static final String INFLIGHT_KEY_PREFIX = "chat:wal:inflight:";
+
+    /**
+     * 未落库消息索引过期时间（秒），只用于兜底清理无法解析而被丢弃的记录
+     */
+    private static final long INFLIGHT_TTL_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    /**
+     * 消费组名称
+     */
+    private static final String GROUP = "chat-writer";
+
+    /**
+     * 分区锁持有时间（毫秒），需大于单批写入耗时，每批写入前续期
+     */
+    private static final long LOCK_TTL_MILLIS = 30_000L;
+
+    /**
+     * 每次认领其他消费者待处理记录的数量
+     */
+    private static final int CLAIM_BATCH_SIZE = 1000;
+
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """, Long.class);
+
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * 写入预写日志并登记到接收者的未落库消息索引，KEYS: stream, inflight；ARGV: 索引成员, ttl, 字段, 值, ...
+     */
+    private static final DefaultRedisScript<String> APPEND_SCRIPT = new DefaultRedisScript<>("""
+            local id = redis.call('XADD', KEYS[1], '*', unpack(ARGV, 3))
+            redis.call('ZADD', KEYS[2], 0, ARGV[1])
+            redis.call('EXPIRE', KEYS[2], ARGV[2])
+            return id
+            """, String.class);
+
+    private static final String INSERT_MESSAGE_SQL = "INSERT IGNORE INTO chat_message "
+            + "(messageId, senderId, receiverId, content, messageType, messageStatus, createTime, updateTime) "
+            + "VALUES (?, ?, ?, ?, ?, 0, ?, ?)";
+
+    /**
+     * 会话不存在时创建（带上本批的未读数），已存在时不修改未读数；最后一条消息只在时间不早于当前值时覆盖
+     */
+    private static final String UPSERT_SESSION_SQL = "INSERT INTO chat_session "
+            + "(user1Id, user2Id, lastMessage, lastMessageTime, unreadCountUser1, unreadCountUser2, createTime, updateTime) "
+            + "VALUES (?, ?, ?, ?, ?, ?, NOW(), NOW()) AS src "
+            + "ON DUPLICATE KEY UPDATE "
+            + "lastMessage = IF(chat_session.lastMessageTime IS NULL OR chat_session.lastMessageTime <= src.lastMessageTime, "
+            + "src.lastMessage, chat_session.lastMessage), "
+            + "lastMessageTime = GREATEST(COALESCE(chat_session.lastMessageTime, src.lastMessageTime), src.lastMessageTime), "
+            + "updateTime = NOW()";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${game9.chat.write-behind.partitions:4}")
+    private int partitions;
+
+    @Value("${game9.chat.write-behind.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 本节点持锁标识
+     */
+    private final String lockToken = UUID.randomUUID().toString();
+
+    /**
+     * 本节点消费者名
+     */
+    private final String consumer = "writer-" + lockToken;
+
+    @PostConstruct
+    public void init() {
+        if (partitions <= 0 || batchSize <= 0) {
+            throw new IllegalStateException("game9.chat.write-behind.partitions 和 batch-size 必须为正数");
+        }
+        for (int i = 0; i < partitions; i++) {
+            ensureGroup(STREAM_KEY_PREFIX + i);
+        }
+        log.info("聊天消息写后缓冲初始化完成, 分区数: {}, 批大小: {}", partitions, batchSize);
+    }
+
+    /**
+     * 追加消息到预写日志
+     *
+     * @param message 消息（messageId、createTime 必须已设置）
+     * @throws DataAccessException Redis 不可用时抛出，调用方应改为同步落库
+     */
+    public void append(ChatMessage message) {
+        String streamKey = STREAM_KEY_PREFIX + partitionOf(message.getSenderId(), message.getReceiverId());
+        stringRedisTemplate.execute(APPEND_SCRIPT, List.of(streamKey, inflightKey(message.getReceiverId())),
+                inflightMember(message.getMessageId(), message.getSenderId()), String.valueOf(INFLIGHT_TTL_SECONDS),
+                "messageId", String.valueOf(message.getMessageId()),
+                "senderId", String.valueOf(message.getSenderId()),
+                "receiverId", String.valueOf(message.getReceiverId()),
+                "content", message.getContent(),
+                "messageType", String.valueOf(message.getMessageType() == null ? 1 : message.getMessageType()),
+                "createTime", String.valueOf(message.getCreateTime().getTime()));
+    }
+
+    /**
+     * 将所有分区中的消息写入数据库（先重放未确认记录，再读取新记录）
+     *
+     * @return 本次写入的消息数
+     */
+    public int flush() {
+        int total = 0;
+        for (int i = 0; i < partitions; i++) {
+            String lockKey = LOCK_KEY_PREFIX + i;
+            Boolean locked = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(lockKey, lockToken, LOCK_TTL_MILLIS, TimeUnit.MILLISECONDS);
+            if (!Boolean.TRUE.equals(locked)) {
+                continue;
+            }
+            try {
+                total += flushPartition(STREAM_KEY_PREFIX + i, lockKey);
+            } finally {
+                stringRedisTemplate.execute(UNLOCK_SCRIPT, List.of(lockKey), lockToken);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 预写日志中尚未确认的消息数
+     *
+     * @return 各分区 Stream 长度之和
+     */
+    public long backlog() {
+        long total = 0;
+        for (int i = 0; i < partitions; i++) {
+            Long size = stringRedisTemplate.opsForStream().size(STREAM_KEY_PREFIX + i);
+            total += size == null ? 0 : size;
+        }
+        return total;
+    }
+
+    private int flushPartition(String streamKey, String lockKey) {
+        int total = 0;
+        claimPending(streamKey);
+        // 先处理待处理列表（上次读取后未确认，通常是节点崩溃或写库失败），再处理新消息
+        List<MapRecord<String, Object, Object>> records = read(streamKey, ReadOffset.from("0"));
+        if (records.isEmpty()) {
+            records = read(streamKey, ReadOffset.lastConsumed());
+        }
+        while (!records.isEmpty()) {
+            if (!renewLock(lockKey)) {
+                // 锁已过期并可能被其他节点取得，本批留在待处理列表中由持锁节点认领重放
+                log.warn("聊天预写日志分区锁已丢失，停止写入 - key: {}", streamKey);
+                break;
+            }
+            try {
+                persist(records);
+                acknowledge(streamKey, records);
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    throw e;
+                }
+                log.warn("聊天消息批量落库失败，改为逐条写入 - key: {}, size: {}, error: {}",
+                        streamKey, records.size(), e.getMessage());
+                persistOneByOne(streamKey, records);
+            }
+            total += records.size();
+            if (records.size() < batchSize) {
+                break;
+            }
+            records = read(streamKey, ReadOffset.lastConsumed());
+        }
+        return total;
+    }
+
+    private boolean renewLock(String lockKey) {
+        Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, List.of(lockKey), lockToken,
+                String.valueOf(LOCK_TTL_MILLIS));
+        return renewed != null && renewed == 1;
+    }
+
+    /**
+     * 认领其他消费者的待处理记录，并删除已没有待处理记录的其他消费者
+     */
+    private void claimPending(String streamKey) {
+        try {
+            while (true) {
+                PendingMessages pending = stringRedisTemplate.opsForStream()
+                        .pending(streamKey, GROUP, Range.unbounded(), CLAIM_BATCH_SIZE);
+                RecordId[] others = pending == null ? new RecordId[0] : pending.stream()
+                        .filter(message -> !consumer.equals(message.getConsumerName()))
+                        .map(PendingMessage::getId)
+                        .toArray(RecordId[]::new);
+                if (others.length == 0) {
+                    break;
+                }
+                stringRedisTemplate.opsForStream().claim(streamKey, GROUP, consumer, Duration.ZERO, others);
+                log.info("认领其他节点未确认的聊天预写日志记录 - key: {}, count: {}", streamKey, others.length);
+                if (others.length < CLAIM_BATCH_SIZE) {
+                    break;
+                }
+            }
+            StreamInfo.XInfoConsumers consumers = stringRedisTemplate.opsForStream().consumers(streamKey, GROUP);
+            if (consumers != null) {
+                consumers.forEach(info -> {
+                    if (!consumer.equals(info.consumerName()) && info.pendingCount() == 0) {
+                        stringRedisTemplate.opsForStream().deleteConsumer(streamKey, Consumer.from(GROUP, info.consumerName()));
+                    }
+                });
+            }
+        } catch (RedisSystemException e) {
+            // 消费组不存在时由 read 重建
+            log.warn("认领聊天预写日志待处理记录失败 - key: {}, error: {}", streamKey, e.getMessage());
+        }
+    }
+
+    /**
+     * 逐条写入，仍因非暂时性错误失败的记录移入死信；遇到暂时性错误时停止，剩余记录留待下次重放
+     */
+    private void persistOneByOne(String streamKey, List<MapRecord<String, Object, Object>> records) {
+        for (MapRecord<String, Object, Object> record : records) {
+            try {
+                persist(List.of(record));
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    throw e;
+                }
+                deadLetter(streamKey, record, e);
+            }
+            acknowledge(streamKey, List.of(record));
+        }
+    }
+
+    private void deadLetter(String streamKey, MapRecord<String, Object, Object> record, RuntimeException error) {
+        log.error("聊天预写日志记录无法落库，移入死信 - key: {}, id: {}, error: {}", streamKey, record.getId(), error.getMessage());
+        Map<String, String> fields = new LinkedHashMap<>();
+        record.getValue().forEach((field, value) -> fields.put(field.toString(), String.valueOf(value)));
+        fields.put("sourceStream", streamKey);
+        fields.put("sourceId", record.getId().getValue());
+        fields.put("error", String.valueOf(error.getMessage()));
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.xAdd(DEAD_LETTER_KEY, fields);
+            conn.xTrim(DEAD_LETTER_KEY, DEAD_LETTER_MAX_LEN, true);
+            ChatMessage message = parse(record);
+            if (message != null) {
+                conn.zRem(inflightKey(message.getReceiverId()),
+                        inflightMember(message.getMessageId(), message.getSenderId()));
+            }
+            return null;
+        });
+    }
+
+    private void acknowledge(String streamKey, List<MapRecord<String, Object, Object>> records) {
+        RecordId[] ids = records.stream().map(MapRecord::getId).toArray(RecordId[]::new);
+        stringRedisTemplate.opsForStream().acknowledge(streamKey, GROUP, ids);
+        stringRedisTemplate.opsForStream().delete(streamKey, ids);
+    }
+
+    /**
+     * 暂时性错误（连接、超时、锁等待等）重试即可恢复，不能把记录当作毒记录丢弃
+     */
+    static boolean isTransient(Throwable e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof TransactionException;
+    }
+
+    private List<MapRecord<String, Object, Object>> read(String streamKey, ReadOffset offset) {
+        List<MapRecord<String, Object, Object>> records;
+        try {
+            records = stringRedisTemplate.opsForStream().read(Consumer.from(GROUP, consumer),
+                    StreamReadOptions.empty().count(batchSize), StreamOffset.create(streamKey, offset));
+        } catch (RedisSystemException e) {
+            // Stream 被意外删除时消费组随之丢失，重新创建后下次再读
+            log.warn("读取聊天预写日志失败, 尝试重建消费组 - key: {}, error: {}", streamKey, e.getMessage());
+            ensureGroup(streamKey);
+            return List.of();
+        }
+        return records == null ? List.of() : records;
+    }
+
+    private void persist(List<MapRecord<String, Object, Object>> records) {
+        List<ChatMessage> messages = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            ChatMessage message = parse(record);
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        writeThrough(messages);
+        // 已提交到数据库，从接收者的未落库索引中移除；失败时由索引过期兜底
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (ChatMessage m : messages) {
+                    conn.zRem(inflightKey(m.getReceiverId()), inflightMember(m.getMessageId(), m.getSenderId()));
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("移除聊天未落库消息索引失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 接收者未落库消息索引的 key
+     *
+     * @param receiverId 接收者ID
+     * @return key
+     */
+    public static String inflightKey(Long receiverId) {
+        return INFLIGHT_KEY_PREFIX + receiverId;
+    }
+
+    /**
+     * 未落库消息索引的成员：消息ID补齐为 19 位，使字典序与数值顺序一致
+     */
+    static String inflightMember(Long messageId, Long senderId) {
+        return String.format("%019d:%d", messageId, senderId);
+    }
+
+    /**
+     * 直接将消息写入数据库（同一事务内批量插入消息并合并更新会话），可重复执行
+     * <p>
+     * 后台写入和 Redis 不可用时的同步降级共用此方法
+     *
+     * @param messages 消息列表（messageId、createTime 必须已设置）
+     */
+    public void writeThrough(List<ChatMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            // 重放时部分消息可能已落库：先查出已存在的ID，只有新消息才计入会话，
+            // 不能依据批量插入的影响行数判断（开启批量重写后驱动返回 SUCCESS_NO_INFO）
+            Set<Long> existing = findExistingIds(messages);
+            List<Object[]> messageArgs = new ArrayList<>(messages.size());
+            Map<String, SessionDelta> sessions = new LinkedHashMap<>();
+            for (ChatMessage m : messages) {
+                // 已落库或本批内重复的消息都跳过
+                if (!existing.add(m.getMessageId())) {
+                    continue;
+                }
+                Timestamp time = new Timestamp(m.getCreateTime().getTime());
+                messageArgs.add(new Object[]{m.getMessageId(), m.getSenderId(), m.getReceiverId(),
+                        m.getContent(), m.getMessageType(), time, time});
+                long user1Id = Math.min(m.getSenderId(), m.getReceiverId());
+                long user2Id = Math.max(m.getSenderId(), m.getReceiverId());
+                SessionDelta delta = sessions.computeIfAbsent(user1Id + ":" + user2Id,
+                        k -> new SessionDelta(user1Id, user2Id));
+                delta.apply(m);
+            }
+            if (messageArgs.isEmpty()) {
+                return;
+            }
+            jdbcTemplate.batchUpdate(INSERT_MESSAGE_SQL, messageArgs);
+            List<Object[]> sessionArgs = new ArrayList<>(sessions.size());
+            for (SessionDelta d : sessions.values()) {
+                sessionArgs.add(new Object[]{d.user1Id, d.user2Id, d.lastMessage,
+                        new Timestamp(d.lastMessageTime), d.unreadUser1, d.unreadUser2});
+            }
+            jdbcTemplate.batchUpdate(UPSERT_SESSION_SQL, sessionArgs);
+        });
+    }
+
+    /**
+     * 查询一批消息中已经存在于 chat_message 的消息ID
+     */
+    private Set<Long> findExistingIds(List<ChatMessage> messages) {
+        Object[] ids = messages.stream().map(ChatMessage::getMessageId).toArray();
+        String placeholders = String.join(",", Collections.nCopies(ids.length, "?"));
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT messageId FROM chat_message WHERE messageId IN (" + placeholders + ")", Long.class, ids));
+    }
+
+    private ChatMessage parse(MapRecord<String, Object, Object> record) {
+        Map<Object, Object> v = record.getValue();
+        try {
+            ChatMessage message = new ChatMessage();
+            message.setMessageId(Long.valueOf(v.get("messageId").toString()));
+            message.setSenderId(Long.valueOf(v.get("senderId").toString()));
+            message.setReceiverId(Long.valueOf(v.get("receiverId").toString()));
+            message.setContent(String.valueOf(v.get("content")));
+            message.setMessageType(Integer.valueOf(v.get("messageType").toString()));
+            message.setCreateTime(new Date(Long.parseLong(v.get("createTime").toString())));
+            return message;
+        } catch (Exception e) {
+            // 无法解析的记录直接丢弃（随本批一起确认），避免阻塞整个分区
+            log.error("丢弃无法解析的聊天预写日志记录 - id: {}, value: {}", record.getId(), v);
+            return null;
+        }
+    }
+
+    private int partitionOf(Long senderId, Long receiverId) {
+        long user1Id = Math.min(senderId, receiverId);
+        long user2Id = Math.max(senderId, receiverId);
+        return (int) Math.floorMod(user1Id * 31 + user2Id, (long) partitions);
+    }
+
+    private void ensureGroup(String streamKey) {
+        try {
+            // MKSTREAM 由 Spring Data Redis 在 Stream 不存在时自动附加
+            stringRedisTemplate.opsForStream().createGroup(streamKey, ReadOffset.from("0"), GROUP);
+        } catch (Exception e) {
+            // BUSYGROUP：消费组已存在
+            log.debug("聊天预写日志消费组已存在 - key: {}", streamKey);
+        }
+    }
+
+    /**
+     * 单个会话在一批消息中的累计变化
+     */
+    private static final class SessionDelta {
+
+        private final long user1Id;
+
+        private final long user2Id;
+
+        private String lastMessage;
+
+        private long lastMessageTime;
+
+        private int unreadUser1;
+
+        private int unreadUser2;
+
+        private SessionDelta(long user1Id, long user2Id) {
+            this.user1Id = user1Id;
+            this.user2Id = user2Id;
+        }
+
+        private void apply(ChatMessage m) {
+            lastMessage = m.getContent();
+            lastMessageTime = m.getCreateTime().getTime();
+            if (m.getReceiverId() == user1Id) {
+                unreadUser1++;
+            } else {
+                unreadUser2++;
+            }
+        }
+    }
+}
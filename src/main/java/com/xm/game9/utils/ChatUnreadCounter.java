@@ -0,0 +1,388 @@
+package com.xm.game9.utils;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聊天未读数计数器
+ * <p>
+ * 每个用户一个 Redis 哈希 {@code chat:unread:{userId}}，字段为对方用户ID，值为该会话的未读数，
+ * 另有 {@code total} 字段保存未读总数，收消息、已读清零都由 Lua 脚本原子地同时更新会话计数和总数，
+ * 读取总数只需一次 HGET。
+ * <ul>
+ *     <li>持久化：变更过的用户记入 {@code chat:unread:dirty}，由定时任务批量写回 chat_session 的未读数列</li>
+ *     <li>重建：哈希不存在（首次访问、过期或 Redis 数据丢失）时，按发送者统计 chat_message 的未读消息
+ *     和预写日志中尚未落库的消息后重新载入。清零时记录的已读水位之前的消息不计入（这些消息可能在清零后才落库，
+ *     数据库中仍是未读状态）</li>
+ *     <li>防重复：重建时计入的近期消息ID记入 {@code chat:unread:fence:{userId}}，这些消息随后到达的 +1 会被跳过</li>
+ * </ul>
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class ChatUnreadCounter {
+
+    /**
+     * 用户未读数哈希 key 前缀
+     */
+    private static final String KEY_PREFIX = "chat:unread:";
+
+    /**
+     * 待写回数据库的用户集合
+     */
+    private static final String DIRTY_KEY = "chat:unread:dirty";
+
+    /**
+     * 已读水位 key 前缀（对方ID -> 清零时生成的消息ID）
+     */
+    private static final String READ_KEY_PREFIX = "chat:unread:read:";
+
+    /**
+     * 重建时已计入的近期消息ID集合 key 前缀
+     */
+    private static final String FENCE_KEY_PREFIX = "chat:unread:fence:";
+
+    /**
+     * 未读总数字段
+     */
+    private static final String TOTAL_FIELD = "total";
+
+    /**
+     * 未读数哈希过期时间（秒），过期后下次访问从数据库重建
+     */
+    private static final long KEY_TTL_SECONDS = TimeUnit.DAYS.toSeconds(7);
+
+    /**
+     * 已读水位过期时间（秒）
+     */
+    private static final long READ_TTL_SECONDS = TimeUnit.DAYS.toSeconds(30);
+
+    /**
+     * 重建时把最近多久写入数据库的未读消息记入防重复集合（毫秒），覆盖消息落库到其 +1 执行之间的间隔
+     */
+    private static final long FENCE_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * 防重复集合过期时间（秒）
+     */
+    private static final long FENCE_TTL_SECONDS = TimeUnit.MINUTES.toSeconds(2);
+
+    /**
+     * 每批写回数据库的用户数
+     */
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    /**
+     * 会话未读数 +1，返回新的未读总数；哈希不存在时返回 -1，由调用方重建后重试。
+     * 消息ID（ARGV[4]）已由重建计入时不再累加
+     */
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return -1
+            end
+            if redis.call('SREM', KEYS[3], ARGV[4]) == 1 then
+                return tonumber(redis.call('HGET', KEYS[1], 'total') or '0')
+            end
+            redis.call('HINCRBY', KEYS[1], ARGV[1], 1)
+            local total = redis.call('HINCRBY', KEYS[1], 'total', 1)
+            redis.call('EXPIRE', KEYS[1], ARGV[3])
+            redis.call('SADD', KEYS[2], ARGV[2])
+            return total
+            """, Long.class);
+
+    /**
+     * 会话未读数清零并从总数中扣除，同时记录已读水位（ARGV[4]），返回清除的数量；哈希不存在时返回 -1
+     */
+    private static final DefaultRedisScript<Long> RESET_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return -1
+            end
+            redis.call('HSET', KEYS[3], ARGV[1], ARGV[4])
+            redis.call('EXPIRE', KEYS[3], ARGV[5])
+            local count = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0')
+            if count ~= 0 then
+                redis.call('HSET', KEYS[1], ARGV[1], 0)
+                redis.call('HINCRBY', KEYS[1], 'total', -count)
+                redis.call('SADD', KEYS[2], ARGV[2])
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[3])
+            return count
+            """, Long.class);
+
+    /**
+     * 载入重建的未读数和防重复集合（哈希已存在时不覆盖），
+     * ARGV: ttl, userId, total, 防重复集合ttl, 消息ID个数n, 消息ID * n, 对方ID, 数量, ...
+     */
+    private static final DefaultRedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+                return 0
+            end
+            redis.call('HSET', KEYS[1], 'total', ARGV[3])
+            local fenceEnd = 5 + tonumber(ARGV[5])
+            for i = fenceEnd + 1, #ARGV, 2 do
+                redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            redis.call('SADD', KEYS[2], ARGV[2])
+            redis.call('DEL', KEYS[3])
+            if fenceEnd > 5 then
+                redis.call('SADD', KEYS[3], unpack(ARGV, 6, fenceEnd))
+                redis.call('EXPIRE', KEYS[3], ARGV[4])
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * 按发送者统计未读消息，%s 为按发送者区分的已读水位条件
+     */
+    private static final String COUNT_UNREAD_SQL = "SELECT senderId, COUNT(1) AS unreadCount FROM chat_message "
+            + "WHERE receiverId = ? AND messageStatus = 0 AND isDeleted = 0%s GROUP BY senderId";
+
+    private static final String RECENT_UNREAD_SQL = "SELECT messageId FROM chat_message "
+            + "WHERE receiverId = ? AND messageStatus = 0 AND isDeleted = 0 AND createTime > ?";
+
+    private static final String EXISTING_IDS_SQL = "SELECT messageId FROM chat_message WHERE messageId IN (%s)";
+
+    private static final String UPDATE_USER1_SQL = "UPDATE chat_session SET unreadCountUser1 = ? "
+            + "WHERE user1Id = ? AND user2Id = ?";
+
+    private static final String UPDATE_USER2_SQL = "UPDATE chat_session SET unreadCountUser2 = ? "
+            + "WHERE user1Id = ? AND user2Id = ?";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private IdGenerator idGenerator;
+
+    /**
+     * 收到一条消息，接收者与发送者会话的未读数 +1（该消息已被重建计入时不重复累加）
+     *
+     * @param receiverId 接收者ID
+     * @param senderId   发送者ID
+     * @param messageId  消息ID，可为空
+     * @return 接收者的未读总数
+     */
+    public long increment(Long receiverId, Long senderId, Long messageId) {
+        String id = messageId == null ? "0" : messageId.toString();
+        Long total = execute(INCREMENT_SCRIPT, FENCE_KEY_PREFIX + receiverId, receiverId, senderId, id);
+        if (total == null || total < 0) {
+            rebuild(receiverId);
+            total = execute(INCREMENT_SCRIPT, FENCE_KEY_PREFIX + receiverId, receiverId, senderId, id);
+        }
+        return total == null ? 0 : Math.max(total, 0);
+    }
+
+    /**
+     * 清除用户与对方会话的未读数
+     *
+     * @param userId   用户ID
+     * @param friendId 对方用户ID
+     * @return 清除的未读数
+     */
+    public long reset(Long userId, Long friendId) {
+        String readMark = String.valueOf(idGenerator.nextId());
+        String readTtl = String.valueOf(READ_TTL_SECONDS);
+        Long count = execute(RESET_SCRIPT, READ_KEY_PREFIX + userId, userId, friendId, readMark, readTtl);
+        if (count == null || count < 0) {
+            rebuild(userId);
+            count = execute(RESET_SCRIPT, READ_KEY_PREFIX + userId, userId, friendId, readMark, readTtl);
+        }
+        return count == null ? 0 : Math.max(count, 0);
+    }
+
+    /**
+     * 获取用户未读总数
+     *
+     * @param userId 用户ID
+     * @return 未读总数
+     */
+    public long getTotal(Long userId) {
+        Object total = stringRedisTemplate.opsForHash().get(KEY_PREFIX + userId, TOTAL_FIELD);
+        if (total == null) {
+            rebuild(userId);
+            total = stringRedisTemplate.opsForHash().get(KEY_PREFIX + userId, TOTAL_FIELD);
+        }
+        return total == null ? 0 : Math.max(Long.parseLong(total.toString()), 0);
+    }
+
+    /**
+     * 获取用户各会话的未读数
+     *
+     * @param userId 用户ID
+     * @return 对方用户ID -> 未读数（没有未读的会话可能不包含在内）
+     */
+    public Map<Long, Integer> getCounts(Long userId) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(KEY_PREFIX + userId);
+        if (entries.isEmpty()) {
+            rebuild(userId);
+            entries = stringRedisTemplate.opsForHash().entries(KEY_PREFIX + userId);
+        }
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            if (!TOTAL_FIELD.equals(entry.getKey())) {
+                counts.put(Long.valueOf(entry.getKey().toString()), Integer.parseInt(entry.getValue().toString()));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * 统计用户的未读消息（已落库和预写日志中未落库的）并载入 Redis（哈希已存在时不覆盖）
+     *
+     * @param userId 用户ID
+     */
+    public void rebuild(Long userId) {
+        Map<Long, Long> readMarks = new HashMap<>();
+        stringRedisTemplate.opsForHash().entries(READ_KEY_PREFIX + userId)
+                .forEach((friendId, mark) -> readMarks.put(Long.valueOf(friendId.toString()), Long.valueOf(mark.toString())));
+
+        // 先读未落库索引再查库：索引中移除的消息在移除前已提交，查库一定能看到
+        Map<Long, Long> walMessages = new HashMap<>();
+        Set<String> members = stringRedisTemplate.opsForZSet().range(ChatMessageWriteBuffer.inflightKey(userId), 0, -1);
+        if (members != null) {
+            for (String member : members) {
+                int separator = member.indexOf(':');
+                walMessages.put(Long.valueOf(member.substring(0, separator)), Long.valueOf(member.substring(separator + 1)));
+            }
+        }
+
+        Map<Long, Long> counts = new HashMap<>();
+        for (Map<String, Object> row : countUnread(userId, readMarks)) {
+            counts.put(((Number) row.get("senderId")).longValue(), ((Number) row.get("unreadCount")).longValue());
+        }
+        Set<Long> fence = new HashSet<>(jdbcTemplate.queryForList(RECENT_UNREAD_SQL, Long.class,
+                userId, new Date(System.currentTimeMillis() - FENCE_WINDOW_MILLIS)));
+        if (!walMessages.isEmpty()) {
+            // 查库后才落库的消息已被统计，不再按预写日志计数
+            String placeholders = String.join(", ", Collections.nCopies(walMessages.size(), "?"));
+            jdbcTemplate.queryForList(String.format(EXISTING_IDS_SQL, placeholders), Long.class, walMessages.keySet().toArray())
+                    .forEach(walMessages::remove);
+            walMessages.forEach((messageId, senderId) -> {
+                if (messageId > readMarks.getOrDefault(senderId, 0L)) {
+                    counts.merge(senderId, 1L, Long::sum);
+                    fence.add(messageId);
+                }
+            });
+        }
+
+        long total = counts.values().stream().mapToLong(Long::longValue).sum();
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(KEY_TTL_SECONDS));
+        args.add(userId.toString());
+        args.add(String.valueOf(total));
+        args.add(String.valueOf(FENCE_TTL_SECONDS));
+        args.add(String.valueOf(fence.size()));
+        fence.forEach(messageId -> args.add(messageId.toString()));
+        counts.forEach((senderId, count) -> {
+            args.add(senderId.toString());
+            args.add(count.toString());
+        });
+        Long loaded = stringRedisTemplate.execute(LOAD_SCRIPT,
+                List.of(KEY_PREFIX + userId, DIRTY_KEY, FENCE_KEY_PREFIX + userId), args.toArray());
+        if (loaded != null && loaded > 0) {
+            log.debug("重建聊天未读数 - userId: {}, total: {}, 未落库: {}", userId, total, walMessages.size());
+        }
+    }
+
+    /**
+     * 按发送者统计已落库的未读消息，只统计已读水位之后的消息
+     */
+    private List<Map<String, Object>> countUnread(Long userId, Map<Long, Long> readMarks) {
+        List<Object> args = new ArrayList<>();
+        args.add(userId);
+        String readCondition = "";
+        if (!readMarks.isEmpty()) {
+            StringBuilder condition = new StringBuilder(" AND messageId > CASE senderId");
+            readMarks.forEach((senderId, mark) -> {
+                condition.append(" WHEN ? THEN ?");
+                args.add(senderId);
+                args.add(mark);
+            });
+            readCondition = condition.append(" ELSE 0 END").toString();
+        }
+        return jdbcTemplate.queryForList(String.format(COUNT_UNREAD_SQL, readCondition), args.toArray());
+    }
+
+    /**
+     * 将变更过的未读数批量写回 chat_session
+     *
+     * @return 本次写回的用户数
+     */
+    public int flush() {
+        int flushed = 0;
+        while (true) {
+            List<String> userIds = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, FLUSH_BATCH_SIZE);
+            if (userIds == null || userIds.isEmpty()) {
+                return flushed;
+            }
+            try {
+                writeBatch(userIds);
+                flushed += userIds.size();
+            } catch (Exception e) {
+                // 写库失败时放回待写集合，下个周期重试
+                stringRedisTemplate.opsForSet().add(DIRTY_KEY, userIds.toArray(new String[0]));
+                throw e;
+            }
+            if (userIds.size() < FLUSH_BATCH_SIZE) {
+                return flushed;
+            }
+        }
+    }
+
+    private void writeBatch(List<String> userIds) {
+        List<Object[]> user1Args = new ArrayList<>();
+        List<Object[]> user2Args = new ArrayList<>();
+        for (String userIdValue : userIds) {
+            long userId = Long.parseLong(userIdValue);
+            Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(KEY_PREFIX + userId);
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                if (TOTAL_FIELD.equals(entry.getKey())) {
+                    continue;
+                }
+                long friendId = Long.parseLong(entry.getKey().toString());
+                int count = Integer.parseInt(entry.getValue().toString());
+                // 会话中 user1Id 为较小的用户ID
+                if (userId < friendId) {
+                    user1Args.add(new Object[]{count, userId, friendId});
+                } else {
+                    user2Args.add(new Object[]{count, friendId, userId});
+                }
+            }
+        }
+        if (!user1Args.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_USER1_SQL, user1Args);
+        }
+        if (!user2Args.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_USER2_SQL, user2Args);
+        }
+    }
+
+    /**
+     * KEYS: 未读数哈希, 待写回集合, extraKey；ARGV: 对方ID, 用户ID, ttl, extraArgs...
+     */
+    private Long execute(DefaultRedisScript<Long> script, String extraKey, Long userId, Long friendId,
+                         String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(friendId.toString(), userId.toString(), String.valueOf(KEY_TTL_SECONDS)));
+        args.addAll(List.of(extraArgs));
+        return stringRedisTemplate.execute(script, List.of(KEY_PREFIX + userId, DIRTY_KEY, extraKey), args.toArray());
+    }
+}
@@ -0,0 +1,86 @@
+package com.xm.game9.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.xm.game9.mapper.UserMapper;
+import com.xm.game9.model.domain.Game;
+import com.xm.game9.model.domain.User;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 关联实体批量加载器
+ * <p>
+ * 列表接口组装 VO 时，先收集一页数据中的全部关联ID，再一次性查出，
+ * 避免逐条调用 getById 造成的 N+1 查询。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+public class EntityBatchLoader {
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Resource
+    private GameCacheManager gameCacheManager;
+
+    /**
+     * 收集列表中的关联ID（去重、去空）
+     *
+     * @param items    数据列表
+     * @param idGetter ID获取函数
+     * @param <T>      数据类型
+     * @return ID集合
+     */
+    public static <T> Set<Long> collectIds(Collection<T> items, Function<T, Long> idGetter) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (T item : items) {
+            Long id = idGetter.apply(item);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 批量加载用户（一次 IN 查询，仅包含展示所需的字段）
+     *
+     * @param userIds 用户ID集合
+     * @return userId -> 用户
+     */
+    public Map<Long, User> loadUsers(Collection<Long> userIds) {
+        Map<Long, User> result = new HashMap<>();
+        Set<Long> ids = new LinkedHashSet<>(userIds);
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            return result;
+        }
+        LambdaQueryWrapper<User> wrapper = new LambdaQueryWrapper<User>()
+                .select(User::getUserId, User::getUserName, User::getUserNickname,
+                        User::getUserAvatar, User::getUserProfile, User::getUserIsOnline)
+                .in(User::getUserId, ids);
+        for (User user : userMapper.selectList(wrapper)) {
+            result.put(user.getUserId(), user);
+        }
+        return result;
+    }
+
+    /**
+     * 批量加载游戏（走游戏目录缓存）
+     *
+     * @param gameIds 游戏ID集合
+     * @return gameId -> 游戏
+     */
+    public Map<Long, Game> loadGames(Collection<Long> gameIds) {
+        return gameCacheManager.getGames(gameIds.stream().filter(Objects::nonNull).toList());
+    }
+}
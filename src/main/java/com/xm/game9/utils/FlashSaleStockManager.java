@@ -0,0 +1,459 @@
+package com.xm.game9.utils;
+
+import com.xm.game9.common.ErrorCode;
+import com.xm.game9.exception.BusinessException;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 秒杀库存管理器
+ * <p>
+ * 开启秒杀模式的游戏，库存预先加载到 Redis，每次购买通过一个 Lua 脚本原子扣减，
+ * 不再竞争 game 表的行锁。扣减/归还产生的净变化量记录在待同步哈希中，
+ * 由 {@link com.xm.game9.job.FlashSaleStockSyncJob} 定期批量回写 game.gameStock。
+ * <p>
+ * 每次回写先把变化量转入一个带批次ID的同步中批次，再在同一事务中写入回写日志表并更新库存，
+ * 日志表以批次ID为主键，重复回写同一批次不会重复扣减。进程在回写中途退出时，
+ * 遗留的批次由 {@link #recoverInflight(long)} 在启动时和定期重新回写。
+ * <p>
+ * 不变式：MySQL库存 - 待同步量 - 同步中量 = Redis库存
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class FlashSaleStockManager {
+
+    /**
+     * 秒杀未开启
+     */
+    public static final long NOT_ENABLED = -1L;
+
+    /**
+     * 秒杀库存key前缀
+     */
+    private static final String STOCK_KEY_PREFIX = "flash:stock:";
+
+    /**
+     * 已开启秒杀的游戏集合
+     */
+    private static final String ENABLED_GAMES_KEY = "flash:stock:games";
+
+    /**
+     * 待回写数据库的库存变化量（gameId -> 需从数据库扣减的数量，可为负）
+     */
+    private static final String PENDING_KEY = "flash:stock:pending";
+
+    /**
+     * 已取出、正在回写数据库的变化量（所有批次之和）
+     */
+    private static final String INFLIGHT_KEY = "flash:stock:inflight";
+
+    /**
+     * 未完成的回写批次（批次ID -> 创建时间戳）
+     */
+    private static final String BATCHES_KEY = "flash:stock:batches";
+
+    /**
+     * 回写批次内容key前缀（gameId -> 变化量）
+     */
+    private static final String BATCH_KEY_PREFIX = "flash:stock:batch:";
+
+    /**
+     * 定义 take(field, delta)：把变化量转入同步中哈希 KEYS[2] 和批次哈希 KEYS[3]，并追加到返回值 result
+     */
+    private static final String MOVE_TO_BATCH_LUA = """
+            local result = {}
+            local function take(field, delta)
+                if delta ~= 0 then
+                    redis.call('HINCRBY', KEYS[2], field, delta)
+                    redis.call('HSET', KEYS[3], field, delta)
+                    table.insert(result, field)
+                    table.insert(result, tostring(delta))
+                end
+            end
+            """;
+
+    /**
+     * 登记批次：有变化量时把批次ID（ARGV[1]）以创建时间（ARGV[2]）加入未完成批次集合 KEYS[4]
+     */
+    private static final String REGISTER_BATCH_LUA = """
+            if #result > 0 then
+                redis.call('ZADD', KEYS[4], ARGV[2], ARGV[1])
+            end
+            return result
+            """;
+
+    private static final DefaultRedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>("""
+            local stock = redis.call('GET', KEYS[1])
+            if not stock then return -1 end
+            if tonumber(stock) <= 0 then return 0 end
+            redis.call('DECR', KEYS[1])
+            redis.call('HINCRBY', KEYS[2], ARGV[1], 1)
+            return 1
+            """, Long.class);
+
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end
+            local count = tonumber(ARGV[2])
+            redis.call('INCRBY', KEYS[1], count)
+            redis.call('HINCRBY', KEYS[2], ARGV[1], -count)
+            return 1
+            """, Long.class);
+
+    /**
+     * 将所有待同步量整体转入一个新批次，返回 [gameId, 变化量, ...]
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> TAKE_PENDING_SCRIPT = new DefaultRedisScript<>(MOVE_TO_BATCH_LUA + """
+            local entries = redis.call('HGETALL', KEYS[1])
+            redis.call('DEL', KEYS[1])
+            for i = 1, #entries, 2 do
+                take(entries[i], tonumber(entries[i + 1]))
+            end
+            """ + REGISTER_BATCH_LUA, List.class);
+
+    /**
+     * 关闭秒杀：删除库存key并把该游戏剩余待同步量转入一个新批次（KEYS[5]=库存key，ARGV[3]=gameId）
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> DISABLE_SCRIPT = new DefaultRedisScript<>(MOVE_TO_BATCH_LUA + """
+            redis.call('DEL', KEYS[5])
+            redis.call('SREM', KEYS[6], ARGV[3])
+            local delta = tonumber(redis.call('HGET', KEYS[1], ARGV[3]) or '0')
+            redis.call('HDEL', KEYS[1], ARGV[3])
+            take(ARGV[3], delta)
+            """ + REGISTER_BATCH_LUA, List.class);
+
+    /**
+     * 批次已回写：从同步中哈希扣除批次内的变化量并删除批次，重复执行无副作用
+     */
+    private static final DefaultRedisScript<Long> FINISH_BATCH_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('ZREM', KEYS[3], ARGV[1])
+            if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end
+            local entries = redis.call('HGETALL', KEYS[1])
+            for i = 1, #entries, 2 do
+                if redis.call('HINCRBY', KEYS[2], entries[i], -tonumber(entries[i + 1])) == 0 then
+                    redis.call('HDEL', KEYS[2], entries[i])
+                end
+            end
+            redis.call('DEL', KEYS[1])
+            return 1
+            """, Long.class);
+
+    /**
+     * 原子读取 Redis 库存、待同步量、同步中量
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> SNAPSHOT_SCRIPT = new DefaultRedisScript<>("""
+            local stock = redis.call('GET', KEYS[1])
+            local pending = redis.call('HGET', KEYS[2], ARGV[1])
+            local inflight = redis.call('HGET', KEYS[3], ARGV[1])
+            return {tonumber(stock or '-1'), tonumber(pending or '0'), tonumber(inflight or '0')}
+            """, List.class);
+
+    private static final String SYNC_SQL = "UPDATE game SET gameStock = gameStock - ? WHERE gameId = ?";
+
+    /**
+     * 登记回写批次，已存在时影响行数为0，说明该批次已回写过
+     */
+    private static final String FLUSH_LOG_SQL = "INSERT IGNORE INTO flashstockflush (batchId) VALUES (?)";
+
+    private static final String LOCK_STOCK_SQL = "SELECT gameStock FROM game WHERE gameId = ? FOR UPDATE";
+
+    private static final String PURGE_FLUSH_LOG_SQL = "DELETE FROM flashstockflush WHERE createTime < ?";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private GameCacheManager gameCacheManager;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 开启秒杀模式：持有游戏行锁读取数据库库存并初始化 Redis 库存。
+     * <p>
+     * 行锁保证读取期间没有未提交的数据库扣减；开启后才拿到行锁的数据库扣减
+     * 需由调用方通过 {@link #isEnabled(Long)} 复查并放弃。
+     *
+     * @param gameId 游戏ID
+     * @return 是否开启成功（已开启时返回false）
+     */
+    public boolean enable(Long gameId) {
+        Boolean enabled = transactionTemplate.execute(status -> {
+            Integer dbStock = jdbcTemplate.queryForObject(LOCK_STOCK_SQL, Integer.class, gameId);
+            Boolean set = stringRedisTemplate.opsForValue().setIfAbsent(stockKey(gameId), String.valueOf(dbStock));
+            if (Boolean.TRUE.equals(set)) {
+                stringRedisTemplate.opsForSet().add(ENABLED_GAMES_KEY, String.valueOf(gameId));
+                log.info("秒杀模式已开启 - gameId: {}, 初始库存: {}", gameId, dbStock);
+                return true;
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(enabled);
+    }
+
+    /**
+     * 关闭秒杀模式，并立即把剩余变化量回写数据库
+     *
+     * @param gameId 游戏ID
+     */
+    public void disable(Long gameId) {
+        String batchId = newBatchId();
+        List<?> taken = stringRedisTemplate.execute(DISABLE_SCRIPT,
+                List.of(PENDING_KEY, INFLIGHT_KEY, batchKey(batchId), BATCHES_KEY, stockKey(gameId), ENABLED_GAMES_KEY),
+                batchId, String.valueOf(System.currentTimeMillis()), String.valueOf(gameId));
+        Map<Long, Long> deltas = toDeltas(taken);
+        applyBatch(batchId, deltas);
+        log.info("秒杀模式已关闭 - gameId: {}, 回写变化量: {}", gameId, deltas.get(gameId));
+    }
+
+    /**
+     * 是否处于秒杀模式
+     *
+     * @param gameId 游戏ID
+     * @return 是否开启
+     */
+    public boolean isEnabled(Long gameId) {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(stockKey(gameId)));
+    }
+
+    /**
+     * 获取 Redis 中的可售库存
+     *
+     * @param gameId 游戏ID
+     * @return 库存，未开启秒杀返回null
+     */
+    public Integer getStock(Long gameId) {
+        try {
+            String stock = stringRedisTemplate.opsForValue().get(stockKey(gameId));
+            return stock == null ? null : Integer.valueOf(stock);
+        } catch (Exception e) {
+            log.warn("读取秒杀库存失败 - gameId: {}, error: {}", gameId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 已开启秒杀的游戏ID
+     *
+     * @return 游戏ID列表
+     */
+    public List<Long> getEnabledGameIds() {
+        Set<String> members = stringRedisTemplate.opsForSet().members(ENABLED_GAMES_KEY);
+        List<Long> gameIds = new ArrayList<>();
+        if (members != null) {
+            for (String member : members) {
+                gameIds.add(Long.valueOf(member));
+            }
+        }
+        return gameIds;
+    }
+
+    /**
+     * 预占一件库存。若当前处于事务中，事务回滚时会自动归还
+     *
+     * @param gameId 游戏ID
+     * @return 1=成功，0=库存不足，{@link #NOT_ENABLED}=未开启秒杀
+     */
+    public long reserve(Long gameId) {
+        Long result;
+        try {
+            result = stringRedisTemplate.execute(RESERVE_SCRIPT, List.of(stockKey(gameId), PENDING_KEY),
+                    String.valueOf(gameId));
+        } catch (Exception e) {
+            log.error("秒杀库存预占失败 - gameId: {}, error: {}", gameId, e.getMessage());
+            throw new BusinessException(ErrorCode.REDIS_OPERATION_ERROR, "库存服务繁忙，请稍后重试");
+        }
+        if (result != null && result == 1) {
+            TransactionUtils.runAfterRollback(() -> {
+                release(gameId, 1);
+                log.info("事务回滚，已归还秒杀库存 - gameId: {}", gameId);
+            });
+        }
+        return result == null ? NOT_ENABLED : result;
+    }
+
+    /**
+     * 归还库存
+     *
+     * @param gameId 游戏ID
+     * @param count  归还数量
+     * @return 是否已归还到 Redis（未开启秒杀返回false）
+     */
+    public boolean release(Long gameId, int count) {
+        Long result = stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(stockKey(gameId), PENDING_KEY),
+                String.valueOf(gameId), String.valueOf(count));
+        return result != null && result == 1;
+    }
+
+    /**
+     * 在事务提交后归还一件库存（订单取消场景）
+     *
+     * @param gameId 游戏ID
+     * @return 当前处于秒杀模式并已登记归还返回true；否则返回false，由调用方走数据库归还
+     */
+    public boolean releaseAfterCommit(Long gameId) {
+        return releaseAfterCommit(gameId, 1);
+    }
+
+    /**
+     * 在事务提交后归还多件库存（超时批量取消场景）
+     *
+     * @param gameId 游戏ID
+     * @param count  归还数量
+     * @return 当前处于秒杀模式并已登记归还返回true；否则返回false，由调用方走数据库归还
+     */
+    public boolean releaseAfterCommit(Long gameId, int count) {
+        if (!isEnabled(gameId)) {
+            return false;
+        }
+        Runnable action = () -> {
+            if (!release(gameId, count)) {
+                log.error("秒杀模式已在取消过程中关闭，库存未能归还，请核对 - gameId: {}, count: {}", gameId, count);
+            }
+        };
+        TransactionUtils.runAfterCommit(action);
+        return true;
+    }
+
+    /**
+     * 将所有待同步的库存变化量批量回写数据库
+     *
+     * @return 回写的游戏数
+     */
+    public int flushPending() {
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(PENDING_KEY))) {
+            return 0;
+        }
+        String batchId = newBatchId();
+        List<?> taken = stringRedisTemplate.execute(TAKE_PENDING_SCRIPT,
+                List.of(PENDING_KEY, INFLIGHT_KEY, batchKey(batchId), BATCHES_KEY),
+                batchId, String.valueOf(System.currentTimeMillis()));
+        Map<Long, Long> deltas = toDeltas(taken);
+        applyBatch(batchId, deltas);
+        return deltas.size();
+    }
+
+    /**
+     * 重新回写创建时间早于 minAgeMillis 之前的未完成批次（进程在回写中途退出后遗留）
+     *
+     * @param minAgeMillis 批次最小存在时长，避免与正常回写争抢；回写本身是幂等的
+     * @return 处理的批次数
+     */
+    public int recoverInflight(long minAgeMillis) {
+        long maxScore = System.currentTimeMillis() - minAgeMillis;
+        Set<String> batchIds = stringRedisTemplate.opsForZSet().rangeByScore(BATCHES_KEY, 0, maxScore);
+        if (batchIds == null || batchIds.isEmpty()) {
+            return 0;
+        }
+        for (String batchId : batchIds) {
+            Map<Long, Long> deltas = new LinkedHashMap<>();
+            stringRedisTemplate.opsForHash().entries(batchKey(batchId))
+                    .forEach((gameId, delta) -> deltas.put(Long.valueOf(gameId.toString()), Long.valueOf(delta.toString())));
+            log.warn("重新回写遗留的秒杀库存批次 - batchId: {}, deltas: {}", batchId, deltas);
+            applyBatch(batchId, deltas);
+        }
+        return batchIds.size();
+    }
+
+    /**
+     * 清理早于指定时间的回写日志
+     *
+     * @param before 截止时间
+     * @return 删除的行数
+     */
+    public int purgeFlushLog(Date before) {
+        return jdbcTemplate.update(PURGE_FLUSH_LOG_SQL, before);
+    }
+
+    /**
+     * 原子读取库存快照，用于与 MySQL 核对
+     *
+     * @param gameId 游戏ID
+     * @return 快照 [Redis库存(-1表示未开启), 待同步量, 同步中量]
+     */
+    public long[] snapshot(Long gameId) {
+        List<?> values = stringRedisTemplate.execute(SNAPSHOT_SCRIPT,
+                List.of(stockKey(gameId), PENDING_KEY, INFLIGHT_KEY), String.valueOf(gameId));
+        long[] result = new long[3];
+        if (values != null) {
+            for (int i = 0; i < result.length && i < values.size(); i++) {
+                result[i] = ((Number) values.get(i)).longValue();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 回写一个批次：回写日志与库存更新在同一事务中，批次已回写过时只清理 Redis 中的批次。
+     * 失败时批次保留在同步中，由 {@link #recoverInflight(long)} 重试
+     */
+    private void applyBatch(String batchId, Map<Long, Long> deltas) {
+        if (!deltas.isEmpty()) {
+            List<Object[]> args = new ArrayList<>(deltas.size());
+            deltas.forEach((gameId, delta) -> args.add(new Object[]{delta, gameId}));
+            Boolean applied;
+            try {
+                applied = transactionTemplate.execute(status -> {
+                    if (jdbcTemplate.update(FLUSH_LOG_SQL, batchId) == 0) {
+                        return false;
+                    }
+                    jdbcTemplate.batchUpdate(SYNC_SQL, args);
+                    return true;
+                });
+            } catch (Exception e) {
+                log.error("秒杀库存回写数据库失败，批次将由恢复任务重试 - batchId: {}, deltas: {}, error: {}",
+                        batchId, deltas, e.getMessage());
+                return;
+            }
+            if (Boolean.TRUE.equals(applied)) {
+                gameCacheManager.evict(deltas.keySet());
+                log.debug("秒杀库存已回写数据库 - batchId: {}, deltas: {}", batchId, deltas);
+            } else {
+                log.info("秒杀库存批次已回写过，跳过 - batchId: {}", batchId);
+            }
+        }
+        stringRedisTemplate.execute(FINISH_BATCH_SCRIPT, List.of(batchKey(batchId), INFLIGHT_KEY, BATCHES_KEY), batchId);
+    }
+
+    private static Map<Long, Long> toDeltas(List<?> taken) {
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        if (taken != null) {
+            for (int i = 0; i + 1 < taken.size(); i += 2) {
+                deltas.put(Long.valueOf(taken.get(i).toString()), Long.valueOf(taken.get(i + 1).toString()));
+            }
+        }
+        return deltas;
+    }
+
+    private static String newBatchId() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static String batchKey(String batchId) {
+        return BATCH_KEY_PREFIX + batchId;
+    }
+
+    private String stockKey(Long gameId) {
+        return STOCK_KEY_PREFIX + gameId;
+    }
+}
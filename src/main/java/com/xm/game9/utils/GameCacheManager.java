@@ -0,0 +1,302 @@
+package com.xm.game9.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xm.game9.mapper.GameMapper;
+import com.xm.game9.model.domain.Game;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 游戏目录两级缓存
+ * <p>
+ * L1 为进程内有界缓存，L2 为 Redis；写操作通过 Redis 发布订阅广播失效消息，
+ * 所有节点收到后立即丢弃本地副本。返回给调用方的均为副本，调用方可以随意修改。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class GameCacheManager implements MessageListener {
+
+    /**
+     * 单个游戏缓存key前缀
+     */
+    private static final String GAME_KEY_PREFIX = "game:cache:";
+
+    /**
+     * 全部游戏列表缓存key
+     */
+    private static final String ALL_GAMES_KEY = "game:cache:all";
+
+    /**
+     * 失效广播频道
+     */
+    public static final String INVALIDATE_CHANNEL = "game9:cache:game:invalidate";
+
+    @Resource
+    private GameMapper gameMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Value("${game9.cache.game.local-max-size:10000}")
+    private int localMaxSize;
+
+    @Value("${game9.cache.game.local-ttl-seconds:60}")
+    private long localTtlSeconds;
+
+    @Value("${game9.cache.game.redis-ttl-seconds:1800}")
+    private long redisTtlSeconds;
+
+    private LocalCache<Long, Game> localGames;
+
+    private LocalCache<String, List<Game>> localAllGames;
+
+    @PostConstruct
+    public void init() {
+        localGames = new LocalCache<>(localMaxSize, TimeUnit.SECONDS.toMillis(localTtlSeconds));
+        localAllGames = new LocalCache<>(1, TimeUnit.SECONDS.toMillis(localTtlSeconds));
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+        log.info("游戏目录缓存初始化完成, L1容量: {}, L1过期: {}s, L2过期: {}s",
+                localMaxSize, localTtlSeconds, redisTtlSeconds);
+    }
+
+    /**
+     * 获取游戏（L1 -> L2 -> MySQL）
+     *
+     * @param gameId 游戏ID
+     * @return 游戏副本，不存在时返回null
+     */
+    public Game getGame(Long gameId) {
+        if (gameId == null || gameId <= 0) {
+            return null;
+        }
+        Game game = localGames.get(gameId);
+        if (game == null) {
+            game = readRedis(GAME_KEY_PREFIX + gameId, Game.class);
+            if (game == null) {
+                game = gameMapper.selectById(gameId);
+                if (game == null) {
+                    return null;
+                }
+                writeRedis(GAME_KEY_PREFIX + gameId, game);
+            }
+            localGames.put(gameId, game);
+        }
+        return copyOf(game);
+    }
+
+    /**
+     * 批量获取游戏：L1 命中的直接返回，其余通过一次 Redis MGET 和一次 IN 查询补齐
+     *
+     * @param gameIds 游戏ID集合
+     * @return gameId -> 游戏副本（不存在的游戏不包含在内）
+     */
+    public Map<Long, Game> getGames(Collection<Long> gameIds) {
+        Map<Long, Game> result = new HashMap<>();
+        if (gameIds == null || gameIds.isEmpty()) {
+            return result;
+        }
+        List<Long> misses = new ArrayList<>();
+        for (Long gameId : new LinkedHashSet<>(gameIds)) {
+            if (gameId == null || gameId <= 0) {
+                continue;
+            }
+            Game game = localGames.get(gameId);
+            if (game != null) {
+                result.put(gameId, copyOf(game));
+            } else {
+                misses.add(gameId);
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+
+        List<Long> dbMisses = new ArrayList<>();
+        List<String> values = null;
+        try {
+            values = stringRedisTemplate.opsForValue().multiGet(misses.stream().map(id -> GAME_KEY_PREFIX + id).toList());
+        } catch (Exception e) {
+            log.warn("批量读取游戏缓存失败, error: {}", e.getMessage());
+        }
+        for (int i = 0; i < misses.size(); i++) {
+            Long gameId = misses.get(i);
+            Game game = null;
+            if (values != null && values.get(i) != null) {
+                try {
+                    game = objectMapper.readValue(values.get(i), Game.class);
+                } catch (Exception e) {
+                    log.warn("解析游戏缓存失败, gameId: {}, error: {}", gameId, e.getMessage());
+                }
+            }
+            if (game != null) {
+                localGames.put(gameId, game);
+                result.put(gameId, copyOf(game));
+            } else {
+                dbMisses.add(gameId);
+            }
+        }
+
+        if (!dbMisses.isEmpty()) {
+            for (Game game : gameMapper.selectBatchIds(dbMisses)) {
+                writeRedis(GAME_KEY_PREFIX + game.getGameId(), game);
+                localGames.put(game.getGameId(), game);
+                result.put(game.getGameId(), copyOf(game));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取全部游戏（按创建时间降序）
+     *
+     * @return 游戏列表副本
+     */
+    public List<Game> getAllGames() {
+        List<Game> games = localAllGames.get(ALL_GAMES_KEY);
+        if (games == null) {
+            games = readRedis(ALL_GAMES_KEY, new TypeReference<List<Game>>() {
+            });
+            if (games == null) {
+                games = gameMapper.selectList(new LambdaQueryWrapper<Game>()
+                        .orderByDesc(Game::getGameCreatedTime));
+                writeRedis(ALL_GAMES_KEY, games);
+            }
+            localAllGames.put(ALL_GAMES_KEY, games);
+        }
+        List<Game> result = new ArrayList<>(games.size());
+        for (Game game : games) {
+            result.add(copyOf(game));
+        }
+        return result;
+    }
+
+    /**
+     * 使指定游戏缓存失效（同时失效全部游戏列表）
+     * 在事务中调用时，失效动作延迟到事务提交之后执行
+     *
+     * @param gameId 游戏ID
+     */
+    public void evict(Long gameId) {
+        if (gameId == null) {
+            return;
+        }
+        TransactionUtils.runAfterCommit(() -> doEvict(List.of(gameId)));
+    }
+
+    /**
+     * 批量使游戏缓存失效
+     *
+     * @param gameIds 游戏ID集合
+     */
+    public void evict(Collection<Long> gameIds) {
+        if (gameIds == null || gameIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(gameIds);
+        TransactionUtils.runAfterCommit(() -> doEvict(ids));
+    }
+
+    /**
+     * 接收其他节点（包括本节点）发布的失效消息
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        localAllGames.invalidateAll();
+        for (String id : body.split(",")) {
+            try {
+                localGames.invalidate(Long.parseLong(id.trim()));
+            } catch (NumberFormatException e) {
+                log.warn("无法解析的游戏缓存失效消息: {}", body);
+            }
+        }
+    }
+
+    private void doEvict(List<Long> gameIds) {
+        gameIds.forEach(localGames::invalidate);
+        localAllGames.invalidateAll();
+        try {
+            List<String> keys = new ArrayList<>(gameIds.size() + 1);
+            for (Long gameId : gameIds) {
+                keys.add(GAME_KEY_PREFIX + gameId);
+            }
+            keys.add(ALL_GAMES_KEY);
+            stringRedisTemplate.delete(keys);
+            StringBuilder body = new StringBuilder();
+            for (Long gameId : gameIds) {
+                if (!body.isEmpty()) {
+                    body.append(',');
+                }
+                body.append(gameId);
+            }
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, body.toString());
+        } catch (Exception e) {
+            log.error("游戏缓存失效广播失败, gameIds: {}, error: {}", gameIds, e.getMessage());
+        }
+    }
+
+    private <T> T readRedis(String key, Class<T> type) {
+        try {
+            String json = stringRedisTemplate.opsForValue().get(key);
+            return json == null ? null : objectMapper.readValue(json, type);
+        } catch (Exception e) {
+            log.warn("读取游戏缓存失败, key: {}, error: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private <T> T readRedis(String key, TypeReference<T> type) {
+        try {
+            String json = stringRedisTemplate.opsForValue().get(key);
+            return json == null ? null : objectMapper.readValue(json, type);
+        } catch (Exception e) {
+            log.warn("读取游戏缓存失败, key: {}, error: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRedis(String key, Object value) {
+        try {
+            // 加入随机抖动，避免大量key同时过期
+            long ttl = redisTtlSeconds + ThreadLocalRandom.current().nextLong(Math.max(1, redisTtlSeconds / 10));
+            stringRedisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(value), ttl, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("写入游戏缓存失败, key: {}, error: {}", key, e.getMessage());
+        }
+    }
+
+    private Game copyOf(Game source) {
+        Game target = new Game();
+        BeanUtils.copyProperties(source, target);
+        return target;
+    }
+}
@@ -0,0 +1,386 @@
+package com.xm.game9.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xm.game9.common.ErrorCode;
+import com.xm.game9.exception.BusinessException;
+import com.xm.game9.model.vo.GamePlayerPointVO;
+import com.xm.game9.service.SteamApiService;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 游戏在线人数采集与走势
+ * <p>
+ * 定时任务按固定间隔对所有配置了 Steam 应用ID的游戏批量采集在线人数（并发数受 {@link SteamApiService} 的线程池限制），
+ * 每次采集由抢到 Redis 锁的一个节点执行。采样值累加到 gamePlayerHourly 小时汇总表（总和、峰值、次数），
+ * 24小时/7天走势按小时返回，30天走势按天汇总；最新值写入 Redis 哈希 {@code game:players:current}，游戏页面只读这里，不再同步调用 Steam。
+ * <p>
+ * 每次采集后按"当前人数相对近7天小时均值的增长率"计算飙升榜，整体写入 {@code game:players:trending}。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class GamePlayerTracker {
+
+    private static final String CURRENT_KEY = "game:players:current";
+
+    private static final String TRENDING_KEY = "game:players:trending";
+
+    private static final String LOCK_KEY = "game:players:collector:lock";
+
+    /**
+     * 每次向 Steam 批量查询的应用数
+     */
+    private static final int FETCH_BATCH_SIZE = 100;
+
+    /**
+     * 每批等待 Steam 返回的时长（毫秒）
+     */
+    private static final long FETCH_WAIT_MILLIS = 10_000L;
+
+    /**
+     * 进入飙升榜的最低在线人数，过滤小基数带来的噪声
+     */
+    private static final int TRENDING_MIN_PLAYERS = 100;
+
+    /**
+     * 计算基线至少需要的采样次数
+     */
+    private static final int TRENDING_MIN_SAMPLES = 12;
+
+    /**
+     * 飙升榜保存的游戏数
+     */
+    private static final int TRENDING_SIZE = 100;
+
+    /**
+     * 清理过期数据时每次删除的行数
+     */
+    private static final int PURGE_BATCH_SIZE = 5000;
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO gamePlayerHourly (gameId, statHour, playerSum, playerPeak, sampleCount)
+            VALUES (?, ?, ?, ?, 1)
+            ON DUPLICATE KEY UPDATE playerSum = playerSum + VALUES(playerSum),
+                                    playerPeak = GREATEST(playerPeak, VALUES(playerPeak)),
+                                    sampleCount = sampleCount + 1
+            """;
+
+    private static final String HOURLY_HISTORY_SQL = """
+            SELECT statHour AS pointTime, playerSum, sampleCount, playerPeak
+            FROM gamePlayerHourly
+            WHERE gameId = ? AND statHour >= ?
+            ORDER BY statHour
+            """;
+
+    private static final String DAILY_HISTORY_SQL = """
+            SELECT TIMESTAMP(DATE(statHour)) AS pointTime, SUM(playerSum) AS playerSum,
+                   SUM(sampleCount) AS sampleCount, MAX(playerPeak) AS playerPeak
+            FROM gamePlayerHourly
+            WHERE gameId = ? AND statHour >= ?
+            GROUP BY DATE(statHour)
+            ORDER BY pointTime
+            """;
+
+    @Resource
+    private SteamApiService steamApiService;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Value("${game9.players.collect-interval-ms:300000}")
+    private long collectIntervalMillis;
+
+    private final String lockToken = UUID.randomUUID().toString();
+
+    private final AtomicBoolean collecting = new AtomicBoolean();
+
+    /**
+     * 采集在单独的线程中执行，避免长时间占用定时任务线程
+     */
+    private final ExecutorService collectExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "game-player-collector");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 飙升榜条目
+     *
+     * @param gameId          游戏ID
+     * @param currentPlayers  当前在线人数
+     * @param baselinePlayers 近7天平均在线人数
+     * @param growthRate      增长率
+     */
+    public record TrendingEntry(Long gameId, int currentPlayers, int baselinePlayers, double growthRate) {
+    }
+
+    /**
+     * 在后台发起一次采集（上一次尚未结束时跳过）
+     *
+     * @return 是否发起
+     */
+    public boolean collectInBackground() {
+        if (!collecting.compareAndSet(false, true)) {
+            return false;
+        }
+        collectExecutor.execute(() -> {
+            try {
+                int count = collect();
+                if (count > 0) {
+                    log.info("游戏在线人数采集完成, 游戏数: {}", count);
+                }
+            } catch (Exception e) {
+                log.error("游戏在线人数采集失败: {}", e.getMessage());
+            } finally {
+                collecting.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 采集所有配置了 Steam 应用ID的游戏的在线人数（同一采集周期内只有一个节点执行）
+     *
+     * @return 采集成功的游戏数
+     */
+    public int collect() {
+        // 锁不主动释放，持有到接近下个周期，保证每个周期集群内只采集一次
+        long lockMillis = Math.max(1000L, collectIntervalMillis - 1000L);
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(LOCK_KEY, lockToken, lockMillis, TimeUnit.MILLISECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            return 0;
+        }
+
+        Map<Integer, List<Long>> gamesByAppId = new HashMap<>();
+        jdbcTemplate.query("""
+                SELECT gameId, gameAppId
+                FROM game
+                WHERE gameIsRemoved = 0 AND gameAppId IS NOT NULL AND gameAppId <> ''
+                """, rs -> {
+            try {
+                int appid = Integer.parseInt(rs.getString("gameAppId").trim());
+                gamesByAppId.computeIfAbsent(appid, k -> new ArrayList<>()).add(rs.getLong("gameId"));
+            } catch (NumberFormatException e) {
+                log.warn("游戏应用ID格式错误 - gameId: {}, appId: {}", rs.getLong("gameId"), rs.getString("gameAppId"));
+            }
+        });
+        if (gamesByAppId.isEmpty()) {
+            return 0;
+        }
+
+        List<Integer> appids = new ArrayList<>(gamesByAppId.keySet());
+        Map<Long, Integer> counts = new HashMap<>();
+        for (int from = 0; from < appids.size(); from += FETCH_BATCH_SIZE) {
+            List<Integer> batch = appids.subList(from, Math.min(from + FETCH_BATCH_SIZE, appids.size()));
+            steamApiService.fetchNumberOfCurrentPlayers(batch, FETCH_WAIT_MILLIS)
+                    .forEach((appid, count) -> gamesByAppId.get(appid).forEach(gameId -> counts.put(gameId, count)));
+        }
+        if (counts.size() < gamesByAppId.values().stream().mapToInt(List::size).sum()) {
+            log.warn("部分游戏在线人数采集失败, 成功: {}, 应用数: {}", counts.size(), appids.size());
+        }
+        if (!counts.isEmpty()) {
+            record(counts, LocalDateTime.now());
+        }
+        return counts.size();
+    }
+
+    /**
+     * 写入一次采样：累加到小时汇总表，更新最新值和飙升榜
+     *
+     * @param counts 游戏ID -> 在线人数
+     * @param now    采样时刻
+     */
+    public void record(Map<Long, Integer> counts, LocalDateTime now) {
+        Timestamp hour = Timestamp.valueOf(now.truncatedTo(ChronoUnit.HOURS));
+        List<Object[]> args = new ArrayList<>(counts.size());
+        counts.forEach((gameId, count) -> args.add(new Object[]{gameId, hour, count, count}));
+        jdbcTemplate.batchUpdate(UPSERT_SQL, args);
+
+        Map<String, String> current = new HashMap<>();
+        counts.forEach((gameId, count) -> current.put(gameId.toString(), count.toString()));
+        stringRedisTemplate.opsForHash().putAll(CURRENT_KEY, current);
+
+        try {
+            List<TrendingEntry> trending = computeTrending(counts, hour);
+            stringRedisTemplate.opsForValue().set(TRENDING_KEY, objectMapper.writeValueAsString(trending));
+        } catch (Exception e) {
+            log.error("计算在线人数飙升榜失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 以近7天（不含当前小时）的小时均值为基线，计算增长率并排序
+     */
+    private List<TrendingEntry> computeTrending(Map<Long, Integer> counts, Timestamp hour) {
+        Timestamp from = Timestamp.valueOf(hour.toLocalDateTime().minusDays(7));
+        Map<Long, Integer> baselines = new HashMap<>();
+        jdbcTemplate.query("""
+                SELECT gameId, SUM(playerSum) / SUM(sampleCount) AS avgPlayers
+                FROM gamePlayerHourly
+                WHERE statHour >= ? AND statHour < ?
+                GROUP BY gameId
+                HAVING SUM(sampleCount) >= ?
+                """, rs -> {
+            baselines.put(rs.getLong("gameId"), (int) Math.round(rs.getDouble("avgPlayers")));
+        }, from, hour, TRENDING_MIN_SAMPLES);
+
+        List<TrendingEntry> entries = new ArrayList<>();
+        counts.forEach((gameId, count) -> {
+            Integer baseline = baselines.get(gameId);
+            if (baseline == null || count < TRENDING_MIN_PLAYERS || count <= baseline) {
+                return;
+            }
+            // 基线过小时按最低人数计算，避免小游戏的增长率被放大
+            double growthRate = (double) (count - baseline) / Math.max(baseline, TRENDING_MIN_PLAYERS);
+            entries.add(new TrendingEntry(gameId, count, baseline, Math.round(growthRate * 1000) / 1000.0));
+        });
+        entries.sort(Comparator.comparingDouble(TrendingEntry::growthRate).reversed());
+        return entries.size() > TRENDING_SIZE ? new ArrayList<>(entries.subList(0, TRENDING_SIZE)) : entries;
+    }
+
+    /**
+     * 获取最新采集的在线人数
+     *
+     * @param gameIds 游戏ID集合
+     * @return 游戏ID -> 在线人数（尚未采集到的游戏不包含在内）
+     */
+    public Map<Long, Integer> getCurrent(Collection<Long> gameIds) {
+        Map<Long, Integer> result = new HashMap<>();
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(gameIds));
+        if (ids.isEmpty()) {
+            return result;
+        }
+        try {
+            List<Object> values = stringRedisTemplate.opsForHash()
+                    .multiGet(CURRENT_KEY, ids.stream().map(id -> (Object) id.toString()).toList());
+            for (int i = 0; i < ids.size(); i++) {
+                if (values.get(i) != null) {
+                    result.put(ids.get(i), Integer.parseInt(values.get(i).toString()));
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            log.warn("读取Redis在线人数失败，回退到数据库: {}", e.getMessage());
+        }
+        // 取最近两小时内最新一个小时的均值
+        Timestamp from = Timestamp.valueOf(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(1));
+        namedParameterJdbcTemplate.query("""
+                SELECT gameId, playerSum / sampleCount AS avgPlayers
+                FROM gamePlayerHourly
+                WHERE gameId IN (:gameIds) AND statHour >= :from
+                ORDER BY statHour
+                """, new MapSqlParameterSource().addValue("gameIds", ids).addValue("from", from), rs -> {
+            result.put(rs.getLong("gameId"), (int) Math.round(rs.getDouble("avgPlayers")));
+        });
+        return result;
+    }
+
+    /**
+     * 获取在线人数走势
+     *
+     * @param gameId 游戏ID
+     * @param range  时间范围：24h、7d（按小时）或 30d（按天）
+     * @return 按时间升序的数据点（没有采样的时间段不包含在内）
+     */
+    public List<GamePlayerPointVO> getHistory(Long gameId, String range) {
+        LocalDateTime hour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        String sql = HOURLY_HISTORY_SQL;
+        Timestamp from;
+        switch (range == null ? "" : range) {
+            case "24h" -> from = Timestamp.valueOf(hour.minusHours(23));
+            case "7d" -> from = Timestamp.valueOf(hour.minusHours(7 * 24 - 1));
+            case "30d" -> {
+                from = Timestamp.valueOf(hour.truncatedTo(ChronoUnit.DAYS).minusDays(29));
+                sql = DAILY_HISTORY_SQL;
+            }
+            default -> throw new BusinessException(ErrorCode.PARAMS_ERROR, "时间范围只支持24h、7d、30d");
+        }
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            GamePlayerPointVO point = new GamePlayerPointVO();
+            point.setTime(rs.getTimestamp("pointTime"));
+            long samples = rs.getLong("sampleCount");
+            point.setAvgPlayers(samples == 0 ? 0 : (int) Math.round((double) rs.getLong("playerSum") / samples));
+            point.setPeakPlayers(rs.getInt("playerPeak"));
+            return point;
+        }, gameId, from);
+    }
+
+    /**
+     * 获取最近一次采集计算的飙升榜
+     *
+     * @param limit 数量
+     * @return 按增长率降序的条目
+     */
+    public List<TrendingEntry> getTrending(int limit) {
+        String json = stringRedisTemplate.opsForValue().get(TRENDING_KEY);
+        if (json == null) {
+            return List.of();
+        }
+        try {
+            List<TrendingEntry> entries = objectMapper.readValue(json, new TypeReference<List<TrendingEntry>>() {
+            });
+            return entries.size() > limit ? entries.subList(0, limit) : entries;
+        } catch (Exception e) {
+            log.error("解析在线人数飙升榜失败: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * 删除超过保留期的小时汇总数据
+     *
+     * @param retentionDays 保留天数
+     * @return 删除的行数
+     */
+    public int purge(int retentionDays) {
+        Timestamp before = Timestamp.valueOf(LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).minusDays(retentionDays));
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM gamePlayerHourly WHERE statHour < ? LIMIT " + PURGE_BATCH_SIZE, before);
+            total += deleted;
+        } while (deleted == PURGE_BATCH_SIZE);
+        return total;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        collectExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,172 @@
+package com.xm.game9.utils;
+
+import com.xm.game9.model.domain.GameRatingStats;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 游戏评分汇总缓存
+ * <p>
+ * 每个游戏一个 Redis 哈希（count、sum、s1~s5），数据库汇总表为准。
+ * 评价变更在事务提交后对已缓存的哈希做增量更新，未缓存时不创建，
+ * 由下一次读取从数据库加载；缓存设置过期时间，配合定时重建任务限制偏差的持续时间。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class GameRatingStatsCache {
+
+    private static final String KEY_PREFIX = "game:rating:";
+
+    /**
+     * 缓存过期时间（秒）
+     */
+    private static final long TTL_SECONDS = 3600L;
+
+    /**
+     * 键存在时才增量更新，避免在缓存缺失时写入不完整的哈希
+     */
+    private static final DefaultRedisScript<Long> APPLY_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            local delta = tonumber(ARGV[2])
+            redis.call('HINCRBY', KEYS[1], 'count', delta)
+            redis.call('HINCRBY', KEYS[1], 'sum', delta * tonumber(ARGV[1]))
+            redis.call('HINCRBY', KEYS[1], 's' .. ARGV[1], delta)
+            return 1
+            """, Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 读取缓存的汇总
+     *
+     * @param gameId 游戏ID
+     * @return 汇总，未缓存或读取失败返回null
+     */
+    public GameRatingStats get(Long gameId) {
+        try {
+            Map<Object, Object> hash = stringRedisTemplate.opsForHash().entries(KEY_PREFIX + gameId);
+            if (hash.isEmpty()) {
+                return null;
+            }
+            GameRatingStats stats = new GameRatingStats();
+            stats.setGameId(gameId);
+            stats.setRatingCount(parse(hash.get("count")));
+            stats.setRatingSum(parse(hash.get("sum")));
+            stats.setStar1(parse(hash.get("s1")));
+            stats.setStar2(parse(hash.get("s2")));
+            stats.setStar3(parse(hash.get("s3")));
+            stats.setStar4(parse(hash.get("s4")));
+            stats.setStar5(parse(hash.get("s5")));
+            return stats;
+        } catch (Exception e) {
+            log.warn("读取评分汇总缓存失败, gameId: {}, error: {}", gameId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 写入汇总
+     *
+     * @param stats 汇总
+     */
+    public void put(GameRatingStats stats) {
+        putAll(List.of(stats));
+    }
+
+    /**
+     * 批量写入汇总（一次管道）
+     *
+     * @param statsList 汇总列表
+     */
+    public void putAll(Collection<GameRatingStats> statsList) {
+        if (statsList.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (GameRatingStats stats : statsList) {
+                    String key = KEY_PREFIX + stats.getGameId();
+                    conn.hMSet(key, toHash(stats));
+                    conn.expire(key, TTL_SECONDS);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("写入评分汇总缓存失败, size: {}, error: {}", statsList.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 事务提交后增量更新缓存
+     *
+     * @param gameId 游戏ID
+     * @param rating 评分（1-5）
+     * @param delta  1 表示新增，-1 表示移除
+     */
+    public void applyAfterCommit(Long gameId, int rating, int delta) {
+        TransactionUtils.runAfterCommit(() -> {
+            try {
+                stringRedisTemplate.execute(APPLY_SCRIPT, List.of(KEY_PREFIX + gameId),
+                        String.valueOf(rating), String.valueOf(delta));
+            } catch (Exception e) {
+                // 更新失败时删除缓存，下次读取从数据库重新加载
+                log.warn("增量更新评分汇总缓存失败, gameId: {}, error: {}", gameId, e.getMessage());
+                evict(gameId);
+            }
+        });
+    }
+
+    /**
+     * 事务提交后删除缓存
+     *
+     * @param gameId 游戏ID
+     */
+    public void evictAfterCommit(Long gameId) {
+        TransactionUtils.runAfterCommit(() -> evict(gameId));
+    }
+
+    /**
+     * 删除缓存
+     *
+     * @param gameId 游戏ID
+     */
+    public void evict(Long gameId) {
+        try {
+            stringRedisTemplate.delete(KEY_PREFIX + gameId);
+        } catch (Exception e) {
+            log.warn("删除评分汇总缓存失败, gameId: {}, error: {}", gameId, e.getMessage());
+        }
+    }
+
+    private Map<String, String> toHash(GameRatingStats stats) {
+        Map<String, String> hash = new HashMap<>();
+        hash.put("count", String.valueOf(stats.getRatingCount()));
+        hash.put("sum", String.valueOf(stats.getRatingSum()));
+        hash.put("s1", String.valueOf(stats.getStar1()));
+        hash.put("s2", String.valueOf(stats.getStar2()));
+        hash.put("s3", String.valueOf(stats.getStar3()));
+        hash.put("s4", String.valueOf(stats.getStar4()));
+        hash.put("s5", String.valueOf(stats.getStar5()));
+        return hash;
+    }
+
+    private long parse(Object value) {
+        return value == null ? 0L : Long.parseLong(value.toString());
+    }
+}
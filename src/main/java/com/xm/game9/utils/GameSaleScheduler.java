@@ -0,0 +1,250 @@
+package com.xm.game9.utils;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 游戏折扣定时器
+ * <p>
+ * 折扣的开始、结束时刻保存在 Redis 有序集合 {@code game:sale:schedule} 中
+ * （成员为 {@code start:{gameId}} / {@code end:{gameId}}，分值为触发时刻的毫秒数）。
+ * 各节点每秒检查一次是否有到期事件，有则抢占集群锁，由持锁节点执行：开始时按当前原价计算折扣价并置为打折中，
+ * 结束时清空折扣信息，然后只失效受影响游戏的缓存。
+ * <p>
+ * 数据库更新都带有时间条件，过期或已被改期的事件执行时不会产生影响；
+ * 有序集合丢失时由定期对账按数据库重新登记。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class GameSaleScheduler {
+
+    private static final String SCHEDULE_KEY = "game:sale:schedule";
+
+    private static final String LOCK_KEY = "game:sale:scheduler:lock";
+
+    private static final String START_PREFIX = "start:";
+
+    private static final String END_PREFIX = "end:";
+
+    /**
+     * 集群锁持有时间（毫秒），需大于单批处理耗时
+     */
+    private static final long LOCK_TTL_MILLIS = 30_000L;
+
+    /**
+     * 每批处理的事件数
+     */
+    private static final int BATCH_SIZE = 100;
+
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * 分值未变时才移除，避免删掉执行期间被改期的事件
+     */
+    private static final DefaultRedisScript<Long> REMOVE_IF_UNCHANGED_SCRIPT = new DefaultRedisScript<>("""
+            local score = redis.call('ZSCORE', KEYS[1], ARGV[1])
+            if score and tonumber(score) == tonumber(ARGV[2]) then
+                return redis.call('ZREM', KEYS[1], ARGV[1])
+            end
+            return 0
+            """, Long.class);
+
+    private static final String ACTIVATE_SQL = """
+            UPDATE game
+            SET gameOnSale = 1,
+                gameDiscountedPrices = ROUND(gamePrice * (1 - gameDiscount), 2)
+            WHERE gameId = ?
+            AND gameOnSale = 0
+            AND gameDiscount > 0
+            AND gameSaleStartTime <= ?
+            AND (gameSaleEndTime IS NULL OR gameSaleEndTime > ?)
+            """;
+
+    private static final String EXPIRE_SQL = """
+            UPDATE game
+            SET gameOnSale = 0,
+                gameDiscountedPrices = NULL,
+                gameDiscount = NULL,
+                gameSaleStartTime = NULL,
+                gameSaleEndTime = NULL
+            WHERE gameId = ?
+            AND gameSaleEndTime <= ?
+            """;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private GameCacheManager gameCacheManager;
+
+    private final String lockToken = UUID.randomUUID().toString();
+
+    /**
+     * 事务提交后登记折扣的开始、结束时刻（替换该游戏原有的事件）
+     *
+     * @param gameId    游戏ID
+     * @param startTime 开始时间，为空或已过表示已经开始
+     * @param endTime   结束时间，为空表示不自动结束
+     */
+    public void scheduleAfterCommit(Long gameId, Date startTime, Date endTime) {
+        TransactionUtils.runAfterCommit(() -> {
+            try {
+                stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection conn = (StringRedisConnection) connection;
+                    conn.zRem(SCHEDULE_KEY, START_PREFIX + gameId, END_PREFIX + gameId);
+                    if (startTime != null && startTime.getTime() > System.currentTimeMillis()) {
+                        conn.zAdd(SCHEDULE_KEY, startTime.getTime(), START_PREFIX + gameId);
+                    }
+                    if (endTime != null) {
+                        conn.zAdd(SCHEDULE_KEY, endTime.getTime(), END_PREFIX + gameId);
+                    }
+                    return null;
+                });
+            } catch (Exception e) {
+                // 登记失败时由定期对账补登
+                log.warn("登记折扣事件失败 - gameId: {}, error: {}", gameId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 事务提交后取消游戏的折扣事件
+     *
+     * @param gameId 游戏ID
+     */
+    public void cancelAfterCommit(Long gameId) {
+        TransactionUtils.runAfterCommit(() -> {
+            try {
+                stringRedisTemplate.opsForZSet().remove(SCHEDULE_KEY, START_PREFIX + gameId, END_PREFIX + gameId);
+            } catch (Exception e) {
+                // 残留事件执行时不满足时间条件，不会产生影响
+                log.warn("取消折扣事件失败 - gameId: {}, error: {}", gameId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 执行已到期的事件（只有持有集群锁的节点执行）
+     *
+     * @return 折扣状态发生变化的游戏数
+     */
+    public int fireDueEvents() {
+        long now = System.currentTimeMillis();
+        Set<ZSetOperations.TypedTuple<String>> due = stringRedisTemplate.opsForZSet()
+                .rangeByScoreWithScores(SCHEDULE_KEY, Double.NEGATIVE_INFINITY, now, 0, BATCH_SIZE);
+        if (due == null || due.isEmpty()) {
+            return 0;
+        }
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(LOCK_KEY, lockToken, LOCK_TTL_MILLIS, TimeUnit.MILLISECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            return 0;
+        }
+        Set<Long> affected = new LinkedHashSet<>();
+        try {
+            // 超出一批的事件留到下一次检查；失败的事件保留在集合中重试
+            for (ZSetOperations.TypedTuple<String> event : due) {
+                fire(event.getValue(), event.getScore(), now, affected);
+            }
+        } finally {
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, List.of(LOCK_KEY), lockToken);
+            gameCacheManager.evict(affected);
+        }
+        return affected.size();
+    }
+
+    private void fire(String member, Double score, long now, Set<Long> affected) {
+        try {
+            Timestamp at = new Timestamp(now);
+            int updated;
+            Long gameId;
+            if (member.startsWith(START_PREFIX)) {
+                gameId = Long.parseLong(member.substring(START_PREFIX.length()));
+                updated = jdbcTemplate.update(ACTIVATE_SQL, gameId, at, at);
+                if (updated > 0) {
+                    log.info("游戏折扣开始 - gameId: {}", gameId);
+                }
+            } else if (member.startsWith(END_PREFIX)) {
+                gameId = Long.parseLong(member.substring(END_PREFIX.length()));
+                updated = jdbcTemplate.update(EXPIRE_SQL, gameId, at);
+                if (updated > 0) {
+                    log.info("游戏折扣结束 - gameId: {}", gameId);
+                }
+            } else {
+                log.warn("无法识别的折扣事件: {}", member);
+                stringRedisTemplate.opsForZSet().remove(SCHEDULE_KEY, member);
+                return;
+            }
+            if (updated > 0) {
+                affected.add(gameId);
+            }
+            stringRedisTemplate.execute(REMOVE_IF_UNCHANGED_SCRIPT, List.of(SCHEDULE_KEY),
+                    member, String.valueOf(score.longValue()));
+        } catch (Exception e) {
+            // 事件保留在有序集合中，下次检查时重试
+            log.error("执行折扣事件失败 - event: {}, error: {}", member, e.getMessage());
+        }
+    }
+
+    /**
+     * 按数据库对账：为待开始和进行中且有结束时间的折扣重新登记事件，折扣率为 0 的视为已关闭
+     *
+     * @return 登记的事件数
+     */
+    public int reconcile() {
+        List<Object[]> events = new ArrayList<>();
+        jdbcTemplate.query("""
+                SELECT gameId, gameOnSale, gameSaleStartTime, gameSaleEndTime
+                FROM game
+                WHERE gameDiscount > 0
+                AND (gameSaleStartTime IS NOT NULL OR gameSaleEndTime IS NOT NULL)
+                """, rs -> {
+            long gameId = rs.getLong("gameId");
+            Timestamp start = rs.getTimestamp("gameSaleStartTime");
+            Timestamp end = rs.getTimestamp("gameSaleEndTime");
+            if (rs.getInt("gameOnSale") == 0 && start != null) {
+                events.add(new Object[]{START_PREFIX + gameId, start.getTime()});
+            }
+            if (end != null) {
+                events.add(new Object[]{END_PREFIX + gameId, end.getTime()});
+            }
+        });
+        if (events.isEmpty()) {
+            return 0;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Object[] event : events) {
+                conn.zAdd(SCHEDULE_KEY, ((Long) event[1]).doubleValue(), (String) event[0]);
+            }
+            return null;
+        });
+        return events.size();
+    }
+}
@@ -0,0 +1,26 @@
+package com.xm.game9.utils;
+
+/**
+ * 全局ID生成器
+ *
+ * @author X1aoM1ngTX
+ */
+public interface IdGenerator {
+
+    /**
+     * 生成下一个ID，同一节点内严格递增
+     *
+     * @return ID
+     */
+    long nextId();
+
+    /**
+     * 生成带前缀的业务编号（如订单号）
+     *
+     * @param prefix 前缀
+     * @return 业务编号
+     */
+    default String nextId(String prefix) {
+        return prefix + nextId();
+    }
+}
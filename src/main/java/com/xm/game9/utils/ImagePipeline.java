@@ -0,0 +1,369 @@
+package com.xm.game9.utils;
+
+import com.xm.game9.common.ErrorCode;
+import com.xm.game9.exception.BusinessException;
+import com.xm.game9.model.vo.ImageUploadVO;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 图片处理流水线（游戏封面、资讯封面、用户头像）
+ * <p>
+ * 原图按内容的 SHA-256 存放在 {@code img/{前两位}/{sha256}.{扩展名}}，相同内容只存储一次。
+ * 首次上传时原图上传完成即返回，thumb/card/hero 三种宽度的 JPEG 缩放图在有界线程池中异步生成，
+ * 路径为原图路径加 {@code _{规格}.jpg} 后缀，因此列表接口可以直接由原图URL推导出缩放图URL（见 {@link #variantsOf(String)}）；
+ * 缩放图生成完成前前端加载失败时回退到原图。
+ * ImageIO 无法解码的格式（WebP、AVIF）按文件头识别后原样存储，不生成缩放图，各规格都使用原图URL。
+ * <p>
+ * 原图和全部缩放图都上传成功后才写入 Redis 记录 {@code image:sha256:{sha256}}，之后相同内容的上传直接返回已有路径；
+ * 没有记录（首次上传、另一个请求正在处理或上次处理失败）时完整地重新处理，相同内容写入相同路径，重复处理不影响结果。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class ImagePipeline {
+
+    /**
+     * 缩放图规格
+     */
+    public enum Variant {
+        THUMB("thumb", 160),
+        CARD("card", 480),
+        HERO("hero", 1280);
+
+        private final String label;
+
+        private final int maxWidth;
+
+        Variant(String label, int maxWidth) {
+            this.label = label;
+            this.maxWidth = maxWidth;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final String RECORD_PREFIX = "image:sha256:";
+
+    private static final String STATUS_READY = "ready";
+
+    /**
+     * 允许的最大像素数，防止解码超大图片耗尽内存
+     */
+    private static final long MAX_PIXELS = 40_000_000L;
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private static final AtomicInteger WORKER_INDEX = new AtomicInteger();
+
+    /**
+     * 经本流水线上传且生成了缩放图的原图URL
+     */
+    private static final Pattern MANAGED_URL = Pattern.compile("^(.*/img/[0-9a-f]{2}/[0-9a-f]{64})\\.(jpg|png|gif|bmp)$");
+
+    @Resource
+    private UploadUtil uploadUtil;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 缩放图生成线程池，限制同时解码的图片数；队列满时由上传线程自己生成（形成背压），
+     * 任务负责删除临时文件
+     */
+    private final ThreadPoolExecutor workers = new ThreadPoolExecutor(2, 2, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(32), r -> {
+        Thread thread = new Thread(r, "image-pipeline-" + WORKER_INDEX.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+    /**
+     * 上传图片：按内容去重存储原图，并生成缩放图
+     *
+     * @param file 图片文件
+     * @return 原图URL及缩放图URL（返回时原图已可用，缩放图可能仍在生成）
+     * @throws IOException 读取上传文件失败
+     */
+    public ImageUploadVO upload(MultipartFile file) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "上传文件不能为空");
+        }
+        Path tempFile = uploadUtil.createTempFile();
+        boolean handedOff = false;
+        try {
+            file.transferTo(tempFile);
+            ImageFormat format = detectFormat(tempFile);
+            String sha256 = sha256(tempFile);
+            String base = "img/" + sha256.substring(0, 2) + "/" + sha256;
+            String key = base + "." + format.extension();
+
+            ImageUploadVO vo = new ImageUploadVO();
+            vo.setSha256(sha256);
+            String recordKey = RECORD_PREFIX + sha256;
+            if (isReady(recordKey)) {
+                // 相同内容已完整处理过，直接返回已有路径
+                vo.setUrl(uploadUtil.getPublicUrl(key));
+                vo.setVariants(variantsOf(vo.getUrl()));
+                vo.setDeduplicated(true);
+                return vo;
+            }
+
+            vo.setUrl(uploadUtil.uploadFile(tempFile, key, format.contentType()));
+            vo.setVariants(variantsOf(vo.getUrl()));
+            vo.setDeduplicated(false);
+            if (format.decodable()) {
+                generateVariants(tempFile, base, recordKey);
+                handedOff = true;
+            } else {
+                markReady(recordKey);
+            }
+            return vo;
+        } finally {
+            if (!handedOff) {
+                uploadUtil.deleteTempFile(tempFile);
+            }
+        }
+    }
+
+    /**
+     * 由原图URL推导各规格缩放图URL；不是经本流水线上传的图片（历史数据或外部链接）
+     * 以及原样存储的格式各规格都返回原图URL
+     *
+     * @param url 原图URL
+     * @return 规格 -> URL，url 为空时返回空集合
+     */
+    public static Map<String, String> variantsOf(String url) {
+        Map<String, String> variants = new LinkedHashMap<>();
+        if (url == null || url.isEmpty()) {
+            return variants;
+        }
+        Matcher matcher = MANAGED_URL.matcher(url);
+        for (Variant variant : Variant.values()) {
+            variants.put(variant.getLabel(), matcher.matches() ? matcher.group(1) + "_" + variant.getLabel() + ".jpg" : url);
+        }
+        return variants;
+    }
+
+    /**
+     * 在线程池中异步生成并上传各规格缩放图，全部成功后写入去重记录，完成后删除临时文件；
+     * 失败时不写记录，相同内容的下一次上传会重新处理
+     */
+    private void generateVariants(Path source, String base, String recordKey) {
+        workers.execute(() -> {
+            try {
+                BufferedImage image = decode(source);
+                for (Variant variant : Variant.values()) {
+                    byte[] jpeg = encodeJpeg(resize(image, variant.maxWidth));
+                    uploadUtil.uploadBytes(jpeg, base + "_" + variant.getLabel() + ".jpg", "image/jpeg");
+                }
+                markReady(recordKey);
+            } catch (Exception e) {
+                log.error("生成缩放图失败 - {}: {}", base, e.getMessage());
+            } finally {
+                uploadUtil.deleteTempFile(source);
+            }
+        });
+    }
+
+    private boolean isReady(String recordKey) {
+        try {
+            return STATUS_READY.equals(stringRedisTemplate.opsForValue().get(recordKey));
+        } catch (Exception e) {
+            // Redis 不可用时不去重，相同路径重复上传只会覆盖为相同内容
+            log.warn("读取图片去重记录失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void markReady(String recordKey) {
+        try {
+            stringRedisTemplate.opsForValue().set(recordKey, STATUS_READY);
+        } catch (Exception e) {
+            log.warn("写入图片去重记录失败 - {}: {}", recordKey, e.getMessage());
+        }
+    }
+
+    /**
+     * 图片格式
+     *
+     * @param extension   扩展名
+     * @param contentType 内容类型
+     * @param decodable   ImageIO 能否解码（能解码时才生成缩放图）
+     */
+    private record ImageFormat(String extension, String contentType, boolean decodable) {
+    }
+
+    /**
+     * 只读取文件头识别格式和尺寸，不解码像素；ImageIO 不支持的格式按文件头魔数识别
+     */
+    private ImageFormat detectFormat(Path file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                ImageFormat format = detectUndecodableFormat(file);
+                if (format == null) {
+                    throw new BusinessException(ErrorCode.FILE_TYPE_ERROR, "文件类型必须是图片");
+                }
+                return format;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_PIXELS) {
+                    throw new BusinessException(ErrorCode.PARAMS_ERROR, "图片尺寸过大");
+                }
+                return switch (reader.getFormatName().toLowerCase()) {
+                    case "jpeg", "jpg" -> new ImageFormat("jpg", "image/jpeg", true);
+                    case "png" -> new ImageFormat("png", "image/png", true);
+                    case "gif" -> new ImageFormat("gif", "image/gif", true);
+                    case "bmp" -> new ImageFormat("bmp", "image/bmp", true);
+                    default -> throw new BusinessException(ErrorCode.FILE_TYPE_ERROR, "不支持的图片格式");
+                };
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 识别 WebP（RIFF....WEBP）和 AVIF（....ftypavif），不是这两种格式时返回空
+     */
+    private static ImageFormat detectUndecodableFormat(Path file) throws IOException {
+        byte[] header = new byte[12];
+        int length;
+        try (InputStream in = Files.newInputStream(file)) {
+            length = in.readNBytes(header, 0, header.length);
+        }
+        if (length < header.length) {
+            return null;
+        }
+        String riff = new String(header, 0, 4, StandardCharsets.US_ASCII);
+        String brand = new String(header, 4, 8, StandardCharsets.US_ASCII);
+        if ("RIFF".equals(riff) && brand.endsWith("WEBP")) {
+            return new ImageFormat("webp", "image/webp", false);
+        }
+        if ("ftypavif".equals(brand) || "ftypavis".equals(brand)) {
+            return new ImageFormat("avif", "image/avif", false);
+        }
+        return null;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 解码图片；原图远大于最大规格时按整数倍降采样读取，减少内存占用
+     */
+    static BufferedImage decode(Path file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            ImageReader reader = ImageIO.getImageReaders(input).next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int factor = Math.max(1, reader.getWidth(0) / (Variant.HERO.maxWidth * 2));
+                param.setSourceSubsampling(factor, factor, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 等比缩放到不超过指定宽度（不放大），透明区域填充白色；缩小超过一半时逐级减半以保证质量
+     */
+    static BufferedImage resize(BufferedImage source, int maxWidth) {
+        int targetWidth = Math.min(maxWidth, source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = width == targetWidth ? targetHeight : Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width > targetWidth);
+        return current;
+    }
+
+    static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,139 @@
+package com.xm.game9.utils;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * 进程内有界缓存（带过期时间）
+ * <p>
+ * 基于 ConcurrentHashMap 实现，读操作无锁；超过容量时先清理过期条目，
+ * 仍然超出则随机淘汰部分条目。适合作为 Redis 之前的一级缓存使用。
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ * @author X1aoM1ngTX
+ */
+public class LocalCache<K, V> {
+
+    private final ConcurrentHashMap<K, Entry<V>> map = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+
+    private final long ttlMillis;
+
+    /**
+     * @param maxSize   最大条目数
+     * @param ttlMillis 写入后的存活时间（毫秒）
+     */
+    public LocalCache(int maxSize, long ttlMillis) {
+        if (maxSize <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("maxSize 和 ttlMillis 必须为正数");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 获取未过期的值
+     *
+     * @param key 键
+     * @return 值，不存在或已过期返回null
+     */
+    public V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt < System.currentTimeMillis()) {
+            map.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * 获取值，不存在时通过 loader 加载并放入缓存（loader 返回null时不缓存）
+     *
+     * @param key    键
+     * @param loader 加载函数
+     * @return 值
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 放入缓存
+     *
+     * @param key   键
+     * @param value 值
+     */
+    public void put(K key, V value) {
+        map.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+        if (map.size() > maxSize) {
+            shrink();
+        }
+    }
+
+    /**
+     * 使单个键失效
+     *
+     * @param key 键
+     */
+    public void invalidate(K key) {
+        map.remove(key);
+    }
+
+    /**
+     * 使满足条件的条目失效
+     *
+     * @param predicate 判断条件（键, 值）
+     */
+    public void invalidateIf(BiPredicate<? super K, ? super V> predicate) {
+        map.entrySet().removeIf(e -> predicate.test(e.getKey(), e.getValue().value));
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        map.clear();
+    }
+
+    /**
+     * 当前条目数（包含尚未清理的过期条目）
+     *
+     * @return 条目数
+     */
+    public int size() {
+        return map.size();
+    }
+
+    private void shrink() {
+        long now = System.currentTimeMillis();
+        map.entrySet().removeIf(e -> e.getValue().expireAt < now);
+        // 仍然超出时淘汰约10%的条目，避免每次写入都触发清理
+        int overflow = map.size() - maxSize;
+        if (overflow > 0) {
+            int toRemove = overflow + maxSize / 10;
+            Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+            while (toRemove-- > 0 && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    private record Entry<V>(V value, long expireAt) {
+    }
+}
@@ -0,0 +1,166 @@
+package com.xm.game9.utils;
+
+import com.xm.game9.model.domain.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 登录用户缓存
+ * <p>
+ * 按 SessionID 缓存已校验过的登录用户，命中时 getLoginUser 无需再查 Redis 会话集合和 MySQL。
+ * 用户信息变更、强制下线、登出时通过 Redis 发布订阅通知所有节点失效。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class LoginUserCache implements MessageListener {
+
+    /**
+     * 失效广播频道，消息格式：u:{userId} 或 s:{sessionId}
+     */
+    public static final String INVALIDATE_CHANNEL = "game9:cache:login-user:invalidate";
+
+    private static final String USER_PREFIX = "u:";
+
+    private static final String SESSION_PREFIX = "s:";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Value("${game9.cache.login-user.max-size:20000}")
+    private int maxSize;
+
+    @Value("${game9.cache.login-user.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    private LocalCache<String, User> cache;
+
+    /**
+     * 失效版本号，每收到一次失效消息加一；加载期间版本变化时放弃写入，避免把旧数据放回缓存
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cache = new LocalCache<>(maxSize, TimeUnit.SECONDS.toMillis(ttlSeconds));
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 当前失效版本号，加载前获取，写入时传回
+     *
+     * @return 版本号
+     */
+    public long currentVersion() {
+        return version.get();
+    }
+
+    /**
+     * 获取缓存的登录用户
+     *
+     * @param sessionId SessionID
+     * @param userId    Session中记录的用户ID
+     * @return 用户副本，未命中返回null
+     */
+    public User get(String sessionId, Long userId) {
+        User user = cache.get(sessionId);
+        if (user == null || !user.getUserId().equals(userId)) {
+            return null;
+        }
+        return copyOf(user);
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param sessionId     SessionID
+     * @param user          已校验的用户
+     * @param loadedVersion 加载前获取的版本号
+     */
+    public void put(String sessionId, User user, long loadedVersion) {
+        if (version.get() != loadedVersion) {
+            return;
+        }
+        cache.put(sessionId, copyOf(user));
+    }
+
+    /**
+     * 通知所有节点使该用户的缓存失效（事务中调用时在提交后执行）
+     *
+     * @param userId 用户ID
+     */
+    public void evictUser(Long userId) {
+        if (userId != null) {
+            publishAfterCommit(USER_PREFIX + userId);
+        }
+    }
+
+    /**
+     * 通知所有节点使该Session的缓存失效
+     *
+     * @param sessionId SessionID
+     */
+    public void evictSession(String sessionId) {
+        if (sessionId != null) {
+            publishAfterCommit(SESSION_PREFIX + sessionId);
+        }
+    }
+
+    /**
+     * 接收其他节点（包括本节点）发布的失效消息
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        applyInvalidation(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void applyInvalidation(String body) {
+        version.incrementAndGet();
+        if (body.startsWith(SESSION_PREFIX)) {
+            cache.invalidate(body.substring(SESSION_PREFIX.length()));
+        } else if (body.startsWith(USER_PREFIX)) {
+            try {
+                Long userId = Long.valueOf(body.substring(USER_PREFIX.length()));
+                cache.invalidateIf((sessionId, user) -> userId.equals(user.getUserId()));
+            } catch (NumberFormatException e) {
+                log.warn("无法解析的登录用户缓存失效消息: {}", body);
+            }
+        }
+    }
+
+    private void publishAfterCommit(String body) {
+        Runnable action = () -> {
+            // 本节点立即失效，不等待广播回流
+            applyInvalidation(body);
+            try {
+                stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, body);
+            } catch (Exception e) {
+                log.error("登录用户缓存失效广播失败, message: {}, error: {}", body, e.getMessage());
+            }
+        };
+        TransactionUtils.runAfterCommit(action);
+    }
+
+    private User copyOf(User source) {
+        User target = new User();
+        BeanUtils.copyProperties(source, target);
+        return target;
+    }
+}
@@ -0,0 +1,557 @@
+package com.xm.game9.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.xm.game9.mapper.NewsMapper;
+import com.xm.game9.model.domain.News;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.HtmlUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 资讯全文检索索引
+ * <p>
+ * 进程内倒排索引，只收录已发布且未删除的资讯。分词规则：英文、数字按连续字母数字切分并转小写，
+ * 中日韩文字按相邻两字切分（同时保留单字，支持单字查询）。排序采用 BM25，标题、摘要、正文的词频
+ * 分别按 3:2:1 加权。查询要求所有词元都出现，相当于对中文关键词做短语近似匹配。
+ * <p>
+ * 资讯变更在事务提交后重新加载该资讯并更新索引，同时通过 Redis 频道通知其他节点同步；
+ * 启动时和定时任务中从数据库完整重建。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class NewsSearchIndex implements MessageListener {
+
+    /**
+     * 索引变更频道，消息格式为 {@code 节点ID:资讯ID}，资讯ID为 * 表示完整重建
+     */
+    private static final String CHANNEL = "game9:news:index";
+
+    /**
+     * 重建时每次从数据库加载的资讯数
+     */
+    private static final int LOAD_BATCH_SIZE = 500;
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int SUMMARY_WEIGHT = 2;
+    private static final int CONTENT_WEIGHT = 1;
+
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    /**
+     * 高亮片段长度（字符）
+     */
+    private static final int FRAGMENT_LENGTH = 120;
+
+    @Resource
+    private NewsMapper newsMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private volatile Segment segment = new Segment();
+
+    /**
+     * 是否已完成首次重建，之前的查询由调用方回退到数据库
+     */
+    private volatile boolean ready;
+
+    /**
+     * 重建期间发生变更的资讯，重建完成后补做
+     */
+    private final Set<Long> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean rebuilding;
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * 索引是否可用
+     *
+     * @return 是否已完成首次重建
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 已收录的资讯数
+     *
+     * @return 资讯数
+     */
+    public int size() {
+        return segment.size();
+    }
+
+    /**
+     * 事务提交后重新索引资讯，并通知其他节点
+     *
+     * @param newsId 资讯ID
+     */
+    public void refreshAfterCommit(Long newsId) {
+        Runnable action = () -> {
+            refresh(newsId);
+            publish(newsId.toString());
+        };
+        TransactionUtils.runAfterCommit(action);
+    }
+
+    /**
+     * 从数据库重新加载资讯并更新本节点索引
+     *
+     * @param newsId 资讯ID
+     */
+    public void refresh(Long newsId) {
+        if (rebuilding) {
+            changedDuringRebuild.add(newsId);
+        }
+        try {
+            News news = newsMapper.selectById(newsId);
+            if (isSearchable(news)) {
+                segment.put(news);
+            } else {
+                segment.remove(newsId);
+            }
+        } catch (Exception e) {
+            log.warn("更新资讯索引失败 - newsId: {}, error: {}", newsId, e.getMessage());
+        }
+    }
+
+    /**
+     * 所有节点从数据库完整重建索引
+     *
+     * @return 本节点收录的资讯数
+     */
+    public int rebuildAll() {
+        int count = rebuild();
+        publish("*");
+        return count;
+    }
+
+    /**
+     * 从数据库完整重建本节点索引，构建完成后整体替换
+     *
+     * @return 收录的资讯数
+     */
+    public synchronized int rebuild() {
+        rebuilding = true;
+        changedDuringRebuild.clear();
+        try {
+            Segment fresh = new Segment();
+            long lastId = 0L;
+            while (true) {
+                List<News> batch = newsMapper.selectList(new LambdaQueryWrapper<News>()
+                        .select(News::getNewsId, News::getNewsTitle, News::getNewsSummary, News::getNewsContent,
+                                News::getNewsPublishTime, News::getNewsStatus, News::getNewsIsDelete)
+                        .eq(News::getNewsStatus, 1)
+                        .eq(News::getNewsIsDelete, 0)
+                        .gt(News::getNewsId, lastId)
+                        .orderByAsc(News::getNewsId)
+                        .last("LIMIT " + LOAD_BATCH_SIZE));
+                for (News news : batch) {
+                    fresh.put(news);
+                }
+                if (batch.size() < LOAD_BATCH_SIZE) {
+                    break;
+                }
+                lastId = batch.get(batch.size() - 1).getNewsId();
+            }
+            segment = fresh;
+            ready = true;
+        } finally {
+            rebuilding = false;
+        }
+        // 重建过程中读到的可能是旧数据，补做期间的变更
+        for (Long newsId : new ArrayList<>(changedDuringRebuild)) {
+            refresh(newsId);
+        }
+        changedDuringRebuild.clear();
+        return segment.size();
+    }
+
+    /**
+     * 检索资讯
+     *
+     * @param keyword 关键词
+     * @param offset  跳过的结果数
+     * @param limit   返回的结果数
+     * @return 命中总数及当前页的资讯ID（按相关度降序，相同时按发布时间降序）
+     */
+    public SearchResult search(String keyword, int offset, int limit) {
+        return segment.search(queryTerms(keyword), offset, limit);
+    }
+
+    /**
+     * 接收其他节点的索引变更通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int sep = body.lastIndexOf(':');
+        if (sep < 0 || nodeId.equals(body.substring(0, sep))) {
+            return;
+        }
+        String target = body.substring(sep + 1);
+        try {
+            if ("*".equals(target)) {
+                int count = rebuild();
+                log.info("收到重建通知，资讯索引重建完成, 资讯数: {}", count);
+            } else {
+                refresh(Long.parseLong(target));
+            }
+        } catch (Exception e) {
+            log.error("处理资讯索引变更通知失败: {}", body, e);
+        }
+    }
+
+    private void publish(String target) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, nodeId + ":" + target);
+        } catch (Exception e) {
+            log.warn("发送资讯索引变更通知失败 - target: {}, error: {}", target, e.getMessage());
+        }
+    }
+
+    private static boolean isSearchable(News news) {
+        return news != null && Integer.valueOf(1).equals(news.getNewsStatus())
+                && Integer.valueOf(0).equals(news.getNewsIsDelete());
+    }
+
+    // ===== 分词与高亮 =====
+
+    /**
+     * 索引分词：英文数字按词切分，中日韩文字输出相邻两字及单字
+     *
+     * @param text 文本
+     * @return 词元列表（含重复）
+     */
+    static List<String> tokenize(String text) {
+        return tokenize(text, true);
+    }
+
+    /**
+     * 查询分词：中日韩文字只在单字时输出单字，其余按相邻两字
+     *
+     * @param keyword 关键词
+     * @return 去重后的词元
+     */
+    static List<String> queryTerms(String keyword) {
+        return new ArrayList<>(new LinkedHashSet<>(tokenize(keyword, false)));
+    }
+
+    private static List<String> tokenize(String text, boolean withUnigrams) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        StringBuilder word = new StringBuilder();
+        List<String> cjkRun = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isCjk(cp)) {
+                flushWord(word, tokens);
+                cjkRun.add(new String(Character.toChars(cp)));
+            } else if (Character.isLetterOrDigit(cp)) {
+                flushCjk(cjkRun, tokens, withUnigrams);
+                word.appendCodePoint(Character.toLowerCase(cp));
+            } else {
+                flushWord(word, tokens);
+                flushCjk(cjkRun, tokens, withUnigrams);
+            }
+        }
+        flushWord(word, tokens);
+        flushCjk(cjkRun, tokens, withUnigrams);
+        return tokens;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (!word.isEmpty()) {
+            tokens.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static void flushCjk(List<String> run, List<String> tokens, boolean withUnigrams) {
+        if (run.isEmpty()) {
+            return;
+        }
+        if (run.size() == 1) {
+            tokens.add(run.get(0));
+        } else {
+            for (int k = 0; k < run.size(); k++) {
+                if (withUnigrams) {
+                    tokens.add(run.get(k));
+                }
+                if (k + 1 < run.size()) {
+                    tokens.add(run.get(k) + run.get(k + 1));
+                }
+            }
+        }
+        run.clear();
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * 生成高亮文本：去除 HTML 标签后转义，命中的词元用 {@code <em>} 包裹
+     *
+     * @param text     原文
+     * @param keyword  关键词
+     * @param fragment 是否只截取首个命中附近的片段
+     * @return 高亮文本，原文为空返回null
+     */
+    public static String highlight(String text, String keyword, boolean fragment) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        String plain = text.replaceAll("<[^>]*>", " ").replaceAll("\\s+", " ").trim();
+        // 与分词一致按码点转小写，并记录每个位置在原文中的下标，小写后长度变化时仍能对齐
+        StringBuilder lowerBuilder = new StringBuilder(plain.length());
+        int[] offsets = new int[plain.length() * 2 + 1];
+        for (int i = 0; i < plain.length(); ) {
+            int cp = plain.codePointAt(i);
+            int lowerStart = lowerBuilder.length();
+            lowerBuilder.appendCodePoint(Character.toLowerCase(cp));
+            for (int j = lowerStart; j < lowerBuilder.length(); j++) {
+                offsets[j] = i;
+            }
+            i += Character.charCount(cp);
+        }
+        String lower = lowerBuilder.toString();
+        offsets[lower.length()] = plain.length();
+        boolean[] marked = new boolean[plain.length()];
+        int first = -1;
+        for (String term : queryTerms(keyword)) {
+            int from = 0;
+            int pos;
+            while ((pos = lower.indexOf(term, from)) >= 0) {
+                int plainStart = offsets[pos];
+                int plainEnd = offsets[pos + term.length()];
+                for (int k = plainStart; k < plainEnd; k++) {
+                    marked[k] = true;
+                }
+                if (first < 0 || plainStart < first) {
+                    first = plainStart;
+                }
+                from = pos + term.length();
+            }
+        }
+        int start = 0;
+        int end = plain.length();
+        if (fragment) {
+            start = Math.max(0, first - FRAGMENT_LENGTH / 4);
+            end = Math.min(plain.length(), start + FRAGMENT_LENGTH);
+        }
+        StringBuilder sb = new StringBuilder();
+        if (start > 0) {
+            sb.append("...");
+        }
+        int k = start;
+        while (k < end) {
+            int runEnd = k;
+            while (runEnd < end && marked[runEnd] == marked[k]) {
+                runEnd++;
+            }
+            String escaped = HtmlUtils.htmlEscape(plain.substring(k, runEnd));
+            if (marked[k]) {
+                sb.append("<em>").append(escaped).append("</em>");
+            } else {
+                sb.append(escaped);
+            }
+            k = runEnd;
+        }
+        if (end < plain.length()) {
+            sb.append("...");
+        }
+        return sb.toString();
+    }
+
+    // ===== 索引数据 =====
+
+    /**
+     * 检索结果
+     *
+     * @param total   命中总数
+     * @param newsIds 当前页资讯ID
+     */
+    public record SearchResult(long total, List<Long> newsIds) {
+    }
+
+    /**
+     * 单篇资讯的索引信息
+     *
+     * @param length      加权后的文档长度
+     * @param publishTime 发布时间（毫秒），用于同分排序
+     * @param terms       包含的词元，删除时使用
+     */
+    private record DocInfo(int length, long publishTime, String[] terms) {
+    }
+
+    private record Hit(long newsId, long publishTime, double score) {
+    }
+
+    /**
+     * 一份完整的索引，读写由读写锁保护
+     */
+    static class Segment {
+
+        /**
+         * 词元 -> (资讯ID -> 加权词频)
+         */
+        private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+
+        private final Map<Long, DocInfo> docs = new HashMap<>();
+
+        private long totalLength;
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return docs.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void put(News news) {
+            Map<String, Integer> tf = new HashMap<>();
+            int length = addTerms(tf, news.getNewsTitle(), TITLE_WEIGHT)
+                    + addTerms(tf, news.getNewsSummary(), SUMMARY_WEIGHT)
+                    + addTerms(tf, news.getNewsContent(), CONTENT_WEIGHT);
+            Date publishTime = news.getNewsPublishTime();
+            DocInfo info = new DocInfo(length, publishTime == null ? 0L : publishTime.getTime(),
+                    tf.keySet().toArray(new String[0]));
+            lock.writeLock().lock();
+            try {
+                removeLocked(news.getNewsId());
+                tf.forEach((term, freq) -> postings.computeIfAbsent(term, t -> new HashMap<>())
+                        .put(news.getNewsId(), freq));
+                docs.put(news.getNewsId(), info);
+                totalLength += length;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(Long newsId) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(newsId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void removeLocked(Long newsId) {
+            DocInfo old = docs.remove(newsId);
+            if (old == null) {
+                return;
+            }
+            for (String term : old.terms()) {
+                Map<Long, Integer> list = postings.get(term);
+                if (list != null) {
+                    list.remove(newsId);
+                    if (list.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            totalLength -= old.length();
+        }
+
+        private static int addTerms(Map<String, Integer> tf, String text, int weight) {
+            // 正文可能包含 HTML，标签本身不参与索引
+            String plain = text == null ? null : text.replaceAll("<[^>]*>", " ");
+            List<String> tokens = tokenize(plain);
+            for (String token : tokens) {
+                tf.merge(token, weight, Integer::sum);
+            }
+            return tokens.size() * weight;
+        }
+
+        SearchResult search(List<String> terms, int offset, int limit) {
+            if (terms.isEmpty()) {
+                return new SearchResult(0, List.of());
+            }
+            lock.readLock().lock();
+            try {
+                List<Map<Long, Integer>> lists = new ArrayList<>(terms.size());
+                for (String term : terms) {
+                    Map<Long, Integer> list = postings.get(term);
+                    if (list == null) {
+                        return new SearchResult(0, List.of());
+                    }
+                    lists.add(list);
+                }
+                // 从最短的倒排表开始求交集
+                lists.sort(Comparator.comparingInt(Map::size));
+                int n = docs.size();
+                double avgLength = n == 0 ? 1.0 : Math.max(1.0, (double) totalLength / n);
+                List<Hit> hits = new ArrayList<>();
+                outer:
+                for (Long newsId : lists.get(0).keySet()) {
+                    double score = 0;
+                    DocInfo info = docs.get(newsId);
+                    double norm = BM25_K1 * (1 - BM25_B + BM25_B * info.length() / avgLength);
+                    for (Map<Long, Integer> list : lists) {
+                        Integer freq = list.get(newsId);
+                        if (freq == null) {
+                            continue outer;
+                        }
+                        double idf = Math.log(1 + (n - list.size() + 0.5) / (list.size() + 0.5));
+                        score += idf * freq * (BM25_K1 + 1) / (freq + norm);
+                    }
+                    hits.add(new Hit(newsId, info.publishTime(), score));
+                }
+                hits.sort(Comparator.comparingDouble(Hit::score)
+                        .thenComparingLong(Hit::publishTime)
+                        .thenComparingLong(Hit::newsId)
+                        .reversed());
+                List<Long> page = hits.stream().skip(offset).limit(limit).map(Hit::newsId).toList();
+                return new SearchResult(hits.size(), page);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.xm.game9.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xm.game9.mapper.NewsMapper;
+import com.xm.game9.mapper.NewsTagMapper;
+import com.xm.game9.model.domain.News;
+import com.xm.game9.model.domain.NewsTag;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 资讯标签索引
+ * <p>
+ * 标签以 newsTag 关联表保存（只包含已发布且未删除的资讯），按标签查资讯走 (tagName, newsPublishTime) 索引且精确匹配。
+ * 关联表、计数和查询统一使用 {@link #normalize} 规范化后的小写标签，大小写不同的标签视为同一个。
+ * 每个标签关联的资讯数同时维护在 Redis 有序集合 {@code news:tags:hot} 中，
+ * 资讯变更时按新旧标签的差异在事务提交后增量调整，热门标签直接按分值倒序读取。
+ * 有序集合缺失时从关联表重新统计，定时任务每天校正一次。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class NewsTagIndex {
+
+    private static final String HOT_TAGS_KEY = "news:tags:hot";
+
+    /**
+     * 回填时每次从数据库加载的资讯数
+     */
+    private static final int LOAD_BATCH_SIZE = 500;
+
+    /**
+     * 键存在时才增量调整（ARGV 为 标签, 增量 成对出现），计数归零的标签移除
+     */
+    private static final DefaultRedisScript<Long> APPLY_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            for i = 1, #ARGV, 2 do
+                local score = tonumber(redis.call('ZINCRBY', KEYS[1], ARGV[i + 1], ARGV[i]))
+                if score <= 0 then
+                    redis.call('ZREM', KEYS[1], ARGV[i])
+                end
+            end
+            return 1
+            """, Long.class);
+
+    @Resource
+    private NewsTagMapper newsTagMapper;
+
+    @Resource
+    private NewsMapper newsMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * 规范化标签：补齐 # 前缀并转为小写
+     *
+     * @param tag 标签
+     * @return 规范化后的标签
+     */
+    public static String normalize(String tag) {
+        String trimmed = tag.trim();
+        return (trimmed.startsWith("#") ? trimmed : "#" + trimmed).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 解析 JSON 格式的标签数组
+     *
+     * @param tagsJson 标签 JSON，如 ["#Java", "#游戏"]
+     * @return 规范化并去重后的标签，解析失败返回空集合
+     */
+    public Set<String> parseTags(String tagsJson) {
+        Set<String> tags = new LinkedHashSet<>();
+        if (!StringUtils.hasText(tagsJson)) {
+            return tags;
+        }
+        try {
+            List<String> list = objectMapper.readValue(tagsJson, new TypeReference<List<String>>() {
+            });
+            for (String tag : list) {
+                if (StringUtils.hasText(tag)) {
+                    tags.add(normalize(tag));
+                }
+            }
+        } catch (Exception e) {
+            log.error("解析标签JSON失败: {}", tagsJson, e);
+        }
+        return tags;
+    }
+
+    /**
+     * 按资讯当前状态同步关联表，并在事务提交后调整标签计数
+     *
+     * @param newsId 资讯ID
+     */
+    public void sync(Long newsId) {
+        Map<String, Integer> deltas = transactionTemplate.execute(status -> syncInTransaction(newsId));
+        if (deltas != null && !deltas.isEmpty()) {
+            applyAfterCommit(deltas);
+        }
+    }
+
+    private Map<String, Integer> syncInTransaction(Long newsId) {
+        Map<String, Integer> deltas = new HashMap<>();
+        if (newsTagMapper.lockNews(newsId) == null) {
+            return deltas;
+        }
+        News news = newsMapper.selectById(newsId);
+        Set<String> desired = Integer.valueOf(1).equals(news.getNewsStatus())
+                && Integer.valueOf(0).equals(news.getNewsIsDelete())
+                ? parseTags(news.getNewsCustomTags()) : Set.of();
+        List<NewsTag> existing = newsTagMapper.selectList(new LambdaQueryWrapper<NewsTag>()
+                .eq(NewsTag::getNewsId, newsId));
+
+        Set<String> kept = new HashSet<>();
+        List<String> removed = new ArrayList<>();
+        for (NewsTag row : existing) {
+            if (desired.contains(row.getTagName())) {
+                kept.add(row.getTagName());
+                if (!Objects.equals(row.getNewsPublishTime(), news.getNewsPublishTime())) {
+                    newsTagMapper.update(null, new LambdaUpdateWrapper<NewsTag>()
+                            .set(NewsTag::getNewsPublishTime, news.getNewsPublishTime())
+                            .eq(NewsTag::getTagName, row.getTagName())
+                            .eq(NewsTag::getNewsId, newsId));
+                }
+            } else {
+                removed.add(row.getTagName());
+                deltas.put(row.getTagName(), -1);
+            }
+        }
+        if (!removed.isEmpty()) {
+            newsTagMapper.delete(new LambdaQueryWrapper<NewsTag>()
+                    .eq(NewsTag::getNewsId, newsId)
+                    .in(NewsTag::getTagName, removed));
+        }
+        for (String tag : desired) {
+            if (!kept.contains(tag)) {
+                NewsTag row = new NewsTag();
+                row.setTagName(tag);
+                row.setNewsId(newsId);
+                row.setNewsPublishTime(news.getNewsPublishTime());
+                newsTagMapper.insert(row);
+                deltas.put(tag, 1);
+            }
+        }
+        return deltas;
+    }
+
+    private void applyAfterCommit(Map<String, Integer> deltas) {
+        Runnable action = () -> {
+            List<String> args = new ArrayList<>(deltas.size() * 2);
+            deltas.forEach((tag, delta) -> {
+                args.add(tag);
+                args.add(String.valueOf(delta));
+            });
+            try {
+                stringRedisTemplate.execute(APPLY_SCRIPT, List.of(HOT_TAGS_KEY), args.toArray());
+            } catch (Exception e) {
+                // 调整失败时删除计数，下次读取从关联表重新统计
+                log.warn("调整热门标签计数失败: {}", e.getMessage());
+                try {
+                    stringRedisTemplate.delete(HOT_TAGS_KEY);
+                } catch (Exception ignored) {
+                    // Redis 不可用时读取会回退到数据库
+                }
+            }
+        };
+        TransactionUtils.runAfterCommit(action);
+    }
+
+    /**
+     * 获取热门标签
+     *
+     * @param limit 数量
+     * @return 按关联资讯数降序的标签
+     */
+    public List<String> getHotTags(int limit) {
+        try {
+            if (Boolean.FALSE.equals(stringRedisTemplate.hasKey(HOT_TAGS_KEY))) {
+                rebuildCounts();
+            }
+            Set<String> tags = stringRedisTemplate.opsForZSet().reverseRange(HOT_TAGS_KEY, 0, limit - 1);
+            return tags == null ? List.of() : new ArrayList<>(tags);
+        } catch (Exception e) {
+            log.warn("读取热门标签计数失败，回退到数据库统计: {}", e.getMessage());
+            return newsTagMapper.selectHotTags(limit);
+        }
+    }
+
+    /**
+     * 按关联表重新统计标签计数并整体替换有序集合
+     *
+     * @return 标签数
+     */
+    public int rebuildCounts() {
+        List<Map<String, Object>> counts = newsTagMapper.countByTag();
+        if (counts.isEmpty()) {
+            stringRedisTemplate.delete(HOT_TAGS_KEY);
+            return 0;
+        }
+        String tmpKey = HOT_TAGS_KEY + ":rebuild";
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.del(tmpKey);
+            for (Map<String, Object> row : counts) {
+                conn.zAdd(tmpKey, ((Number) row.get("newsCount")).doubleValue(), (String) row.get("tagName"));
+            }
+            conn.rename(tmpKey, HOT_TAGS_KEY);
+            return null;
+        });
+        return counts.size();
+    }
+
+    /**
+     * 按资讯表完整回填关联表（关联表为空的存量数据迁移时使用），然后重新统计计数
+     *
+     * @return 同步的资讯数
+     */
+    public int rebuildAll() {
+        Set<Long> newsIds = new TreeSet<>();
+        long lastId = 0L;
+        while (true) {
+            List<News> batch = newsMapper.selectList(new LambdaQueryWrapper<News>()
+                    .select(News::getNewsId)
+                    .isNotNull(News::getNewsCustomTags)
+                    .gt(News::getNewsId, lastId)
+                    .orderByAsc(News::getNewsId)
+                    .last("LIMIT " + LOAD_BATCH_SIZE));
+            batch.forEach(news -> newsIds.add(news.getNewsId()));
+            if (batch.size() < LOAD_BATCH_SIZE) {
+                break;
+            }
+            lastId = batch.get(batch.size() - 1).getNewsId();
+        }
+        // 关联表中已无标签的资讯同样需要同步，以清理残留关联
+        newsTagMapper.selectList(new LambdaQueryWrapper<NewsTag>().select(NewsTag::getNewsId))
+                .forEach(row -> newsIds.add(row.getNewsId()));
+        for (Long newsId : newsIds) {
+            try {
+                transactionTemplate.execute(status -> syncInTransaction(newsId));
+            } catch (Exception e) {
+                log.error("回填资讯标签失败 - newsId: {}", newsId, e);
+            }
+        }
+        rebuildCounts();
+        return newsIds.size();
+    }
+
+    /**
+     * 关联表是否为空
+     *
+     * @return 是否为空
+     */
+    public boolean isEmpty() {
+        return !newsTagMapper.exists(new LambdaQueryWrapper<NewsTag>());
+    }
+}
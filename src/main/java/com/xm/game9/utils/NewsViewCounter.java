@@ -0,0 +1,303 @@
+package com.xm.game9.utils;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 资讯浏览量缓冲计数器
+ * <p>
+ * 浏览量先累加到进程内的 ConcurrentHashMap（merge 只锁该资讯所在的桶，不涉及数据库行锁），
+ * 由定时任务每隔几秒合并为一条多行 UPDATE 写入数据库，避免每次浏览都对同一行加锁。
+ * 写库时逐个 remove 取走计数，之后的浏览会重新建立条目，不会丢失。
+ * 进程正常关闭时会写入剩余计数；进程崩溃最多丢失一个写入周期内的浏览量。
+ * <p>
+ * 开启 Redis 镜像后，每次浏览同时累加到本节点的 Redis 哈希 {@code news:views:unflushed:<节点ID>}，
+ * 写库成功后再扣除，读取时合计所有存活节点的哈希得到整个集群尚未写库的浏览量。
+ * 节点每个写库周期刷新心跳和过期时间，崩溃节点的哈希会在心跳超时后被清理，不会永久虚高。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class NewsViewCounter {
+
+    /**
+     * 节点未写库浏览量key前缀（资讯ID -> 增量）
+     */
+    private static final String UNFLUSHED_KEY_PREFIX = "news:views:unflushed:";
+
+    /**
+     * 开启镜像的节点（节点key -> 最近心跳时间戳）
+     */
+    private static final String NODES_KEY = "news:views:nodes";
+
+    /**
+     * 节点心跳超时时间（分钟），超时的节点哈希视为已失效
+     */
+    private static final long NODE_TTL_MINUTES = 5;
+
+    /**
+     * 单条 UPDATE 包含的资讯数上限
+     */
+    private static final int BATCH_SIZE = 500;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${game9.news.views.redis-mirror:false}")
+    private boolean redisMirror;
+
+    /**
+     * 本节点尚未写库的浏览量
+     */
+    private final ConcurrentHashMap<Long, Long> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 已写库但扣除 Redis 镜像失败的增量，下个周期再扣
+     */
+    private final ConcurrentHashMap<Long, Long> unreleased = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点的镜像key
+     */
+    private final String nodeKey = UNFLUSHED_KEY_PREFIX + UUID.randomUUID();
+
+    @PostConstruct
+    public void init() {
+        if (redisMirror) {
+            try {
+                heartbeat();
+            } catch (Exception e) {
+                log.warn("注册浏览量镜像节点失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 记录一次浏览
+     *
+     * @param newsId 资讯ID
+     */
+    public void increment(Long newsId) {
+        pending.merge(newsId, 1L, Long::sum);
+        if (redisMirror) {
+            try {
+                stringRedisTemplate.opsForHash().increment(nodeKey, newsId.toString(), 1);
+            } catch (Exception e) {
+                log.debug("浏览量镜像到Redis失败, newsId: {}, error: {}", newsId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 获取尚未写库的浏览量（开启镜像时为集群合计，否则为本节点）
+     *
+     * @param newsIds 资讯ID集合
+     * @return 资讯ID -> 增量（没有增量的资讯不包含在内）
+     */
+    public Map<Long, Long> getPending(Collection<Long> newsIds) {
+        Map<Long, Long> result = new HashMap<>();
+        if (newsIds.isEmpty()) {
+            return result;
+        }
+        if (redisMirror) {
+            try {
+                long aliveSince = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(NODE_TTL_MINUTES);
+                Set<String> nodeKeys = stringRedisTemplate.opsForZSet().rangeByScore(NODES_KEY, aliveSince, Double.MAX_VALUE);
+                if (nodeKeys == null || nodeKeys.isEmpty()) {
+                    return result;
+                }
+                List<Long> ids = new ArrayList<>(newsIds);
+                String[] fields = ids.stream().map(String::valueOf).toArray(String[]::new);
+                List<Object> nodeValues = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection conn = (StringRedisConnection) connection;
+                    for (String key : nodeKeys) {
+                        conn.hMGet(key, fields);
+                    }
+                    return null;
+                });
+                for (Object values : nodeValues) {
+                    List<?> list = (List<?>) values;
+                    for (int i = 0; i < ids.size(); i++) {
+                        if (list.get(i) != null) {
+                            long value = Long.parseLong(list.get(i).toString());
+                            if (value > 0) {
+                                result.merge(ids.get(i), value, Long::sum);
+                            }
+                        }
+                    }
+                }
+                return result;
+            } catch (Exception e) {
+                log.debug("读取Redis浏览量镜像失败，使用本节点计数: {}", e.getMessage());
+            }
+        }
+        for (Long newsId : newsIds) {
+            Long value = pending.get(newsId);
+            if (value != null && value > 0) {
+                result.put(newsId, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 将累计的浏览量批量写入数据库
+     *
+     * @return 本次写入的资讯数
+     */
+    public int flush() {
+        if (redisMirror) {
+            maintainMirror();
+        }
+        // 按资讯ID排序，多节点同时写入时加锁顺序一致，避免死锁
+        Map<Long, Long> deltas = new TreeMap<>();
+        for (Long newsId : pending.keySet()) {
+            // remove 与 increment 的 merge 互斥，取走的计数不会再被累加
+            Long delta = pending.remove(newsId);
+            if (delta != null && delta > 0) {
+                deltas.put(newsId, delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>(deltas.entrySet());
+        int written = 0;
+        for (int from = 0; from < entries.size(); from += BATCH_SIZE) {
+            List<Map.Entry<Long, Long>> batch = entries.subList(from, Math.min(from + BATCH_SIZE, entries.size()));
+            try {
+                writeBatch(batch);
+                written += batch.size();
+                releaseMirror(batch);
+            } catch (Exception e) {
+                // 写库失败时把增量还回缓冲，下个周期重试
+                log.error("资讯浏览量写库失败，下个周期重试 - size: {}, error: {}", batch.size(), e.getMessage());
+                for (Map.Entry<Long, Long> entry : batch) {
+                    pending.merge(entry.getKey(), entry.getValue(), Long::sum);
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 进程关闭前写入剩余计数
+     */
+    @PreDestroy
+    public void destroy() {
+        try {
+            int count = flush();
+            log.info("进程关闭前写入资讯浏览量, 资讯数: {}", count);
+            if (redisMirror && pending.isEmpty() && unreleased.isEmpty()) {
+                stringRedisTemplate.delete(nodeKey);
+                stringRedisTemplate.opsForZSet().remove(NODES_KEY, nodeKey);
+            }
+        } catch (Exception e) {
+            log.error("进程关闭前写入资讯浏览量失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * UPDATE news SET newsViews = newsViews + CASE newsId WHEN ? THEN ? ... END WHERE newsId IN (...)
+     */
+    private void writeBatch(List<Map.Entry<Long, Long>> batch) {
+        StringBuilder sql = new StringBuilder("UPDATE news SET newsViews = newsViews + CASE newsId");
+        List<Object> args = new ArrayList<>(batch.size() * 3);
+        for (Map.Entry<Long, Long> entry : batch) {
+            sql.append(" WHEN ? THEN ?");
+            args.add(entry.getKey());
+            args.add(entry.getValue());
+        }
+        sql.append(" ELSE 0 END WHERE newsId IN (");
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+            args.add(batch.get(i).getKey());
+        }
+        sql.append(')');
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    private void releaseMirror(List<Map.Entry<Long, Long>> batch) {
+        if (!redisMirror) {
+            return;
+        }
+        for (Map.Entry<Long, Long> entry : batch) {
+            unreleased.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+        releaseUnreleased();
+    }
+
+    /**
+     * 扣除已写库的镜像增量；失败的留待下个周期重试
+     */
+    private void releaseUnreleased() {
+        Map<Long, Long> release = new HashMap<>();
+        for (Long newsId : unreleased.keySet()) {
+            Long delta = unreleased.remove(newsId);
+            if (delta != null) {
+                release.put(newsId, delta);
+            }
+        }
+        if (release.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                release.forEach((newsId, delta) -> conn.hIncrBy(nodeKey, newsId.toString(), -delta));
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("扣除Redis浏览量镜像失败，下个周期重试: {}", e.getMessage());
+            release.forEach((newsId, delta) -> unreleased.merge(newsId, delta, Long::sum));
+        }
+    }
+
+    /**
+     * 刷新本节点心跳、重试上个周期扣除失败的镜像，并清理心跳超时节点的镜像
+     */
+    private void maintainMirror() {
+        try {
+            heartbeat();
+            releaseUnreleased();
+            long expiredBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(NODE_TTL_MINUTES);
+            Set<String> expired = stringRedisTemplate.opsForZSet().rangeByScore(NODES_KEY, 0, expiredBefore);
+            if (expired != null && !expired.isEmpty()) {
+                stringRedisTemplate.delete(expired);
+                stringRedisTemplate.opsForZSet().remove(NODES_KEY, expired.toArray());
+                log.info("清理心跳超时节点的浏览量镜像: {}", expired);
+            }
+        } catch (Exception e) {
+            log.warn("维护Redis浏览量镜像失败: {}", e.getMessage());
+        }
+    }
+
+    private void heartbeat() {
+        stringRedisTemplate.opsForZSet().add(NODES_KEY, nodeKey, System.currentTimeMillis());
+        stringRedisTemplate.expire(nodeKey, NODE_TTL_MINUTES, TimeUnit.MINUTES);
+    }
+}
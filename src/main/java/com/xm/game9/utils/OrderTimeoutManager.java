@@ -0,0 +1,121 @@
+package com.xm.game9.utils;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 未支付订单超时队列
+ * <p>
+ * 以 Redis 有序集合保存待支付订单，score 为支付截止时间（毫秒）。
+ * 到期订单通过 Lua 脚本一次性取出并从集合中移除，多个节点同时拉取时每个订单只会被一个节点取到。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class OrderTimeoutManager {
+
+    /**
+     * 超时队列key
+     */
+    private static final String TIMEOUT_KEY = "order:timeout";
+
+    /**
+     * 取出到期订单（ARGV[1]=当前时间，ARGV[2]=最多取出条数）
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>("""
+            local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+            if #ids > 0 then
+                redis.call('ZREM', KEYS[1], unpack(ids))
+            end
+            return ids
+            """, List.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${game9.order.pay-timeout-minutes:15}")
+    private long payTimeoutMinutes;
+
+    /**
+     * 订单支付超时时长（毫秒）
+     *
+     * @return 超时时长
+     */
+    public long getPayTimeoutMillis() {
+        return TimeUnit.MINUTES.toMillis(payTimeoutMinutes);
+    }
+
+    /**
+     * 登记待支付订单，事务提交后才写入队列
+     *
+     * @param orderId 订单ID
+     */
+    public void schedule(Long orderId) {
+        long deadline = System.currentTimeMillis() + getPayTimeoutMillis();
+        TransactionUtils.runAfterCommit(() -> {
+            try {
+                stringRedisTemplate.opsForZSet().add(TIMEOUT_KEY, String.valueOf(orderId), deadline);
+            } catch (Exception e) {
+                // 登记失败的订单由数据库兜底扫描处理
+                log.warn("订单超时登记失败 - orderId: {}, error: {}", orderId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 订单已支付或已取消，移出超时队列
+     *
+     * @param orderId 订单ID
+     */
+    public void remove(Long orderId) {
+        TransactionUtils.runAfterCommit(() -> {
+            try {
+                stringRedisTemplate.opsForZSet().remove(TIMEOUT_KEY, String.valueOf(orderId));
+            } catch (Exception e) {
+                log.warn("订单移出超时队列失败 - orderId: {}, error: {}", orderId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 取出已到期的订单，取出后即从队列移除
+     *
+     * @param limit 最多取出条数
+     * @return 订单ID列表
+     */
+    public List<Long> claimExpired(int limit) {
+        List<?> ids = stringRedisTemplate.execute(CLAIM_SCRIPT, List.of(TIMEOUT_KEY),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(limit));
+        List<Long> orderIds = new ArrayList<>();
+        if (ids != null) {
+            for (Object id : ids) {
+                orderIds.add(Long.valueOf(id.toString()));
+            }
+        }
+        return orderIds;
+    }
+
+    /**
+     * 处理失败时放回队列，稍后重试
+     *
+     * @param orderIds    订单ID
+     * @param delayMillis 延迟时长（毫秒）
+     */
+    public void requeue(Collection<Long> orderIds, long delayMillis) {
+        long retryAt = System.currentTimeMillis() + delayMillis;
+        for (Long orderId : orderIds) {
+            stringRedisTemplate.opsForZSet().add(TIMEOUT_KEY, String.valueOf(orderId), retryAt);
+        }
+    }
+}
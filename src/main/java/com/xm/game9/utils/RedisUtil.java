@@ -6,10 +6,15 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
@@ -104,11 +109,13 @@ public class RedisUtil {
      * @param key    键
      * @param offset 偏移量
      * @param value  值
+     * @return 设置前的值
      */
-    public void setBit(String key, int offset, boolean value) {
+    public boolean setBit(String key, int offset, boolean value) {
         try {
-            stringRedisTemplate.opsForValue().setBit(key, offset, value);
-            log.info("Redis设置位图中的值成功: key={}, offset={}, value={}", key, offset, value);
+            Boolean previous = stringRedisTemplate.opsForValue().setBit(key, offset, value);
+            log.debug("Redis设置位图中的值成功: key={}, offset={}, value={}", key, offset, value);
+            return Boolean.TRUE.equals(previous);
         } catch (Exception e) {
             log.error("Redis设置位图中的值失败: key={}, offset={}, value={}, error={}", key, offset, value, e.getMessage());
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Redis操作失败");
@@ -153,6 +160,75 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * 批量获取字符串值（一次 MGET，不存在的键对应null）
+     *
+     * @param keys 键列表
+     * @return 与键一一对应的值
+     */
+    public List<String> multiGet(List<String> keys) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            List<String> result = stringRedisTemplate.opsForValue().multiGet(keys);
+            return result != null ? result : new ArrayList<>(Collections.nCopies(keys.size(), null));
+        } catch (Exception e) {
+            log.error("Redis批量获取值失败，keys={}, error={}", keys.size(), e.getMessage());
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Redis操作失败");
+        }
+    }
+
+    /**
+     * 批量获取位图的原始字节（一次 MGET，不存在的键返回null）
+     * 位图第 n 位对应第 n/8 个字节中从高位起的第 n%8 位
+     *
+     * @param keys 键列表
+     * @return 与键一一对应的字节数组
+     */
+    public List<byte[]> getBitmaps(List<String> keys) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            byte[][] rawKeys = keys.stream().map(k -> k.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+            List<byte[]> result = stringRedisTemplate
+                    .execute((RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(rawKeys));
+            return result != null ? result : new ArrayList<>(Collections.nCopies(keys.size(), null));
+        } catch (Exception e) {
+            log.error("Redis获取位图失败，keys={}, error={}", keys, e.getMessage());
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Redis操作失败");
+        }
+    }
+
+    /**
+     * 对多个位图做位运算并统计结果中1的个数（在服务端完成，结果键用后即删）
+     *
+     * @param op      位运算（AND / OR / XOR）
+     * @param destKey 临时结果键
+     * @param keys    参与运算的键
+     * @return 运算结果中1的个数
+     */
+    public long bitOpCount(RedisStringCommands.BitOperation op, String destKey, List<String> keys) {
+        if (keys.isEmpty()) {
+            return 0L;
+        }
+        try {
+            byte[] dest = destKey.getBytes(StandardCharsets.UTF_8);
+            byte[][] rawKeys = keys.stream().map(k -> k.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+            Long result = stringRedisTemplate.execute((RedisCallback<Long>) connection -> {
+                connection.stringCommands().bitOp(op, dest, rawKeys);
+                Long count = connection.stringCommands().bitCount(dest);
+                connection.keyCommands().del(dest);
+                return count;
+            });
+            return result != null ? result : 0L;
+        } catch (Exception e) {
+            log.error("Redis bitOp 操作失败，op={}, keys={}, error={}", op, keys, e.getMessage());
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Redis操作失败");
+        }
+    }
+
     /**
      * 检查Redis连接
      *
@@ -25,6 +25,9 @@ public class SessionManager {
     @Autowired
     private SessionRepository<?> sessionRepository;
 
+    @Autowired
+    private LoginUserCache loginUserCache;
+
     /**
      * 用户登录状态存储的key前缀
      */
@@ -136,6 +139,8 @@ public class SessionManager {
                 // 清除Redis中的Session集合
                 redisTemplate.delete(sessionsKey);
             }
+            // 通知所有节点丢弃该用户的登录缓存
+            loginUserCache.evictUser(userId);
         } catch (Exception e) {
             log.error("[单设备登录] 清除旧设备Sessions失败，用户ID: {}, 旧IP: {}, 错误: {}", 
                      userId, oldIp, e.getMessage(), e);
@@ -169,6 +174,7 @@ public class SessionManager {
         
         // 清除Session中的用户信息
         request.getSession().removeAttribute(USER_LOGIN_STATE);
+        loginUserCache.evictSession(sessionId);
         
         log.info("[单设备登录] 登出处理完成，用户ID: {}, SessionID: {}", userId, sessionId);
     }
@@ -228,5 +234,6 @@ public class SessionManager {
             redisTemplate.delete(USER_IP_KEY + userId);
             log.info("[单设备登录] 强制用户下线，用户ID: {}, IP: {}", userId, userIp);
         }
+        loginUserCache.evictUser(userId);
     }
 }
\ No newline at end of file
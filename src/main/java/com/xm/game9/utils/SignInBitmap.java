@@ -0,0 +1,186 @@
+package com.xm.game9.utils;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 签到位图解码
+ * <p>
+ * 对应 Redis 键 sign:{userId}:{year}，第 n 位（从0开始）表示当年第 n+1 天是否签到。
+ * 位图通过一次 GET 取回后在本地解析，避免逐天 GETBIT。
+ *
+ * @author X1aoM1ngTX
+ */
+public class SignInBitmap {
+
+    private final int year;
+
+    private final byte[] bits;
+
+    /**
+     * @param year 年份
+     * @param bits Redis 中的原始字节，键不存在时传null
+     */
+    public SignInBitmap(int year, byte[] bits) {
+        this.year = year;
+        this.bits = bits != null ? bits : new byte[0];
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * 当年天数
+     *
+     * @return 天数
+     */
+    public int lengthOfYear() {
+        return Year.of(year).length();
+    }
+
+    /**
+     * 某天是否签到
+     *
+     * @param dayOfYear 当年第几天（从1开始）
+     * @return 是否签到
+     */
+    public boolean isSigned(int dayOfYear) {
+        int offset = dayOfYear - 1;
+        int index = offset >> 3;
+        if (offset < 0 || index >= bits.length) {
+            return false;
+        }
+        return (bits[index] & (0x80 >> (offset & 7))) != 0;
+    }
+
+    /**
+     * 某天是否签到
+     *
+     * @param date 日期（须在本年内）
+     * @return 是否签到
+     */
+    public boolean isSigned(LocalDate date) {
+        return date.getYear() == year && isSigned(date.getDayOfYear());
+    }
+
+    /**
+     * 已签到的日期
+     *
+     * @return 日期列表（升序）
+     */
+    public List<LocalDate> signedDates() {
+        List<LocalDate> dates = new ArrayList<>();
+        int days = lengthOfYear();
+        for (int day = 1; day <= days; day++) {
+            if (isSigned(day)) {
+                dates.add(LocalDate.ofYearDay(year, day));
+            }
+        }
+        return dates;
+    }
+
+    /**
+     * 全年签到天数
+     *
+     * @return 天数
+     */
+    public int count() {
+        int count = 0;
+        for (byte b : bits) {
+            count += Integer.bitCount(b & 0xFF);
+        }
+        return count;
+    }
+
+    /**
+     * 某月已签到的日期（几号）
+     *
+     * @param month 月份（1-12）
+     * @return 日期号列表（升序）
+     */
+    public List<Integer> signedDaysOfMonth(int month) {
+        YearMonth yearMonth = YearMonth.of(year, month);
+        int firstDay = yearMonth.atDay(1).getDayOfYear();
+        List<Integer> days = new ArrayList<>();
+        for (int d = 1; d <= yearMonth.lengthOfMonth(); d++) {
+            if (isSigned(firstDay + d - 1)) {
+                days.add(d);
+            }
+        }
+        return days;
+    }
+
+    /**
+     * 每月签到天数
+     *
+     * @return 长度为12的列表，依次为1-12月
+     */
+    public List<Integer> monthlyCounts() {
+        List<Integer> counts = new ArrayList<>(12);
+        for (int month = 1; month <= 12; month++) {
+            counts.add(signedDaysOfMonth(month).size());
+        }
+        return counts;
+    }
+
+    /**
+     * 从某天起向前连续签到的天数（仅限本年内）
+     *
+     * @param dayOfYear 起始日（从1开始，含当天）
+     * @return 连续天数
+     */
+    public int streakEndingAt(int dayOfYear) {
+        int streak = 0;
+        for (int day = dayOfYear; day >= 1 && isSigned(day); day--) {
+            streak++;
+        }
+        return streak;
+    }
+
+    /**
+     * 年末连续签到天数（用于跨年连续签到的计算）
+     *
+     * @return 连续天数
+     */
+    public int trailingStreak() {
+        return streakEndingAt(lengthOfYear());
+    }
+
+    /**
+     * 年初连续签到天数
+     *
+     * @return 连续天数
+     */
+    public int leadingStreak() {
+        int streak = 0;
+        int days = lengthOfYear();
+        for (int day = 1; day <= days && isSigned(day); day++) {
+            streak++;
+        }
+        return streak;
+    }
+
+    /**
+     * 本年内最长连续签到天数
+     *
+     * @return 连续天数
+     */
+    public int longestStreak() {
+        int longest = 0;
+        int current = 0;
+        int days = lengthOfYear();
+        for (int day = 1; day <= days; day++) {
+            if (isSigned(day)) {
+                current++;
+                longest = Math.max(longest, current);
+            } else {
+                current = 0;
+            }
+        }
+        return longest;
+    }
+}
@@ -0,0 +1,234 @@
+package com.xm.game9.utils;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法ID生成器
+ * <p>
+ * 64位ID组成：1位符号 + 41位毫秒时间戳（自 2024-01-01 起）+ 10位节点号 + 12位序列号。
+ * 时间戳与序列号合并保存在一个 AtomicLong 中，通过 CAS 递增，不加锁也不阻塞：
+ * 同一毫秒内序列号用尽或时钟回拨时，沿用上一个值继续递增，逻辑时间自然进位，保证单节点内单调递增。
+ * <p>
+ * 未配置节点号时，启动时在 Redis 中租用一个空闲节点号（SET NX 带过期时间），
+ * 由 {@link com.xm.game9.job.IdWorkerLeaseJob} 定期续租，进程退出时释放。
+ * 租约意外丢失时改租新的节点号，不会与存活节点冲突。
+ *
+ * @author X1aoM1ngTX
+ */
+@Component
+@Slf4j
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    /**
+     * 起始时间 2024-01-01 00:00:00 UTC
+     */
+    private static final long EPOCH = 1704067200000L;
+
+    private static final int WORKER_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+
+    /**
+     * 节点号租约 key 前缀（值为持有者标识）
+     */
+    private static final String WORKER_LEASE_KEY_PREFIX = "id:worker:lease:";
+
+    /**
+     * 租约有效期（秒），续租间隔见 IdWorkerLeaseJob
+     */
+    public static final long LEASE_TTL_SECONDS = 90;
+
+    /**
+     * 持有者匹配时续期，返回1；租约已丢失返回0
+     */
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                redis.call('EXPIRE', KEYS[1], ARGV[2])
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * 持有者匹配时删除租约
+     */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * 时间戳与序列号（时间戳 << 12 | 序列号）
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 节点号，配置为负数时启动时自动分配
+     */
+    @Value("${game9.id.worker-id:-1}")
+    private volatile long workerId;
+
+    /**
+     * 租约持有者标识，未通过 Redis 租用节点号时为空
+     */
+    private volatile String leaseOwner;
+
+    public SnowflakeIdGenerator() {
+    }
+
+    /**
+     * 以指定节点号创建（不依赖 Spring 容器）
+     *
+     * @param workerId 节点号（0-1023）
+     */
+    public SnowflakeIdGenerator(long workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("workerId 必须在 0-" + MAX_WORKER_ID + " 之间");
+        }
+        this.workerId = workerId;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (workerId < 0) {
+            workerId = assignWorkerId();
+        } else if (workerId > MAX_WORKER_ID) {
+            throw new IllegalStateException("game9.id.worker-id 必须在 0-" + MAX_WORKER_ID + " 之间");
+        }
+        log.info("ID生成器初始化完成, workerId: {}", workerId);
+    }
+
+    @Override
+    public long nextId() {
+        long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+        long prev;
+        long next;
+        do {
+            prev = state.get();
+            next = now > prev ? now : prev + 1;
+        } while (!state.compareAndSet(prev, next));
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return (timestamp << (WORKER_BITS + SEQUENCE_BITS)) | (workerId << SEQUENCE_BITS) | sequence;
+    }
+
+    /**
+     * 获取当前节点号
+     *
+     * @return 节点号
+     */
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * 续租节点号；租约已丢失（如 Redis 数据丢失或长时间停顿后被其他节点租走）时改租新的节点号
+     */
+    public void renewLease() {
+        String owner = leaseOwner;
+        if (owner == null) {
+            return;
+        }
+        Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, List.of(leaseKey(workerId)),
+                owner, String.valueOf(LEASE_TTL_SECONDS));
+        if (renewed != null && renewed == 1) {
+            return;
+        }
+        long lostWorkerId = workerId;
+        long newWorkerId = leaseWorkerId(owner);
+        if (newWorkerId < 0) {
+            throw new IllegalStateException("workerId 租约已丢失且没有空闲的节点号");
+        }
+        // 新节点号可能更小，推进到下一毫秒保证本节点ID仍然递增
+        state.getAndUpdate(prev -> Math.max(prev, (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS)
+                + (1L << SEQUENCE_BITS));
+        workerId = newWorkerId;
+        log.error("workerId 租约已丢失，改用新的节点号 - 原workerId: {}, 新workerId: {}", lostWorkerId, newWorkerId);
+    }
+
+    /**
+     * 进程退出时释放租约
+     */
+    @PreDestroy
+    public void destroy() {
+        String owner = leaseOwner;
+        if (owner == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(leaseKey(workerId)), owner);
+        } catch (Exception e) {
+            log.warn("释放workerId租约失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 从 Redis 租用空闲的节点号，Redis 不可用时根据主机名和进程号计算
+     */
+    private long assignWorkerId() {
+        try {
+            String owner = identity() + "#" + UUID.randomUUID();
+            long leased = leaseWorkerId(owner);
+            if (leased >= 0) {
+                leaseOwner = owner;
+                return leased;
+            }
+            log.warn("没有空闲的workerId，改用主机信息计算");
+        } catch (Exception e) {
+            log.warn("从Redis租用workerId失败，改用主机信息计算: {}", e.getMessage());
+        }
+        return identity().hashCode() & MAX_WORKER_ID;
+    }
+
+    /**
+     * 从随机位置开始依次尝试租用节点号
+     *
+     * @return 租到的节点号，全部被占用时返回 -1
+     */
+    private long leaseWorkerId(String owner) {
+        long start = ThreadLocalRandom.current().nextLong(MAX_WORKER_ID + 1);
+        for (long i = 0; i <= MAX_WORKER_ID; i++) {
+            long candidate = (start + i) & MAX_WORKER_ID;
+            Boolean leased = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(leaseKey(candidate), owner, LEASE_TTL_SECONDS, TimeUnit.SECONDS);
+            if (Boolean.TRUE.equals(leased)) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+
+    private static String leaseKey(long workerId) {
+        return WORKER_LEASE_KEY_PREFIX + workerId;
+    }
+
+    private static String identity() {
+        try {
+            return InetAddress.getLocalHost().getHostName() + "@" + ManagementFactory.getRuntimeMXBean().getName();
+        } catch (Exception e) {
+            return ManagementFactory.getRuntimeMXBean().getName();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.xm.game9.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 事务工具类
+ * <p>
+ * 缓存失效、Redis 写入、消息广播等副作用需要在数据库事务结束后执行，
+ * 避免事务回滚后留下脏数据或其他节点读到未提交的数据。
+ *
+ * @author X1aoM1ngTX
+ */
+public class TransactionUtils {
+
+    /**
+     * 在当前事务提交后执行；没有事务时立即执行
+     *
+     * @param action 要执行的操作
+     */
+    public static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 在当前事务回滚后执行；没有事务时不执行
+     *
+     * @param action 要执行的操作
+     */
+    public static void runAfterRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+}
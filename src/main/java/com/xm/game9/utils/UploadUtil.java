@@ -3,26 +3,64 @@ package com.xm.game9.utils;
 import com.xm.game9.common.ErrorCode;
 import com.xm.game9.exception.BusinessException;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 文件上传工具
+ * <p>
+ * 上传内容不经过堆内存：先把 multipart 临时文件转存到本地临时路径（磁盘上的临时文件为移动而非复制），
+ * 再由 S3 异步客户端按已知长度从文件流式发送到 Cloudflare R2。超过阈值的文件使用分片上传，各分片并行发送；
+ * 所有请求共享一个并发许可池，繁忙时等待一段时间后拒绝，避免大量并发上传压垮连接池。
+ *
+ * @author X1aoM1ngTX
+ */
 @Slf4j
 @Component
 public class UploadUtil {
+
+    /**
+     * 等待并发许可的时长（秒）
+     */
+    private static final long PERMIT_WAIT_SECONDS = 10L;
+
+    /**
+     * 单个文件上传的超时时长（秒）
+     */
+    private static final long UPLOAD_TIMEOUT_SECONDS = 120L;
+
+    /**
+     * S3 分片上传要求的最小分片大小（最后一片除外）
+     */
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
     // @Value("${aliyun.oss.domain}")
     // private String aliyunOssDomain;
 
@@ -44,10 +82,30 @@ public class UploadUtil {
     @Value("${spring.profiles.active:dev}")
     private String activeProfile;
 
+    /**
+     * 超过该大小（字节）的文件使用分片上传
+     */
+    @Value("${cloudflare.r2.multipart-threshold:8388608}")
+    private long multipartThreshold;
+
+    /**
+     * 分片大小（字节）
+     */
+    @Value("${cloudflare.r2.part-size:5242880}")
+    private long partSize;
+
+    /**
+     * 同时进行的上传请求数上限（一个分片计为一个请求）
+     */
+    @Value("${cloudflare.r2.max-concurrent-requests:16}")
+    private int maxConcurrentRequests;
+
     private String r2AccessKeyId;
     private String r2SecretAccessKey;
 
-    private S3Client r2Client;
+    private S3AsyncClient r2Client;
+
+    private Semaphore requestPermits;
 
     @PostConstruct
     public void init() {
@@ -101,13 +159,7 @@ public class UploadUtil {
                 endpoint = "https://" + endpoint;
             }
             try {
-                URI endpointUri = new URI(endpoint);
-                r2Client = S3Client.builder()
-                        .endpointOverride(endpointUri)
-                        .region(Region.US_EAST_1) // Cloudflare R2 使用 US-EAST-1 作为占位符
-                        .credentialsProvider(StaticCredentialsProvider.create(
-                                AwsBasicCredentials.create(r2AccessKeyId, r2SecretAccessKey)))
-                        .build();
+                initClient(new URI(endpoint), r2AccessKeyId, r2SecretAccessKey);
             } catch (Exception uriEx) {
                 log.error("Cloudflare R2 endpoint 格式错误: [{}]，请检查配置，错误信息: {}", endpoint, uriEx.getMessage());
                 throw new RuntimeException("Cloudflare R2 endpoint 格式错误: " + endpoint, uriEx);
@@ -119,6 +171,31 @@ public class UploadUtil {
         }
     }
 
+    /**
+     * 创建 R2 异步客户端（R2 同时支持路径风格访问，使用路径风格便于对接本地的 S3 兼容服务）
+     *
+     * @param endpoint        R2 endpoint
+     * @param accessKeyId     访问密钥ID
+     * @param secretAccessKey 访问密钥
+     */
+    void initClient(URI endpoint, String accessKeyId, String secretAccessKey) {
+        r2Client = S3AsyncClient.builder()
+                .endpointOverride(endpoint)
+                .region(Region.US_EAST_1) // Cloudflare R2 使用 US-EAST-1 作为占位符
+                .forcePathStyle(true)
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(accessKeyId, secretAccessKey)))
+                .build();
+        requestPermits = new Semaphore(Math.max(1, maxConcurrentRequests));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (r2Client != null) {
+            r2Client.close();
+        }
+    }
+
     /**
      * 生成上传文件的路径
      *
@@ -154,10 +231,7 @@ public class UploadUtil {
      * @throws BusinessException 如果R2客户端未初始化或上传失败
      */
     public String uploadR2(MultipartFile file) throws IOException, BusinessException {
-        if (r2Client == null) {
-            log.error("Cloudflare R2 客户端未初始化，请检查R2访问密钥配置");
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Cloudflare R2 客户端未初始化，请检查环境变量配置");
-        }
+        checkClient();
 
         if (file == null || file.isEmpty()) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "上传文件不能为空");
@@ -168,10 +242,8 @@ public class UploadUtil {
             originalFilename = "未知文件名";
         }
 
-        String contentType = file.getContentType();
-        if (contentType == null || contentType.isEmpty()) {
-            contentType = "application/octet-stream";
-        }
+        String contentType = file.getContentType() == null || file.getContentType().isEmpty()
+                ? "application/octet-stream" : file.getContentType();
 
         // 根据文件类型确定子目录
         String fileType = "other";
@@ -189,23 +261,202 @@ public class UploadUtil {
         String filePath = generateFilePath(originalFilename, fileType);
         log.info("准备上传文件: {}, 类型: {}, 目标路径: {}", originalFilename, contentType, filePath);
 
-        // 上传到 Cloudflare R2
+        // 转存到本地临时文件后流式上传到 Cloudflare R2
+        Path tempFile = createTempFile();
         try {
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(cloudflareR2BucketName)
-                    .key(filePath)
-                    .contentType(contentType)
-                    .build();
+            file.transferTo(tempFile);
+            return uploadFile(tempFile, filePath, contentType);
+        } finally {
+            deleteTempFile(tempFile);
+        }
+    }
+
+    /**
+     * 将本地文件流式上传到 Cloudflare R2（超过阈值时分片上传），等待上传完成
+     *
+     * @param file        本地文件
+     * @param key         对象路径
+     * @param contentType 内容类型
+     * @return 文件访问URL
+     * @throws IOException       读取本地文件失败
+     * @throws BusinessException 如果R2客户端未初始化或上传失败
+     */
+    public String uploadFile(Path file, String key, String contentType) throws IOException, BusinessException {
+        checkClient();
+        long size = Files.size(file);
+        return await(size > multipartThreshold
+                ? uploadMultipart(file, key, contentType, size)
+                : withPermit(() -> r2Client.putObject(builder -> builder
+                .bucket(cloudflareR2BucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(size), AsyncRequestBody.fromFile(file))), key, size);
+    }
 
-            r2Client.putObject(putObjectRequest, RequestBody.fromBytes(file.getBytes()));
-            log.info("文件上传到 Cloudflare R2 成功: {}", filePath);
+    /**
+     * 将内存中的小文件（如缩略图）上传到 Cloudflare R2，等待上传完成
+     *
+     * @param data        文件内容
+     * @param key         对象路径
+     * @param contentType 内容类型
+     * @return 文件访问URL
+     * @throws BusinessException 如果R2客户端未初始化或上传失败
+     */
+    public String uploadBytes(byte[] data, String key, String contentType) throws BusinessException {
+        checkClient();
+        return await(withPermit(() -> r2Client.putObject(builder -> builder
+                .bucket(cloudflareR2BucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength((long) data.length), AsyncRequestBody.fromBytes(data))), key, data.length);
+    }
 
-            // 返回文件URL
-            return cloudflareR2Domain + filePath;
+    /**
+     * 获取对象的公开访问URL
+     *
+     * @param key 对象路径
+     * @return 文件访问URL
+     */
+    public String getPublicUrl(String key) {
+        return cloudflareR2Domain + key;
+    }
+
+    /**
+     * 创建上传用的本地临时文件路径（文件本身不创建，调用方负责删除）
+     *
+     * @return 临时文件路径
+     */
+    public Path createTempFile() {
+        return Path.of(System.getProperty("java.io.tmpdir"), "game9-r2-" + UUID.randomUUID() + ".tmp");
+    }
+
+    /**
+     * 删除上传用的本地临时文件
+     *
+     * @param tempFile 临时文件路径
+     */
+    public void deleteTempFile(Path tempFile) {
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            log.warn("删除上传临时文件失败: {}", tempFile);
+        }
+    }
+
+    private void checkClient() {
+        if (r2Client == null) {
+            log.error("Cloudflare R2 客户端未初始化，请检查R2访问密钥配置");
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Cloudflare R2 客户端未初始化，请检查环境变量配置");
+        }
+    }
+
+    private String await(CompletableFuture<?> upload, String key, long size) {
+        await(upload);
+        log.info("文件上传到 Cloudflare R2 成功: {}, 大小: {}", key, size);
+        return getPublicUrl(key);
+    }
+
+    /**
+     * 等待请求完成，失败统一转换为 BusinessException
+     */
+    private <T> T await(CompletableFuture<T> request) {
+        try {
+            return request.get(UPLOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "文件上传被中断");
         } catch (Exception e) {
-            log.error("上传文件到 Cloudflare R2 失败: {}", e.getMessage(), e);
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "文件上传失败: " + e.getMessage());
+            Throwable cause = (e instanceof ExecutionException || e instanceof CompletionException) && e.getCause() != null
+                    ? e.getCause() : e;
+            if (cause instanceof BusinessException businessException) {
+                throw businessException;
+            }
+            String message = e instanceof TimeoutException ? "上传超时" : cause.getMessage();
+            log.error("上传文件到 Cloudflare R2 失败: {}", message, cause);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "文件上传失败: " + message);
+        }
+    }
+
+    /**
+     * 分片上传：各分片从临时文件的对应位置读取并行发送，全部完成后合并，任一分片失败则取消上传
+     */
+    private CompletableFuture<?> uploadMultipart(Path tempFile, String key, String contentType, long size) {
+        CreateMultipartUploadResponse created = await(withPermit(() -> r2Client.createMultipartUpload(builder -> builder
+                .bucket(cloudflareR2BucketName)
+                .key(key)
+                .contentType(contentType))));
+        String uploadId = created.uploadId();
+        long chunk = Math.max(partSize, MIN_PART_SIZE);
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+        try {
+            for (long position = 0; position < size; position += chunk) {
+                int partNumber = parts.size() + 1;
+                long offset = position;
+                long length = Math.min(chunk, size - position);
+                parts.add(withPermit(() -> r2Client.uploadPart(builder -> builder
+                                .bucket(cloudflareR2BucketName)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .partNumber(partNumber)
+                                .contentLength(length),
+                        AsyncRequestBody.fromFile(config -> config
+                                .path(tempFile)
+                                .position(offset)
+                                .numBytesToRead(length))))
+                        .thenApply(response -> CompletedPart.builder()
+                                .partNumber(partNumber)
+                                .eTag(response.eTag())
+                                .build()));
+            }
+        } catch (RuntimeException e) {
+            abortMultipart(key, uploadId);
+            throw e;
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture[0]))
+                .thenCompose(ignored -> withPermit(() -> r2Client.completeMultipartUpload(builder -> builder
+                        .bucket(cloudflareR2BucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .multipartUpload(upload -> upload.parts(parts.stream().map(CompletableFuture::join).toList())))))
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        abortMultipart(key, uploadId);
+                    }
+                });
+    }
+
+    private void abortMultipart(String key, String uploadId) {
+        r2Client.abortMultipartUpload(builder -> builder
+                        .bucket(cloudflareR2BucketName)
+                        .key(key)
+                        .uploadId(uploadId))
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        log.warn("取消分片上传失败 - key: {}, uploadId: {}, error: {}", key, uploadId, error.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * 获取并发许可后发起请求，请求结束时归还许可
+     */
+    private <T> CompletableFuture<T> withPermit(Supplier<CompletableFuture<T>> request) {
+        try {
+            if (!requestPermits.tryAcquire(PERMIT_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "上传繁忙，请稍后重试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "文件上传被中断");
+        }
+        CompletableFuture<T> future;
+        try {
+            future = request.get();
+        } catch (RuntimeException e) {
+            requestPermits.release();
+            throw e;
         }
+        return future.whenComplete((response, error) -> requestPermits.release());
     }
 
     /**
@@ -1,5 +1,5 @@
 CREATE TABLE `chat_message`  (
-  `messageId` bigint NOT NULL AUTO_INCREMENT,
+  `messageId` bigint NOT NULL COMMENT '消息ID（雪花ID，由应用分配）',
   `senderId` bigint NOT NULL COMMENT '发送者ID',
   `receiverId` bigint NOT NULL COMMENT '接收者ID',
   `content` text CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NOT NULL COMMENT '消息内容',
@@ -12,10 +12,12 @@ CREATE TABLE `chat_message`  (
   `updateTime` datetime NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   `isDeleted` tinyint NULL DEFAULT 0 COMMENT '是否删除：0-未删除 1-已删除',
   PRIMARY KEY (`messageId`) USING BTREE,
-  INDEX `idx_sender_receiver`(`senderId`, `receiverId`) USING BTREE,
+  INDEX `idx_sender_receiver`(`senderId`, `receiverId`, `messageId`) USING BTREE,
+  INDEX `idx_receiver_status`(`receiverId`, `messageStatus`, `senderId`) USING BTREE,
+  INDEX `idx_receiver_message`(`receiverId`, `messageId`) USING BTREE,
   INDEX `idx_create_time`(`createTime`) USING BTREE,
   INDEX `idx_status`(`messageStatus`) USING BTREE,
   INDEX `idx_message_category`(`messageCategory`) USING BTREE,
   INDEX `idx_is_system`(`isSystem`) USING BTREE,
   INDEX `idx_category_system`(`messageCategory`, `isSystem`) USING BTREE
-) ENGINE = InnoDB AUTO_INCREMENT = 74 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '聊天消息表' ROW_FORMAT = Dynamic;
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '聊天消息表' ROW_FORMAT = Dynamic;
@@ -10,5 +10,7 @@ CREATE TABLE `chat_session`  (
   `updateTime` datetime NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   PRIMARY KEY (`sessionId`) USING BTREE,
   UNIQUE INDEX `uk_users`(`user1Id`, `user2Id`) USING BTREE,
-  INDEX `idx_last_message_time`(`lastMessageTime`) USING BTREE
+  INDEX `idx_last_message_time`(`lastMessageTime`) USING BTREE,
+  INDEX `idx_user1_time`(`user1Id`, `lastMessageTime`, `sessionId`) USING BTREE,
+  INDEX `idx_user2_time`(`user2Id`, `lastMessageTime`, `sessionId`) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 5 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '聊天会话表' ROW_FORMAT = Dynamic;
@@ -0,0 +1,6 @@
+CREATE TABLE `flashstockflush`  (
+  `batchId` varchar(36) NOT NULL COMMENT '回写批次ID',
+  `createTime` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '回写时间',
+  PRIMARY KEY (`batchId`) USING BTREE,
+  INDEX `idx_flash_stock_flush_time`(`createTime`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '秒杀库存回写日志表（保证同一批次只回写一次）' ROW_FORMAT = Dynamic;
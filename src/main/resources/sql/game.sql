@@ -16,5 +16,7 @@ CREATE TABLE `game`  (
   `gameDiscount` decimal(5, 2) NULL DEFAULT NULL COMMENT '游戏折扣',
   `gameCover` varchar(512) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL COMMENT '游戏封面',
   `gameAppId` varchar(12) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NULL DEFAULT NULL,
-  PRIMARY KEY (`gameId`) USING BTREE
+  PRIMARY KEY (`gameId`) USING BTREE,
+  INDEX `idx_game_sale_start`(`gameSaleStartTime`) USING BTREE,
+  INDEX `idx_game_sale_end`(`gameSaleEndTime`) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 59 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '游戏表' ROW_FORMAT = Dynamic;
@@ -0,0 +1,9 @@
+CREATE TABLE `gameplayerhourly`  (
+  `gameId` bigint NOT NULL COMMENT '游戏ID',
+  `statHour` datetime NOT NULL COMMENT '统计小时（整点）',
+  `playerSum` bigint NOT NULL DEFAULT 0 COMMENT '该小时内采样的在线人数总和',
+  `playerPeak` int NOT NULL DEFAULT 0 COMMENT '该小时内采样的在线人数峰值',
+  `sampleCount` int NOT NULL DEFAULT 0 COMMENT '该小时内的采样次数',
+  PRIMARY KEY (`gameId`, `statHour`) USING BTREE,
+  INDEX `idx_player_hourly_hour`(`statHour`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '游戏在线人数小时汇总表' ROW_FORMAT = Dynamic;
@@ -0,0 +1,12 @@
+CREATE TABLE `gameratingstats`  (
+  `gameId` bigint NOT NULL COMMENT '游戏ID',
+  `ratingCount` bigint NOT NULL DEFAULT 0 COMMENT '有效评价数',
+  `ratingSum` bigint NOT NULL DEFAULT 0 COMMENT '评分总和',
+  `star1` bigint NOT NULL DEFAULT 0 COMMENT '1星数量',
+  `star2` bigint NOT NULL DEFAULT 0 COMMENT '2星数量',
+  `star3` bigint NOT NULL DEFAULT 0 COMMENT '3星数量',
+  `star4` bigint NOT NULL DEFAULT 0 COMMENT '4星数量',
+  `star5` bigint NOT NULL DEFAULT 0 COMMENT '5星数量',
+  `updateTime` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`gameId`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '游戏评分汇总表' ROW_FORMAT = Dynamic;
@@ -0,0 +1,8 @@
+-- 已有 chat_message 表升级：补充聊天历史键集分页、重连同步和未读统计使用的索引
+-- idx_sender_receiver 追加 messageId 列，会话内按消息ID翻页时不再回表排序
+ALTER TABLE `chat_message`
+  DROP INDEX `idx_sender_receiver`,
+  ADD INDEX `idx_sender_receiver`(`senderId`, `receiverId`, `messageId`) USING BTREE,
+  ADD INDEX `idx_receiver_message`(`receiverId`, `messageId`) USING BTREE,
+  ADD INDEX `idx_receiver_status`(`receiverId`, `messageStatus`, `senderId`) USING BTREE,
+  ALGORITHM = INPLACE, LOCK = NONE;
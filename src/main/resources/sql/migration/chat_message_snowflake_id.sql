@@ -0,0 +1,3 @@
+-- 已有 chat_message 表升级：消息ID改由应用分配雪花ID，去掉自增属性
+ALTER TABLE `chat_message`
+  MODIFY COLUMN `messageId` bigint NOT NULL COMMENT '消息ID（雪花ID，由应用分配）';
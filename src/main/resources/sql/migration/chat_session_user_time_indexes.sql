@@ -0,0 +1,5 @@
+-- 已有 chat_session 表升级：会话列表按用户分别查询 user1Id / user2Id 两侧并按最后消息时间排序
+ALTER TABLE `chat_session`
+  ADD INDEX `idx_user1_time`(`user1Id`, `lastMessageTime`, `sessionId`) USING BTREE,
+  ADD INDEX `idx_user2_time`(`user2Id`, `lastMessageTime`, `sessionId`) USING BTREE,
+  ALGORITHM = INPLACE, LOCK = NONE;
@@ -0,0 +1,5 @@
+-- 已有 newstag 表升级：标签名改为二进制排序规则，与 Redis 热门标签计数的精确匹配一致
+-- 清空后由 NewsTagIndexJob 在启动时按规范化（小写）后的标签回填关联表并重新统计计数
+TRUNCATE TABLE `newstag`;
+ALTER TABLE `newstag`
+  MODIFY COLUMN `tagName` varchar(32) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '标签名（含#前缀，小写规范化）';
@@ -0,0 +1,8 @@
+CREATE TABLE `newstag`  (
+  `tagName` varchar(32) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '标签名（含#前缀，小写规范化）',
+  `newsId` bigint NOT NULL COMMENT '资讯ID',
+  `newsPublishTime` datetime NULL DEFAULT NULL COMMENT '资讯发布时间（冗余，用于按标签分页排序）',
+  PRIMARY KEY (`tagName`, `newsId`) USING BTREE,
+  INDEX `idx_newstag_tag_publish`(`tagName`, `newsPublishTime`) USING BTREE,
+  INDEX `idx_newstag_news_id`(`newsId`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '资讯标签关联表（仅包含已发布且未删除的资讯）' ROW_FORMAT = Dynamic;
@@ -17,5 +17,6 @@ CREATE TABLE `orders`  (
   `createdTime` timestamp NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `updateTime` timestamp NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   PRIMARY KEY (`orderId`) USING BTREE,
-  UNIQUE INDEX `order_orderNo_unique`(`orderNo`) USING BTREE
+  UNIQUE INDEX `order_orderNo_unique`(`orderNo`) USING BTREE,
+  INDEX `idx_orders_status_created`(`orderStatus`, `createdTime`) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 52 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci COMMENT = '订单表' ROW_FORMAT = Dynamic;
@@ -0,0 +1,220 @@
+package com.xm.game9.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 集群消息中继多节点测试（真实 Redis）
+ * <p>
+ * 每个节点使用独立的连接工厂和监听容器，经真实的 ZSET 路由和发布订阅转发，
+ * 覆盖内存版测试（{@link ClusterMessageRelayTest}）无法验证的管道结果、频道订阅和序列化。
+ * Redis 地址取自 REDIS_HOST / REDIS_PORT / REDIS_PASSWORD（默认 127.0.0.1:6379），连接不上时跳过。
+ *
+ * @author X1aoM1ngTX
+ */
+class ClusterMessageRelayRedisTest {
+
+    private static final long DELIVERY_TIMEOUT_MILLIS = 5_000L;
+
+    private static RedisStandaloneConfiguration configuration;
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    private Node nodeA;
+
+    private Node nodeB;
+
+    /**
+     * 每个用例使用随机用户ID，避免与共享 Redis 中的其他数据冲突
+     */
+    private long userBase;
+
+    @BeforeAll
+    static void checkRedis() {
+        configuration = new RedisStandaloneConfiguration(
+                System.getenv().getOrDefault("REDIS_HOST", "127.0.0.1"),
+                Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379")));
+        String password = System.getenv("REDIS_PASSWORD");
+        if (password != null && !password.isEmpty()) {
+            configuration.setPassword(password);
+        }
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(configuration);
+        factory.afterPropertiesSet();
+        factory.start();
+        boolean available;
+        try (RedisConnection connection = factory.getConnection()) {
+            available = "PONG".equals(connection.ping());
+        } catch (Exception e) {
+            available = false;
+        } finally {
+            factory.destroy();
+        }
+        assumeTrue(available, "Redis 不可用，跳过真实 Redis 的集群中继测试");
+    }
+
+    @BeforeEach
+    void setUp() {
+        userBase = 800_000_000L + ThreadLocalRandom.current().nextLong(100_000_000L);
+        nodeA = startNode();
+        nodeB = startNode();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(Node::stop);
+        nodes.clear();
+    }
+
+    @Test
+    void sendToUser_DeliversToUserOnOtherNode() throws InterruptedException {
+        long userId = userBase + 1;
+        nodeB.relay.register(userId, "session-b");
+
+        nodeA.relay.sendToUser(userId, "/queue/messages", Map.of("content", "hello"));
+
+        Delivery delivery = nodeB.template.next();
+        assertNotNull(delivery, "消息未转发到节点B");
+        assertEquals(String.valueOf(userId), delivery.user());
+        assertEquals("/queue/messages", delivery.destination());
+        assertEquals("hello", ((JsonNode) delivery.payload()).get("content").asText());
+        assertTrue(nodeA.template.deliveries.isEmpty());
+    }
+
+    @Test
+    void sendToUsers_BatchRoutesEachUserToItsNodes() throws InterruptedException {
+        long remoteUser = userBase + 2;
+        long sharedUser = userBase + 3;
+        nodeB.relay.register(remoteUser, "session-b1");
+        nodeA.relay.register(sharedUser, "session-a");
+        nodeB.relay.register(sharedUser, "session-b2");
+
+        nodeA.relay.sendToUsers("/queue/friends/status", Map.of(
+                remoteUser, Map.of("online", true),
+                sharedUser, Map.of("online", false)));
+
+        // 本节点连接同步投递，只投递共享用户
+        assertEquals(List.of(String.valueOf(sharedUser)),
+                nodeA.template.deliveries.stream().map(Delivery::user).toList());
+        List<String> relayed = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Delivery delivery = nodeB.template.next();
+            assertNotNull(delivery, "消息未全部转发到节点B");
+            relayed.add(delivery.user());
+        }
+        assertTrue(relayed.containsAll(List.of(String.valueOf(remoteUser), String.valueOf(sharedUser))));
+    }
+
+    @Test
+    void unregister_RemovesRouteAndStopsRelay() throws InterruptedException {
+        long userId = userBase + 4;
+        nodeB.relay.register(userId, "session-b");
+        assertTrue(nodeA.relay.isConnectedAnywhere(userId));
+
+        nodeB.relay.unregister(userId, "session-b");
+        assertFalse(nodeA.relay.isConnectedAnywhere(userId));
+
+        nodeA.relay.sendToUser(userId, "/queue/messages", Map.of("content", "lost"));
+        assertNull(nodeB.template.deliveries.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void refreshRoutes_KeepsRemoteUserReachable() {
+        long userId = userBase + 5;
+        nodeB.relay.register(userId, "session-b");
+
+        nodeB.relay.refreshRoutes();
+
+        assertTrue(nodeA.relay.isConnectedAnywhere(userId));
+        Long ttl = nodeA.redis.getExpire("ws:route:" + userId);
+        assertNotNull(ttl);
+        assertTrue(ttl > 0 && ttl <= ClusterMessageRelay.ROUTE_TTL_MILLIS / 1000);
+    }
+
+    private Node startNode() {
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(configuration);
+        factory.afterPropertiesSet();
+        factory.start();
+        StringRedisTemplate redis = new StringRedisTemplate(factory);
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.afterPropertiesSet();
+
+        RecordingMessagingTemplate template = new RecordingMessagingTemplate();
+        ClusterMessageRelay relay = new ClusterMessageRelay();
+        ReflectionTestUtils.setField(relay, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(relay, "messagingTemplate", template);
+        ReflectionTestUtils.setField(relay, "redisMessageListenerContainer", container);
+        relay.init();
+        // 启动时等待频道订阅完成，之后发布的消息不会丢失
+        container.start();
+
+        Node node = new Node(factory, container, redis, relay, template);
+        nodes.add(node);
+        return node;
+    }
+
+    /**
+     * 一个模拟节点：独立的 Redis 连接、监听容器和 STOMP 推送
+     */
+    private record Node(LettuceConnectionFactory factory, RedisMessageListenerContainer container,
+                        StringRedisTemplate redis, ClusterMessageRelay relay, RecordingMessagingTemplate template) {
+
+        void stop() {
+            relay.destroy();
+            try {
+                container.destroy();
+            } catch (Exception ignored) {
+                // 测试清理，忽略
+            }
+            factory.destroy();
+        }
+    }
+
+    /**
+     * 推送给用户的一条消息
+     */
+    private record Delivery(String user, String destination, Object payload) {
+    }
+
+    /**
+     * 记录推送而不真正发送的 STOMP 模板
+     */
+    private static final class RecordingMessagingTemplate extends SimpMessagingTemplate {
+
+        private final LinkedBlockingQueue<Delivery> deliveries = new LinkedBlockingQueue<>();
+
+        RecordingMessagingTemplate() {
+            super(new ExecutorSubscribableChannel());
+        }
+
+        @Override
+        public void convertAndSendToUser(String user, String destination, Object payload) {
+            deliveries.add(new Delivery(user, destination, payload));
+        }
+
+        Delivery next() throws InterruptedException {
+            return deliveries.poll(DELIVERY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.xm.game9.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 集群消息中继多节点测试
+ * <p>
+ * 两个中继实例共享一个内存版的 Redis（路由 ZSET + 发布订阅），模拟用户连接在不同节点的场景。
+ *
+ * @author X1aoM1ngTX
+ */
+class ClusterMessageRelayTest {
+
+    /**
+     * 内存版 Redis：key -> (member -> score)
+     */
+    private final Map<String, Map<String, Double>> zsets = new ConcurrentHashMap<>();
+
+    /**
+     * 频道 -> 订阅该频道的节点
+     */
+    private final Map<String, ClusterMessageRelay> channels = new ConcurrentHashMap<>();
+
+    private ClusterMessageRelay nodeA;
+
+    private ClusterMessageRelay nodeB;
+
+    private SimpMessagingTemplate templateA;
+
+    private SimpMessagingTemplate templateB;
+
+    @BeforeEach
+    void setUp() {
+        templateA = mock(SimpMessagingTemplate.class);
+        templateB = mock(SimpMessagingTemplate.class);
+        nodeA = createNode(templateA);
+        nodeB = createNode(templateB);
+    }
+
+    @Test
+    void sendToUser_DeliversToUserOnOtherNode() {
+        nodeB.register(2L, "session-b");
+
+        nodeA.sendToUser(2L, "/queue/messages", Map.of("content", "hello"));
+
+        verify(templateA, never()).convertAndSendToUser(anyString(), anyString(), any());
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(templateB).convertAndSendToUser(eq("2"), eq("/queue/messages"), payload.capture());
+        assertEquals("hello", ((JsonNode) payload.getValue()).get("content").asText());
+    }
+
+    @Test
+    void sendToUser_LocalUserIsNotRelayed() {
+        nodeA.register(1L, "session-a");
+
+        nodeA.sendToUser(1L, "/queue/confirm", Map.of("content", "ok"));
+
+        verify(templateA).convertAndSendToUser(eq("1"), eq("/queue/confirm"), any());
+        verifyNoInteractions(templateB);
+    }
+
+    @Test
+    void sendToUser_UserConnectedToBothNodes() {
+        nodeA.register(3L, "session-a");
+        nodeB.register(3L, "session-b");
+
+        nodeA.sendToUser(3L, "/queue/friends/status", Map.of("online", true));
+
+        verify(templateA, times(1)).convertAndSendToUser(eq("3"), eq("/queue/friends/status"), any());
+        verify(templateB, times(1)).convertAndSendToUser(eq("3"), eq("/queue/friends/status"), any());
+    }
+
+    @Test
+    void unregister_RouteRemovedAfterLastSession() {
+        nodeB.register(4L, "s1");
+        nodeB.register(4L, "s2");
+
+        nodeB.unregister(4L, "s1");
+        assertTrue(nodeB.isLocal(4L));
+        assertTrue(zsets.get("ws:route:4").containsKey(nodeB.getNodeId()));
+
+        nodeB.unregister(4L, "s2");
+        assertFalse(nodeB.isLocal(4L));
+        assertFalse(zsets.get("ws:route:4").containsKey(nodeB.getNodeId()));
+
+        nodeA.sendToUser(4L, "/queue/messages", Map.of("content", "lost"));
+        verifyNoInteractions(templateB);
+    }
+
+    @Test
+    void sendToUser_StaleRouteIgnored() {
+        nodeB.register(5L, "session-b");
+        // 模拟节点B宕机：心跳超过有效期
+        zsets.get("ws:route:5").put(nodeB.getNodeId(),
+                (double) (System.currentTimeMillis() - ClusterMessageRelay.ROUTE_TTL_MILLIS - 1000));
+
+        nodeA.sendToUser(5L, "/queue/messages", Map.of("content", "hello"));
+
+        verifyNoInteractions(templateB);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ClusterMessageRelay createNode(SimpMessagingTemplate template) {
+        ClusterMessageRelay relay = new ClusterMessageRelay();
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+        when(redis.opsForZSet()).thenReturn(zSetOps);
+        when(zSetOps.add(anyString(), anyString(), anyDouble())).thenAnswer(inv -> {
+            zsets.computeIfAbsent(inv.getArgument(0), k -> new ConcurrentHashMap<>())
+                    .put(inv.getArgument(1), inv.getArgument(2));
+            return true;
+        });
+        when(zSetOps.remove(anyString(), any(Object[].class))).thenAnswer(inv -> {
+            Map<String, Double> zset = zsets.getOrDefault((String) inv.getArgument(0), Map.of());
+            long removed = 0;
+            for (int i = 1; i < inv.getArguments().length; i++) {
+                removed += zset.remove(inv.getArguments()[i]) != null ? 1 : 0;
+            }
+            return removed;
+        });
+        // 路由查询走管道：回调中的每条 ZRANGEBYSCORE 依次对应一个结果
+        when(redis.executePipelined(any(RedisCallback.class))).thenAnswer(inv -> {
+            RedisCallback<?> callback = inv.getArgument(0);
+            List<Object> results = new ArrayList<>();
+            StringRedisConnection connection = mock(StringRedisConnection.class);
+            when(connection.zRangeByScore(anyString(), anyDouble(), anyDouble())).thenAnswer(c -> {
+                results.add(rangeByScore(c.getArgument(0), c.getArgument(1), c.getArgument(2)));
+                return null;
+            });
+            callback.doInRedis(connection);
+            return results;
+        });
+        when(redis.convertAndSend(anyString(), anyString())).thenAnswer(inv -> {
+            String channel = inv.getArgument(0);
+            String body = inv.getArgument(1);
+            ClusterMessageRelay target = channels.get(channel);
+            if (target == null) {
+                return 0L;
+            }
+            target.onMessage(new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8),
+                    body.getBytes(StandardCharsets.UTF_8)), null);
+            return 1L;
+        });
+
+        ReflectionTestUtils.setField(relay, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(relay, "messagingTemplate", template);
+        ReflectionTestUtils.setField(relay, "redisMessageListenerContainer", mock(RedisMessageListenerContainer.class));
+        relay.init();
+        channels.put(ClusterMessageRelay.NODE_CHANNEL_PREFIX + relay.getNodeId(), relay);
+        return relay;
+    }
+
+    private Set<String> rangeByScore(String key, double min, double max) {
+        Set<String> result = new LinkedHashSet<>();
+        zsets.getOrDefault(key, Map.of()).forEach((member, score) -> {
+            if (score >= min && score <= max) {
+                result.add(member);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,402 @@
+package com.xm.game9.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xm.game9.model.domain.User;
+import com.xm.game9.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * 聊天 WebSocket 单节点压测
+ * <p>
+ * 在随机端口启动完整应用（使用 test 配置，MySQL、Redis 由 CI 服务容器或本地实例提供，
+ * 库表结构来自 src/main/resources/sql），模拟 N 个 SockJS/STOMP 客户端两两互发消息，
+ * 统计建连速率、端到端消息延迟（p50/p99/p999）、消息通道队列深度和 GC 开销。
+ * <p>
+ * 建连失败和送达率不足时测试失败；延迟与提交在 src/test/resources/loadtest/chat-load-baseline.properties
+ * 中、相同客户端数和速率下的基线比较，超过基线的允许回退比例时失败。没有基线时延迟只写入报告，
+ * 同时生成 target/loadtest/chat-load-baseline.properties，确认后提交即成为后续运行的基线。
+ * <p>
+ * 默认构建不会运行，需显式开启：{@code mvn -Ploadtest test -Dloadtest.clients=2000 -Dloadtest.rate=5000}
+ * <ul>
+ *     <li>loadtest.clients：客户端数（默认 500）</li>
+ *     <li>loadtest.rate：全体客户端每秒发送的消息数（默认 1000）</li>
+ *     <li>loadtest.duration：发送持续时间，秒（默认 30）</li>
+ *     <li>loadtest.connect-concurrency：同时进行的握手数（默认 100）</li>
+ *     <li>loadtest.max-p99-ms / loadtest.max-p999-ms：固定延迟阈值，设置后不再使用基线</li>
+ *     <li>loadtest.max-regression：相对基线允许的延迟回退比例（默认 0.2）</li>
+ *     <li>loadtest.min-delivery-ratio：最低送达率（默认 0.99）</li>
+ * </ul>
+ * 报告同时写入 target/loadtest/chat-load-report.txt。
+ *
+ * @author X1aoM1ngTX
+ */
+@Slf4j
+@Tag("loadtest")
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "logging.level.com.xm.game9=INFO")
+class ChatLoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 500);
+
+    private static final int RATE = Integer.getInteger("loadtest.rate", 1000);
+
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.duration", 30);
+
+    private static final int CONNECT_CONCURRENCY = Integer.getInteger("loadtest.connect-concurrency", 100);
+
+    private static final String MAX_P99_MS = System.getProperty("loadtest.max-p99-ms");
+
+    private static final String MAX_P999_MS = System.getProperty("loadtest.max-p999-ms");
+
+    private static final double MAX_REGRESSION =
+            Double.parseDouble(System.getProperty("loadtest.max-regression", "0.2"));
+
+    private static final String BASELINE_RESOURCE = "/loadtest/chat-load-baseline.properties";
+
+    private static final double MIN_DELIVERY_RATIO =
+            Double.parseDouble(System.getProperty("loadtest.min-delivery-ratio", "0.99"));
+
+    /**
+     * 压测用户ID起始值，避免与真实数据冲突
+     */
+    private static final long USER_ID_BASE = Long.getLong("loadtest.user-id-base", 900_000_000L);
+
+    /**
+     * 发送节拍（毫秒）
+     */
+    private static final long TICK_MILLIS = 10;
+
+    /**
+     * 需要采样队列深度的消息通道线程池
+     */
+    private static final List<String> CHANNEL_EXECUTORS =
+            List.of("clientInboundChannelExecutor", "clientOutboundChannelExecutor");
+
+    @LocalServerPort
+    private int port;
+
+    @MockBean
+    private UserService userService;
+
+    @Autowired
+    private Map<String, ThreadPoolTaskExecutor> executors;
+
+    @Autowired
+    private WebSocketMessageBrokerStats brokerStats;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AtomicLong sent = new AtomicLong();
+
+    private final AtomicLong received = new AtomicLong();
+
+    private final AtomicLong malformed = new AtomicLong();
+
+    private LatencyRecorder latency;
+
+    @BeforeEach
+    void setUp() {
+        // 握手拦截器和发送者信息都通过 getById 查询用户，压测用户不落库
+        when(userService.getById(any())).thenAnswer(invocation -> {
+            User user = new User();
+            user.setUserId(((Number) invocation.getArgument(0)).longValue());
+            user.setUserNickname("load-" + user.getUserId());
+            return user;
+        });
+        latency = new LatencyRecorder((int) Math.min((long) RATE * DURATION_SECONDS * 2 + 1024, 20_000_000L));
+    }
+
+    @Test
+    void chatThroughputAndLatency() throws Exception {
+        WebSocketStompClient stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(new CompositeMessageConverter(
+                List.of(new StringMessageConverter(), new ByteArrayMessageConverter())));
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "chat-load-driver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<String> report = new ArrayList<>();
+        GcSnapshot gcBefore = GcSnapshot.take();
+
+        // 1. 建立连接
+        AtomicReferenceArray<StompSession> sessions = new AtomicReferenceArray<>(CLIENTS);
+        AtomicInteger connectFailures = new AtomicInteger();
+        CountDownLatch connected = new CountDownLatch(CLIENTS);
+        Semaphore handshakes = new Semaphore(CONNECT_CONCURRENCY);
+        WebSocketHttpHeaders handshakeHeaders = new WebSocketHttpHeaders();
+        handshakeHeaders.setOrigin("http://localhost:3000");
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < CLIENTS; i++) {
+            handshakes.acquire();
+            int index = i;
+            String url = "http://localhost:" + port + "/api/ws?userId=" + (USER_ID_BASE + i);
+            stompClient.connectAsync(url, handshakeHeaders, new ClientHandler())
+                    .whenComplete((session, e) -> {
+                        handshakes.release();
+                        if (e != null) {
+                            connectFailures.incrementAndGet();
+                            log.warn("压测客户端连接失败 - index: {}, error: {}", index, e.getMessage());
+                        } else {
+                            sessions.set(index, session);
+                        }
+                        connected.countDown();
+                    });
+        }
+        assertTrue(connected.await(5, TimeUnit.MINUTES), "建立连接超时");
+        double connectSeconds = (System.nanoTime() - connectStart) / 1e9;
+        List<Integer> live = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            if (sessions.get(i) != null) {
+                live.add(i);
+            }
+        }
+        report.add(String.format("clients=%d connected=%d failed=%d connectSeconds=%.2f connectRate=%.1f/s",
+                CLIENTS, live.size(), connectFailures.get(), connectSeconds, live.size() / connectSeconds));
+        // 等待订阅生效
+        Thread.sleep(1000);
+
+        // 2. 按固定速率发送，同时采样通道队列深度
+        Map<String, AtomicInteger> maxQueueDepth = new LinkedHashMap<>();
+        CHANNEL_EXECUTORS.forEach(name -> maxQueueDepth.put(name, new AtomicInteger()));
+        scheduler.scheduleAtFixedRate(() -> sampleQueueDepth(maxQueueDepth), 0, 100, TimeUnit.MILLISECONDS);
+
+        double perTick = RATE * TICK_MILLIS / 1000.0;
+        double[] budget = {0};
+        int[] cursor = {0};
+        scheduler.scheduleAtFixedRate(() -> {
+            budget[0] += perTick;
+            while (budget[0] >= 1 && !live.isEmpty()) {
+                budget[0] -= 1;
+                int from = live.get(cursor[0] % live.size());
+                int to = live.get((cursor[0] + 1) % live.size());
+                cursor[0]++;
+                send(sessions.get(from), USER_ID_BASE + from, USER_ID_BASE + to);
+            }
+        }, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(DURATION_SECONDS));
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+
+        // 3. 等待在途消息送达
+        long drainDeadline = System.currentTimeMillis() + 10_000;
+        while (received.get() < sent.get() && System.currentTimeMillis() < drainDeadline) {
+            Thread.sleep(100);
+        }
+        GcSnapshot gcAfter = GcSnapshot.take();
+
+        // 4. 报告
+        double[] p = latency.percentilesMillis(0.5, 0.99, 0.999);
+        double deliveryRatio = sent.get() == 0 ? 0 : (double) received.get() / sent.get();
+        report.add(String.format("sent=%d received=%d malformed=%d delivery=%.4f throughput=%.1f msg/s",
+                sent.get(), received.get(), malformed.get(), deliveryRatio, (double) sent.get() / DURATION_SECONDS));
+        report.add(String.format("latencyMs p50=%.2f p99=%.2f p999=%.2f samples=%d dropped=%d",
+                p[0], p[1], p[2], latency.count(), latency.dropped()));
+        maxQueueDepth.forEach((name, depth) -> report.add("maxQueueDepth " + name + "=" + depth.get()));
+        report.add("broker " + brokerStats.getWebSocketSessionStatsInfo());
+        report.add("broker inbound " + brokerStats.getClientInboundExecutorStatsInfo());
+        report.add("broker outbound " + brokerStats.getClientOutboundExecutorStatsInfo());
+        report.add(String.format("gc collections=%d timeMs=%d heapUsedMb=%d",
+                gcAfter.count - gcBefore.count, gcAfter.timeMillis - gcBefore.timeMillis,
+                gcAfter.heapUsedBytes / (1024 * 1024)));
+        report.forEach(line -> log.info("[chat-load] {}", line));
+        Path reportFile = Path.of("target", "loadtest", "chat-load-report.txt");
+        Files.createDirectories(reportFile.getParent());
+        Files.write(reportFile, report, StandardCharsets.UTF_8);
+        writeBaselineCandidate(reportFile.resolveSibling("chat-load-baseline.properties"), p);
+
+        for (int i = 0; i < CLIENTS; i++) {
+            StompSession session = sessions.get(i);
+            if (session != null && session.isConnected()) {
+                session.disconnect();
+            }
+        }
+        stompClient.stop();
+
+        // 5. 回归门禁
+        assertEquals(0, connectFailures.get(), "存在建连失败的客户端");
+        assertTrue(deliveryRatio >= MIN_DELIVERY_RATIO, "送达率过低: " + deliveryRatio);
+        double[] limits = latencyLimits();
+        if (limits == null) {
+            log.warn("[chat-load] 没有与本次客户端数和速率匹配的延迟基线，延迟只记录不作为门禁");
+            return;
+        }
+        assertTrue(p[1] <= limits[0], "p99 延迟超过阈值: " + p[1] + "ms > " + limits[0] + "ms");
+        assertTrue(p[2] <= limits[1], "p999 延迟超过阈值: " + p[2] + "ms > " + limits[1] + "ms");
+    }
+
+    /**
+     * 延迟阈值：显式设置的固定阈值优先，否则为基线乘以允许的回退比例；都没有时返回空
+     *
+     * @return {p99 阈值, p999 阈值}（毫秒）
+     */
+    private static double[] latencyLimits() throws IOException {
+        if (MAX_P99_MS != null || MAX_P999_MS != null) {
+            return new double[]{
+                    MAX_P99_MS == null ? Double.MAX_VALUE : Double.parseDouble(MAX_P99_MS),
+                    MAX_P999_MS == null ? Double.MAX_VALUE : Double.parseDouble(MAX_P999_MS)};
+        }
+        Properties baseline = new Properties();
+        try (InputStream in = ChatLoadTest.class.getResourceAsStream(BASELINE_RESOURCE)) {
+            if (in == null) {
+                return null;
+            }
+            baseline.load(in);
+        }
+        if (!String.valueOf(CLIENTS).equals(baseline.getProperty("clients"))
+                || !String.valueOf(RATE).equals(baseline.getProperty("rate"))) {
+            return null;
+        }
+        return new double[]{
+                Double.parseDouble(baseline.getProperty("p99Ms")) * (1 + MAX_REGRESSION),
+                Double.parseDouble(baseline.getProperty("p999Ms")) * (1 + MAX_REGRESSION)};
+    }
+
+    private static void writeBaselineCandidate(Path file, double[] percentiles) throws IOException {
+        List<String> lines = List.of(
+                "# 聊天压测延迟基线，由 ChatLoadTest 生成，复制到 src/test/resources/loadtest/ 后生效",
+                "clients=" + CLIENTS,
+                "rate=" + RATE,
+                String.format("p99Ms=%.2f", percentiles[1]),
+                String.format("p999Ms=%.2f", percentiles[2]));
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    private void send(StompSession session, long senderId, long receiverId) {
+        if (session == null || !session.isConnected()) {
+            return;
+        }
+        // 消息内容携带发送时刻，接收端据此计算端到端延迟
+        String payload = "{\"senderId\":" + senderId + ",\"receiverId\":" + receiverId
+                + ",\"content\":\"" + System.nanoTime() + "\",\"messageType\":1}";
+        try {
+            session.send("/app/chat.send", payload);
+            sent.incrementAndGet();
+        } catch (Exception e) {
+            log.debug("压测消息发送失败: {}", e.getMessage());
+        }
+    }
+
+    private void sampleQueueDepth(Map<String, AtomicInteger> maxQueueDepth) {
+        maxQueueDepth.forEach((name, max) -> {
+            ThreadPoolTaskExecutor executor = executors.get(name);
+            if (executor != null) {
+                try {
+                    int depth = executor.getThreadPoolExecutor().getQueue().size();
+                    max.accumulateAndGet(depth, Math::max);
+                } catch (IllegalStateException e) {
+                    // 线程池未初始化（该通道未配置执行器）
+                }
+            }
+        });
+    }
+
+    /**
+     * 客户端会话处理器：连接成功后订阅个人消息队列并记录延迟
+     */
+    private class ClientHandler extends StompSessionHandlerAdapter {
+
+        @Override
+        public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+            session.subscribe("/user/queue/messages", new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return byte[].class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    long now = System.nanoTime();
+                    try {
+                        JsonNode node = objectMapper.readTree((byte[]) payload);
+                        latency.record(now - Long.parseLong(node.path("content").asText()));
+                        received.incrementAndGet();
+                    } catch (Exception e) {
+                        malformed.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+                                    byte[] payload, Throwable exception) {
+            log.debug("压测客户端处理帧异常: {}", exception.getMessage());
+        }
+
+        @Override
+        public void handleTransportError(StompSession session, Throwable exception) {
+            log.debug("压测客户端传输异常: {}", exception.getMessage());
+        }
+    }
+
+    /**
+     * GC 与堆使用快照
+     */
+    private record GcSnapshot(long count, long timeMillis, long heapUsedBytes) {
+
+        static GcSnapshot take() {
+            long count = 0;
+            long time = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(gc.getCollectionCount(), 0);
+                time += Math.max(gc.getCollectionTime(), 0);
+            }
+            return new GcSnapshot(count, time, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+    }
+}
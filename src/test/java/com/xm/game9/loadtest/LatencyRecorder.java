@@ -0,0 +1,72 @@
+package com.xm.game9.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 延迟记录器：预分配固定容量的样本数组，多线程无锁写入，结束后排序计算分位数
+ *
+ * @author X1aoM1ngTX
+ */
+class LatencyRecorder {
+
+    private final long[] samples;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * 超出容量未记录的样本数
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    LatencyRecorder(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    /**
+     * 记录一个样本
+     *
+     * @param nanos 延迟（纳秒）
+     */
+    void record(long nanos) {
+        int index = size.getAndIncrement();
+        if (index < samples.length) {
+            samples[index] = nanos;
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 已记录的样本数
+     */
+    int count() {
+        return Math.min(size.get(), samples.length);
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * 计算分位数（需在写入结束后调用）
+     *
+     * @param quantiles 分位点，如 0.5、0.99、0.999
+     * @return 对应的延迟（毫秒），没有样本时为 0
+     */
+    double[] percentilesMillis(double... quantiles) {
+        int n = count();
+        double[] result = new double[quantiles.length];
+        if (n == 0) {
+            return result;
+        }
+        long[] sorted = Arrays.copyOf(samples, n);
+        Arrays.sort(sorted);
+        for (int i = 0; i < quantiles.length; i++) {
+            int rank = (int) Math.ceil(quantiles[i] * n) - 1;
+            result[i] = sorted[Math.max(0, Math.min(rank, n - 1))] / 1_000_000.0;
+        }
+        return result;
+    }
+}
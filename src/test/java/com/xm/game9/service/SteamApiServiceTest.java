@@ -0,0 +1,127 @@
+package com.xm.game9.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Steam API服务测试（使用本地桩服务模拟 Steam Web API）
+ *
+ * @author X1aoM1ngTX
+ */
+class SteamApiServiceTest {
+
+    private HttpServer server;
+
+    private SteamApiService steamApiService;
+
+    private final AtomicInteger hits = new AtomicInteger();
+
+    private volatile int status = 200;
+
+    private volatile long delayMillis = 0;
+
+    private volatile String lastQuery;
+
+    /**
+     * 上游返回的 result（1 表示成功）
+     */
+    private volatile int result = 1;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/ISteamUserStats/GetNumberOfCurrentPlayers/v1/", exchange -> {
+            hits.incrementAndGet();
+            String query = exchange.getRequestURI().getQuery();
+            lastQuery = query;
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String appid = query.replaceAll(".*appid=(\\d+).*", "$1");
+            byte[] body = ("{\"response\":{\"player_count\":" + appid + "0,\"result\":" + result + "}}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        steamApiService = new SteamApiService("test-key", "http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    void tearDown() {
+        steamApiService.destroy();
+        server.stop(0);
+    }
+
+    @Test
+    void fetchNumberOfCurrentPlayers_Batch() {
+        Map<Integer, Integer> counts = steamApiService.fetchNumberOfCurrentPlayers(List.of(10, 20, 20, 30), 3000);
+        assertEquals(Map.of(10, 100, 20, 200, 30, 300), counts);
+        assertEquals(3, hits.get());
+        assertTrue(lastQuery.contains("key=test-key"));
+    }
+
+    @Test
+    void fetchNumberOfCurrentPlayers_CoalescesConcurrentRequests() throws Exception {
+        delayMillis = 300;
+        int threads = 20;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Map<Integer, Integer>>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return steamApiService.fetchNumberOfCurrentPlayers(List.of(730), 3000);
+            }));
+        }
+        start.countDown();
+        for (Future<Map<Integer, Integer>> future : futures) {
+            assertEquals(Map.of(730, 7300), future.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(1, hits.get(), "并发查询同一appid只应产生一次上游请求");
+    }
+
+    @Test
+    void fetchNumberOfCurrentPlayers_SkipsFailedResults() {
+        result = 42;
+        assertTrue(steamApiService.fetchNumberOfCurrentPlayers(List.of(570), 3000).isEmpty(),
+                "上游返回失败结果时不应记录为0");
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    void fetchNumberOfCurrentPlayers_OpensCircuitAfterFailures() {
+        status = 500;
+        for (int appid = 1; appid <= 5; appid++) {
+            assertTrue(steamApiService.fetchNumberOfCurrentPlayers(List.of(appid), 3000).isEmpty());
+        }
+        assertEquals(5, hits.get());
+        // 熔断期间不再请求上游
+        assertTrue(steamApiService.fetchNumberOfCurrentPlayers(List.of(6), 3000).isEmpty());
+        assertEquals(5, hits.get());
+    }
+}
@@ -0,0 +1,342 @@
+package com.xm.game9.utils;
+
+import com.xm.game9.model.domain.ChatMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 聊天消息写后缓冲落库测试
+ * <p>
+ * 使用内存版的 JdbcTemplate，批量写入时和开启 rewriteBatchedStatements 的驱动一样
+ * 对每行返回 {@link Statement#SUCCESS_NO_INFO}，验证重放 WAL 时不会重复计入会话。
+ *
+ * @author X1aoM1ngTX
+ */
+class ChatMessageWriteBufferTest {
+
+    private InMemoryJdbcTemplate jdbcTemplate;
+
+    private ChatMessageWriteBuffer writeBuffer;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new InMemoryJdbcTemplate();
+        writeBuffer = new ChatMessageWriteBuffer();
+        ReflectionTestUtils.setField(writeBuffer, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(writeBuffer, "transactionTemplate", new TransactionTemplate(new NoopTransactionManager()));
+    }
+
+    @Test
+    void writeThrough_ReplayDoesNotCountSessionAgain() {
+        List<ChatMessage> batch = List.of(message(1L, 10L, 20L, "a", 1000L), message(2L, 10L, 20L, "b", 2000L));
+
+        writeBuffer.writeThrough(batch);
+        // 提交后、XACK 前崩溃，重启后整批重放
+        writeBuffer.writeThrough(batch);
+
+        assertEquals(2, jdbcTemplate.messages.size());
+        assertEquals(1, jdbcTemplate.sessionUpserts.size());
+        Object[] session = jdbcTemplate.sessionUpserts.get(0);
+        assertEquals("b", session[2]);
+        // user2Id = 20 为接收者，未读 2 条
+        assertEquals(0, session[4]);
+        assertEquals(2, session[5]);
+    }
+
+    @Test
+    void writeThrough_PartialReplayCountsOnlyNewMessages() {
+        writeBuffer.writeThrough(List.of(message(1L, 10L, 20L, "a", 1000L)));
+        jdbcTemplate.sessionUpserts.clear();
+
+        writeBuffer.writeThrough(List.of(message(1L, 10L, 20L, "a", 1000L),
+                message(3L, 20L, 10L, "c", 3000L),
+                message(3L, 20L, 10L, "c", 3000L)));
+
+        assertEquals(2, jdbcTemplate.messages.size());
+        assertEquals(1, jdbcTemplate.sessionUpserts.size());
+        Object[] session = jdbcTemplate.sessionUpserts.get(0);
+        assertEquals("c", session[2]);
+        assertEquals(1, session[4]);
+        assertEquals(0, session[5]);
+    }
+
+    @Test
+    void flush_PoisonRecordMovesToDeadLetterAndPartitionKeepsMoving() {
+        FakeStreamRedisTemplate redis = new FakeStreamRedisTemplate();
+        ReflectionTestUtils.setField(writeBuffer, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(writeBuffer, "partitions", 1);
+        ReflectionTestUtils.setField(writeBuffer, "batchSize", 500);
+        jdbcTemplate.rejectContent = "poison";
+        redis.records.add(record("1-0", 1L, "a"));
+        redis.records.add(record("2-0", 2L, "poison"));
+        redis.records.add(record("3-0", 3L, "c"));
+
+        assertEquals(3, writeBuffer.flush());
+
+        assertEquals(Set.of(1L, 3L), jdbcTemplate.messages.keySet());
+        assertEquals(List.of("1-0", "2-0", "3-0"), redis.acknowledged);
+        assertEquals(1, redis.deadLetters.size());
+        assertEquals("2", redis.deadLetters.get(0).get("messageId"));
+        assertEquals("chat:wal:0", redis.deadLetters.get(0).get("sourceStream"));
+        assertTrue(redis.removedInflight.contains(ChatMessageWriteBuffer.inflightMember(2L, 10L)));
+    }
+
+    @Test
+    void flush_TransientFailureLeavesRecordsPending() {
+        FakeStreamRedisTemplate redis = new FakeStreamRedisTemplate();
+        ReflectionTestUtils.setField(writeBuffer, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(writeBuffer, "partitions", 1);
+        ReflectionTestUtils.setField(writeBuffer, "batchSize", 500);
+        jdbcTemplate.unavailable = true;
+        redis.records.add(record("1-0", 1L, "a"));
+
+        assertThrows(QueryTimeoutException.class, () -> writeBuffer.flush());
+
+        assertTrue(redis.acknowledged.isEmpty());
+        assertTrue(redis.deadLetters.isEmpty());
+    }
+
+    @Test
+    void flush_ClaimsPendingRecordsOfOtherConsumers() {
+        FakeStreamRedisTemplate redis = new FakeStreamRedisTemplate();
+        ReflectionTestUtils.setField(writeBuffer, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(writeBuffer, "partitions", 1);
+        ReflectionTestUtils.setField(writeBuffer, "batchSize", 500);
+        redis.pending.add(new PendingMessage(RecordId.of("1-0"), Consumer.from("chat-writer", "writer-crashed"),
+                Duration.ofMinutes(1), 1));
+        redis.records.add(record("1-0", 1L, "a"));
+
+        assertEquals(1, writeBuffer.flush());
+
+        assertEquals(List.of("1-0"), redis.claimed);
+        assertEquals(List.of("1-0"), redis.acknowledged);
+    }
+
+    @Test
+    void flush_StopsWhenLockRenewalFails() {
+        FakeStreamRedisTemplate redis = new FakeStreamRedisTemplate();
+        ReflectionTestUtils.setField(writeBuffer, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(writeBuffer, "partitions", 1);
+        ReflectionTestUtils.setField(writeBuffer, "batchSize", 500);
+        redis.lockLost = true;
+        redis.records.add(record("1-0", 1L, "a"));
+
+        assertEquals(0, writeBuffer.flush());
+
+        assertTrue(jdbcTemplate.messages.isEmpty());
+        assertTrue(redis.acknowledged.isEmpty());
+    }
+
+    private static MapRecord<String, Object, Object> record(String id, Long messageId, String content) {
+        Map<Object, Object> value = new LinkedHashMap<>();
+        value.put("messageId", String.valueOf(messageId));
+        value.put("senderId", "10");
+        value.put("receiverId", "20");
+        value.put("content", content);
+        value.put("messageType", "1");
+        value.put("createTime", String.valueOf(1000L * messageId));
+        return MapRecord.create("chat:wal:0", value).withId(RecordId.of(id));
+    }
+
+    private static ChatMessage message(Long messageId, Long senderId, Long receiverId, String content, long time) {
+        ChatMessage message = new ChatMessage();
+        message.setMessageId(messageId);
+        message.setSenderId(senderId);
+        message.setReceiverId(receiverId);
+        message.setContent(content);
+        message.setMessageType(0);
+        message.setCreateTime(new Date(time));
+        return message;
+    }
+
+    /**
+     * 内存版 JdbcTemplate：只实现写后缓冲用到的语句
+     */
+    private static final class InMemoryJdbcTemplate extends JdbcTemplate {
+
+        private final Map<Long, Object[]> messages = new ConcurrentHashMap<>();
+
+        private final List<Object[]> sessionUpserts = new ArrayList<>();
+
+        /**
+         * 包含该内容的消息写入时抛出数据完整性异常（模拟超长内容）
+         */
+        private String rejectContent;
+
+        /**
+         * 模拟数据库暂时不可用
+         */
+        private boolean unavailable;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            assertTrue(sql.startsWith("SELECT messageId FROM chat_message"));
+            if (unavailable) {
+                throw new QueryTimeoutException("timeout");
+            }
+            List<T> existing = new ArrayList<>();
+            for (Object id : args) {
+                if (messages.containsKey((Long) id)) {
+                    existing.add((T) id);
+                }
+            }
+            return existing;
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            if (sql.startsWith("INSERT IGNORE INTO chat_message")) {
+                if (batchArgs.stream().anyMatch(args -> args[3].equals(rejectContent))) {
+                    throw new DataIntegrityViolationException("Data too long for column 'content'");
+                }
+                batchArgs.forEach(args -> messages.putIfAbsent((Long) args[0], args));
+            } else if (sql.startsWith("INSERT INTO chat_session")) {
+                sessionUpserts.addAll(batchArgs);
+            } else {
+                fail("unexpected sql: " + sql);
+            }
+            int[] counts = new int[batchArgs.size()];
+            Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+            return counts;
+        }
+    }
+
+    /**
+     * 内存版 Stream：单分区、单次读取返回全部待处理记录，记录认领、确认、死信和索引移除
+     */
+    @SuppressWarnings("unchecked")
+    private static final class FakeStreamRedisTemplate extends StringRedisTemplate {
+
+        private final List<MapRecord<String, Object, Object>> records = new ArrayList<>();
+
+        private final List<String> acknowledged = new ArrayList<>();
+
+        private final List<Map<String, String>> deadLetters = new ArrayList<>();
+
+        private final List<String> removedInflight = new ArrayList<>();
+
+        private final List<PendingMessage> pending = new ArrayList<>();
+
+        private final List<String> claimed = new ArrayList<>();
+
+        /**
+         * 模拟分区锁过期后被其他节点取得，续期脚本返回 0
+         */
+        private boolean lockLost;
+
+        @Override
+        public ValueOperations<String, String> opsForValue() {
+            return (ValueOperations<String, String>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{ValueOperations.class}, (proxy, method, args) -> {
+                        if ("setIfAbsent".equals(method.getName())) {
+                            return true;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        @Override
+        public StreamOperations<String, Object, Object> opsForStream() {
+            return (StreamOperations<String, Object, Object>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{StreamOperations.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "read" -> {
+                            // 待处理记录只在第一次（从 0 读取）时返回
+                            List<MapRecord<String, Object, Object>> batch = new ArrayList<>(records);
+                            records.clear();
+                            yield batch;
+                        }
+                        case "acknowledge" -> {
+                            for (RecordId id : (RecordId[]) args[2]) {
+                                acknowledged.add(id.getValue());
+                            }
+                            yield 1L;
+                        }
+                        case "delete" -> 1L;
+                        case "pending" -> new PendingMessages("chat-writer", new ArrayList<>(pending));
+                        case "claim" -> {
+                            for (RecordId id : (RecordId[]) args[4]) {
+                                claimed.add(id.getValue());
+                                pending.removeIf(message -> message.getId().equals(id));
+                            }
+                            yield List.of();
+                        }
+                        case "consumers" -> null;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        @Override
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            return (T) Long.valueOf(lockLost ? 0 : 1);
+        }
+
+        @Override
+        public List<Object> executePipelined(RedisCallback<?> action) {
+            StringRedisConnection connection = (StringRedisConnection) Proxy.newProxyInstance(
+                    getClass().getClassLoader(), new Class<?>[]{StringRedisConnection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "xAdd" -> deadLetters.add((Map<String, String>) args[1]);
+                            case "zRem" -> removedInflight.add(((String[]) args[1])[0]);
+                            case "xTrim" -> {
+                            }
+                            default -> throw new UnsupportedOperationException(method.getName());
+                        }
+                        return null;
+                    });
+            action.doInRedis(connection);
+            return List.of();
+        }
+    }
+
+    private static final class NoopTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.xm.game9.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 资讯检索高亮测试
+ *
+ * @author X1aoM1ngTX
+ */
+class NewsSearchIndexTest {
+
+    @Test
+    void highlight_MarksTermsCaseInsensitively() {
+        assertEquals("新版 <em>Java</em> 游戏 &amp; <em>JAVA</em>",
+                NewsSearchIndex.highlight("<p>新版 Java 游戏 & JAVA</p>", "java", false));
+    }
+
+    @Test
+    void highlight_AlignsWhenLowercaseChangesLength() {
+        // "İ".toLowerCase() 会变成两个字符，偏移不能因此错位
+        assertEquals("İİ <em>Java</em> 和 <em>Steam</em>",
+                NewsSearchIndex.highlight("İİ Java 和 Steam", "java steam", false));
+    }
+
+    @Test
+    void highlight_MarksCjkBigrams() {
+        assertEquals("今天<em>游戏</em>更新", NewsSearchIndex.highlight("今天游戏更新", "游戏", false));
+    }
+}
@@ -0,0 +1,157 @@
+package com.xm.game9.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xm.game9.mapper.NewsMapper;
+import com.xm.game9.mapper.NewsTagMapper;
+import com.xm.game9.model.domain.News;
+import com.xm.game9.model.domain.NewsTag;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 资讯标签索引测试：大小写不同的标签应视为同一个
+ *
+ * @author X1aoM1ngTX
+ */
+class NewsTagIndexTest {
+
+    private static final Long NEWS_ID = 1L;
+
+    private NewsTagIndex newsTagIndex;
+
+    private final News news = new News();
+
+    /**
+     * 内存版关联表
+     */
+    private final List<NewsTag> rows = new ArrayList<>();
+
+    /**
+     * 热门标签计数增量（标签 -> 增量）
+     */
+    private final Map<String, Integer> hotTagDeltas = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        news.setNewsId(NEWS_ID);
+        news.setNewsStatus(1);
+        news.setNewsIsDelete(0);
+        news.setNewsPublishTime(new Date());
+
+        newsTagIndex = new NewsTagIndex();
+        ReflectionTestUtils.setField(newsTagIndex, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(newsTagIndex, "newsTagMapper", newsTagMapper());
+        ReflectionTestUtils.setField(newsTagIndex, "newsMapper", newsMapper());
+        ReflectionTestUtils.setField(newsTagIndex, "stringRedisTemplate", new RecordingRedisTemplate());
+        ReflectionTestUtils.setField(newsTagIndex, "transactionTemplate",
+                new TransactionTemplate(new NoopTransactionManager()));
+    }
+
+    @Test
+    void normalize_LowercasesAndAddsPrefix() {
+        assertEquals("#java", NewsTagIndex.normalize("Java"));
+        assertEquals("#java", NewsTagIndex.normalize(" #JAVA "));
+        assertEquals("#游戏", NewsTagIndex.normalize("#游戏"));
+    }
+
+    @Test
+    void parseTags_MixedCaseCollapsesToOneTag() {
+        Set<String> tags = newsTagIndex.parseTags("[\"#Java\", \"#java\", \"#JAVA\", \"#游戏\"]");
+
+        assertEquals(Set.of("#java", "#游戏"), tags);
+    }
+
+    @Test
+    void sync_MixedCaseTagsInsertOneRow() {
+        news.setNewsCustomTags("[\"#Java\", \"#java\"]");
+
+        newsTagIndex.sync(NEWS_ID);
+
+        assertEquals(1, rows.size());
+        assertEquals("#java", rows.get(0).getTagName());
+        assertEquals(Map.of("#java", 1), hotTagDeltas);
+
+        // 再次同步（大小写变化）不应删除或重复插入
+        news.setNewsCustomTags("[\"#JAVA\"]");
+        hotTagDeltas.clear();
+        newsTagIndex.sync(NEWS_ID);
+
+        assertEquals(1, rows.size());
+        assertTrue(hotTagDeltas.isEmpty());
+    }
+
+    private NewsTagMapper newsTagMapper() {
+        return (NewsTagMapper) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{NewsTagMapper.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "lockNews" -> NEWS_ID;
+                    case "selectList" -> new ArrayList<>(rows);
+                    case "insert" -> {
+                        NewsTag row = (NewsTag) args[0];
+                        boolean duplicate = rows.stream().anyMatch(r -> r.getTagName().equals(row.getTagName()));
+                        assertFalse(duplicate, "duplicate key: " + row.getTagName());
+                        rows.add(row);
+                        yield 1;
+                    }
+                    case "update", "delete" -> 0;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private NewsMapper newsMapper() {
+        return (NewsMapper) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{NewsMapper.class},
+                (proxy, method, args) -> {
+                    if ("selectById".equals(method.getName())) {
+                        return news;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * 记录热门标签计数脚本参数的 StringRedisTemplate
+     */
+    private final class RecordingRedisTemplate extends StringRedisTemplate {
+
+        @Override
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            for (int i = 0; i < args.length; i += 2) {
+                hotTagDeltas.merge((String) args[i], Integer.parseInt((String) args[i + 1]), Integer::sum);
+            }
+            return null;
+        }
+    }
+
+    private static final class NoopTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.xm.game9.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 资讯浏览量缓冲计数器测试：与写库并发的浏览不应丢失
+ *
+ * @author X1aoM1ngTX
+ */
+class NewsViewCounterTest {
+
+    private InMemoryJdbcTemplate jdbcTemplate;
+
+    private NewsViewCounter newsViewCounter;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new InMemoryJdbcTemplate();
+        newsViewCounter = new NewsViewCounter();
+        ReflectionTestUtils.setField(newsViewCounter, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @Test
+    void flush_WritesAccumulatedViews() {
+        newsViewCounter.increment(1L);
+        newsViewCounter.increment(1L);
+        newsViewCounter.increment(2L);
+
+        assertEquals(Map.of(1L, 2L, 2L, 1L), newsViewCounter.getPending(List.of(1L, 2L, 3L)));
+        assertEquals(2, newsViewCounter.flush());
+        assertEquals(Map.of(1L, 2L, 2L, 1L), jdbcTemplate.views);
+        assertTrue(newsViewCounter.getPending(List.of(1L, 2L)).isEmpty());
+        assertEquals(0, newsViewCounter.flush());
+    }
+
+    @Test
+    void flush_ConcurrentWithIncrementsLosesNothing() throws Exception {
+        int threads = 8;
+        int perThread = 20000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    // 少量资讯反复清空再累加，覆盖写库时条目被移除的情况
+                    newsViewCounter.increment((long) (i % 3));
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        Thread flusher = new Thread(() -> {
+            while (!done.get()) {
+                newsViewCounter.flush();
+            }
+        });
+        flusher.start();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        done.set(true);
+        flusher.join();
+        newsViewCounter.flush();
+
+        long total = jdbcTemplate.views.values().stream().mapToLong(Long::longValue).sum();
+        assertEquals((long) threads * perThread, total);
+    }
+
+    /**
+     * 内存版 JdbcTemplate：解析多行 UPDATE 的 CASE 参数累加浏览量
+     */
+    private static final class InMemoryJdbcTemplate extends JdbcTemplate {
+
+        private final Map<Long, Long> views = new ConcurrentHashMap<>();
+
+        @Override
+        public int update(String sql, Object... args) {
+            assertTrue(sql.startsWith("UPDATE news SET newsViews"));
+            int rows = args.length / 3;
+            for (int i = 0; i < rows; i++) {
+                views.merge((Long) args[i * 2], (Long) args[i * 2 + 1], Long::sum);
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.xm.game9.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 雪花ID生成器测试
+ *
+ * @author X1aoM1ngTX
+ */
+@Slf4j
+class SnowflakeIdGeneratorTest {
+
+    @Test
+    void nextId_MonotonicInSingleThread() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+        long prev = generator.nextId();
+        // 远超单毫秒4096个序列号，覆盖序列号进位的情况
+        for (int i = 0; i < 100_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > prev, "ID必须严格递增");
+            prev = id;
+        }
+    }
+
+    @Test
+    void nextId_UniqueAcrossThreads() throws InterruptedException {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(2);
+        int threads = 8;
+        int perThread = 50_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch latch = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(generator.nextId());
+                }
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(threads * perThread, ids.size(), "并发生成的ID不能重复");
+    }
+
+    @Test
+    void nextId_ContainsWorkerId() {
+        long workerId = 513;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(workerId);
+        long id = generator.nextId();
+        assertEquals(workerId, (id >>> 12) & SnowflakeIdGenerator.MAX_WORKER_ID);
+        assertTrue(generator.nextId("ORDER").startsWith("ORDER"));
+    }
+
+    @Test
+    void constructor_RejectsInvalidWorkerId() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(1024));
+    }
+
+    /**
+     * 多线程生成：每个线程内严格递增，全部ID不重复，并输出与旧订单号生成方式的耗时对比
+     * <p>
+     * 耗时依赖机器负载，默认构建不运行，使用 -Pbenchmark 开启
+     */
+    @Test
+    @Tag("benchmark")
+    void compareWithLegacyOrderNo() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3);
+        int threads = 4;
+        int rounds = 200_000;
+        // 预热
+        for (int i = 0; i < rounds; i++) {
+            generator.nextId("ORDER");
+            legacyOrderNo();
+        }
+
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                long[] generated = new long[rounds];
+                for (int i = 0; i < rounds; i++) {
+                    generated[i] = generator.nextId();
+                }
+                boolean monotonic = true;
+                for (int i = 0; i < rounds; i++) {
+                    monotonic &= i == 0 || generated[i] > generated[i - 1];
+                    ids.add(generated[i]);
+                }
+                return monotonic;
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get(30, TimeUnit.SECONDS), "同一线程内生成的ID必须严格递增");
+        }
+        long snowflakeNanos = System.nanoTime() - start;
+        executor.shutdown();
+        assertEquals(threads * rounds, ids.size(), "并发生成的ID不能重复");
+
+        start = System.nanoTime();
+        for (int i = 0; i < threads * rounds; i++) {
+            legacyOrderNo();
+        }
+        long legacyNanos = System.nanoTime() - start;
+
+        log.info("雪花ID（{}线程）: {} ns/op, 旧订单号: {} ns/op",
+                threads, snowflakeNanos / ((long) threads * rounds), legacyNanos / ((long) threads * rounds));
+    }
+
+    @Test
+    void init_LeasesDistinctWorkerIds() {
+        LeaseRedisTemplate redis = new LeaseRedisTemplate();
+        SnowflakeIdGenerator first = leasedGenerator(redis);
+        SnowflakeIdGenerator second = leasedGenerator(redis);
+
+        assertNotEquals(first.getWorkerId(), second.getWorkerId());
+        assertEquals(2, redis.leases.size());
+
+        first.destroy();
+        assertEquals(1, redis.leases.size());
+        assertFalse(redis.leases.containsKey("id:worker:lease:" + first.getWorkerId()));
+    }
+
+    @Test
+    void renewLease_LostLeaseSwitchesWorkerIdAndStaysMonotonic() {
+        LeaseRedisTemplate redis = new LeaseRedisTemplate();
+        SnowflakeIdGenerator generator = leasedGenerator(redis);
+        long lostWorkerId = generator.getWorkerId();
+        long before = generator.nextId();
+
+        // 租约过期后被其他节点租走
+        redis.leases.put("id:worker:lease:" + lostWorkerId, "other");
+        generator.renewLease();
+
+        assertNotEquals(lostWorkerId, generator.getWorkerId());
+        assertEquals("other", redis.leases.get("id:worker:lease:" + lostWorkerId));
+        assertTrue(generator.nextId() > before, "改租节点号后ID仍需递增");
+    }
+
+    private static SnowflakeIdGenerator leasedGenerator(LeaseRedisTemplate redis) {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator();
+        ReflectionTestUtils.setField(generator, "workerId", -1L);
+        ReflectionTestUtils.setField(generator, "stringRedisTemplate", redis);
+        generator.init();
+        return generator;
+    }
+
+    /**
+     * 内存版租约存储：只实现 SET NX 和续租/释放脚本
+     */
+    @SuppressWarnings("unchecked")
+    private static final class LeaseRedisTemplate extends StringRedisTemplate {
+
+        private final Map<String, String> leases = new ConcurrentHashMap<>();
+
+        @Override
+        public ValueOperations<String, String> opsForValue() {
+            return (ValueOperations<String, String>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{ValueOperations.class}, (proxy, method, args) -> {
+                        if ("setIfAbsent".equals(method.getName())) {
+                            return leases.putIfAbsent((String) args[0], (String) args[1]) == null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        @Override
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            String key = keys.get(0);
+            if (!args[0].equals(leases.get(key))) {
+                return (T) Long.valueOf(0);
+            }
+            if (args.length == 1) {
+                leases.remove(key);
+            }
+            return (T) Long.valueOf(1);
+        }
+    }
+
+    private String legacyOrderNo() {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+        String random = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        return "ORDER" + timestamp + random;
+    }
+}
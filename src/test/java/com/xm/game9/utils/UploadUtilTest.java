@@ -0,0 +1,234 @@
+package com.xm.game9.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import com.xm.game9.common.ErrorCode;
+import com.xm.game9.exception.BusinessException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文件上传工具测试（使用本地的 S3 兼容桩服务模拟 Cloudflare R2）
+ *
+ * @author X1aoM1ngTX
+ */
+class UploadUtilTest {
+
+    private static final String BUCKET = "test-bucket";
+
+    private static final String DOMAIN = "https://cdn.example.com/";
+
+    private HttpServer server;
+
+    private UploadUtil uploadUtil;
+
+    /**
+     * 已上传的对象（key -> 内容）
+     */
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    /**
+     * 进行中的分片上传（uploadId -> 分片号 -> 内容）
+     */
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+
+    private final AtomicInteger uploadPartCalls = new AtomicInteger();
+
+    /**
+     * 是否拒绝创建分片上传
+     */
+    private volatile boolean denyCreateMultipart;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/" + BUCKET + "/", this::handle);
+        server.start();
+
+        uploadUtil = new UploadUtil();
+        ReflectionTestUtils.setField(uploadUtil, "cloudflareR2Domain", DOMAIN);
+        ReflectionTestUtils.setField(uploadUtil, "cloudflareR2BucketName", BUCKET);
+        ReflectionTestUtils.setField(uploadUtil, "multipartThreshold", 6L * 1024 * 1024);
+        ReflectionTestUtils.setField(uploadUtil, "partSize", 5L * 1024 * 1024);
+        ReflectionTestUtils.setField(uploadUtil, "maxConcurrentRequests", 4);
+        uploadUtil.initClient(URI.create("http://127.0.0.1:" + server.getAddress().getPort()), "test", "test");
+    }
+
+    @AfterEach
+    void tearDown() {
+        uploadUtil.destroy();
+        server.stop(0);
+    }
+
+    @Test
+    void uploadR2_SmallFileUsesSinglePut() throws Exception {
+        byte[] content = randomBytes(64 * 1024);
+        String url = uploadUtil.uploadR2(new MockMultipartFile("file", "cover.png", "image/png", content));
+
+        assertTrue(url.startsWith(DOMAIN + "img/"));
+        assertTrue(url.endsWith(".png"));
+        assertArrayEquals(content, objects.get(url.substring(DOMAIN.length())));
+        assertEquals(0, uploadPartCalls.get());
+    }
+
+    @Test
+    void uploadR2_LargeFileUsesMultipartUpload() throws Exception {
+        byte[] content = randomBytes(12 * 1024 * 1024 + 123);
+        String url = uploadUtil.uploadR2(new MockMultipartFile("file", "trailer.mp4", "video/mp4", content));
+
+        assertTrue(url.startsWith(DOMAIN + "video/"));
+        assertArrayEquals(content, objects.get(url.substring(DOMAIN.length())));
+        assertEquals(3, uploadPartCalls.get());
+        assertTrue(uploads.isEmpty(), "完成后不应残留分片上传");
+    }
+
+    @Test
+    void uploadR2_CreateMultipartFailureThrowsBusinessException() {
+        denyCreateMultipart = true;
+        byte[] content = randomBytes(12 * 1024 * 1024);
+
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> uploadUtil.uploadR2(new MockMultipartFile("file", "trailer.mp4", "video/mp4", content)));
+        assertEquals(ErrorCode.SYSTEM_ERROR.getErrorCode(), e.getCode());
+        assertEquals(0, uploadPartCalls.get());
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * 按路径风格处理 PutObject 和分片上传相关的请求
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String key = exchange.getRequestURI().getPath().substring(BUCKET.length() + 2);
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String method = exchange.getRequestMethod();
+        byte[] body = readBody(exchange);
+
+        if ("POST".equals(method) && query.containsKey("uploads") && denyCreateMultipart) {
+            respond(exchange, 403, "<Error><Code>AccessDenied</Code><Message>Access Denied</Message></Error>");
+        } else if ("POST".equals(method) && query.containsKey("uploads")) {
+            String uploadId = "upload-" + uploads.size();
+            uploads.put(uploadId, new TreeMap<>());
+            respond(exchange, 200, "<InitiateMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>" + key
+                    + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+        } else if ("PUT".equals(method) && query.containsKey("uploadId")) {
+            uploadPartCalls.incrementAndGet();
+            int partNumber = Integer.parseInt(query.get("partNumber"));
+            synchronized (uploads) {
+                uploads.get(query.get("uploadId")).put(partNumber, body);
+            }
+            exchange.getResponseHeaders().set("ETag", "\"etag-" + partNumber + "\"");
+            respond(exchange, 200, "");
+        } else if ("POST".equals(method) && query.containsKey("uploadId")) {
+            ByteArrayOutputStream merged = new ByteArrayOutputStream();
+            Map<Integer, byte[]> parts = uploads.remove(query.get("uploadId"));
+            for (byte[] part : parts.values()) {
+                merged.write(part);
+            }
+            objects.put(key, merged.toByteArray());
+            respond(exchange, 200, "<CompleteMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>" + key
+                    + "</Key><ETag>\"etag\"</ETag></CompleteMultipartUploadResult>");
+        } else if ("DELETE".equals(method) && query.containsKey("uploadId")) {
+            uploads.remove(query.get("uploadId"));
+            respond(exchange, 204, null);
+        } else if ("PUT".equals(method)) {
+            objects.put(key, body);
+            exchange.getResponseHeaders().set("ETag", "\"etag\"");
+            respond(exchange, 200, "");
+        } else {
+            respond(exchange, 400, "");
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new TreeMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                query.put(eq < 0 ? pair : pair.substring(0, eq), eq < 0 ? "" : pair.substring(eq + 1));
+            }
+        }
+        return query;
+    }
+
+    /**
+     * 读取请求体，SDK 使用 aws-chunked 编码时去掉分块头
+     */
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        byte[] raw;
+        try (InputStream in = exchange.getRequestBody()) {
+            raw = in.readAllBytes();
+        }
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        String sha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        boolean chunked = (encoding != null && encoding.contains("aws-chunked"))
+                || (sha256 != null && sha256.startsWith("STREAMING-"));
+        if (!chunked) {
+            return raw;
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        int pos = 0;
+        while (pos < raw.length) {
+            int lineEnd = indexOfCrlf(raw, pos);
+            String header = new String(raw, pos, lineEnd - pos, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(header.split(";")[0].trim(), 16);
+            pos = lineEnd + 2;
+            if (size == 0) {
+                break;
+            }
+            decoded.write(raw, pos, size);
+            pos += size + 2;
+        }
+        return decoded.toByteArray();
+    }
+
+    private static int indexOfCrlf(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length - 1; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return bytes.length;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+}